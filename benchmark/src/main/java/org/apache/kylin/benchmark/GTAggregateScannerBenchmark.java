@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecordBlock;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GTAggregateScanner over an in-memory grid table. A small "aggrCacheGB" forces the spill path,
+ * "0" keeps everything in memory. The score is the time of one full scan and aggregation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GTAggregateScannerBenchmark {
+
+    @Param({ "1000000" })
+    public long rows;
+
+    @Param({ GTDatasets.MEASURE_SUM, GTDatasets.MEASURE_HLLC })
+    public String measure;
+
+    /** the group by dimensions, 0,1,2,3,4 keeps every row a group of its own */
+    @Param({ "0,1", "0,2", "0,1,2,3", "0,1,2,3,4" })
+    public String groupBy;
+
+    @Param({ "0", "0.005" })
+    public double aggrCacheGB;
+
+    @Param({ "true", "false" })
+    public boolean hashAggr;
+
+    @Param({ "true", "false" })
+    public boolean blockScan;
+
+    private GTInfo info;
+    private GridTable table;
+    private ImmutableBitSet groupByCols;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        LocalFileMetadataTestCase.staticCreateTestMetadata();
+        info = GTDatasets.newInfo(measure);
+        table = GTDatasets.newTable(info, measure, rows);
+
+        String[] split = groupBy.split(",");
+        int[] cols = new int[split.length];
+        for (int i = 0; i < split.length; i++) {
+            cols[i] = Integer.parseInt(split[i].trim());
+        }
+        groupByCols = ImmutableBitSet.valueOf(cols);
+        GTRecordBlock.ENABLED = blockScan;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        GTRecordBlock.ENABLED = true;
+        table.close();
+        LocalFileMetadataTestCase.cleanAfterClass();
+    }
+
+    @Benchmark
+    public long aggregate() throws IOException {
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(GTDatasets.DIMENSIONS)//
+                .setAggrGroupBy(groupByCols).setAggrMetrics(GTDatasets.METRICS).setAggrMetricsFuncs(GTDatasets.aggrFuncs(measure))//
+                .setFilterPushDown(null).setAggCacheMemThreshold(aggrCacheGB).setHashAggrEnabled(hashAggr).createGTScanRequest();
+        return GTDatasets.scan(table, req);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.benchmark.SortedGTRecordGenerator;
+import org.apache.kylin.gridtable.benchmark.SortedGTRecordGenerator.Randomizer;
+import org.apache.kylin.gridtable.memstore.GTSimpleMemStore;
+import org.apache.kylin.measure.hllc.HLLCounter;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The grid table datasets shared by the benchmarks, generated by SortedGTRecordGenerator:
+ * 5 sorted dimensions of type int4 with cardinality 10, 10, 10, 10, 100, a long8 measure for SUM and a
+ * second measure that is either long8 for SUM or a single value hllc(12) for COUNT_DISTINCT.
+ */
+public class GTDatasets {
+
+    public static final String MEASURE_SUM = "sum";
+    public static final String MEASURE_HLLC = "hllc";
+
+    public static final ImmutableBitSet DIMENSIONS = ImmutableBitSet.valueOf(0, 1, 2, 3, 4);
+    public static final ImmutableBitSet METRICS = ImmutableBitSet.valueOf(5, 6);
+
+    public static GTInfo newInfo(String measure) {
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        DataType tlong = DataType.getType("long8");
+        DataType last = MEASURE_HLLC.equals(measure) ? DataType.getType("hllc(12)") : tlong;
+        builder.setColumns(tint, tint, tint, tint, tint, tlong, last);
+        builder.setPrimaryKey(DIMENSIONS);
+        return builder.build();
+    }
+
+    public static String[] aggrFuncs(String measure) {
+        return MEASURE_HLLC.equals(measure) ? new String[] { "SUM", "COUNT_DISTINCT" } : new String[] { "SUM", "SUM" };
+    }
+
+    public static SortedGTRecordGenerator newGenerator(GTInfo info, String measure) {
+        SortedGTRecordGenerator gen = new SortedGTRecordGenerator(info);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(100, 4, null);
+        gen.addMeasure(8);
+        if (MEASURE_HLLC.equals(measure)) {
+            gen.addMeasure(8, new Randomizer() {
+                HLLCounter hllc = new HLLCounter(12);
+
+                @Override
+                public int fillRandom(Random rand, byte[] array, int offset) {
+                    try {
+                        hllc.clear();
+                        hllc.add(rand.nextInt());
+                        ByteBuffer wrap = ByteBuffer.wrap(array, offset, array.length - offset);
+                        hllc.writeRegisters(wrap);
+                        return wrap.position() - offset;
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        } else {
+            gen.addMeasure(8);
+        }
+        return gen;
+    }
+
+    /** an in-memory grid table loaded with given number of generated rows */
+    public static GridTable newTable(GTInfo info, String measure, long rows) throws IOException {
+        GridTable table = new GridTable(info, new GTSimpleMemStore(info));
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : newGenerator(info, measure).generate(rows)) {
+            builder.write(r);
+        }
+        builder.close();
+        return table;
+    }
+
+    /** the generated rows as copies, for benchmarks that work on records directly */
+    public static List<GTRecord> newRecords(GTInfo info, String measure, int rows) {
+        List<GTRecord> result = Lists.newArrayListWithCapacity(rows);
+        for (GTRecord r : newGenerator(info, measure).generate(rows)) {
+            result.add(r.copy());
+        }
+        return result;
+    }
+
+    public static long scan(GridTable table, GTScanRequest req) throws IOException {
+        long count = 0;
+        IGTScanner scanner = table.scan(req);
+        try {
+            for (@SuppressWarnings("unused")
+            GTRecord rec : scanner) {
+                count++;
+            }
+        } finally {
+            scanner.close();
+        }
+        return count;
+    }
+
+    // ============================================================================
+    // filter helpers
+
+    public static LogicalTupleFilter and(TupleFilter... filters) {
+        return logical(FilterOperatorEnum.AND, filters);
+    }
+
+    public static LogicalTupleFilter or(TupleFilter... filters) {
+        return logical(FilterOperatorEnum.OR, filters);
+    }
+
+    private static LogicalTupleFilter logical(FilterOperatorEnum op, TupleFilter[] filters) {
+        LogicalTupleFilter r = new LogicalTupleFilter(op);
+        for (TupleFilter f : filters)
+            r.addChild(f);
+        return r;
+    }
+
+    public static CompareTupleFilter gt(GTInfo info, int col, int v) {
+        CompareTupleFilter r = new CompareTupleFilter(FilterOperatorEnum.GT);
+        r.addChild(new ColumnTupleFilter(info.colRef(col)));
+        r.addChild(new ConstantTupleFilter(code(info, col, v)));
+        return r;
+    }
+
+    public static CompareTupleFilter in(GTInfo info, int col, int... values) {
+        CompareTupleFilter r = new CompareTupleFilter(FilterOperatorEnum.IN);
+        r.addChild(new ColumnTupleFilter(info.colRef(col)));
+        List<ByteArray> list = Lists.newArrayList();
+        for (int v : values) {
+            list.add(code(info, col, v));
+        }
+        r.addChild(new ConstantTupleFilter(list));
+        return r;
+    }
+
+    private static ByteArray code(GTInfo info, int col, int v) {
+        int len = info.getCodeSystem().maxCodeLength(col);
+        ByteArray bytes = new ByteArray(len);
+        BytesUtil.writeLong(v, bytes.array(), bytes.offset(), len);
+        return bytes;
+    }
+}
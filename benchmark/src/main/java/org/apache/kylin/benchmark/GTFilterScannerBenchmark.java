@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import static org.apache.kylin.benchmark.GTDatasets.and;
+import static org.apache.kylin.benchmark.GTDatasets.gt;
+import static org.apache.kylin.benchmark.GTDatasets.in;
+import static org.apache.kylin.benchmark.GTDatasets.or;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTFilterCompiler;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecordBlock;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GTFilterScanner over an in-memory grid table, with and without compiled filters and block scan.
+ * The score is the time of one full scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GTFilterScannerBenchmark {
+
+    @Param({ "1000000" })
+    public long rows;
+
+    @Param({ "true", "false" })
+    public boolean compiled;
+
+    @Param({ "true", "false" })
+    public boolean blockScan;
+
+    private GTInfo info;
+    private GridTable table;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        LocalFileMetadataTestCase.staticCreateTestMetadata();
+        info = GTDatasets.newInfo(GTDatasets.MEASURE_SUM);
+        table = GTDatasets.newTable(info, GTDatasets.MEASURE_SUM, rows);
+        GTFilterCompiler.ENABLED = compiled;
+        GTRecordBlock.ENABLED = blockScan;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        GTFilterCompiler.ENABLED = true;
+        GTRecordBlock.ENABLED = true;
+        table.close();
+        LocalFileMetadataTestCase.cleanAfterClass();
+    }
+
+    @Benchmark
+    public long filterIn() throws IOException {
+        return scan(in(info, 1, 1, 5, 7));
+    }
+
+    @Benchmark
+    public long filterAnd() throws IOException {
+        return scan(and(gt(info, 0, 5), in(info, 2, 2, 4)));
+    }
+
+    @Benchmark
+    public long filterNested() throws IOException {
+        return scan(and(//
+                gt(info, 0, 2), //
+                in(info, 4, 1, 3, 5, 9, 12, 14, 23, 43, 52, 78, 92), //
+                or(in(info, 1, 2, 4), in(info, 2, 2, 4, 5, 9))));
+    }
+
+    private long scan(TupleFilter filter) throws IOException {
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(info.getAllColumns()).setFilterPushDown(filter).createGTScanRequest();
+        return GTDatasets.scan(table, req);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.gridtable.CubeCodeSystem;
+import org.apache.kylin.cube.inmemcubing.ConcurrentDiskStore;
+import org.apache.kylin.cube.inmemcubing.MemDiskStore;
+import org.apache.kylin.cube.inmemcubing.MemoryBudgetController;
+import org.apache.kylin.cube.inmemcubing.OffHeapColumnarStore;
+import org.apache.kylin.dict.StringBytesConverter;
+import org.apache.kylin.dict.TrieDictionaryBuilder;
+import org.apache.kylin.dimension.DictionaryDimEnc;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.dimension.FixedLenDimEnc;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing and scanning a cuboid result of the in-mem cube builder, on the disk store, the memory store
+ * and the off heap columnar store ("kylin.cube.algorithm.inmem-store"). The score is per cuboid.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GTStoreBenchmark {
+
+    @Param({ "disk", "mem", "offheap" })
+    public String store;
+
+    @Param({ "100000" })
+    public int rows;
+
+    private GTInfo info;
+    private GTRecord[] records;
+    private GridTable scanTable;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        LocalFileMetadataTestCase.staticCreateTestMetadata();
+
+        TrieDictionaryBuilder<String> b = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (int i = 0; i < 10000; i++) {
+            b.addValue("value_" + i);
+        }
+        Dictionary<String> dict = b.build(0);
+
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new CubeCodeSystem(new DimensionEncoding[] { new DictionaryDimEnc(dict), new FixedLenDimEnc(10) }));
+        builder.setColumns(DataType.getType("varchar(20)"), DataType.getType("varchar(10)"), DataType.getType("bigint"), DataType.getType("decimal(19,4)"));
+        builder.setPrimaryKey(new ImmutableBitSet(0, 2));
+        info = builder.build();
+
+        // sorted by the primary key, like the output of a cuboid
+        records = new GTRecord[rows];
+        for (int i = 0; i < rows; i++) {
+            records[i] = new GTRecord(info).setValues("value_" + (i / 10 % 10000), "p" + (i % 10), new Long(i % 1000), new BigDecimal(i).movePointLeft(4));
+        }
+
+        scanTable = new GridTable(info, newStore());
+        write(scanTable);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        scanTable.close();
+        LocalFileMetadataTestCase.cleanAfterClass();
+    }
+
+    private IGTStore newStore() throws IOException {
+        if ("mem".equals(store)) {
+            return new MemDiskStore(info, new MemoryBudgetController(1024));
+        } else if ("offheap".equals(store)) {
+            return new OffHeapColumnarStore(info, 1024);
+        } else {
+            return new ConcurrentDiskStore(info);
+        }
+    }
+
+    private void write(GridTable table) throws IOException {
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : records) {
+            builder.write(r);
+        }
+        builder.close();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        GridTable table = new GridTable(info, newStore());
+        write(table);
+        table.close();
+        return rows;
+    }
+
+    @Benchmark
+    public long scan() throws IOException {
+        IGTScanner scanner = scanTable.scan(new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
+        long sum = 0;
+        for (GTRecord r : scanner) {
+            sum += r.get(2).length();
+        }
+        scanner.close();
+        return sum;
+    }
+}
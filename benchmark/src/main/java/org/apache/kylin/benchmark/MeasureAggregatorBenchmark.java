@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.measure.hllc.HLLCAggregator;
+import org.apache.kylin.measure.hllc.HLLCSerializer;
+import org.apache.kylin.measure.hllc.HLLCounter;
+import org.apache.kylin.measure.percentile.DDSketchAggregator;
+import org.apache.kylin.measure.percentile.DDSketchCounter;
+import org.apache.kylin.measure.percentile.DDSketchSerializer;
+import org.apache.kylin.measure.percentile.PercentileAggregator;
+import org.apache.kylin.measure.percentile.PercentileCounter;
+import org.apache.kylin.measure.topn.TopNAggregator;
+import org.apache.kylin.measure.topn.TopNCounter;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The HLLC, TopN and percentile (t-digest and DDSketch) aggregators, merging a group of pre-built counters into one.
+ * HLLC and DDSketch are also merged from the serialized counters, as the cuboid reducer does. The score is per merged counter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MeasureAggregatorBenchmark {
+
+    private static final int GROUP_SIZE = 256;
+
+    /** distinct values fed into each counter */
+    @Param({ "10", "1000" })
+    public int valuesPerCounter;
+
+    private HLLCounter[] hllcs = new HLLCounter[GROUP_SIZE];
+    private ByteBuffer[] hllcBuffers = new ByteBuffer[GROUP_SIZE];
+    private TopNCounter<ByteArray>[] topns;
+    private PercentileCounter[] percentiles = new PercentileCounter[GROUP_SIZE];
+    private DDSketchCounter[] ddsketches = new DDSketchCounter[GROUP_SIZE];
+    private ByteBuffer[] ddsketchBuffers = new ByteBuffer[GROUP_SIZE];
+
+    private HLLCAggregator hllcAggregator = new HLLCAggregator(14);
+    private HLLCSerializer hllcSerializer = new HLLCSerializer(DataType.getType("hllc(14)"));
+    private TopNAggregator topnAggregator = new TopNAggregator();
+    private PercentileAggregator percentileAggregator = new PercentileAggregator(100);
+    private DDSketchAggregator ddsketchAggregator = new DDSketchAggregator(100);
+    private DDSketchSerializer ddsketchSerializer = new DDSketchSerializer(DataType.getType("ddsketch(100)"));
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random rand = new Random(0);
+        topns = new TopNCounter[GROUP_SIZE];
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            hllcs[i] = new HLLCounter(14);
+            topns[i] = new TopNCounter<ByteArray>(100 * 10);
+            percentiles[i] = new PercentileCounter(100);
+            ddsketches[i] = new DDSketchCounter(100);
+            for (int j = 0; j < valuesPerCounter; j++) {
+                int v = rand.nextInt(valuesPerCounter * 10);
+                hllcs[i].add(v);
+                topns[i].offer(new ByteArray(Bytes.toBytes(v)), rand.nextInt(100));
+                double d = rand.nextGaussian();
+                percentiles[i].add(d);
+                ddsketches[i].add(d);
+            }
+            topns[i].sortAndRetain();
+
+            ByteBuffer buf = ByteBuffer.allocate(hllcs[i].maxLength());
+            hllcs[i].writeRegisters(buf);
+            buf.flip();
+            hllcBuffers[i] = buf;
+
+            buf = ByteBuffer.allocate(ddsketches[i].maxLength());
+            ddsketches[i].writeRegisters(buf);
+            buf.flip();
+            ddsketchBuffers[i] = buf;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_SIZE)
+    public Object hllc() {
+        hllcAggregator.reset();
+        for (HLLCounter c : hllcs) {
+            hllcAggregator.aggregate(c);
+        }
+        return hllcAggregator.getState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_SIZE)
+    public Object hllcFromBuffer() {
+        hllcAggregator.reset();
+        for (ByteBuffer buf : hllcBuffers) {
+            buf.rewind();
+            hllcAggregator.aggregate(buf, hllcSerializer);
+        }
+        return hllcAggregator.getState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_SIZE)
+    public Object topn() {
+        topnAggregator.reset();
+        for (TopNCounter<ByteArray> c : topns) {
+            topnAggregator.aggregate(c);
+        }
+        return topnAggregator.getState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_SIZE)
+    public Object percentile() {
+        percentileAggregator.reset();
+        for (PercentileCounter c : percentiles) {
+            percentileAggregator.aggregate(c);
+        }
+        return percentileAggregator.getState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_SIZE)
+    public Object ddsketch() {
+        ddsketchAggregator.reset();
+        for (DDSketchCounter c : ddsketches) {
+            ddsketchAggregator.aggregate(c);
+        }
+        return ddsketchAggregator.getState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP_SIZE)
+    public Object ddsketchFromBuffer() {
+        ddsketchAggregator.reset();
+        for (ByteBuffer buf : ddsketchBuffers) {
+            buf.rewind();
+            ddsketchAggregator.aggregate(buf, ddsketchSerializer);
+        }
+        return ddsketchAggregator.getState();
+    }
+}
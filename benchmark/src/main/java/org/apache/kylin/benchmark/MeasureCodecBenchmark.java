@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.measure.hllc.HLLCounter;
+import org.apache.kylin.measure.percentile.PercentileCounter;
+import org.apache.kylin.measure.topn.TopNCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding of one measure by BufferedMeasureCodec, per measure type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MeasureCodecBenchmark {
+
+    private static final int N_VALUES = 1024;
+
+    @Param({ "bigint", "decimal(19,4)", "hllc(14)", "topn(100)", "percentile(100)" })
+    public String dataType;
+
+    private BufferedMeasureCodec codec;
+    private Object[][] values;
+    private ByteBuffer[] encoded;
+    private Object[] decoded = new Object[1];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        LocalFileMetadataTestCase.staticCreateTestMetadata();
+
+        codec = new BufferedMeasureCodec(dataType);
+        Random rand = new Random(0);
+        values = new Object[N_VALUES][];
+        encoded = new ByteBuffer[N_VALUES];
+        for (int i = 0; i < N_VALUES; i++) {
+            values[i] = new Object[] { newValue(rand) };
+            ByteBuffer buf = codec.encode(values[i]);
+            byte[] bytes = new byte[buf.position()];
+            System.arraycopy(buf.array(), 0, bytes, 0, bytes.length);
+            encoded[i] = ByteBuffer.wrap(bytes);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LocalFileMetadataTestCase.cleanAfterClass();
+    }
+
+    private Object newValue(Random rand) {
+        if (dataType.startsWith("bigint")) {
+            return rand.nextLong();
+        } else if (dataType.startsWith("decimal")) {
+            return new BigDecimal(rand.nextInt(100000000)).movePointLeft(4);
+        } else if (dataType.startsWith("hllc")) {
+            HLLCounter hllc = new HLLCounter(14);
+            for (int i = 0, n = rand.nextInt(1000); i < n; i++) {
+                hllc.add(rand.nextInt());
+            }
+            return hllc;
+        } else if (dataType.startsWith("topn")) {
+            TopNCounter<ByteArray> topn = new TopNCounter<ByteArray>(100 * 10);
+            for (int i = 0; i < 1000; i++) {
+                topn.offer(new ByteArray(Bytes.toBytes(rand.nextInt(200))), rand.nextInt(100));
+            }
+            topn.sortAndRetain();
+            return topn;
+        } else if (dataType.startsWith("percentile")) {
+            PercentileCounter counter = new PercentileCounter(100);
+            for (int i = 0; i < 1000; i++) {
+                counter.add(rand.nextGaussian());
+            }
+            return counter;
+        }
+        throw new IllegalArgumentException(dataType);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        next = (next + 1) % N_VALUES;
+        return codec.encode(values[next]);
+    }
+
+    @Benchmark
+    public Object decode() {
+        next = (next + 1) % N_VALUES;
+        ByteBuffer buf = encoded[next];
+        buf.rewind();
+        codec.decode(buf, decoded);
+        return decoded[0];
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.dict.OffHeapDictionaries;
+import org.apache.kylin.dict.StringBytesConverter;
+import org.apache.kylin.dict.TrieDictionary;
+import org.apache.kylin.dict.TrieDictionaryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TrieDictionary lookups in both directions, on heap and off heap ("kylin.dictionary.off-heap-mode").
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrieDictionaryBenchmark {
+
+    @Param({ "10000", "1000000" })
+    public int cardinality;
+
+    @Param({ OffHeapDictionaries.MODE_HEAP, OffHeapDictionaries.MODE_DIRECT, OffHeapDictionaries.MODE_MMAP })
+    public String offHeapMode;
+
+    private TrieDictionary<String> dict;
+    private String[] values;
+    private int[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        LocalFileMetadataTestCase.staticCreateTestMetadata();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.dictionary.off-heap-mode", offHeapMode);
+
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (int i = 0; i < cardinality; i++) {
+            builder.addValue("value_" + i);
+        }
+        dict = builder.build(0);
+        OffHeapDictionaries.moveOffHeap(dict, config);
+
+        // lookup in random order to defeat the caches of the CPU
+        Random rand = new Random(0);
+        values = new String[cardinality];
+        ids = new int[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+            values[i] = "value_" + rand.nextInt(cardinality);
+            ids[i] = dict.getIdFromValue(values[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        OffHeapDictionaries.release(dict);
+        LocalFileMetadataTestCase.cleanAfterClass();
+    }
+
+    @Benchmark
+    public int valueToId() {
+        next = (next + 1) % cardinality;
+        return dict.getIdFromValue(values[next]);
+    }
+
+    @Benchmark
+    public String idToValue() {
+        next = (next + 1) % cardinality;
+        return dict.getValueFromId(ids[next]);
+    }
+}
@@ -248,10 +248,53 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.dictionary.forest-trie-max-mb", "500"));
     }
 
+    /**
+     * dictionaries of different columns are built concurrently by this many threads
+     */
+    public int getDictionaryBuildThreads() {
+        return Integer.parseInt(getOptional("kylin.dictionary.build-threads", "4"));
+    }
+
+    /**
+     * memory shared by the concurrent dictionary builders, a builder waits until its estimate fits in
+     */
+    public int getDictionaryBuildMemoryBudgetMB() {
+        return Integer.parseInt(getOptional("kylin.dictionary.build-memory-budget-mb", "1024"));
+    }
+
+    /**
+     * trees of a trie dictionary forest are built concurrently by this many threads, if the input is sorted
+     */
+    public int getTrieDictionaryForestBuildThreads() {
+        return Integer.parseInt(getOptional("kylin.dictionary.forest-build-threads", "2"));
+    }
+
+    /**
+     * rows of the sorted distinct value files read ahead for the dictionary builders, 0 to disable
+     */
+    public int getDictionaryReadAheadRows() {
+        return Integer.parseInt(getOptional("kylin.dictionary.read-ahead-rows", "16384"));
+    }
+
     public int getCachedDictMaxEntrySize() {
         return Integer.parseInt(getOptional("kylin.dictionary.max-cache-entry", "3000"));
     }
 
+    /**
+     * where loaded trie dictionaries live: "heap", "direct" for direct buffers, or "mmap" for memory mapped local files
+     */
+    public String getDictionaryOffHeapMode() {
+        return getOptional("kylin.dictionary.off-heap-mode", "heap");
+    }
+
+    public String getDictionaryMmapDir() {
+        return getOptional("kylin.dictionary.mmap-dir", System.getProperty("java.io.tmpdir") + "/kylin-dict");
+    }
+
+    public int getDictionarySharedCacheMaxMB() {
+        return Integer.parseInt(getOptional("kylin.dictionary.shared-cache-max-mb", "256"));
+    }
+
     public boolean isGrowingDictEnabled() {
         return Boolean.parseBoolean(this.getOptional("kylin.dictionary.growing-enabled", "false"));
     }
@@ -309,6 +352,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.cube.algorithm.inmem-concurrent-threads", "1"));
     }
 
+    public String getCubeAlgorithmInMemStore() {
+        return getOptional("kylin.cube.algorithm.inmem-store", "disk");
+    }
+
+    public int getCubeAlgorithmInMemOffHeapStoreMB() {
+        return Integer.parseInt(getOptional("kylin.cube.algorithm.inmem-offheap-store-mb", "512"));
+    }
+
     public boolean isIgnoreCubeSignatureInconsistency() {
         return Boolean.parseBoolean(getOptional("kylin.cube.ignore-signature-inconsistency", "false"));
     }
@@ -321,10 +372,22 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.cube.aggrgroup.is-mandatory-only-valid", "false"));
     }
 
+    public double getCuboidRecommendBudgetRatio() {
+        return Double.parseDouble(getOptional("kylin.cube.cuboid-recommend.budget-ratio", "1.0"));
+    }
+
+    public boolean isCuboidRecommendAutoApply() {
+        return Boolean.parseBoolean(getOptional("kylin.cube.cuboid-recommend.auto-apply", "false"));
+    }
+
     public int getMaxBuildingSegments() {
         return Integer.parseInt(getOptional("kylin.cube.max-building-segments", "10"));
     }
 
+    public int getBitmapShardBits() {
+        return Integer.parseInt(getOptional("kylin.cube.measure.bitmap-shard-bits", "0"));
+    }
+
     public boolean allowCubeAppearInMultipleProjects() {
         return Boolean.parseBoolean(getOptional("kylin.cube.allow-appear-in-multiple-projects", "false"));
     }
@@ -424,6 +487,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.job.sampling-hll-precision", "14"));
     }
 
+    public double getCubeStatsConvergeThreshold() {
+        return Double.parseDouble(getOptional("kylin.job.sampling-converge-threshold", "0.01"));
+    }
+
+    public int getCubeStatsConvergeCheckRows() {
+        return Integer.parseInt(getOptional("kylin.job.sampling-converge-check-rows", "100000"));
+    }
+
     public String getJobControllerLock() {
         return getOptional("kylin.job.lock", "org.apache.kylin.storage.hbase.util.ZookeeperJobLock");
     }
@@ -604,6 +675,10 @@ abstract public class KylinConfigBase implements Serializable {
         return Float.parseFloat(getOptional("kylin.storage.hbase.hfile-size-gb", "2.0"));
     }
 
+    public boolean isHBaseDirectHFileEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.hbase.direct-hfile-enabled", "false"));
+    }
+
     public boolean getQueryRunLocalCoprocessor() {
         return Boolean.parseBoolean(getOptional("kylin.storage.hbase.run-local-coprocessor", "false"));
     }
@@ -616,11 +691,20 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(this.getOptional("kylin.storage.partition.aggr-spill-enabled", "true"));
     }
 
+    public boolean getQueryCoprocessorHashAggrEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.storage.partition.aggr-hash-enabled", "false"));
+    }
+
     public long getPartitionMaxScanBytes() {
         long value = Long.parseLong(this.getOptional("kylin.storage.partition.max-scan-bytes", String.valueOf(3L * 1024 * 1024 * 1024)));
         return value > 0 ? value : Long.MAX_VALUE;
     }
 
+    public int getPartitionResultChunkBytes() {
+        int value = Integer.parseInt(this.getOptional("kylin.storage.partition.result-chunk-bytes", String.valueOf(32 * 1024 * 1024)));
+        return value > 0 ? value : 0;
+    }
+
     public int getQueryCoprocessorTimeoutSeconds() {
         return Integer.parseInt(this.getOptional("kylin.storage.hbase.coprocessor-timeout-seconds", "0"));
     }
@@ -761,6 +845,15 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.engine.mr.build-dict-in-reducer", "true"));
     }
 
+    // memory of the mapper of a cuboid layer to aggregate child cuboid records by rowkey, 0 to disable
+    public int getNDCuboidMapperAggrMB() {
+        return Integer.parseInt(getOptional("kylin.engine.mr.nd-cuboid-mapper-aggr-mb", "64"));
+    }
+
+    public boolean isLayerCubingCombinerEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.engine.mr.layer-cubing-combiner-enabled", "true"));
+    }
+
     public String getYarnStatusCheckUrl() {
         return getOptional("kylin.engine.mr.yarn-check-status-url", null);
     }
@@ -797,6 +890,10 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.valueOf(getOptional("kylin.engine.spark.max-partition", "5000"));
     }
 
+    public String getSparkCubeAlgorithm() {
+        return getOptional("kylin.engine.spark.cube-algorithm", "layer");
+    }
+
     public boolean isSparkSanityCheckEnabled() {
         return Boolean.parseBoolean(getOptional("kylin.engine.spark.sanity-check-enabled", "false"));
     }
@@ -837,6 +934,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.query.badquery-stacktrace-depth", "10"));
     }
 
+    public boolean isCuboidHitRecordEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.cuboid-hit-record-enabled", "true"));
+    }
+
+    public int getCuboidHitFlushIntervalSeconds() {
+        return Integer.parseInt(getOptional("kylin.query.cuboid-hit-flush-interval-seconds", "300"));
+    }
+
     public int getBadQueryHistoryNum() {
         return Integer.parseInt(getOptional("kylin.query.badquery-history-number", "10"));
     }
@@ -898,6 +1003,34 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(this.getOptional("kylin.query.timeout-seconds", "0"));
     }
 
+    public int getQuerySegmentScanConcurrency() {
+        return Math.max(1, Integer.parseInt(this.getOptional("kylin.query.segment-scan-concurrency", "1")));
+    }
+
+    public int getQuerySegmentScanQueueDepth() {
+        return Math.max(1, Integer.parseInt(this.getOptional("kylin.query.segment-scan-queue-depth", "4096")));
+    }
+
+    public int getQuerySegmentScanMaxThreads() {
+        return Math.max(1, Integer.parseInt(this.getOptional("kylin.query.segment-scan-max-threads", "64")));
+    }
+
+    public int getQueryConnectionPoolSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.connection-pool-size", "0"));
+    }
+
+    public int getQueryBindableCacheSize() {
+        return Integer.parseInt(this.getOptional("kylin.query.bindable-cache-size", "1000"));
+    }
+
+    public boolean isQuerySegmentCacheEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.segment-cache-enabled", "false"));
+    }
+
+    public long getQuerySegmentCacheMaxMB() {
+        return Long.parseLong(this.getOptional("kylin.query.segment-cache-max-mb", "512"));
+    }
+
     // ============================================================================
     // SERVER
     // ============================================================================
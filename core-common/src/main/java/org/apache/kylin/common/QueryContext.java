@@ -35,6 +35,8 @@ public class QueryContext {
     private String queryId;
     private AtomicLong scannedRows = new AtomicLong();
     private AtomicLong scannedBytes = new AtomicLong();
+    private AtomicLong segmentCacheHits = new AtomicLong();
+    private AtomicLong segmentCacheMisses = new AtomicLong();
 
     private QueryContext() {
         // use QueryContext.current() instead
@@ -71,4 +73,20 @@ public class QueryContext {
     public long addAndGetScannedBytes(long deltaBytes) {
         return scannedBytes.addAndGet(deltaBytes);
     }
+
+    public long getSegmentCacheHits() {
+        return segmentCacheHits.get();
+    }
+
+    public long addAndGetSegmentCacheHits(long delta) {
+        return segmentCacheHits.addAndGet(delta);
+    }
+
+    public long getSegmentCacheMisses() {
+        return segmentCacheMisses.get();
+    }
+
+    public long addAndGetSegmentCacheMisses(long delta) {
+        return segmentCacheMisses.addAndGet(delta);
+    }
 }
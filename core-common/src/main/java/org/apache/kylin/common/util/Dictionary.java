@@ -122,6 +122,22 @@ abstract public class Dictionary<T> implements Serializable {
 
     abstract protected int getIdFromValueImpl(T value, int roundingFlag);
 
+    /**
+     * Whether {@link #getIdFromValueBytes(byte[], int, int, int)} is supported, i.e. the dictionary stores
+     * values as their UTF-8 bytes.
+     */
+    public boolean isValueBytesSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the ID integer of given value in UTF-8 bytes, saves decoding a string when the dictionary
+     * compares bytes. The same not found behavior as {@link #getIdFromValue(Object, int)}.
+     */
+    public int getIdFromValueBytes(byte[] value, int offset, int length, int roundingFlag) throws IllegalArgumentException {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * @return the value corresponds to the given ID
      * @throws IllegalArgumentException
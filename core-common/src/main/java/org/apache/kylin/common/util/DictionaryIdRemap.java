@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.common.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Maps the IDs of a source dictionary to the IDs of the same values in a target dictionary, e.g. a segment
+ * dictionary to the dictionary merged from it. Built once from the two dictionaries, so that re-encoding an ID
+ * is an array lookup instead of a value round trip through both dictionaries.
+ */
+public class DictionaryIdRemap {
+
+    private final int sourceMinId;
+    private final int sourceNullId;
+    private final int targetNullId;
+    private final int targetSizeOfId;
+    private final int[] targetIds;
+
+    private DictionaryIdRemap(int sourceMinId, int sourceNullId, int targetNullId, int targetSizeOfId, int[] targetIds) {
+        this.sourceMinId = sourceMinId;
+        this.sourceNullId = sourceNullId;
+        this.targetNullId = targetNullId;
+        this.targetSizeOfId = targetSizeOfId;
+        this.targetIds = targetIds;
+    }
+
+    public static DictionaryIdRemap build(Dictionary<String> source, Dictionary<String> target) {
+        int minId = source.getMinId();
+        int[] targetIds = new int[Math.max(0, source.getMaxId() - minId + 1)];
+        for (int i = 0; i < targetIds.length; i++) {
+            String v = source.getValueFromId(minId + i);
+            targetIds[i] = v == null ? target.nullId() : target.getIdFromValue(v);
+        }
+        return new DictionaryIdRemap(minId, source.nullId(), target.nullId(), target.getSizeOfId(), targetIds);
+    }
+
+    /** the ID in the target dictionary of the value of given ID in the source dictionary */
+    public int remap(int sourceId) {
+        int i = sourceId - sourceMinId;
+        if (i >= 0 && i < targetIds.length)
+            return targetIds[i];
+        if (sourceId == sourceNullId)
+            return targetNullId;
+        throw new IllegalArgumentException("Not a valid ID: " + sourceId);
+    }
+
+    /** reads an ID of the source dictionary and writes the ID of the target dictionary */
+    public int remap(byte[] sourceId, int offset, int length, byte[] target, int targetOffset) {
+        BytesUtil.writeUnsigned(remap(BytesUtil.readUnsigned(sourceId, offset, length)), target, targetOffset, targetSizeOfId);
+        return targetSizeOfId;
+    }
+
+    public int getTargetSizeOfId() {
+        return targetSizeOfId;
+    }
+
+    public int size() {
+        return targetIds.length;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(sourceMinId);
+        out.writeInt(sourceNullId);
+        out.writeInt(targetNullId);
+        out.writeInt(targetSizeOfId);
+        out.writeInt(targetIds.length);
+        for (int id : targetIds) {
+            out.writeInt(id);
+        }
+    }
+
+    public static DictionaryIdRemap read(DataInput in) throws IOException {
+        int sourceMinId = in.readInt();
+        int sourceNullId = in.readInt();
+        int targetNullId = in.readInt();
+        int targetSizeOfId = in.readInt();
+        int[] targetIds = new int[in.readInt()];
+        for (int i = 0; i < targetIds.length; i++) {
+            targetIds[i] = in.readInt();
+        }
+        return new DictionaryIdRemap(sourceMinId, sourceNullId, targetNullId, targetSizeOfId, targetIds);
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.kylin.common.KylinConfigExt;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.RootPersistentEntity;
 import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.metadata.model.ColumnDesc;
 import org.apache.kylin.metadata.model.DataModelDesc;
@@ -46,10 +47,12 @@ import org.apache.kylin.metadata.realization.SQLDigest;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 @SuppressWarnings("serial")
 @JsonAutoDetect(fieldVisibility = Visibility.NONE, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
@@ -93,6 +96,10 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
     @JsonProperty("create_time_utc")
     private long createTimeUTC;
 
+    @JsonProperty("cuboid_whitelist")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Set<Long> cuboidWhitelist = Sets.newHashSet(); // the cuboids to build in new segments, empty means all
+
     // default constructor for jackson
     public CubeInstance() {
     }
@@ -287,6 +294,46 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
         this.createTimeUTC = createTimeUTC;
     }
 
+    public Set<Long> getCuboidWhitelist() {
+        return cuboidWhitelist;
+    }
+
+    public void setCuboidWhitelist(Set<Long> cuboidWhitelist) {
+        this.cuboidWhitelist = cuboidWhitelist == null ? Sets.<Long> newHashSet() : cuboidWhitelist;
+    }
+
+    /**
+     * The cuboid to scan for the given one, which is itself unless some ready segment did not build it.
+     * In that case the smallest cuboid built in all the ready segments that covers its dimensions.
+     */
+    public Cuboid getServingCuboid(Cuboid cuboid) {
+        Set<Long> built = null;
+        for (CubeSegment seg : getSegments(SegmentStatusEnum.READY)) {
+            Set<Long> whitelist = seg.getCuboidWhitelist();
+            if (whitelist == null || whitelist.isEmpty())
+                continue;
+            if (built == null) {
+                built = Sets.newHashSet(whitelist);
+            } else {
+                built.retainAll(whitelist);
+            }
+        }
+
+        long cuboidId = cuboid.getId();
+        if (built == null || built.contains(cuboidId))
+            return cuboid;
+
+        CubeDesc cubeDesc = getDescriptor();
+        long servingId = Cuboid.getBaseCuboidId(cubeDesc);
+        for (Long candidate : built) {
+            if ((candidate & cuboidId) == cuboidId && Cuboid.isValid(cubeDesc, candidate) //
+                    && Cuboid.cuboidSelectComparator.compare(candidate, servingId) < 0) {
+                servingId = candidate;
+            }
+        }
+        return Cuboid.findById(cubeDesc, servingId);
+    }
+
     @Override
     public CapabilityResult isCapable(SQLDigest digest) {
         CapabilityResult result = CubeCapabilityChecker.check(this, digest);
@@ -406,6 +453,7 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
         newCube.setOwner(cubeInstance.getOwner());
         newCube.setCost(cubeInstance.getCost());
         newCube.setCreateTimeUTC(System.currentTimeMillis());
+        newCube.setCuboidWhitelist(Sets.newHashSet(cubeInstance.getCuboidWhitelist()));
         newCube.updateRandomUuid();
         return newCube;
     }
@@ -42,6 +42,7 @@ import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.Serializer;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.DictionaryDesc;
 import org.apache.kylin.dict.DictionaryInfo;
@@ -75,6 +76,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
 /**
  * @author yangli9
@@ -236,6 +238,45 @@ public class CubeManager implements IRealizationProvider {
         return dictInfo;
     }
 
+    /**
+     * Builds the dictionary of a column, or saves the given pre-built one, like buildDictionary() and saveDictionary()
+     * but without updating the segment, so that columns can be built concurrently. The results are recorded in
+     * the segment by saveDictionaryInfos() afterwards.
+     */
+    public DictionaryInfo buildDictionaryInfo(CubeSegment cubeSeg, TblColRef col, ReadableTable inpTable, Dictionary<String> preBuilt) throws IOException {
+        CubeDesc cubeDesc = cubeSeg.getCubeDesc();
+        if (!cubeDesc.getAllColumnsNeedDictionaryBuilt().contains(col))
+            return null;
+
+        if (preBuilt != null)
+            return getDictionaryManager().saveDictionary(cubeDesc.getModel(), col, inpTable, preBuilt);
+
+        String builderClass = cubeDesc.getDictionaryBuilderClass(col);
+        return getDictionaryManager().buildDictionary(cubeDesc.getModel(), col, inpTable, builderClass);
+    }
+
+    /**
+     * Records the dictionaries of buildDictionaryInfo() in the segment, by one cube update.
+     */
+    public void saveDictionaryInfos(CubeSegment cubeSeg, Map<TblColRef, DictionaryInfo> dictInfos) throws IOException {
+        boolean updated = false;
+        for (Map.Entry<TblColRef, DictionaryInfo> entry : dictInfos.entrySet()) {
+            DictionaryInfo dictInfo = entry.getValue();
+            if (dictInfo != null) {
+                Dictionary<?> dict = dictInfo.getDictionaryObject();
+                cubeSeg.putDictResPath(entry.getKey(), dictInfo.getResourcePath());
+                cubeSeg.getRowkeyStats().add(new Object[] { entry.getKey().getIdentity(), dict.getSize(), dict.getSizeOfId() });
+                updated = true;
+            }
+        }
+
+        if (updated) {
+            CubeUpdate update = new CubeUpdate(cubeSeg.getCubeInstance());
+            update.setToUpdateSegs(cubeSeg);
+            updateCube(update);
+        }
+    }
+
     private void saveDictionaryInfo(CubeSegment cubeSeg, TblColRef col, DictionaryInfo dictInfo) throws IOException {
         if (dictInfo != null) {
             Dictionary<?> dict = dictInfo.getDictionaryObject();
@@ -412,6 +453,10 @@ public class CubeManager implements IRealizationProvider {
             cube.setCost(update.getCost());
         }
 
+        if (update.getCuboidWhitelist() != null) {
+            cube.setCuboidWhitelist(update.getCuboidWhitelist());
+        }
+
         try {
             getStore().putResource(cube.getResourcePath(), cube, CUBE_SERIALIZER);
         } catch (IllegalStateException ise) {
@@ -570,6 +615,22 @@ public class CubeManager implements IRealizationProvider {
             }
         }
 
+        // a cuboid is in the merged segment only if all the merging segments built it
+        Set<Long> whitelist = null;
+        for (CubeSegment seg : mergingSegments) {
+            if (seg.getCuboidWhitelist().isEmpty())
+                continue;
+            if (whitelist == null) {
+                whitelist = Sets.newHashSet(seg.getCuboidWhitelist());
+            } else {
+                whitelist.retainAll(seg.getCuboidWhitelist());
+            }
+        }
+        if (whitelist != null) {
+            whitelist.add(Cuboid.getBaseCuboidId(cube.getDescriptor()));
+        }
+        newSegment.setCuboidWhitelist(whitelist);
+
         validateNewSegments(cube, newSegment);
 
         CubeUpdate cubeBuilder = new CubeUpdate(cube);
@@ -657,6 +718,7 @@ public class CubeManager implements IRealizationProvider {
         segment.setSourceOffsetEnd(endOffset);
         segment.setStatus(SegmentStatusEnum.NEW);
         segment.setStorageLocationIdentifier(generateStorageLocation());
+        segment.setCuboidWhitelist(Sets.newHashSet(cube.getCuboidWhitelist()));
 
         segment.setCubeInstance(cube);
 
@@ -31,6 +31,7 @@ import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ShardingHash;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.kv.CubeDimEncMap;
 import org.apache.kylin.cube.kv.RowConstants;
 import org.apache.kylin.cube.model.CubeDesc;
@@ -49,6 +50,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @JsonAutoDetect(fieldVisibility = Visibility.NONE, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
 public class CubeSegment implements Comparable<CubeSegment>, IBuildable, ISegment, java.io.Serializable {
@@ -89,6 +91,9 @@ public class CubeSegment implements Comparable<CubeSegment>, IBuildable, ISegmen
     private int totalShards = 0;
     @JsonProperty("blackout_cuboids")
     private List<Long> blackoutCuboids = Lists.newArrayList();
+    @JsonProperty("cuboid_whitelist")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Set<Long> cuboidWhitelist = Sets.newHashSet(); // the cuboids built in this segment, empty means all
 
     @JsonProperty("binary_signature")
     private String binarySignature; // a hash of cube schema and dictionary ID, used for sanity check
@@ -523,6 +528,19 @@ public class CubeSegment implements Comparable<CubeSegment>, IBuildable, ISegmen
         return this.blackoutCuboids;
     }
 
+    public Set<Long> getCuboidWhitelist() {
+        return cuboidWhitelist;
+    }
+
+    public void setCuboidWhitelist(Set<Long> cuboidWhitelist) {
+        this.cuboidWhitelist = cuboidWhitelist == null ? Sets.<Long> newHashSet() : cuboidWhitelist;
+    }
+
+    /** the scheduler of the cuboids built in this segment */
+    public CuboidScheduler getCuboidScheduler() {
+        return new CuboidScheduler(getCubeDesc(), cuboidWhitelist);
+    }
+
     public IRealization getRealization() {
         return cubeInstance;
     }
@@ -18,6 +18,8 @@
 
 package org.apache.kylin.cube;
 
+import java.util.Set;
+
 import org.apache.kylin.metadata.realization.RealizationStatusEnum;
 
 /**
@@ -31,6 +33,7 @@ public class CubeUpdate {
     private RealizationStatusEnum status;
     private String owner;
     private int cost = -1;
+    private Set<Long> cuboidWhitelist = null;
 
     public CubeUpdate(CubeInstance cubeInstance) {
         this.cubeInstance = cubeInstance;
@@ -98,4 +101,13 @@ public class CubeUpdate {
         this.cost = cost;
         return this;
     }
+
+    public Set<Long> getCuboidWhitelist() {
+        return cuboidWhitelist;
+    }
+
+    public CubeUpdate setCuboidWhitelist(Set<Long> cuboidWhitelist) {
+        this.cuboidWhitelist = cuboidWhitelist;
+        return this;
+    }
 }
@@ -19,14 +19,28 @@
 package org.apache.kylin.cube.cli;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.DaemonThreadFactory;
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.MemoryBudgetController;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.model.DimensionDesc;
+import org.apache.kylin.dict.DictionaryInfo;
 import org.apache.kylin.dict.DictionaryManager;
 import org.apache.kylin.dict.DictionaryProvider;
 import org.apache.kylin.dict.DistinctColumnValuesProvider;
@@ -40,6 +54,9 @@ import org.apache.kylin.source.SourceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 public class DictionaryGeneratorCLI {
@@ -56,24 +73,29 @@ public class DictionaryGeneratorCLI {
     private static void processSegment(KylinConfig config, CubeSegment cubeSeg, DistinctColumnValuesProvider factTableValueProvider, DictionaryProvider dictProvider) throws IOException {
         CubeManager cubeMgr = CubeManager.getInstance(config);
 
-        // dictionary
+        // dictionary, the columns of the same source data are built by one task, so the later ones reuse the first
+        DictionaryManager dictMgr = DictionaryManager.getInstance(config);
+        Map<TblColRef, List<TblColRef>> columnsBySource = Maps.newLinkedHashMap();
         for (TblColRef col : cubeSeg.getCubeDesc().getAllColumnsNeedDictionaryBuilt()) {
-            logger.info("Building dictionary for " + col);
-            ReadableTable inpTable = decideInputTable(cubeSeg.getModel(), col, factTableValueProvider);
-            if (dictProvider != null) {
-                Dictionary<String> dict = dictProvider.getDictionary(col);
-                if (dict != null) {
-                    logger.debug("Dict for '" + col.getName() + "' has already been built, save it");
-                    cubeMgr.saveDictionary(cubeSeg, col, inpTable, dict);
-                } else {
-                    logger.debug("Dict for '" + col.getName() + "' not pre-built, build it from " + inpTable.toString());
-                    cubeMgr.buildDictionary(cubeSeg, col, inpTable);
-                }
-            } else {
-                logger.debug("Dict for '" + col.getName() + "' not pre-built, build it from " + inpTable.toString());
-                cubeMgr.buildDictionary(cubeSeg, col, inpTable);
+            TblColRef srcCol = dictMgr.decideSourceData(cubeSeg.getModel(), col);
+            if (!columnsBySource.containsKey(srcCol)) {
+                columnsBySource.put(srcCol, new ArrayList<TblColRef>());
             }
+            columnsBySource.get(srcCol).add(col);
+        }
+
+        List<ColumnDictResult> results = buildDictionaries(config, cubeSeg, columnsBySource.values(), factTableValueProvider, dictProvider);
+
+        Map<TblColRef, DictionaryInfo> built = Maps.newHashMap();
+        for (ColumnDictResult result : results) {
+            built.put(result.col, result.dictInfo);
+        }
+        Map<TblColRef, DictionaryInfo> dictInfos = Maps.newLinkedHashMap();
+        for (TblColRef col : cubeSeg.getCubeDesc().getAllColumnsNeedDictionaryBuilt()) {
+            dictInfos.put(col, built.get(col));
         }
+        cubeMgr.saveDictionaryInfos(cubeSeg, dictInfos);
+        logBuildReport(results);
 
         // snapshot
         Set<String> toSnapshot = Sets.newHashSet();
@@ -89,6 +111,125 @@ public class DictionaryGeneratorCLI {
         }
     }
 
+    private static List<ColumnDictResult> buildDictionaries(KylinConfig config, final CubeSegment cubeSeg, Collection<List<TblColRef>> columnGroups, final DistinctColumnValuesProvider factTableValueProvider, final DictionaryProvider dictProvider) throws IOException {
+        int threads = Math.max(1, Math.min(config.getDictionaryBuildThreads(), columnGroups.size()));
+        int budgetMB = Math.min(config.getDictionaryBuildMemoryBudgetMB(), MemoryBudgetController.getSystemAvailMB());
+        final MemoryBudgetController memBudget = new MemoryBudgetController(Math.max(1, budgetMB));
+        logger.info("Building dictionaries of " + columnGroups.size() + " source columns by " + threads + " threads, within " + memBudget.getTotalBudgetMB() + " MB");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        List<Future<List<ColumnDictResult>>> futures = Lists.newArrayList();
+        for (final List<TblColRef> columns : columnGroups) {
+            futures.add(executor.submit(new Callable<List<ColumnDictResult>>() {
+                @Override
+                public List<ColumnDictResult> call() throws Exception {
+                    List<ColumnDictResult> results = Lists.newArrayList();
+                    for (TblColRef col : columns) {
+                        results.add(buildDictionary(cubeSeg, col, factTableValueProvider, dictProvider, memBudget));
+                    }
+                    return results;
+                }
+            }));
+        }
+
+        try {
+            List<ColumnDictResult> results = Lists.newArrayList();
+            for (Future<List<ColumnDictResult>> future : futures) {
+                results.addAll(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building dictionaries", e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException("Failed to build dictionaries", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ColumnDictResult buildDictionary(CubeSegment cubeSeg, TblColRef col, DistinctColumnValuesProvider factTableValueProvider, DictionaryProvider dictProvider, MemoryBudgetController memBudget) throws IOException {
+        CubeManager cubeMgr = CubeManager.getInstance(cubeSeg.getConfig());
+        long start = System.currentTimeMillis();
+
+        logger.info("Building dictionary for " + col);
+        ReadableTable inpTable = decideInputTable(cubeSeg.getModel(), col, factTableValueProvider);
+        long inputBytes = inpTable.exists() ? inpTable.getSignature().getSize() : 0;
+
+        DictionaryInfo dictInfo;
+        Dictionary<String> dict = dictProvider == null ? null : dictProvider.getDictionary(col);
+        if (dict != null) {
+            logger.debug("Dict for '" + col.getName() + "' has already been built, save it");
+            dictInfo = cubeMgr.buildDictionaryInfo(cubeSeg, col, inpTable, dict);
+        } else {
+            logger.debug("Dict for '" + col.getName() + "' not pre-built, build it from " + inpTable.toString());
+            MemoryBudgetController.MemoryConsumer consumer = new MemoryBudgetController.MemoryConsumer() {
+                @Override
+                public int freeUp(int mb) {
+                    return 0; // a dictionary builder cannot spill
+                }
+            };
+            memBudget.reserveInsist(consumer, estimateBuildMB(inputBytes, memBudget.getTotalBudgetMB()));
+            try {
+                dictInfo = cubeMgr.buildDictionaryInfo(cubeSeg, col, inpTable, null);
+            } finally {
+                memBudget.reserve(consumer, 0);
+            }
+        }
+
+        ColumnDictResult result = new ColumnDictResult(col, dictInfo, System.currentTimeMillis() - start, inputBytes);
+        logger.info("Dictionary for " + col + " done: " + result);
+        return result;
+    }
+
+    // the trie builders take a few times of the distinct values in memory
+    private static int estimateBuildMB(long inputBytes, int totalBudgetMB) {
+        if (inputBytes <= 0)
+            return 1;
+        long mb = inputBytes * 3 / MemoryBudgetController.ONE_MB + 1;
+        return (int) Math.min(mb, totalBudgetMB);
+    }
+
+    private static void logBuildReport(List<ColumnDictResult> results) {
+        List<ColumnDictResult> sorted = Lists.newArrayList(results);
+        Collections.sort(sorted, new Comparator<ColumnDictResult>() {
+            @Override
+            public int compare(ColumnDictResult o1, ColumnDictResult o2) {
+                return Long.compare(o2.millis, o1.millis);
+            }
+        });
+
+        StringBuilder buf = new StringBuilder("Dictionaries built, slowest first:");
+        for (ColumnDictResult result : sorted) {
+            buf.append("\n  ").append(result.col).append(": ").append(result);
+        }
+        logger.info(buf.toString());
+    }
+
+    private static class ColumnDictResult {
+        final TblColRef col;
+        final DictionaryInfo dictInfo;
+        final long millis;
+        final long inputBytes;
+
+        ColumnDictResult(TblColRef col, DictionaryInfo dictInfo, long millis, long inputBytes) {
+            this.col = col;
+            this.dictInfo = dictInfo;
+            this.millis = millis;
+            this.inputBytes = inputBytes;
+        }
+
+        @Override
+        public String toString() {
+            if (dictInfo == null)
+                return millis + " ms, no dictionary";
+
+            Dictionary<?> dict = dictInfo.getDictionaryObject();
+            return millis + " ms, cardinality " + dict.getSize() + ", id " + dict.getSizeOfId() + " bytes, value up to " + dict.getSizeOfValue() + " bytes, input " + inputBytes + " bytes, " + dictInfo.getResourcePath();
+        }
+    }
+
     private static ReadableTable decideInputTable(DataModelDesc model, TblColRef col, DistinctColumnValuesProvider factTableValueProvider) {
         KylinConfig config = model.getConfig();
         DictionaryManager dictMgr = DictionaryManager.getInstance(config);
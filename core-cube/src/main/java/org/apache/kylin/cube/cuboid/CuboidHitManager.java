@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the cuboid hits of queries in memory and adds them to the persisted {@link CuboidHitStats} of
+ * each cube, every "kylin.query.cuboid-hit-flush-interval-seconds" or when the stats are read.
+ */
+public class CuboidHitManager {
+    public static final Serializer<CuboidHitStats> CUBOID_HIT_SERIALIZER = new JsonSerializer<>(CuboidHitStats.class);
+    private static final Logger logger = LoggerFactory.getLogger(CuboidHitManager.class);
+
+    private static final ConcurrentHashMap<KylinConfig, CuboidHitManager> CACHE = new ConcurrentHashMap<>();
+
+    private KylinConfig kylinConfig;
+    // cube ==> requested cuboid ==> hits not flushed yet
+    private Map<String, Map<Long, CuboidHitStats.Entry>> pending = new ConcurrentHashMap<>();
+    private volatile long lastFlushTime = System.currentTimeMillis();
+
+    private CuboidHitManager(KylinConfig config) {
+        logger.info("Initializing CuboidHitManager with config " + config);
+        this.kylinConfig = config;
+    }
+
+    public static CuboidHitManager getInstance(KylinConfig config) {
+        CuboidHitManager r = CACHE.get(config);
+        if (r != null) {
+            return r;
+        }
+
+        synchronized (CuboidHitManager.class) {
+            r = CACHE.get(config);
+            if (r != null) {
+                return r;
+            }
+            r = new CuboidHitManager(config);
+            CACHE.put(config, r);
+            if (CACHE.size() > 1) {
+                logger.warn("More than one singleton exist");
+            }
+            return r;
+        }
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    private ResourceStore getStore() {
+        return ResourceStore.getStore(this.kylinConfig);
+    }
+
+    public void record(String cube, long requestedCuboid, long servedCuboid, long scannedRows, long returnedRows) {
+        if (!kylinConfig.isCuboidHitRecordEnabled())
+            return;
+
+        synchronized (this) {
+            Map<Long, CuboidHitStats.Entry> hits = pending.get(cube);
+            if (hits == null) {
+                hits = new ConcurrentHashMap<>();
+                pending.put(cube, hits);
+            }
+            CuboidHitStats.Entry delta = new CuboidHitStats.Entry(1, scannedRows, returnedRows, servedCuboid);
+            CuboidHitStats.Entry entry = hits.get(requestedCuboid);
+            if (entry == null) {
+                hits.put(requestedCuboid, delta);
+            } else {
+                entry.merge(delta);
+            }
+        }
+
+        if (System.currentTimeMillis() - lastFlushTime > kylinConfig.getCuboidHitFlushIntervalSeconds() * 1000L) {
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.warn("Failed to flush cuboid hits", e);
+            }
+        }
+    }
+
+    public void flush() throws IOException {
+        Map<String, Map<Long, CuboidHitStats.Entry>> toFlush;
+        synchronized (this) {
+            lastFlushTime = System.currentTimeMillis();
+            if (pending.isEmpty())
+                return;
+            toFlush = pending;
+            pending = new ConcurrentHashMap<>();
+        }
+
+        for (Map.Entry<String, Map<Long, CuboidHitStats.Entry>> e : toFlush.entrySet()) {
+            flush(e.getKey(), e.getValue());
+        }
+    }
+
+    private void flush(String cube, Map<Long, CuboidHitStats.Entry> hits) throws IOException {
+        int retry = 0;
+        while (true) {
+            CuboidHitStats stats = loadHitStats(cube);
+            for (Map.Entry<Long, CuboidHitStats.Entry> hit : hits.entrySet()) {
+                stats.merge(hit.getKey(), hit.getValue());
+            }
+            try {
+                getStore().putResource(stats.getResourcePath(), stats, CUBOID_HIT_SERIALIZER);
+                logger.debug("Flushed " + hits.size() + " cuboid hit(s) of cube " + cube);
+                return;
+            } catch (IllegalStateException e) {
+                // another query server flushed at the same time, reload and merge again
+                if (++retry > 3)
+                    throw e;
+            }
+        }
+    }
+
+    private CuboidHitStats loadHitStats(String cube) throws IOException {
+        CuboidHitStats stats = getStore().getResource(CuboidHitStats.concatResourcePath(cube), CuboidHitStats.class, CUBOID_HIT_SERIALIZER);
+        return stats == null ? new CuboidHitStats(cube) : stats;
+    }
+
+    /** the hits of the cube, including the ones not flushed yet */
+    public CuboidHitStats getHitStats(String cube) throws IOException {
+        flush();
+        return loadHitStats(cube);
+    }
+
+    public void removeHitStats(String cube) throws IOException {
+        pending.remove(cube);
+        getStore().deleteResource(CuboidHitStats.concatResourcePath(cube));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.RootPersistentEntity;
+import org.apache.kylin.metadata.MetadataConstants;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * How the queries of a cube hit its cuboids, keyed by the cuboid a query asked for. The served cuboid may
+ * be a bigger one if the asked cuboid is not built, the scan/return ratio tells how much a query pays for that.
+ */
+@SuppressWarnings("serial")
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+public class CuboidHitStats extends RootPersistentEntity {
+
+    @JsonProperty("cube")
+    private String cube;
+    @JsonProperty("entries")
+    private TreeMap<Long, Entry> entries = new TreeMap<>();
+
+    public CuboidHitStats() {
+    }
+
+    public CuboidHitStats(String cube) {
+        this.updateRandomUuid();
+        this.cube = cube;
+    }
+
+    public String getCube() {
+        return cube;
+    }
+
+    public void setCube(String cube) {
+        this.cube = cube;
+    }
+
+    public Map<Long, Entry> getEntries() {
+        return entries;
+    }
+
+    public Entry getEntry(long cuboid) {
+        return entries.get(cuboid);
+    }
+
+    public long getTotalHitCount() {
+        long r = 0;
+        for (Entry entry : entries.values()) {
+            r += entry.getHitCount();
+        }
+        return r;
+    }
+
+    public void merge(long cuboid, Entry delta) {
+        Entry entry = entries.get(cuboid);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(cuboid, entry);
+        }
+        entry.merge(delta);
+    }
+
+    public String getResourcePath() {
+        return concatResourcePath(cube);
+    }
+
+    public static String concatResourcePath(String cube) {
+        return ResourceStore.CUBOID_HIT_RESOURCE_ROOT + "/" + cube + MetadataConstants.FILE_SURFIX;
+    }
+
+    @Override
+    public String toString() {
+        return "CuboidHitStats [ cube=" + cube + "]";
+    }
+
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+    public static class Entry implements Serializable {
+        @JsonProperty("hit_count")
+        private long hitCount;
+        @JsonProperty("scanned_rows")
+        private long scannedRows;
+        @JsonProperty("returned_rows")
+        private long returnedRows;
+        @JsonProperty("served_cuboid")
+        private long servedCuboid; // the latest one
+
+        public Entry() {
+        }
+
+        public Entry(long hitCount, long scannedRows, long returnedRows, long servedCuboid) {
+            this.hitCount = hitCount;
+            this.scannedRows = scannedRows;
+            this.returnedRows = returnedRows;
+            this.servedCuboid = servedCuboid;
+        }
+
+        public void merge(Entry other) {
+            hitCount += other.hitCount;
+            scannedRows += other.scannedRows;
+            returnedRows += other.returnedRows;
+            servedCuboid = other.servedCuboid;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getScannedRows() {
+            return scannedRows;
+        }
+
+        public long getReturnedRows() {
+            return returnedRows;
+        }
+
+        public long getServedCuboid() {
+            return servedCuboid;
+        }
+
+        /** rows scanned per row returned, 1 is the best */
+        public double getScanReturnRatio() {
+            return returnedRows == 0 ? scannedRows : (double) scannedRows / returnedRows;
+        }
+    }
+}
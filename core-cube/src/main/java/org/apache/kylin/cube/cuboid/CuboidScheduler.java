@@ -23,10 +23,12 @@ package org.apache.kylin.cube.cuboid;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.kylin.cube.model.AggregationGroup;
 import org.apache.kylin.cube.model.CubeDesc;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -39,13 +41,46 @@ public class CuboidScheduler implements java.io.Serializable {
     private final CubeDesc cubeDesc;
     private final long max;
     private final Map<Long, List<Long>> cache;
+    private final Set<Long> whitelist; // null means all the cuboids of the aggregation groups
     private List<List<Long>> cuboidsByLayer;
 
     public CuboidScheduler(CubeDesc cubeDesc) {
+        this(cubeDesc, null);
+    }
+
+    /**
+     * Schedule only the whitelisted cuboids and the base cuboid, an empty whitelist schedules all. Each cuboid
+     * is spanned from its nearest scheduled ancestor on the parent chain, ids not valid in the aggregation
+     * groups are ignored.
+     */
+    public CuboidScheduler(CubeDesc cubeDesc, Collection<Long> whitelist) {
         this.cubeDesc = cubeDesc;
         int size = this.cubeDesc.getRowkey().getRowKeyColumns().length;
         this.max = (long) Math.pow(2, size) - 1;
         this.cache = new ConcurrentHashMap<Long, List<Long>>();
+
+        if (whitelist == null || whitelist.isEmpty()) {
+            this.whitelist = null;
+        } else {
+            long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
+            this.whitelist = Sets.newHashSet(baseCuboidId);
+            for (Long cuboid : whitelist) {
+                if (cuboid <= max && cuboid > 0 && Cuboid.isValid(cubeDesc, cuboid)) {
+                    this.whitelist.add(cuboid);
+                }
+            }
+        }
+    }
+
+    public boolean hasWhitelist() {
+        return whitelist != null;
+    }
+
+    /** whether the cuboid is built under this scheduler */
+    public boolean isScheduled(long cuboid) {
+        if (whitelist != null)
+            return whitelist.contains(cuboid);
+        return cuboid == Cuboid.getBaseCuboidId(cubeDesc) || Cuboid.isValid(cubeDesc, cuboid);
     }
 
     public long getParent(long child) {
@@ -200,6 +235,10 @@ public class CuboidScheduler implements java.io.Serializable {
             return result;
         }
 
+        if (whitelist != null) {
+            return getWhitelistSpanningCuboid(cuboid);
+        }
+
         result = Lists.newArrayList();
         Set<Long> potentials = getPotentialChildren(cuboid);
         for (Long potential : potentials) {
@@ -212,6 +251,36 @@ public class CuboidScheduler implements java.io.Serializable {
         return result;
     }
 
+    private List<Long> getWhitelistSpanningCuboid(long cuboid) {
+        if (cache.isEmpty()) {
+            synchronized (cache) {
+                if (cache.isEmpty()) {
+                    Map<Long, List<Long>> tree = Maps.newHashMap();
+                    long baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
+                    for (Long child : whitelist) {
+                        tree.put(child, Lists.<Long> newArrayList());
+                    }
+                    for (Long child : whitelist) {
+                        if (child == baseCuboidId)
+                            continue;
+                        long parent = getParent(child);
+                        while (!whitelist.contains(parent)) {
+                            parent = getParent(parent);
+                        }
+                        tree.get(parent).add(child);
+                    }
+                    for (List<Long> children : tree.values()) {
+                        Collections.sort(children);
+                    }
+                    cache.putAll(tree);
+                }
+            }
+        }
+
+        List<Long> result = cache.get(cuboid);
+        return result == null ? Collections.<Long> emptyList() : result;
+    }
+
     public int getCardinality(long cuboid) {
         if (cuboid > max || cuboid < 0) {
             throw new IllegalArgumentException("Cubiod " + cuboid + " is out of scope 0-" + max);
@@ -22,10 +22,14 @@ import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Map;
 
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.dimension.DictionaryDimEnc;
 import org.apache.kylin.dimension.DictionaryDimEnc.DictionarySerializer;
 import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.dimension.FixedLenDimEnc;
 import org.apache.kylin.gridtable.DefaultGTComparator;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.IGTCodeSystem;
@@ -134,11 +138,46 @@ public class CubeCodeSystem implements IGTCodeSystem {
         }
     }
 
+    /**
+     * encode a dimension value given in UTF-8 bytes (null for NULL), the same as encodeColumnValue() on its string;
+     * dictionary and fixed length encodings work on the bytes directly, others fall back to the string
+     */
+    public void encodeDimensionValue(int col, byte[] value, int offset, int length, ByteBuffer buf) {
+        DimensionEncoding dimEnc = getDimEnc(col);
+        if (value != null && dimEnc instanceof DictionaryDimEnc) {
+            DictionaryDimEnc dictEnc = (DictionaryDimEnc) dimEnc;
+            Dictionary<String> dict = dictEnc.getDictionary();
+            if (dictEnc.getRoundingFlag() == 0 && dict.isValueBytesSupported()) {
+                try {
+                    int id = dict.getIdFromValueBytes(value, offset, length, 0);
+                    BytesUtil.writeUnsigned(id, dict.getSizeOfId(), buf);
+                } catch (IllegalArgumentException ex) {
+                    IllegalArgumentException rewordEx = new IllegalArgumentException("Column " + col + " value '" + Bytes.toString(value, offset, length) + "' met dictionary error: " + ex.getMessage());
+                    rewordEx.setStackTrace(ex.getStackTrace());
+                    throw rewordEx;
+                }
+                return;
+            }
+        } else if (dimEnc instanceof FixedLenDimEnc) {
+            int pos = buf.position();
+            dimEnc.encode(value, offset, length, buf.array(), buf.arrayOffset() + pos);
+            buf.position(pos + dimEnc.getLengthOfEncoding());
+            return;
+        }
+
+        encodeColumnValue(col, value == null ? null : Bytes.toString(value, offset, length), buf);
+    }
+
     @Override
     public Object decodeColumnValue(int col, ByteBuffer buf) {
         return serializers[col].deserialize(buf);
     }
 
+    @Override
+    public void aggregateColumnValue(int col, ByteBuffer buf, MeasureAggregator<?> aggr) {
+        aggr.aggregate(buf, serializers[col]);
+    }
+
     @Override
     public MeasureAggregator<?>[] newMetricsAggregators(ImmutableBitSet columns, String[] aggrFunctions) {
         assert columns.trueBitCount() == aggrFunctions.length;
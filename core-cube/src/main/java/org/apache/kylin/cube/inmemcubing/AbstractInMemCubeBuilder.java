@@ -22,8 +22,10 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
@@ -44,12 +46,22 @@ abstract public class AbstractInMemCubeBuilder {
 
     final protected IJoinedFlatTableDesc flatDesc;
     final protected CubeDesc cubeDesc;
+    final protected CuboidScheduler cuboidScheduler;
     final protected Map<TblColRef, Dictionary<String>> dictionaryMap;
 
     protected int taskThreadCount = 1;
     protected int reserveMemoryMB = 100;
+    protected Map<Long, Double> cuboidSizeEstimates;
+    protected ICuboidBuildListener buildListener;
 
     public AbstractInMemCubeBuilder(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        this(new CuboidScheduler(cubeDesc), cubeDesc, flatDesc, dictionaryMap);
+    }
+
+    /** build the cuboids of given scheduler, e.g. the scheduler of a segment with a cuboid whitelist */
+    public AbstractInMemCubeBuilder(CuboidScheduler cuboidScheduler, CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        if (cuboidScheduler == null)
+            throw new NullPointerException();
         if (flatDesc == null)
             throw new NullPointerException();
         if (cubeDesc == null)
@@ -57,6 +69,7 @@ abstract public class AbstractInMemCubeBuilder {
         if (dictionaryMap == null)
             throw new IllegalArgumentException("dictionary cannot be null");
 
+        this.cuboidScheduler = cuboidScheduler;
         this.flatDesc = flatDesc;
         this.cubeDesc = cubeDesc;
         this.dictionaryMap = dictionaryMap;
@@ -74,6 +87,33 @@ abstract public class AbstractInMemCubeBuilder {
         return this.reserveMemoryMB;
     }
 
+    /** cuboid ID => estimated size (of any unit) from cube statistics, to plan the memory and order of cuboid tasks */
+    public void setCuboidSizeEstimates(Map<Long, Double> cuboidSizeEstimates) {
+        this.cuboidSizeEstimates = cuboidSizeEstimates;
+    }
+
+    public void setBuildListener(ICuboidBuildListener buildListener) {
+        this.buildListener = buildListener;
+    }
+
+    public Runnable buildAsRunnable(final RowBatchRing input, final ICuboidWriter output) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    build(input, output);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /** build from the batches of a ring, the input ends at a batch marked end of input */
+    abstract public void build(RowBatchRing input, ICuboidWriter output) throws IOException;
+
+    /** @deprecated use the RowBatchRing version, which saves the row objects and the string decoding */
+    @Deprecated
     public Runnable buildAsRunnable(final BlockingQueue<List<String>> input, final ICuboidWriter output) {
         return new Runnable() {
             @Override
@@ -87,7 +127,92 @@ abstract public class AbstractInMemCubeBuilder {
         };
     }
 
-    abstract public void build(BlockingQueue<List<String>> input, ICuboidWriter output) throws IOException;
+    /**
+     * build from rows of strings, the input ends at an empty row; a thread pumps the rows into a RowBatchRing
+     * @deprecated use the RowBatchRing version, which saves the row objects and the string decoding
+     */
+    @Deprecated
+    public void build(BlockingQueue<List<String>> input, ICuboidWriter output) throws IOException {
+        RowBatchRing ring = new RowBatchRing(flatDesc.getAllColumns().size());
+        RowPump pump = new RowPump(input, ring);
+        pump.start();
+        try {
+            build(ring, output);
+        } finally {
+            pump.aborted = true;
+            pump.interrupt();
+            try {
+                pump.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (pump.exception != null)
+            throw new IOException("Error pumping input rows", pump.exception);
+    }
+
+    private static class RowPump extends Thread {
+        final BlockingQueue<List<String>> input;
+        final RowBatchRing ring;
+        volatile boolean aborted;
+        Throwable exception;
+
+        RowPump(BlockingQueue<List<String>> input, RowBatchRing ring) {
+            super("RowPump");
+            this.input = input;
+            this.ring = ring;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            RowBatch batch = null;
+            try {
+                while (true) {
+                    List<String> row = input.take();
+                    if (batch == null && (batch = claim()) == null)
+                        return;
+
+                    if (row == null || row.isEmpty()) {
+                        batch.markEndOfInput();
+                        ring.publish();
+                        return;
+                    }
+
+                    batch.appendRow(row);
+                    if (batch.isFull()) {
+                        ring.publish();
+                        batch = null;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // aborted by the build
+            } catch (Throwable e) {
+                exception = e;
+                // let the build end, the error is thrown after it
+                if (batch != null) {
+                    batch.markEndOfInput();
+                    ring.publish();
+                } else {
+                    try {
+                        while (!aborted && !ring.publishEndOfInput(1, TimeUnit.SECONDS))
+                            ;
+                    } catch (InterruptedException ie) {
+                        // aborted by the build
+                    }
+                }
+            }
+        }
+
+        private RowBatch claim() throws InterruptedException {
+            RowBatch batch;
+            while ((batch = ring.claim(1, TimeUnit.SECONDS)) == null) {
+                if (aborted)
+                    return null;
+            }
+            return batch;
+        }
+    }
 
     protected void outputCuboid(long cuboidId, GridTable gridTable, ICuboidWriter output) throws IOException {
         long startTime = System.currentTimeMillis();
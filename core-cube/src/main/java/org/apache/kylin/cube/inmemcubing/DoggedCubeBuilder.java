@@ -20,14 +20,11 @@ package org.apache.kylin.cube.inmemcubing;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.TimeUnit;
 
@@ -35,6 +32,7 @@ import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequestBuilder;
@@ -58,7 +56,11 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
     private int unitRows = 1000;
 
     public DoggedCubeBuilder(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
-        super(cubeDesc, flatDesc, dictionaryMap);
+        this(new CuboidScheduler(cubeDesc), cubeDesc, flatDesc, dictionaryMap);
+    }
+
+    public DoggedCubeBuilder(CuboidScheduler cuboidScheduler, CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        super(cuboidScheduler, cubeDesc, flatDesc, dictionaryMap);
 
         // check memory more often if a single row is big
         if (cubeDesc.hasMemoryHungryMeasures())
@@ -71,7 +73,7 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
     }
 
     @Override
-    public void build(BlockingQueue<List<String>> input, ICuboidWriter output) throws IOException {
+    public void build(RowBatchRing input, ICuboidWriter output) throws IOException {
         new BuildOnce().build(input, output);
     }
 
@@ -80,7 +82,7 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
         BuildOnce() {
         }
 
-        public void build(BlockingQueue<List<String>> input, ICuboidWriter output) throws IOException {
+        public void build(RowBatchRing input, ICuboidWriter output) throws IOException {
             final List<SplitThread> splits = new ArrayList<SplitThread>();
             final Merger merger = new Merger();
 
@@ -202,21 +204,27 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
             }
         }
 
-        private boolean feedSomeInput(BlockingQueue<List<String>> input, SplitThread split, int n) {
+        private boolean feedSomeInput(RowBatchRing input, SplitThread split, int n) {
             try {
                 int i = 0;
                 while (i < n) {
-                    List<String> record = input.take();
-                    i++;
-
-                    while (split.inputQueue.offer(record, 1, TimeUnit.SECONDS) == false) {
-                        if (split.exception != null)
-                            return true; // got some error
-                    }
-                    split.inputRowCount++;
+                    RowBatch batch = input.take();
+                    try {
+                        RowBatch splitBatch;
+                        while ((splitBatch = split.input.claim(1, TimeUnit.SECONDS)) == null) {
+                            if (split.exception != null)
+                                return true; // got some error
+                        }
+                        splitBatch.copyFrom(batch);
+                        split.input.publish();
+                        i += batch.getRowCount();
+                        split.inputRowCount += batch.getRowCount();
 
-                    if (record == null || record.isEmpty()) {
-                        return true;
+                        if (batch.isEndOfInput()) {
+                            return true;
+                        }
+                    } finally {
+                        input.release();
                     }
                 }
                 return false;
@@ -231,10 +239,9 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
             try {
                 // signal the end of input
                 while (last.isAlive()) {
-                    if (last.inputQueue.offer(Collections.<String> emptyList())) {
+                    if (last.input.publishEndOfInput(1, TimeUnit.SECONDS)) {
                         break;
                     }
-                    Thread.sleep(1000);
                 }
 
                 // wait cuboid build done
@@ -268,7 +275,7 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
     }
 
     private class SplitThread extends Thread {
-        final BlockingQueue<List<String>> inputQueue = new ArrayBlockingQueue<List<String>>(16);
+        final RowBatchRing input = new RowBatchRing(flatDesc.getAllColumns().size());
         final InMemCubeBuilder builder;
 
         ConcurrentNavigableMap<Long, CuboidResult> buildResult;
@@ -276,15 +283,17 @@ public class DoggedCubeBuilder extends AbstractInMemCubeBuilder {
         RuntimeException exception;
 
         public SplitThread() {
-            this.builder = new InMemCubeBuilder(cubeDesc, flatDesc, dictionaryMap);
+            this.builder = new InMemCubeBuilder(cuboidScheduler, cubeDesc, flatDesc, dictionaryMap);
             this.builder.setConcurrentThreads(taskThreadCount);
             this.builder.setReserveMemoryMB(reserveMemoryMB);
+            this.builder.setCuboidSizeEstimates(cuboidSizeEstimates);
+            this.builder.setBuildListener(buildListener);
         }
 
         @Override
         public void run() {
             try {
-                buildResult = builder.build(inputQueue);
+                buildResult = builder.build(input);
             } catch (Exception e) {
                 if (e instanceof RuntimeException)
                     this.exception = (RuntimeException) e;
@@ -21,13 +21,15 @@ package org.apache.kylin.cube.inmemcubing;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.kylin.common.util.Dictionary;
@@ -47,6 +49,7 @@ import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.GTScanRequestBuilder;
 import org.apache.kylin.gridtable.GridTable;
 import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
 import org.apache.kylin.measure.topn.Counter;
 import org.apache.kylin.measure.topn.TopNCounter;
 import org.apache.kylin.metadata.datatype.DoubleMutable;
@@ -61,6 +64,10 @@ import com.google.common.collect.Lists;
 /**
  * Build a cube (many cuboids) in memory. Calculating multiple cuboids at the same time as long as memory permits.
  * Assumes base cuboid fits in memory or otherwise OOM exception will occur.
+ *
+ * The N-D cuboids are fork/join subtasks of their parent. Each thread goes depth first down the spanning tree,
+ * idle threads steal the biggest pending children. A task is admitted when the memory budget has room for its
+ * aggregation cache, estimated from the cuboid sizes of cube statistics if given.
  */
 public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
@@ -70,7 +77,6 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     private static final double DERIVE_AGGR_CACHE_CONSTANT_FACTOR = 0.1;
     private static final double DERIVE_AGGR_CACHE_VARIABLE_FACTOR = 0.9;
 
-    private final CuboidScheduler cuboidScheduler;
     private final long baseCuboidId;
     private final int totalCuboidCount;
     private final String[] metricsAggrFuncs;
@@ -80,9 +86,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     private MemoryBudgetController memBudget;
     private MemoryWaterLevel baseCuboidMemTracker;
 
-    private Thread[] taskThreads;
-    private Throwable[] taskThreadExceptions;
-    private TreeSet<CuboidTask> taskPending;
+    private volatile ForkJoinPool taskPool;
     private AtomicInteger taskCuboidCompleted = new AtomicInteger(0);
 
     private CuboidResult baseResult;
@@ -90,8 +94,11 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     private ICuboidCollector resultCollector;
 
     public InMemCubeBuilder(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
-        super(cubeDesc, flatDesc, dictionaryMap);
-        this.cuboidScheduler = new CuboidScheduler(cubeDesc);
+        this(new CuboidScheduler(cubeDesc), cubeDesc, flatDesc, dictionaryMap);
+    }
+
+    public InMemCubeBuilder(CuboidScheduler cuboidScheduler, CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        super(cuboidScheduler, cubeDesc, flatDesc, dictionaryMap);
         this.baseCuboidId = Cuboid.getBaseCuboidId(cubeDesc);
         this.totalCuboidCount = cuboidScheduler.getCuboidCount();
 
@@ -110,17 +117,21 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     private GridTable newGridTableByCuboidID(long cuboidID) throws IOException {
         GTInfo info = CubeGridTable.newGTInfo(cubeDesc, cuboidID, dictionaryMap);
 
-        // Below several store implementation are very similar in performance. The ConcurrentDiskStore is the simplest.
+        // MemDiskStore is very similar to ConcurrentDiskStore in performance, the OffHeapColumnarStore saves the disk IO
         // MemDiskStore store = new MemDiskStore(info, memBudget == null ? MemoryBudgetController.ZERO_BUDGET : memBudget);
-        // MemDiskStore store = new MemDiskStore(info, MemoryBudgetController.ZERO_BUDGET);
-        ConcurrentDiskStore store = new ConcurrentDiskStore(info);
+        IGTStore store;
+        if ("offheap".equals(cubeDesc.getConfig().getCubeAlgorithmInMemStore())) {
+            store = new OffHeapColumnarStore(info, cubeDesc.getConfig().getCubeAlgorithmInMemOffHeapStoreMB());
+        } else {
+            store = new ConcurrentDiskStore(info);
+        }
 
         GridTable gridTable = new GridTable(info, store);
         return gridTable;
     }
 
     @Override
-    public void build(BlockingQueue<List<String>> input, ICuboidWriter output) throws IOException {
+    public void build(RowBatchRing input, ICuboidWriter output) throws IOException {
         ConcurrentNavigableMap<Long, CuboidResult> result = build(input);
         try {
             for (CuboidResult cuboidResult : result.values()) {
@@ -132,7 +143,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         }
     }
 
-    public ConcurrentNavigableMap<Long, CuboidResult> build(BlockingQueue<List<String>> input) throws IOException {
+    public ConcurrentNavigableMap<Long, CuboidResult> build(RowBatchRing input) throws IOException {
         final ConcurrentNavigableMap<Long, CuboidResult> result = new ConcurrentSkipListMap<Long, CuboidResult>();
         build(input, new ICuboidCollector() {
             @Override
@@ -149,18 +160,14 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         void collect(CuboidResult result);
     }
 
-    private void build(BlockingQueue<List<String>> input, ICuboidCollector collector) throws IOException {
+    private void build(RowBatchRing input, ICuboidCollector collector) throws IOException {
         long startTime = System.currentTimeMillis();
         logger.info("In Mem Cube Build start, " + cubeDesc.getName());
 
         baseCuboidMemTracker = new MemoryWaterLevel();
         baseCuboidMemTracker.markLow();
 
-        // multiple threads to compute cuboid in parallel
-        taskPending = new TreeSet<CuboidTask>();
         taskCuboidCompleted.set(0);
-        taskThreads = prepareTaskThreads();
-        taskThreadExceptions = new Throwable[taskThreadCount];
 
         // build base cuboid
         resultCollector = collector;
@@ -173,137 +180,92 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         baseCuboidMemTracker.markLow();
         makeMemoryBudget();
 
-        // kick off N-D cuboid tasks and output
-        addChildTasks(baseResult);
-        start(taskThreads);
-
-        // wait complete
-        join(taskThreads);
+        // multiple threads to compute N-D cuboids in parallel, wait complete
+        taskPool = new ForkJoinPool(taskThreadCount);
+        try {
+            taskPool.invoke(new CuboidTask(null, baseCuboidId));
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() instanceof IOException ? e.getCause() : e;
+            logger.error("Exception during in-mem cube build", cause);
+            throw new IOException("Exception during in-mem cube build", cause);
+        } finally {
+            taskPool.shutdown();
+        }
 
         long endTime = System.currentTimeMillis();
         logger.info("In Mem Cube Build end, " + cubeDesc.getName() + ", takes " + (endTime - startTime) + " ms");
-
-        throwExceptionIfAny();
     }
 
     public void abort() {
-        interrupt(taskThreads);
-    }
-
-    private void start(Thread... threads) {
-        for (Thread t : threads)
-            t.start();
-    }
-
-    private void interrupt(Thread... threads) {
-        for (Thread t : threads)
-            t.interrupt();
-    }
-
-    private void join(Thread... threads) throws IOException {
-        try {
-            for (Thread t : threads)
-                t.join();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("interrupted while waiting task and output complete", e);
-        }
-    }
-
-    private void throwExceptionIfAny() throws IOException {
-        ArrayList<Throwable> errors = new ArrayList<Throwable>();
-        for (int i = 0; i < taskThreadCount; i++) {
-            Throwable t = taskThreadExceptions[i];
-            if (t != null)
-                errors.add(t);
-        }
-        if (errors.isEmpty()) {
-            return;
-        } else if (errors.size() == 1) {
-            Throwable t = errors.get(0);
-            if (t instanceof IOException)
-                throw (IOException) t;
-            else
-                throw new IOException(t);
-        } else {
-            for (Throwable t : errors)
-                logger.error("Exception during in-mem cube build", t);
-            throw new IOException(errors.size() + " exceptions during in-mem cube build, cause set to the first, check log for more", errors.get(0));
-        }
-    }
-
-    private Thread[] prepareTaskThreads() {
-        Thread[] result = new Thread[taskThreadCount];
-        for (int i = 0; i < taskThreadCount; i++) {
-            result[i] = new CuboidTaskThread(i);
-        }
-        return result;
+        ForkJoinPool pool = taskPool;
+        if (pool != null)
+            pool.shutdownNow();
     }
 
     public boolean isAllCuboidDone() {
         return taskCuboidCompleted.get() == totalCuboidCount;
     }
 
-    private class CuboidTaskThread extends Thread {
-        private int id;
+    private class CuboidTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-        CuboidTaskThread(int id) {
-            super("CuboidTask-" + id);
-            this.id = id;
+        final CuboidResult parent;
+        final long cuboidId;
+
+        CuboidTask(CuboidResult parent, long cuboidId) {
+            this.parent = parent;
+            this.cuboidId = cuboidId;
         }
 
         @Override
-        public void run() {
+        protected void compute() {
+            CuboidResult result;
             try {
-                while (!isAllCuboidDone()) {
-                    CuboidTask task = null;
-                    synchronized (taskPending) {
-                        while (task == null && taskHasNoException()) {
-                            task = taskPending.pollFirst();
-                            if (task == null)
-                                taskPending.wait(60000);
-                        }
-                    }
-                    // if task error occurs
-                    if (task == null)
-                        break;
-
-                    CuboidResult newCuboid = buildCuboid(task.parent, task.childCuboidId);
-                    addChildTasks(newCuboid);
+                result = parent == null ? baseResult : buildCuboid(parent, cuboidId);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
 
-                    if (isAllCuboidDone()) {
-                        for (Thread t : taskThreads) {
-                            if (t != Thread.currentThread())
-                                t.interrupt();
-                        }
-                    }
-                }
-            } catch (Throwable ex) {
-                if (!isAllCuboidDone()) {
-                    logger.error("task thread exception", ex);
-                    taskThreadExceptions[id] = ex;
+            // the first child runs in this thread, the others are forked in reverse, so idle threads steal from the end
+            List<Long> children = sortBySizeEstimate(cuboidScheduler.getSpanningCuboid(cuboidId));
+            if (!children.isEmpty()) {
+                List<CuboidTask> tasks = new ArrayList<CuboidTask>(children.size());
+                for (Long child : children) {
+                    tasks.add(new CuboidTask(result, child));
                 }
+                invokeAll(tasks);
             }
         }
     }
 
-    private boolean taskHasNoException() {
-        for (int i = 0; i < taskThreadExceptions.length; i++)
-            if (taskThreadExceptions[i] != null)
-                return false;
-        return true;
-    }
+    private List<Long> sortBySizeEstimate(List<Long> cuboids) {
+        if (cuboidSizeEstimates == null || cuboids.size() < 2)
+            return cuboids;
 
-    private void addChildTasks(CuboidResult parent) {
-        List<Long> children = cuboidScheduler.getSpanningCuboid(parent.cuboidId);
-        if (!children.isEmpty()) {
-            synchronized (taskPending) {
-                for (Long child : children) {
-                    taskPending.add(new CuboidTask(parent, child));
-                }
-                taskPending.notifyAll();
+        List<Long> result = new ArrayList<Long>(cuboids);
+        Collections.sort(result, new Comparator<Long>() {
+            @Override
+            public int compare(Long o1, Long o2) {
+                return Double.compare(getSizeEstimate(o1), getSizeEstimate(o2));
             }
-        }
+        });
+        return result;
+    }
+
+    private double getSizeEstimate(long cuboidId) {
+        Double size = cuboidSizeEstimates == null ? null : cuboidSizeEstimates.get(cuboidId);
+        return size == null ? 0 : size.doubleValue();
+    }
+
+    // the aggregation cache of a child cannot be larger than the parent, statistics tell how much smaller
+    private int estimateAggrCacheMB(CuboidResult parent, long cuboidId) {
+        double baseSize = getSizeEstimate(baseCuboidId);
+        double size = getSizeEstimate(cuboidId);
+        if (baseSize <= 0 || size <= 0)
+            return parent.aggrCacheMB;
+
+        int mb = (int) Math.round((DERIVE_AGGR_CACHE_CONSTANT_FACTOR + DERIVE_AGGR_CACHE_VARIABLE_FACTOR * Math.min(1, size / baseSize)) * baseResult.aggrCacheMB);
+        return Math.max(1, Math.min(mb, parent.aggrCacheMB));
     }
 
     private void makeMemoryBudget() {
@@ -325,7 +287,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         memBudget = new MemoryBudgetController(budget);
     }
 
-    private CuboidResult createBaseCuboid(BlockingQueue<List<String>> input) throws IOException {
+    private CuboidResult createBaseCuboid(RowBatchRing input) throws IOException {
         long startTime = System.currentTimeMillis();
         logger.info("Calculating base cuboid " + baseCuboidId);
 
@@ -369,6 +331,8 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         taskCuboidCompleted.incrementAndGet();
 
         resultCollector.collect(result);
+        if (buildListener != null)
+            buildListener.onCuboidBuilt(result);
         return result;
     }
 
@@ -386,8 +350,8 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
             }
         };
 
-        // reserve memory for aggregation cache, can't be larger than the parent
-        memBudget.reserveInsist(consumer, parent.aggrCacheMB);
+        // admit the task when memory for its aggregation cache is available
+        memBudget.reserveInsist(consumer, estimateAggrCacheMB(parent, cuboidId));
         try {
             return aggregateCuboid(parent, cuboidId);
         } finally {
@@ -492,31 +456,13 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
     // ===========================================================================
 
-    private static class CuboidTask implements Comparable<CuboidTask> {
-        final CuboidResult parent;
-        final long childCuboidId;
-
-        CuboidTask(CuboidResult parent, long childCuboidId) {
-            this.parent = parent;
-            this.childCuboidId = childCuboidId;
-        }
-
-        @Override
-        public int compareTo(CuboidTask o) {
-            long comp = this.childCuboidId - o.childCuboidId;
-            return comp < 0 ? -1 : (comp > 0 ? 1 : 0);
-        }
-    }
-
-    // ============================================================================
-
     private class InputConverter implements IGTScanner {
         GTInfo info;
         GTRecord record;
-        BlockingQueue<List<String>> input;
+        RowBatchRing input;
         final InMemCubeBuilderInputConverter inMemCubeBuilderInputConverter;
 
-        public InputConverter(GTInfo info, BlockingQueue<List<String>> input) {
+        public InputConverter(GTInfo info, RowBatchRing input) {
             this.info = info;
             this.input = input;
             this.record = new GTRecord(info);
@@ -527,25 +473,38 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         public Iterator<GTRecord> iterator() {
             return new Iterator<GTRecord>() {
 
-                List<String> currentObject = null;
+                RowBatch currentBatch = null;
+                int currentRow = 0;
+                boolean endOfInput = false;
 
                 @Override
                 public boolean hasNext() {
                     try {
-                        currentObject = input.take();
+                        // move to the next row, releasing exhausted batches
+                        while (currentBatch == null || currentRow >= currentBatch.getRowCount()) {
+                            if (currentBatch != null) {
+                                endOfInput = currentBatch.isEndOfInput();
+                                currentBatch = null;
+                                input.release();
+                            }
+                            if (endOfInput)
+                                return false;
+                            currentBatch = input.take();
+                            currentRow = 0;
+                        }
+                        return true;
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                         throw new RuntimeException(e);
                     }
-                    return currentObject != null && currentObject.size() > 0;
                 }
 
                 @Override
                 public GTRecord next() {
-                    if (currentObject.size() == 0)
+                    if (currentBatch == null || currentRow >= currentBatch.getRowCount())
                         throw new IllegalStateException();
 
-                    inMemCubeBuilderInputConverter.convert(currentObject, record);
+                    inMemCubeBuilderInputConverter.convert(currentBatch, currentRow++, record);
                     return record;
                 }
 
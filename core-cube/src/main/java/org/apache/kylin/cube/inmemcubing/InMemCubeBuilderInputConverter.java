@@ -17,15 +17,18 @@
 */
 package org.apache.kylin.cube.inmemcubing;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.cube.gridtable.CubeCodeSystem;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeJoinedFlatTableEnrich;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTCodeSystem;
 import org.apache.kylin.measure.MeasureIngester;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
@@ -49,6 +52,10 @@ public class InMemCubeBuilderInputConverter {
     private final GTInfo gtInfo;
     protected List<byte[]> nullBytes;
 
+    // reused by convert(RowBatch), the codes of a record are copied out by its consumer before the next row
+    private ByteBuffer recordBuf;
+    private String[][] measureInputs;
+
     public InMemCubeBuilderInputConverter(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap, GTInfo gtInfo) {
         this.gtInfo = gtInfo;
         this.flatDesc = new CubeJoinedFlatTableEnrich(flatDesc, cubeDesc);
@@ -74,6 +81,75 @@ public class InMemCubeBuilderInputConverter {
         record.setValues(recordValues);
     }
 
+    /** convert a row of given batch, encoding from its bytes and reusing the space of the previous record */
+    public final void convert(RowBatch batch, int row, GTRecord record) {
+        if (recordBuf == null) {
+            recordBuf = ByteBuffer.allocate(gtInfo.getMaxRecordLength());
+            measureInputs = new String[measureCount][];
+            for (int i = 0; i < measureCount; i++) {
+                measureInputs[i] = new String[measureDescs[i].getFunction().getParameterCount()];
+            }
+        }
+
+        IGTCodeSystem codeSystem = gtInfo.getCodeSystem();
+        CubeCodeSystem cubeCodeSystem = codeSystem instanceof CubeCodeSystem ? (CubeCodeSystem) codeSystem : null;
+        byte[] data = batch.getData();
+        ByteBuffer buf = recordBuf;
+        buf.clear();
+
+        int[] rowKeyColumnIndexes = flatDesc.getRowKeyColumnIndexes();
+        int keySize = rowKeyColumnIndexes.length;
+        for (int i = 0; i < keySize; i++) {
+            int pos = buf.position();
+            int flatCol = rowKeyColumnIndexes[i];
+            int offset = batch.getOffset(row, flatCol);
+            int length = batch.getLength(row, flatCol);
+            boolean isNull = batch.isNull(row, flatCol) || isNull(data, offset, length);
+            if (cubeCodeSystem != null) {
+                cubeCodeSystem.encodeDimensionValue(i, isNull ? null : data, offset, length, buf);
+            } else {
+                codeSystem.encodeColumnValue(i, isNull ? null : batch.getString(row, flatCol), buf);
+            }
+            record.get(i).set(buf.array(), buf.arrayOffset() + pos, buf.position() - pos);
+        }
+
+        for (int i = 0; i < measureCount; i++) {
+            int pos = buf.position();
+            codeSystem.encodeColumnValue(keySize + i, buildValueOf(i, batch, row), buf);
+            record.get(keySize + i).set(buf.array(), buf.arrayOffset() + pos, buf.position() - pos);
+        }
+    }
+
+    private Object buildValueOf(int idxOfMeasure, RowBatch batch, int row) {
+        MeasureDesc measure = measureDescs[idxOfMeasure];
+        FunctionDesc function = measure.getFunction();
+        int[] colIdxOnFlatTable = flatDesc.getMeasureColumnIndexes()[idxOfMeasure];
+
+        ParameterDesc param = function.getParameter();
+        int paramCount = function.getParameterCount();
+        if (paramCount == 1 && !function.isCount() && param.isColumnType()) {
+            int flatCol = colIdxOnFlatTable[0];
+            byte[] value = batch.isNull(row, flatCol) ? null : batch.getData();
+            return measureIngesters[idxOfMeasure].valueOf(value, batch.getOffset(row, flatCol), batch.getLength(row, flatCol), measure, dictionaryMap);
+        }
+
+        String[] inputToMeasure = measureInputs[idxOfMeasure];
+        int paramColIdx = 0; // index among parameters of column type
+        for (int i = 0; i < paramCount; i++, param = param.getNextParameter()) {
+            String value;
+            if (function.isCount()) {
+                value = "1";
+            } else if (param.isColumnType()) {
+                value = batch.getString(row, colIdxOnFlatTable[paramColIdx++]);
+            } else {
+                value = param.getValue();
+            }
+            inputToMeasure[i] = value;
+        }
+
+        return measureIngesters[idxOfMeasure].valueOf(inputToMeasure, measure, dictionaryMap);
+    }
+
     private Object[] buildKey(List<String> row) {
         int keySize = flatDesc.getRowKeyColumnIndexes().length;
         Object[] key = new Object[keySize];
@@ -133,6 +209,14 @@ public class InMemCubeBuilderInputConverter {
         }
     }
 
+    private boolean isNull(byte[] data, int offset, int length) {
+        for (byte[] nullByte : nullBytes) {
+            if (Bytes.equals(data, offset, length, nullByte, 0, nullByte.length))
+                return true;
+        }
+        return false;
+    }
+
     private boolean isNull(byte[] v) {
         for (byte[] nullByte : nullBytes) {
             if (Bytes.equals(v, nullByte))
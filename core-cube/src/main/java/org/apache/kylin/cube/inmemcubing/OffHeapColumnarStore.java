@@ -0,0 +1,625 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.dimension.DictionaryDimEnc;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
+import org.apache.kylin.gridtable.IGTWriter;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+import org.apache.kylin.metadata.datatype.LongSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A store that keeps rows in blocks of pooled direct memory, compressed column by column in each block:
+ * dictionary IDs are bit packed from the block minimum, integer measures are delta and vlong encoded, other
+ * columns are kept as they are. When the off-heap limit shared by all stores is reached, whole blocks are
+ * spilled to a file and memory mapped. Allows concurrent read and exclusive write, like ConcurrentDiskStore.
+ */
+public class OffHeapColumnarStore implements IGTStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapColumnarStore.class);
+
+    public static final int ROWS_PER_BLOCK = 4096;
+
+    // how a column is encoded in a block, decided per block as a value may not fit
+    private static final byte ENC_RAW_FIXED = 0;
+    private static final byte ENC_BIT_PACKED = 1;
+    private static final byte ENC_DELTA_VLONG = 2;
+    private static final byte ENC_VAR_BYTES = 3;
+
+    // what a column could be encoded as
+    private static final byte KIND_FIXED = 0;
+    private static final byte KIND_DICT = 1;
+    private static final byte KIND_LONG = 2;
+    private static final byte KIND_VAR = 3;
+
+    private static final BufferPool pool = new BufferPool();
+
+    final private GTInfo info;
+    final private long offHeapLimitBytes;
+    final private Object lock;
+    final private byte[] columnKinds;
+    final private int[] fixedLens;
+
+    private ArrayList<ByteBuffer> blocks = new ArrayList<ByteBuffer>();
+    private ArrayList<ByteBuffer> pooledBlocks = new ArrayList<ByteBuffer>();
+    private long rowCount;
+
+    private File spillFile;
+    private FileChannel spillChannel;
+    private long spillLength;
+
+    private Writer activeWriter;
+    private int activeReaders;
+
+    /** @param offHeapLimitMB the direct memory of all OffHeapColumnarStore instances, beyond which blocks are spilled */
+    public OffHeapColumnarStore(GTInfo info, int offHeapLimitMB) {
+        this.info = info;
+        this.offHeapLimitBytes = (long) offHeapLimitMB * MemoryBudgetController.ONE_MB;
+        this.lock = this;
+
+        int nCols = info.getColumnCount();
+        this.columnKinds = new byte[nCols];
+        this.fixedLens = new int[nCols];
+        for (int c = 0; c < nCols; c++) {
+            DimensionEncoding dimEnc = info.getCodeSystem().getDimEnc(c);
+            if (dimEnc instanceof DictionaryDimEnc && dimEnc.getLengthOfEncoding() <= 4) {
+                columnKinds[c] = KIND_DICT;
+                fixedLens[c] = dimEnc.getLengthOfEncoding();
+            } else if (dimEnc != null) {
+                columnKinds[c] = KIND_FIXED;
+                fixedLens[c] = dimEnc.getLengthOfEncoding();
+            } else if (DataTypeSerializer.create(info.getColumnType(c)) instanceof LongSerializer) {
+                columnKinds[c] = KIND_LONG;
+            } else {
+                columnKinds[c] = KIND_VAR;
+            }
+        }
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return info;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public IGTWriter rebuild() throws IOException {
+        synchronized (lock) {
+            checkNoActiveUser();
+            releaseBlocks();
+            activeWriter = new Writer();
+            return activeWriter;
+        }
+    }
+
+    @Override
+    public IGTWriter append() throws IOException {
+        synchronized (lock) {
+            checkNoActiveUser();
+            activeWriter = new Writer();
+            return activeWriter;
+        }
+    }
+
+    @Override
+    public IGTScanner scan(GTScanRequest scanRequest) throws IOException {
+        synchronized (lock) {
+            if (activeWriter != null)
+                throw new IllegalStateException();
+
+            activeReaders++;
+            return new Reader(new ArrayList<ByteBuffer>(blocks));
+        }
+    }
+
+    private void checkNoActiveUser() {
+        if (activeWriter != null || activeReaders > 0)
+            throw new IllegalStateException();
+    }
+
+    private void addBlock(ByteBuffer encoded) throws IOException {
+        int size = encoded.remaining();
+        ByteBuffer block = pool.acquire(size, offHeapLimitBytes);
+        if (block != null) {
+            block.put(encoded);
+            block.flip();
+            pooledBlocks.add(block);
+        } else {
+            block = spill(encoded);
+        }
+        blocks.add(block);
+    }
+
+    private ByteBuffer spill(ByteBuffer encoded) throws IOException {
+        if (spillChannel == null) {
+            spillFile = File.createTempFile("OffHeapColumnarStore", "");
+            spillFile.deleteOnExit(); // in case user forget to call close()
+            spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            logger.info(this + " off-heap limit reached, spill to " + spillFile.getAbsolutePath());
+        }
+
+        long start = spillLength;
+        int size = encoded.remaining();
+        while (encoded.hasRemaining()) {
+            spillLength += spillChannel.write(encoded, spillLength);
+        }
+        return spillChannel.map(MapMode.READ_ONLY, start, size);
+    }
+
+    private void releaseBlocks() {
+        for (ByteBuffer b : pooledBlocks) {
+            pool.release(b);
+        }
+        pooledBlocks.clear();
+        blocks = new ArrayList<ByteBuffer>();
+        rowCount = 0;
+
+        // mapped blocks are unmapped by GC, the file can go as readers are done
+        IOUtils.closeQuietly(spillChannel);
+        spillChannel = null;
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+        spillLength = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            checkNoActiveUser();
+            releaseBlocks();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapColumnarStore@" + (info.getTableName() == null ? this.hashCode() : info.getTableName());
+    }
+
+    // ============================================================================
+
+    private class Writer implements IGTWriter {
+        final int nCols = info.getColumnCount();
+        final byte[][] colData = new byte[nCols][];
+        final int[][] colOffsets = new int[nCols][ROWS_PER_BLOCK + 1];
+        final long[] longs = new long[ROWS_PER_BLOCK];
+        final long[] words = new long[ROWS_PER_BLOCK];
+        ByteBuffer encodeBuf = ByteBuffer.allocate(1024 * 1024);
+        int nRows;
+        boolean closed;
+
+        Writer() {
+            for (int c = 0; c < nCols; c++) {
+                colData[c] = new byte[ROWS_PER_BLOCK * Math.max(8, fixedLens[c])];
+            }
+        }
+
+        @Override
+        public void write(GTRecord rec) throws IOException {
+            for (int c = 0; c < nCols; c++) {
+                ByteArray v = rec.get(c);
+                int len = v.array() == null ? 0 : v.length();
+                int off = colOffsets[c][nRows];
+                if (off + len > colData[c].length) {
+                    colData[c] = Arrays.copyOf(colData[c], Math.max(colData[c].length * 2, off + len));
+                }
+                if (len > 0) {
+                    System.arraycopy(v.array(), v.offset(), colData[c], off, len);
+                }
+                colOffsets[c][nRows + 1] = off + len;
+            }
+            nRows++;
+
+            if (nRows == ROWS_PER_BLOCK)
+                flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            if (nRows == 0)
+                return;
+
+            // the worst case of every encoding: vlong length plus value, or 9 bytes per long
+            int maxSize = 4 + nCols * (1 + 8 + 1 + 4 + 9 * nRows);
+            for (int c = 0; c < nCols; c++) {
+                maxSize += colOffsets[c][nRows];
+            }
+            if (encodeBuf.capacity() < maxSize) {
+                encodeBuf = ByteBuffer.allocate(maxSize);
+            }
+
+            ByteBuffer buf = encodeBuf;
+            buf.clear();
+            buf.putInt(nRows);
+            for (int c = 0; c < nCols; c++) {
+                encodeColumn(c, buf);
+            }
+            buf.flip();
+
+            synchronized (lock) {
+                addBlock(buf);
+                rowCount += nRows;
+            }
+            nRows = 0;
+        }
+
+        private void encodeColumn(int c, ByteBuffer buf) {
+            byte kind = columnKinds[c];
+            int[] offsets = colOffsets[c];
+            byte[] data = colData[c];
+
+            if (kind == KIND_DICT && isFixedLength(offsets, fixedLens[c])) {
+                int len = fixedLens[c];
+                long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+                for (int r = 0; r < nRows; r++) {
+                    long id = readUnsignedLong(data, offsets[r], len);
+                    longs[r] = id;
+                    min = Math.min(min, id);
+                    max = Math.max(max, id);
+                }
+                int bits = 64 - Long.numberOfLeadingZeros(max - min);
+                buf.put(ENC_BIT_PACKED);
+                buf.putLong(min);
+                buf.put((byte) bits);
+                int nWords = (nRows * bits + 63) / 64;
+                Arrays.fill(words, 0, nWords, 0L);
+                for (int r = 0; r < nRows; r++) {
+                    packBits(words, r * bits, bits, longs[r] - min);
+                }
+                for (int i = 0; i < nWords; i++) {
+                    buf.putLong(words[i]);
+                }
+
+            } else if ((kind == KIND_DICT || kind == KIND_FIXED) && isFixedLength(offsets, fixedLens[c])) {
+                buf.put(ENC_RAW_FIXED);
+                buf.put(data, 0, offsets[nRows]);
+
+            } else if (kind == KIND_LONG && readLongs(data, offsets)) {
+                buf.put(ENC_DELTA_VLONG);
+                long prev = 0;
+                for (int r = 0; r < nRows; r++) {
+                    BytesUtil.writeVLong(longs[r] - prev, buf);
+                    prev = longs[r];
+                }
+
+            } else {
+                buf.put(ENC_VAR_BYTES);
+                for (int r = 0; r < nRows; r++) {
+                    int len = offsets[r + 1] - offsets[r];
+                    BytesUtil.writeVInt(len, buf);
+                    buf.put(data, offsets[r], len);
+                }
+            }
+        }
+
+        private boolean isFixedLength(int[] offsets, int len) {
+            for (int r = 0; r < nRows; r++) {
+                if (offsets[r + 1] - offsets[r] != len)
+                    return false;
+            }
+            return true;
+        }
+
+        // true if every value is a vlong that takes all its bytes, i.e. decode and encode again gives the same bytes
+        private boolean readLongs(byte[] data, int[] offsets) {
+            ByteBuffer in = ByteBuffer.wrap(data, 0, offsets[nRows]);
+            for (int r = 0; r < nRows; r++) {
+                if (offsets[r + 1] == offsets[r])
+                    return false;
+                in.position(offsets[r]);
+                longs[r] = BytesUtil.readVLong(in);
+                if (in.position() != offsets[r + 1])
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+
+            try {
+                flushBlock();
+            } finally {
+                synchronized (lock) {
+                    if (activeWriter != this)
+                        throw new IllegalStateException();
+                    activeWriter = null;
+                }
+            }
+        }
+    }
+
+    private static void packBits(long[] words, int bitPos, int bits, long value) {
+        int idx = bitPos >>> 6;
+        int shift = bitPos & 63;
+        words[idx] |= value << shift;
+        if (shift + bits > 64)
+            words[idx + 1] |= value >>> (64 - shift);
+    }
+
+    private static long unpackBits(long[] words, int bitPos, int bits) {
+        if (bits == 0)
+            return 0;
+
+        int idx = bitPos >>> 6;
+        int shift = bitPos & 63;
+        long value = words[idx] >>> shift;
+        if (shift + bits > 64)
+            value |= words[idx + 1] << (64 - shift);
+        return bits == 64 ? value : value & ((1L << bits) - 1);
+    }
+
+    private static long readUnsignedLong(byte[] bytes, int offset, int size) {
+        long result = 0;
+        for (int i = offset, end = offset + size; i < end; i++) {
+            result = (result << 8) | (bytes[i] & 0xFF);
+        }
+        return result;
+    }
+
+    private static void writeUnsignedLong(long num, byte[] bytes, int offset, int size) {
+        for (int i = offset + size - 1; i >= offset; i--) {
+            bytes[i] = (byte) num;
+            num >>>= 8;
+        }
+    }
+
+    // ============================================================================
+
+    private class Reader implements IGTScanner {
+        final List<ByteBuffer> snapshot;
+        boolean closed;
+
+        Reader(List<ByteBuffer> snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (closed)
+                    return;
+                closed = true;
+                activeReaders--;
+            }
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return new BlockDecoder(snapshot.iterator());
+        }
+    }
+
+    private class BlockDecoder implements Iterator<GTRecord> {
+        final Iterator<ByteBuffer> blockIterator;
+        final int nCols = info.getColumnCount();
+        final byte[][] colData = new byte[nCols][];
+        final int[][] colOffsets = new int[nCols][ROWS_PER_BLOCK + 1];
+        final GTRecord record = new GTRecord(info);
+        final ByteBuffer vlongBuf = ByteBuffer.allocate(9);
+        final long[] words = new long[ROWS_PER_BLOCK];
+        int nRows;
+        int row;
+
+        BlockDecoder(Iterator<ByteBuffer> blockIterator) {
+            this.blockIterator = blockIterator;
+            for (int c = 0; c < nCols; c++) {
+                colData[c] = new byte[ROWS_PER_BLOCK * Math.max(8, fixedLens[c])];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (row >= nRows) {
+                if (!blockIterator.hasNext())
+                    return false;
+                decodeBlock(blockIterator.next().duplicate());
+            }
+            return true;
+        }
+
+        @Override
+        public GTRecord next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            for (int c = 0; c < nCols; c++) {
+                int[] offsets = colOffsets[c];
+                record.get(c).set(colData[c], offsets[row], offsets[row + 1] - offsets[row]);
+            }
+            row++;
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void decodeBlock(ByteBuffer in) {
+            in.position(0);
+            nRows = in.getInt();
+            row = 0;
+            for (int c = 0; c < nCols; c++) {
+                decodeColumn(c, in);
+            }
+        }
+
+        private void decodeColumn(int c, ByteBuffer in) {
+            byte enc = in.get();
+            int[] offsets = colOffsets[c];
+            switch (enc) {
+            case ENC_BIT_PACKED: {
+                int len = fixedLens[c];
+                byte[] data = ensureData(c, nRows * len);
+                long min = in.getLong();
+                int bits = in.get();
+                int nWords = (nRows * bits + 63) / 64;
+                for (int i = 0; i < nWords; i++) {
+                    words[i] = in.getLong();
+                }
+                for (int r = 0; r < nRows; r++) {
+                    offsets[r] = r * len;
+                    writeUnsignedLong(min + unpackBits(words, r * bits, bits), data, r * len, len);
+                }
+                offsets[nRows] = nRows * len;
+                break;
+            }
+            case ENC_RAW_FIXED: {
+                int len = fixedLens[c];
+                byte[] data = ensureData(c, nRows * len);
+                in.get(data, 0, nRows * len);
+                for (int r = 0; r <= nRows; r++) {
+                    offsets[r] = r * len;
+                }
+                break;
+            }
+            case ENC_DELTA_VLONG: {
+                byte[] data = ensureData(c, nRows * 9);
+                long value = 0;
+                int off = 0;
+                for (int r = 0; r < nRows; r++) {
+                    value += BytesUtil.readVLong(in);
+                    vlongBuf.clear();
+                    BytesUtil.writeVLong(value, vlongBuf);
+                    offsets[r] = off;
+                    System.arraycopy(vlongBuf.array(), 0, data, off, vlongBuf.position());
+                    off += vlongBuf.position();
+                }
+                offsets[nRows] = off;
+                break;
+            }
+            case ENC_VAR_BYTES: {
+                int off = 0;
+                for (int r = 0; r < nRows; r++) {
+                    int len = BytesUtil.readVInt(in);
+                    byte[] data = ensureData(c, off + len);
+                    in.get(data, off, len);
+                    offsets[r] = off;
+                    off += len;
+                }
+                offsets[nRows] = off;
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown column encoding " + enc);
+            }
+        }
+
+        private byte[] ensureData(int c, int size) {
+            if (colData[c].length < size) {
+                colData[c] = Arrays.copyOf(colData[c], Math.max(colData[c].length * 2, size));
+            }
+            return colData[c];
+        }
+    }
+
+    // ============================================================================
+
+    /**
+     * Direct buffers in power of 2 sizes, recycled across stores since in-mem cubing creates and drops
+     * a store per cuboid. The bytes in use are counted against the off-heap limit.
+     */
+    private static class BufferPool {
+        private static final int MIN_SHIFT = 16; // 64 KB
+        private static final int MAX_SHIFT = 30; // 1 GB
+        private static final long MAX_IDLE_BYTES = 64L * 1024 * 1024;
+
+        @SuppressWarnings("unchecked")
+        private final ConcurrentLinkedQueue<ByteBuffer>[] idle = new ConcurrentLinkedQueue[MAX_SHIFT + 1];
+        private final AtomicLong usedBytes = new AtomicLong();
+        private final AtomicLong idleBytes = new AtomicLong();
+
+        BufferPool() {
+            for (int i = MIN_SHIFT; i <= MAX_SHIFT; i++) {
+                idle[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+            }
+        }
+
+        /** a cleared buffer with limit at given size, or null if the limit is reached */
+        ByteBuffer acquire(int size, long limitBytes) {
+            int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+            if (shift > MAX_SHIFT)
+                return null;
+
+            long capacity = 1L << shift;
+            if (usedBytes.addAndGet(capacity) > limitBytes) {
+                usedBytes.addAndGet(-capacity);
+                return null;
+            }
+
+            ByteBuffer b = idle[shift].poll();
+            if (b != null) {
+                idleBytes.addAndGet(-capacity);
+            } else {
+                b = ByteBuffer.allocateDirect((int) capacity);
+            }
+            b.clear();
+            b.limit(size);
+            return b;
+        }
+
+        void release(ByteBuffer b) {
+            int capacity = b.capacity();
+            usedBytes.addAndGet(-capacity);
+            if (idleBytes.addAndGet(capacity) <= MAX_IDLE_BYTES) {
+                idle[Integer.numberOfTrailingZeros(capacity)].offer(b);
+            } else {
+                idleBytes.addAndGet(-capacity); // dropped, freed by GC
+            }
+        }
+    }
+}
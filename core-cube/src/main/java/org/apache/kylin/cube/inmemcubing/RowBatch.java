@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kylin.common.util.Bytes;
+
+/**
+ * A reusable batch of flat table rows, each column a slice of one shared byte buffer in UTF-8, so that
+ * feeding rows into in-mem cubing allocates nothing once the buffers have grown. Fill a batch column by
+ * column and close each row by {@link #endRow()}.
+ */
+public class RowBatch {
+
+    private static final int NULL_LENGTH = -1;
+
+    private final int columnCount;
+    private final int capacity;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    private byte[] data;
+    private int dataLength;
+    private int rowCount;
+    private int columnInRow;
+    private boolean endOfInput;
+
+    public RowBatch(int columnCount, int capacity) {
+        this.columnCount = columnCount;
+        this.capacity = capacity;
+        this.offsets = new int[columnCount * capacity];
+        this.lengths = new int[columnCount * capacity];
+        this.data = new byte[Math.max(1024, columnCount * capacity * 8)];
+    }
+
+    public void clear() {
+        dataLength = 0;
+        rowCount = 0;
+        columnInRow = 0;
+        endOfInput = false;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isFull() {
+        return rowCount >= capacity;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    /** the batch is the last one, the rows it has are still valid */
+    public boolean isEndOfInput() {
+        return endOfInput;
+    }
+
+    public void markEndOfInput() {
+        this.endOfInput = true;
+    }
+
+    // ============================================================================
+    // write
+
+    public void append(byte[] value, int offset, int length) {
+        int cell = nextCell();
+        ensureData(length);
+        System.arraycopy(value, offset, data, dataLength, length);
+        offsets[cell] = dataLength;
+        lengths[cell] = length;
+        dataLength += length;
+    }
+
+    public void append(String value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+
+        // encode UTF-8 in place
+        int cell = nextCell();
+        int n = value.length();
+        ensureData(n * 3);
+        int p = dataLength;
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                data[p++] = (byte) c;
+            } else if (c < 0x800) {
+                data[p++] = (byte) (0xc0 | (c >> 6));
+                data[p++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                data[p++] = (byte) (0xf0 | (cp >> 18));
+                data[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                data[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                data[p++] = (byte) (0x80 | (cp & 0x3f));
+            } else {
+                data[p++] = (byte) (0xe0 | (c >> 12));
+                data[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                data[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        offsets[cell] = dataLength;
+        lengths[cell] = p - dataLength;
+        dataLength = p;
+    }
+
+    /** a primitive, written as its decimal digits without boxing */
+    public void append(long value) {
+        int cell = nextCell();
+        ensureData(20);
+        int start = dataLength;
+        int p = start;
+        if (value < 0) {
+            data[p++] = '-';
+        }
+        int digitsStart = p;
+        do {
+            int digit = (int) (value % 10);
+            data[p++] = (byte) ('0' + Math.abs(digit));
+            value /= 10;
+        } while (value != 0);
+        reverse(data, digitsStart, p - 1);
+        offsets[cell] = start;
+        lengths[cell] = p - start;
+        dataLength = p;
+    }
+
+    public void appendNull() {
+        int cell = nextCell();
+        offsets[cell] = dataLength;
+        lengths[cell] = NULL_LENGTH;
+    }
+
+    /** close the current row, missing columns are null */
+    public void endRow() {
+        while (columnInRow < columnCount) {
+            appendNull();
+        }
+        rowCount++;
+        columnInRow = 0;
+    }
+
+    public void appendRow(List<String> row) {
+        for (int i = 0, n = Math.min(row.size(), columnCount); i < n; i++) {
+            append(row.get(i));
+        }
+        endRow();
+    }
+
+    public void appendRow(String[] row) {
+        appendRow(Arrays.asList(row));
+    }
+
+    /** copy all rows of another batch, of the same column count */
+    public void copyFrom(RowBatch other) {
+        if (other.columnCount != columnCount || other.rowCount > capacity)
+            throw new IllegalArgumentException("Cannot copy " + other.rowCount + " rows of " + other.columnCount + " columns to a batch of " + capacity + " rows of " + columnCount + " columns");
+
+        clear();
+        ensureData(other.dataLength);
+        System.arraycopy(other.data, 0, data, 0, other.dataLength);
+        int cells = other.rowCount * columnCount;
+        System.arraycopy(other.offsets, 0, offsets, 0, cells);
+        System.arraycopy(other.lengths, 0, lengths, 0, cells);
+        dataLength = other.dataLength;
+        rowCount = other.rowCount;
+        endOfInput = other.endOfInput;
+    }
+
+    private int nextCell() {
+        if (columnInRow >= columnCount)
+            throw new IllegalStateException("Row has more than " + columnCount + " columns");
+        if (rowCount >= capacity)
+            throw new IllegalStateException("Batch is full");
+        return rowCount * columnCount + columnInRow++;
+    }
+
+    private void ensureData(int more) {
+        if (dataLength + more > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + more));
+        }
+    }
+
+    private static void reverse(byte[] bytes, int from, int to) {
+        while (from < to) {
+            byte t = bytes[from];
+            bytes[from++] = bytes[to];
+            bytes[to--] = t;
+        }
+    }
+
+    // ============================================================================
+    // read
+
+    /** the buffer the column slices refer to */
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getOffset(int row, int col) {
+        return offsets[row * columnCount + col];
+    }
+
+    public int getLength(int row, int col) {
+        return lengths[row * columnCount + col];
+    }
+
+    public boolean isNull(int row, int col) {
+        return lengths[row * columnCount + col] == NULL_LENGTH;
+    }
+
+    public String getString(int row, int col) {
+        int cell = row * columnCount + col;
+        return lengths[cell] == NULL_LENGTH ? null : Bytes.toString(data, offsets[cell], lengths[cell]);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ring of reusable {@link RowBatch} slots between one producer and one consumer. The producer claims a
+ * free slot, fills and publishes it; the consumer takes the published slots in order and releases them
+ * back to the producer. Threads only meet once per batch, and no row or batch is allocated after start.
+ */
+public class RowBatchRing {
+
+    public static final int DEFAULT_SLOTS = 8;
+    public static final int DEFAULT_ROWS_PER_BATCH = 1024;
+
+    private final RowBatch[] slots;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    // sequences only grow, slot of sequence s is slots[s % slots.length]
+    private long claimed; // claimed by the producer
+    private long published; // ready for the consumer
+    private long taken; // taken by the consumer
+    private long released; // given back to the producer
+
+    public RowBatchRing(int columnCount) {
+        this(columnCount, DEFAULT_SLOTS, DEFAULT_ROWS_PER_BATCH);
+    }
+
+    public RowBatchRing(int columnCount, int slotCount, int rowsPerBatch) {
+        if (slotCount < 2)
+            throw new IllegalArgumentException("At least 2 slots, but was " + slotCount);
+
+        slots = new RowBatch[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new RowBatch(columnCount, rowsPerBatch);
+        }
+    }
+
+    public int getColumnCount() {
+        return slots[0].getColumnCount();
+    }
+
+    /** claim an empty batch to fill, or null if none is free in given time */
+    public RowBatch claim(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            if (claimed > published)
+                throw new IllegalStateException("The claimed batch is not published yet");
+
+            while (claimed - released >= slots.length) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            RowBatch batch = slots[(int) (claimed % slots.length)];
+            claimed++;
+            batch.clear();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public RowBatch claim() throws InterruptedException {
+        return claim(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /** publish the claimed batch to the consumer */
+    public void publish() {
+        lock.lock();
+        try {
+            if (claimed == published)
+                throw new IllegalStateException("No batch is claimed");
+
+            published++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** take the next published batch, or null if none is published in given time */
+    public RowBatch take(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            if (taken > released)
+                throw new IllegalStateException("The taken batch is not released yet");
+
+            while (taken == published) {
+                if (nanos <= 0)
+                    return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return slots[(int) (taken++ % slots.length)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public RowBatch take() throws InterruptedException {
+        return take(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /** give the taken batch back to the producer */
+    public void release() {
+        lock.lock();
+        try {
+            if (taken == released)
+                throw new IllegalStateException("No batch is taken");
+
+            released++;
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** publish an empty batch that marks the end of input, false if no slot is free in given time */
+    public boolean publishEndOfInput(long timeout, TimeUnit unit) throws InterruptedException {
+        RowBatch batch = claim(timeout, unit);
+        if (batch == null)
+            return false;
+        batch.markEndOfInput();
+        publish();
+        return true;
+    }
+}
@@ -67,6 +67,7 @@ public class GTAggregateScanner implements IGTScanner {
     final long spillThreshold; // 0 means no memory control && no spill
     final int storagePushDownLimit;//default to be Int.MAX
     final boolean spillEnabled;
+    final boolean hashAggrEnabled;
 
     private int aggregatedRowCount = 0;
     private MemoryWaterLevel memTracker;
@@ -86,11 +87,12 @@ public class GTAggregateScanner implements IGTScanner {
         this.metrics = req.getAggrMetrics();
         this.metricsAggrFuncs = req.getAggrMetricsFuncs();
         this.inputScanner = inputScanner;
-        this.aggrCache = new AggregationCache();
         this.spillThreshold = (long) (req.getAggCacheMemThreshold() * MemoryBudgetController.ONE_GB);
         this.aggrMask = new boolean[metricsAggrFuncs.length];
         this.storagePushDownLimit = req.getStoragePushDownLimit();
         this.spillEnabled = spillEnabled;
+        this.hashAggrEnabled = req.isHashAggrEnabled();
+        this.aggrCache = new AggregationCache();
 
         Arrays.fill(aggrMask, true);
     }
@@ -136,6 +138,10 @@ public class GTAggregateScanner implements IGTScanner {
 
     @Override
     public Iterator<GTRecord> iterator() {
+        if (GTRecordBlock.isBlockScanner(inputScanner)) {
+            return iterateByBlock();
+        }
+
         long count = 0;
         for (GTRecord r : inputScanner) {
 
@@ -157,6 +163,23 @@ public class GTAggregateScanner implements IGTScanner {
         return aggrCache.iterator();
     }
 
+    private Iterator<GTRecord> iterateByBlock() {
+        long count = 0;
+        Iterator<GTRecordBlock> blocks = ((IGTBlockScanner) inputScanner).blockIterator();
+        while (blocks.hasNext()) {
+            GTRecordBlock block = blocks.next();
+            int n = aggrCache.aggregate(block);
+            count += n;
+
+            if (n < block.getSelectedCount()) {
+                logger.info("abort reading inputScanner because storage push down limit is hit");
+                break;//limit is hit
+            }
+        }
+        logger.info("GTAggregateScanner input rows: " + count);
+        return aggrCache.iterator();
+    }
+
     public int getNumOfSpills() {
         return aggrCache.dumps.size();
     }
@@ -205,6 +228,12 @@ public class GTAggregateScanner implements IGTScanner {
 
         SortedMap<byte[], MeasureAggregator[]> aggBufMap;
 
+        // the hash based alternative to aggBufMap, only for primitive SUM/COUNT/MIN/MAX
+        GTAggregationHashTable hashTable;
+        byte[] hashKeyBuf;
+        Object[] initialStates;
+        int[] blockEntries;
+
         public AggregationCache() {
             compareMask = createCompareMask();
             for (boolean l : compareMask) {
@@ -214,6 +243,18 @@ public class GTAggregateScanner implements IGTScanner {
             dumps = Lists.newArrayList();
             aggBufMap = createBuffMap();
             measureCodec = createMeasureCodec();
+
+            if (hashAggrEnabled) {
+                MeasureAggregator[] sample = newAggregators();
+                if (GTAggregationHashTable.isSupported(sample)) {
+                    hashTable = new GTAggregationHashTable(keyLength, compareMask, sample);
+                    hashKeyBuf = new byte[keyLength];
+                    initialStates = new Object[sample.length];
+                    new MeasureAggregators(sample).collectStates(initialStates);
+                } else {
+                    logger.info("Hash aggregation does not support {}, use tree map instead", Arrays.toString(metricsAggrFuncs));
+                }
+            }
         }
 
         private BufferedMeasureCodec createMeasureCodec() {
@@ -253,7 +294,22 @@ public class GTAggregateScanner implements IGTScanner {
         }
 
         private byte[] createKey(GTRecord record) {
-            byte[] result = new byte[keyLength];
+            return createKey(record, new byte[keyLength]);
+        }
+
+        private byte[] createKey(GTRecordBlock block, int row, byte[] result) {
+            int offset = 0;
+            for (int i = 0; i < dimensions.trueBitCount(); i++) {
+                int c = dimensions.trueBitAt(i);
+                final ByteArray byteArray = block.get(row, c);
+                System.arraycopy(byteArray.array(), byteArray.offset(), result, offset, byteArray.length());
+                offset += info.codeSystem.maxCodeLength(c);
+            }
+            assert offset == result.length;
+            return result;
+        }
+
+        private byte[] createKey(GTRecord record, byte[] result) {
             int offset = 0;
             for (int i = 0; i < dimensions.trueBitCount(); i++) {
                 int c = dimensions.trueBitAt(i);
@@ -267,6 +323,10 @@ public class GTAggregateScanner implements IGTScanner {
         }
 
         boolean aggregate(GTRecord r, int stopForLimit) {
+            if (hashTable != null) {
+                return aggregateByHash(r, stopForLimit);
+            }
+
             if (++aggregatedRowCount % 100000 == 0) {
                 if (memTracker != null) {
                     memTracker.markHigh();
@@ -295,15 +355,121 @@ public class GTAggregateScanner implements IGTScanner {
                 aggBufMap.put(key, aggrs);
             }
             for (int i = 0; i < aggrs.length; i++) {
+                if (aggrMask[i]) {
+                    int col = metrics.trueBitAt(i);
+                    info.codeSystem.aggregateColumnValue(col, r.cols[col].asBuffer(), aggrs[i]);
+                }
+            }
+            return true;
+        }
+
+        // the same as the row by row loop in iterator(), the limit does not help once there are spills
+        private int currentLimit() {
+            return dumps.isEmpty() ? storagePushDownLimit : Integer.MAX_VALUE;
+        }
+
+        /**
+         * aggregate the selected rows of a block
+         * @return the number of rows aggregated, less than the selected count if the limit is hit
+         */
+        int aggregate(GTRecordBlock block) {
+            int[] sel = block.getSelection();
+            int n = block.getSelectedCount();
+            if (hashTable != null) {
+                return aggregateByHash(block, sel, n);
+            }
+
+            for (int i = 0; i < n; i++) {
+                if (!aggregate(block.getRecord(sel[i]), currentLimit()))
+                    return i;
+            }
+            return n;
+        }
+
+        // find the entries of all rows first, then aggregate a measure column at a time
+        private int aggregateByHash(GTRecordBlock block, int[] sel, int n) {
+            if (blockEntries == null || blockEntries.length < n) {
+                blockEntries = new int[block.getCapacity()];
+            }
+
+            int stopForLimit = currentLimit();
+            int m = 0;
+            for (; m < n; m++) {
+                int entry = hashTable.findOrInsert(createKey(block, sel[m], hashKeyBuf), stopForLimit);
+                if (entry < 0)
+                    break;
+                blockEntries[m] = entry;
+            }
+
+            for (int i = 0; i < metricsAggrFuncs.length; i++) {
+                if (aggrMask[i]) {
+                    int col = metrics.trueBitAt(i);
+                    ByteArray[] column = block.getColumn(col);
+                    for (int j = 0; j < m; j++) {
+                        Object value = info.codeSystem.decodeColumnValue(col, column[sel[j]].asBuffer());
+                        hashTable.aggregate(blockEntries[j], i, value);
+                    }
+                }
+            }
+
+            int before = aggregatedRowCount;
+            aggregatedRowCount += m;
+            if (memTracker != null && before / 100000 != aggregatedRowCount / 100000) {
+                memTracker.markHigh();
+            }
+
+            // entries are invalid after spilling, so check once the block is done
+            final long memSize = hashTable.getMemBytes();
+            if (spillThreshold > 0 && memSize > spillThreshold) {
+                if (!spillEnabled) {
+                    throw new ResourceLimitExceededException("aggregation's memory consumption " + memSize + " exceeds threshold " + spillThreshold);
+                }
+                spillHashTable(memSize);
+            }
+            return m;
+        }
+
+        private boolean aggregateByHash(GTRecord r, int stopForLimit) {
+            if (++aggregatedRowCount % 100000 == 0 && memTracker != null) {
+                memTracker.markHigh();
+            }
+
+            int entry = hashTable.findOrInsert(createKey(r, hashKeyBuf), stopForLimit);
+            if (entry < 0) {
+                //for storage push down limit
+                return false;
+            }
+            for (int i = 0; i < metricsAggrFuncs.length; i++) {
                 if (aggrMask[i]) {
                     int col = metrics.trueBitAt(i);
                     Object metrics = info.codeSystem.decodeColumnValue(col, r.cols[col].asBuffer());
-                    aggrs[i].aggregate(metrics);
+                    hashTable.aggregate(entry, i, metrics);
                 }
             }
+
+            // memory is accounted exactly, so check on every row instead of sampling
+            final long memSize = hashTable.getMemBytes();
+            if (spillThreshold > 0 && memSize > spillThreshold) {
+                if (!spillEnabled) {
+                    throw new ResourceLimitExceededException("aggregation's memory consumption " + memSize + " exceeds threshold " + spillThreshold);
+                }
+                spillHashTable(memSize);
+            }
             return true;
         }
 
+        private void spillHashTable(long memSize) throws RuntimeException {
+            try {
+                Dump dump = new Dump(hashTable, memSize);
+                dump.flush();
+                dumps.add(dump);
+            } catch (Exception e) {
+                throw new RuntimeException("AggregationCache failed to spill", e);
+            } finally {
+                hashTable.clear();
+            }
+        }
+
         private void spillBuffMap(long estMemSize) throws RuntimeException {
             try {
                 Dump dump = new Dump(aggBufMap, estMemSize);
@@ -316,6 +482,9 @@ public class GTAggregateScanner implements IGTScanner {
 
         @Override
         public void close() throws RuntimeException {
+            if (hashTable != null) {
+                hashTable.close();
+            }
             try {
                 for (Dump dump : dumps) {
                     dump.terminate();
@@ -330,6 +499,9 @@ public class GTAggregateScanner implements IGTScanner {
         }
 
         public long estimatedMemSize() {
+            if (hashTable != null)
+                return hashTable.getMemBytes();
+
             if (aggBufMap.isEmpty())
                 return 0;
 
@@ -339,23 +511,26 @@ public class GTAggregateScanner implements IGTScanner {
         }
 
         public Iterator<GTRecord> iterator() {
-            if (dumps.isEmpty()) {
-                // the all-in-mem case
-
+            if (hashTable != null && dumps.isEmpty()) {
+                // the all-in-mem hash case, sort only if partitions will be merged under a limit
                 return new Iterator<GTRecord>() {
 
-                    final Iterator<Entry<byte[], MeasureAggregator[]>> it = aggBufMap.entrySet().iterator();
+                    final int[] entries = storagePushDownLimit != Integer.MAX_VALUE ? hashTable.sortedEntries() : hashTable.entries();
+                    final Object[] states = new Object[metricsAggrFuncs.length];
                     final ReturningRecord returningRecord = new ReturningRecord();
+                    int cursor = 0;
 
                     @Override
                     public boolean hasNext() {
-                        return it.hasNext();
+                        return cursor < entries.length;
                     }
 
                     @Override
                     public GTRecord next() {
-                        Entry<byte[], MeasureAggregator[]> entry = it.next();
-                        returningRecord.load(entry.getKey(), entry.getValue());
+                        int entry = entries[cursor++];
+                        hashTable.readKey(entry, hashKeyBuf);
+                        readHashStates(entry, states);
+                        returningRecord.load(hashKeyBuf, states);
                         return returningRecord.record;
                     }
 
@@ -364,15 +539,18 @@ public class GTAggregateScanner implements IGTScanner {
                         throw new UnsupportedOperationException();
                     }
                 };
-            } else {
-                // the spill case
-                if (!aggBufMap.isEmpty()) {
-                    this.spillBuffMap(getEstimateSizeOfAggrCache()); // TODO allow merge in-mem map with spilled dumps
+            } else if (hashTable != null) {
+                // the hash spill case
+                if (hashTable.size() > 0) {
+                    this.spillHashTable(hashTable.getMemBytes());
                 }
+                return dumpMergerIterator();
+            } else if (dumps.isEmpty()) {
+                // the all-in-mem case
 
                 return new Iterator<GTRecord>() {
-                    final DumpMerger merger = new DumpMerger(dumps);
-                    final Iterator<Pair<byte[], MeasureAggregator[]>> it = merger.iterator();
+
+                    final Iterator<Entry<byte[], MeasureAggregator[]>> it = aggBufMap.entrySet().iterator();
                     final ReturningRecord returningRecord = new ReturningRecord();
 
                     @Override
@@ -382,7 +560,7 @@ public class GTAggregateScanner implements IGTScanner {
 
                     @Override
                     public GTRecord next() {
-                        Pair<byte[], MeasureAggregator[]> entry = it.next();
+                        Entry<byte[], MeasureAggregator[]> entry = it.next();
                         returningRecord.load(entry.getKey(), entry.getValue());
                         return returningRecord.record;
                     }
@@ -392,14 +570,63 @@ public class GTAggregateScanner implements IGTScanner {
                         throw new UnsupportedOperationException();
                     }
                 };
+            } else {
+                // the spill case
+                if (!aggBufMap.isEmpty()) {
+                    this.spillBuffMap(getEstimateSizeOfAggrCache()); // TODO allow merge in-mem map with spilled dumps
+                }
+
+                return dumpMergerIterator();
+            }
+        }
+
+        /** hash table states, measures masked out by aggrMask keep the state of a fresh aggregator */
+        private void readHashStates(int entry, Object[] states) {
+            hashTable.readStates(entry, states);
+            for (int i = 0; i < states.length; i++) {
+                if (!aggrMask[i]) {
+                    states[i] = initialStates[i];
+                }
             }
         }
 
+        private Iterator<GTRecord> dumpMergerIterator() {
+            return new Iterator<GTRecord>() {
+                final DumpMerger merger = new DumpMerger(dumps);
+                final Iterator<Pair<byte[], MeasureAggregator[]>> it = merger.iterator();
+                final ReturningRecord returningRecord = new ReturningRecord();
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public GTRecord next() {
+                    Pair<byte[], MeasureAggregator[]> entry = it.next();
+                    returningRecord.load(entry.getKey(), entry.getValue());
+                    return returningRecord.record;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
         class ReturningRecord {
             final GTRecord record = new GTRecord(info);
             final Object[] tmpValues = new Object[metrics.trueBitCount()];
 
             void load(byte[] key, MeasureAggregator[] value) {
+                for (int i = 0; i < value.length; i++) {
+                    tmpValues[i] = value[i].getState();
+                }
+                load(key, tmpValues);
+            }
+
+            void load(byte[] key, Object[] states) {
                 int offset = 0;
                 for (int i = 0; i < dimensions.trueBitCount(); i++) {
                     int c = dimensions.trueBitAt(i);
@@ -408,14 +635,10 @@ public class GTAggregateScanner implements IGTScanner {
                     offset += columnLength;
                 }
 
-                for (int i = 0; i < value.length; i++) {
-                    tmpValues[i] = value[i].getState();
-                }
-
-                byte[] bytes = measureCodec.encode(tmpValues).array();
+                byte[] bytes = measureCodec.encode(states).array();
                 int[] sizes = measureCodec.getMeasureSizes();
                 offset = 0;
-                for (int i = 0; i < value.length; i++) {
+                for (int i = 0; i < states.length; i++) {
                     int col = metrics.trueBitAt(i);
                     record.cols[col].set(bytes, offset, sizes[i]);
                     offset += sizes[i];
@@ -426,6 +649,7 @@ public class GTAggregateScanner implements IGTScanner {
         class Dump implements Iterable<Pair<byte[], byte[]>> {
             final File dumpedFile;
             SortedMap<byte[], MeasureAggregator[]> buffMap;
+            GTAggregationHashTable hashTable;
             final long estMemSize;
 
             DataInputStream dis;
@@ -436,6 +660,12 @@ public class GTAggregateScanner implements IGTScanner {
                 this.estMemSize = estMemSize;
             }
 
+            public Dump(GTAggregationHashTable hashTable, long memSize) throws IOException {
+                this.dumpedFile = File.createTempFile("KYLIN_SPILL_", ".tmp");
+                this.hashTable = hashTable;
+                this.estMemSize = memSize;
+            }
+
             @Override
             public Iterator<Pair<byte[], byte[]>> iterator() {
                 try {
@@ -481,7 +711,30 @@ public class GTAggregateScanner implements IGTScanner {
 
             public void flush() throws IOException {
                 logger.info("AggregationCache(size={} est_mem_size={} threshold={}) will spill to {}",
-                        buffMap.size(), estMemSize, spillThreshold, dumpedFile.getAbsolutePath());
+                        buffMap != null ? buffMap.size() : hashTable.size(), estMemSize, spillThreshold, dumpedFile.getAbsolutePath());
+
+                if (hashTable != null) {
+                    DataOutputStream dos = null;
+                    try {
+                        dos = new DataOutputStream(new FileOutputStream(dumpedFile));
+                        int[] entries = hashTable.sortedEntries();
+                        byte[] key = new byte[keyLength];
+                        Object[] aggrResult = new Object[metrics.trueBitCount()];
+                        dos.writeInt(entries.length);
+                        for (int entry : entries) {
+                            hashTable.readKey(entry, key);
+                            readHashStates(entry, aggrResult);
+                            ByteBuffer metricsBuf = measureCodec.encode(aggrResult);
+                            dos.writeInt(key.length);
+                            dos.write(key);
+                            dos.writeInt(metricsBuf.position());
+                            dos.write(metricsBuf.array(), 0, metricsBuf.position());
+                        }
+                    } finally {
+                        hashTable = null;
+                        IOUtils.closeQuietly(dos);
+                    }
+                }
 
                 if (buffMap != null) {
                     DataOutputStream dos = null;
@@ -508,6 +761,7 @@ public class GTAggregateScanner implements IGTScanner {
 
             public void terminate() throws IOException {
                 buffMap = null;
+                hashTable = null;
                 if (dis != null)
                     dis.close();
                 if (dumpedFile != null && dumpedFile.exists())
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.measure.basic.DoubleMaxAggregator;
+import org.apache.kylin.measure.basic.DoubleMinAggregator;
+import org.apache.kylin.measure.basic.DoubleSumAggregator;
+import org.apache.kylin.measure.basic.LongMaxAggregator;
+import org.apache.kylin.measure.basic.LongMinAggregator;
+import org.apache.kylin.measure.basic.LongSumAggregator;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An open addressing hash table for aggregation over fixed length keys, the alternative to the
+ * tree map in GTAggregateScanner.AggregationCache.
+ *
+ * Entries (key bytes followed by one 8 bytes state per measure) are stored in direct memory slabs that are
+ * pooled across tables, so a group costs no java object. Only SUM/COUNT/MIN/MAX over long and double are
+ * supported, see {@link #isSupported(MeasureAggregator[])}. Key equality and ordering only consider the
+ * bytes selected by the compare mask, same as the tree map comparator.
+ */
+@SuppressWarnings("rawtypes")
+public class GTAggregationHashTable implements Closeable {
+
+    static final int SLAB_BYTES = 1024 * 1024;
+    private static final int MAX_POOLED_SLABS = 64;
+    private static final ConcurrentLinkedQueue<ByteBuffer> slabPool = new ConcurrentLinkedQueue<ByteBuffer>();
+    private static final AtomicInteger pooledSlabs = new AtomicInteger();
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    enum Kind {
+        LONG_SUM, LONG_MIN, LONG_MAX, DOUBLE_SUM, DOUBLE_MIN, DOUBLE_MAX
+    }
+
+    private final int keyLength;
+    private final boolean[] compareMask;
+    private final Kind[] kinds;
+    private final int entryBytes;
+    private final int entriesPerSlab;
+    private final List<ByteBuffer> slabs = Lists.newArrayList();
+
+    private int[] slots; // entry index + 1, 0 means empty
+    private int[] slotHashes;
+    private int size;
+
+    public GTAggregationHashTable(int keyLength, boolean[] compareMask, MeasureAggregator[] sampleAggrs) {
+        if (!isSupported(sampleAggrs))
+            throw new IllegalArgumentException("Unsupported aggregators " + Arrays.toString(sampleAggrs));
+        if (keyLength + 8 * sampleAggrs.length > SLAB_BYTES)
+            throw new IllegalArgumentException("Entry too large: key length " + keyLength);
+
+        this.keyLength = keyLength;
+        this.compareMask = compareMask;
+        this.kinds = new Kind[sampleAggrs.length];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = kindOf(sampleAggrs[i]);
+        }
+        this.entryBytes = keyLength + 8 * kinds.length;
+        this.entriesPerSlab = SLAB_BYTES / entryBytes;
+        this.slots = new int[INITIAL_CAPACITY];
+        this.slotHashes = new int[INITIAL_CAPACITY];
+    }
+
+    public static boolean isSupported(MeasureAggregator[] aggrs) {
+        for (MeasureAggregator aggr : aggrs) {
+            if (kindOf(aggr) == null)
+                return false;
+        }
+        return true;
+    }
+
+    private static Kind kindOf(MeasureAggregator aggr) {
+        // exact class match, code systems may hand out subclasses with extra behavior
+        Class<?> clz = aggr == null ? null : aggr.getClass();
+        if (clz == LongSumAggregator.class)
+            return Kind.LONG_SUM;
+        if (clz == LongMinAggregator.class)
+            return Kind.LONG_MIN;
+        if (clz == LongMaxAggregator.class)
+            return Kind.LONG_MAX;
+        if (clz == DoubleSumAggregator.class)
+            return Kind.DOUBLE_SUM;
+        if (clz == DoubleMinAggregator.class)
+            return Kind.DOUBLE_MIN;
+        if (clz == DoubleMaxAggregator.class)
+            return Kind.DOUBLE_MAX;
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** bytes held by slabs and the slot arrays */
+    public long getMemBytes() {
+        return (long) slabs.size() * SLAB_BYTES + (long) slots.length * 8;
+    }
+
+    /**
+     * @return the entry index of the key, -1 if the key is new but the table already holds <code>stopForLimit</code> entries
+     */
+    public int findOrInsert(byte[] key, int stopForLimit) {
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (slotHashes[slot] == hash && keyEquals(entry, key)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size >= stopForLimit)
+            return -1;
+
+        int entry = newEntry(key);
+        slots[slot] = entry + 1;
+        slotHashes[slot] = hash;
+        if (size * 4L > slots.length * 3L) {
+            rehash(slots.length * 2);
+        }
+        return entry;
+    }
+
+    public void aggregate(int entry, int measure, Object value) {
+        ByteBuffer slab = slabs.get(entry / entriesPerSlab);
+        int pos = stateOffset(entry, measure);
+        switch (kinds[measure]) {
+        case LONG_SUM:
+            slab.putLong(pos, slab.getLong(pos) + ((Number) value).longValue());
+            break;
+        case LONG_MIN:
+            slab.putLong(pos, Math.min(slab.getLong(pos), ((Number) value).longValue()));
+            break;
+        case LONG_MAX:
+            slab.putLong(pos, Math.max(slab.getLong(pos), ((Number) value).longValue()));
+            break;
+        case DOUBLE_SUM:
+            slab.putDouble(pos, slab.getDouble(pos) + ((Number) value).doubleValue());
+            break;
+        case DOUBLE_MIN:
+            slab.putDouble(pos, Math.min(slab.getDouble(pos), ((Number) value).doubleValue()));
+            break;
+        case DOUBLE_MAX:
+            slab.putDouble(pos, Math.max(slab.getDouble(pos), ((Number) value).doubleValue()));
+            break;
+        default:
+            throw new IllegalStateException();
+        }
+    }
+
+    public void readKey(int entry, byte[] dst) {
+        ByteBuffer slab = slabs.get(entry / entriesPerSlab);
+        int pos = (entry % entriesPerSlab) * entryBytes;
+        for (int i = 0; i < keyLength; i++) {
+            dst[i] = slab.get(pos + i);
+        }
+    }
+
+    /** read the state of each measure as the boxed value the corresponding aggregator would return */
+    public void readStates(int entry, Object[] dst) {
+        ByteBuffer slab = slabs.get(entry / entriesPerSlab);
+        for (int i = 0; i < kinds.length; i++) {
+            int pos = stateOffset(entry, i);
+            switch (kinds[i]) {
+            case LONG_SUM:
+            case LONG_MIN:
+            case LONG_MAX:
+                dst[i] = slab.getLong(pos);
+                break;
+            default:
+                dst[i] = slab.getDouble(pos);
+                break;
+            }
+        }
+    }
+
+    /** entry indexes in insertion order */
+    public int[] entries() {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = i;
+        }
+        return result;
+    }
+
+    /** entry indexes in key order, the same order the tree map would iterate */
+    public int[] sortedEntries() {
+        int[] result = entries();
+        sort(result, 0, result.length - 1);
+        return result;
+    }
+
+    /** drop all entries, the slabs go back to the pool so that getMemBytes() starts over */
+    public void clear() {
+        for (ByteBuffer slab : slabs) {
+            releaseSlab(slab);
+        }
+        slabs.clear();
+        slots = new int[INITIAL_CAPACITY];
+        slotHashes = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    private int newEntry(byte[] key) {
+        int entry = size++;
+        int slabIdx = entry / entriesPerSlab;
+        if (slabIdx == slabs.size()) {
+            slabs.add(acquireSlab());
+        }
+        ByteBuffer slab = slabs.get(slabIdx);
+        int pos = (entry % entriesPerSlab) * entryBytes;
+        for (int i = 0; i < keyLength; i++) {
+            slab.put(pos + i, key[i]);
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            int statePos = stateOffset(entry, i);
+            switch (kinds[i]) {
+            case LONG_SUM:
+                slab.putLong(statePos, 0L);
+                break;
+            case LONG_MIN:
+                slab.putLong(statePos, Long.MAX_VALUE);
+                break;
+            case LONG_MAX:
+                slab.putLong(statePos, Long.MIN_VALUE);
+                break;
+            case DOUBLE_SUM:
+                slab.putDouble(statePos, 0d);
+                break;
+            case DOUBLE_MIN:
+                slab.putDouble(statePos, Double.POSITIVE_INFINITY);
+                break;
+            case DOUBLE_MAX:
+                slab.putDouble(statePos, Double.NEGATIVE_INFINITY);
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+        }
+        return entry;
+    }
+
+    private int stateOffset(int entry, int measure) {
+        return (entry % entriesPerSlab) * entryBytes + keyLength + 8 * measure;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] newSlots = new int[newCapacity];
+        int[] newHashes = new int[newCapacity];
+        int mask = newCapacity - 1;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == 0)
+                continue;
+            int slot = slotHashes[i] & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = slots[i];
+            newHashes[slot] = slotHashes[i];
+        }
+        slots = newSlots;
+        slotHashes = newHashes;
+    }
+
+    private int hash(byte[] key) {
+        int h = 1;
+        for (int i = 0; i < keyLength; i++) {
+            if (compareMask[i]) {
+                h = 31 * h + key[i];
+            }
+        }
+        // spread the bits, the table is indexed by the lower bits only
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    private boolean keyEquals(int entry, byte[] key) {
+        ByteBuffer slab = slabs.get(entry / entriesPerSlab);
+        int pos = (entry % entriesPerSlab) * entryBytes;
+        for (int i = 0; i < keyLength; i++) {
+            if (compareMask[i] && slab.get(pos + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    private int compareEntries(int a, int b) {
+        ByteBuffer slabA = slabs.get(a / entriesPerSlab);
+        ByteBuffer slabB = slabs.get(b / entriesPerSlab);
+        int posA = (a % entriesPerSlab) * entryBytes;
+        int posB = (b % entriesPerSlab) * entryBytes;
+        for (int i = 0; i < keyLength; i++) {
+            if (compareMask[i]) {
+                int result = (slabA.get(posA + i) & 0xff) - (slabB.get(posB + i) & 0xff);
+                if (result != 0)
+                    return result;
+            }
+        }
+        return 0;
+    }
+
+    // quick sort on primitive entry indexes, recurse into the smaller half to bound the stack depth
+    private void sort(int[] a, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            int pivot = a[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (compareEntries(a[i], pivot) < 0)
+                    i++;
+                while (compareEntries(a[j], pivot) > 0)
+                    j--;
+                if (i <= j) {
+                    int t = a[i];
+                    a[i] = a[j];
+                    a[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (j - lo < hi - i) {
+                sort(a, lo, j);
+                lo = i;
+            } else {
+                sort(a, i, hi);
+                hi = j;
+            }
+        }
+        // insertion sort for small ranges
+        for (int i = lo + 1; i <= hi; i++) {
+            int v = a[i];
+            int j = i - 1;
+            while (j >= lo && compareEntries(a[j], v) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private static ByteBuffer acquireSlab() {
+        ByteBuffer slab = slabPool.poll();
+        if (slab != null) {
+            pooledSlabs.decrementAndGet();
+            return slab;
+        }
+        return ByteBuffer.allocateDirect(SLAB_BYTES);
+    }
+
+    private static void releaseSlab(ByteBuffer slab) {
+        if (pooledSlabs.incrementAndGet() <= MAX_POOLED_SLABS) {
+            slabPool.offer(slab);
+        } else {
+            pooledSlabs.decrementAndGet();
+        }
+    }
+}
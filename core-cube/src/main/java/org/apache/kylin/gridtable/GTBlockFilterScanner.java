@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * GTFilterScanner over a block scanner. Blocks pass through with their selection vector narrowed down by the
+ * filter, no data is copied. The row iterator of GTFilterScanner still works on top of the input's row iterator.
+ */
+public class GTBlockFilterScanner extends GTFilterScanner implements IGTBlockScanner {
+
+    public GTBlockFilterScanner(IGTBlockScanner inputScanner, GTScanRequest req) throws IOException {
+        super(inputScanner, req);
+    }
+
+    @Override
+    public Iterator<GTRecordBlock> blockIterator() {
+        return new Iterator<GTRecordBlock>() {
+
+            private Iterator<GTRecordBlock> inputIterator = ((IGTBlockScanner) inputScanner).blockIterator();
+            private FilterResultCache resultCache = new FilterResultCache(getInfo(), filter);
+            private GTRecordBlock next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && inputIterator.hasNext()) {
+                    GTRecordBlock block = inputIterator.next();
+                    filter(block);
+                    if (block.getSelectedCount() > 0) {
+                        next = block;
+                    }
+                }
+                return next != null;
+            }
+
+            private void filter(GTRecordBlock block) {
+                if (filter == null)
+                    return;
+
+                int[] sel = block.getSelection();
+                int n = block.getSelectedCount();
+                if (compiledFilter != null) {
+                    n = compiledFilter.select(block, sel, n);
+                } else {
+                    int m = 0;
+                    for (int i = 0; i < n; i++) {
+                        int row = sel[i];
+                        if (evaluate(block.getRecord(row), resultCache))
+                            sel[m++] = row;
+                    }
+                    n = m;
+                }
+                block.setSelectedCount(n);
+            }
+
+            @Override
+            public GTRecordBlock next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                GTRecordBlock result = next;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
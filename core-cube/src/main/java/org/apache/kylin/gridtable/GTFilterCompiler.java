@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.DynamicTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+
+/**
+ * Compiles a pushed down filter into a tree of specialized predicates that compare the encoded column bytes of
+ * GTRecord directly, instead of walking the TupleFilter tree through IEvaluatableTuple and IFilterCodeSystem for every row.
+ *
+ * Covers CompareTupleFilter on a column against constants, LogicalTupleFilter and ConstantTupleFilter, with
+ * the same semantics as TupleFilter.evaluate(). Anything else, e.g. BuiltInFunctionTupleFilter, is not compiled
+ * and the caller falls back to the interpreter. Compiled filters keep no per-row state and are cached by the
+ * serialized filter, so concurrent scans of the same query share them.
+ *
+ * On a GTRecordBlock, column predicates and AND run a column at a time over the selection vector,
+ * OR and NOT fall back to evaluating row by row.
+ */
+public class GTFilterCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(GTFilterCompiler.class);
+
+    public static boolean ENABLED = true; // enable compilation by default
+
+    public static abstract class CompiledFilter {
+        public abstract boolean evaluate(GTRecord record);
+
+        /**
+         * evaluate the selected rows of a block, the passing rows are compacted to the front of <code>sel</code>
+         * @return the number of passing rows
+         */
+        public int select(GTRecordBlock block, int[] sel, int n) {
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                int row = sel[i];
+                if (evaluate(block.getRecord(row)))
+                    sel[m++] = row;
+            }
+            return m;
+        }
+    }
+
+    // a predicate on a single column, evaluated column at a time on a block
+    private static abstract class ColumnPredicate extends CompiledFilter {
+        final int col;
+
+        ColumnPredicate(int col) {
+            this.col = col;
+        }
+
+        abstract boolean test(ByteArray c);
+
+        @Override
+        public boolean evaluate(GTRecord record) {
+            return test(record.cols[col]);
+        }
+
+        @Override
+        public int select(GTRecordBlock block, int[] sel, int n) {
+            ByteArray[] column = block.getColumn(col);
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                int row = sel[i];
+                if (test(column[row]))
+                    sel[m++] = row;
+            }
+            return m;
+        }
+    }
+
+    // marks a filter known to be not compilable, so it's not tried again
+    private static final CompiledFilter NOT_COMPILABLE = new CompiledFilter() {
+        @Override
+        public boolean evaluate(GTRecord record) {
+            throw new IllegalStateException();
+        }
+    };
+
+    private static final Cache<ByteArray, CompiledFilter> cache = CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(1, TimeUnit.HOURS).build();
+
+    /**
+     * @return the compiled filter, or null if the filter must be evaluated by the interpreter
+     */
+    public static CompiledFilter compile(final TupleFilter filter, GTInfo info) {
+        if (!ENABLED || filter == null)
+            return null;
+
+        // compiled predicates inline the byte comparison of DefaultGTComparator
+        if (info.codeSystem.getComparator().getClass() != DefaultGTComparator.class)
+            return null;
+
+        ByteArray digest = new ByteArray(GTUtil.serializeGTFilter(filter, info));
+        CompiledFilter result;
+        try {
+            result = cache.get(digest, new Callable<CompiledFilter>() {
+                @Override
+                public CompiledFilter call() throws Exception {
+                    CompiledFilter compiled = doCompile(filter);
+                    if (compiled == null) {
+                        logger.info("Filter is not compilable, use interpreter: {}", filter);
+                        return NOT_COMPILABLE;
+                    }
+                    return compiled;
+                }
+            });
+        } catch (ExecutionException e) {
+            logger.warn("Failed to compile filter " + filter, e);
+            return null;
+        }
+        return result == NOT_COMPILABLE ? null : result;
+    }
+
+    static CompiledFilter doCompile(TupleFilter filter) {
+        if (filter instanceof ConstantTupleFilter) {
+            return filter.getValues().size() > 0 ? TRUE : FALSE;
+        } else if (filter instanceof LogicalTupleFilter) {
+            return compileLogical((LogicalTupleFilter) filter);
+        } else if (filter.getClass() == CompareTupleFilter.class) {
+            return compileCompare((CompareTupleFilter) filter);
+        } else {
+            return null;
+        }
+    }
+
+    private static CompiledFilter compileLogical(LogicalTupleFilter filter) {
+        List<? extends TupleFilter> children = filter.getChildren();
+        final CompiledFilter[] compiled = new CompiledFilter[children.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = doCompile(children.get(i));
+            if (compiled[i] == null)
+                return null;
+        }
+
+        switch (filter.getOperator()) {
+        case AND:
+            if (compiled.length == 2) {
+                final CompiledFilter a = compiled[0], b = compiled[1];
+                return new CompiledFilter() {
+                    @Override
+                    public boolean evaluate(GTRecord record) {
+                        return a.evaluate(record) && b.evaluate(record);
+                    }
+
+                    @Override
+                    public int select(GTRecordBlock block, int[] sel, int n) {
+                        n = a.select(block, sel, n);
+                        return n == 0 ? 0 : b.select(block, sel, n);
+                    }
+                };
+            }
+            return new CompiledFilter() {
+                @Override
+                public boolean evaluate(GTRecord record) {
+                    for (CompiledFilter f : compiled) {
+                        if (!f.evaluate(record))
+                            return false;
+                    }
+                    return true;
+                }
+
+                @Override
+                public int select(GTRecordBlock block, int[] sel, int n) {
+                    for (CompiledFilter f : compiled) {
+                        if (n == 0)
+                            break;
+                        n = f.select(block, sel, n);
+                    }
+                    return n;
+                }
+            };
+        case OR:
+            if (compiled.length == 2) {
+                final CompiledFilter a = compiled[0], b = compiled[1];
+                return new CompiledFilter() {
+                    @Override
+                    public boolean evaluate(GTRecord record) {
+                        return a.evaluate(record) || b.evaluate(record);
+                    }
+                };
+            }
+            return new CompiledFilter() {
+                @Override
+                public boolean evaluate(GTRecord record) {
+                    for (CompiledFilter f : compiled) {
+                        if (f.evaluate(record))
+                            return true;
+                    }
+                    return false;
+                }
+            };
+        case NOT:
+            final CompiledFilter child = compiled[0];
+            return new CompiledFilter() {
+                @Override
+                public boolean evaluate(GTRecord record) {
+                    return !child.evaluate(record);
+                }
+            };
+        default:
+            return FALSE;
+        }
+    }
+
+    private static CompiledFilter compileCompare(CompareTupleFilter filter) {
+        // only COLUMN {op} CONST, the form GTUtil.convertFilter produces
+        if (filter.getFunction() != null || filter.getColumn() == null)
+            return null;
+        for (TupleFilter child : filter.getChildren()) {
+            if (!(child instanceof ColumnTupleFilter || child instanceof ConstantTupleFilter || child instanceof DynamicTupleFilter))
+                return null;
+        }
+        for (Object value : filter.getValues()) {
+            if (!(value instanceof ByteArray))
+                return null;
+        }
+
+        final int col = filter.getColumn().getColumnDesc().getZeroBasedIndex();
+
+        if (filter.getOperator() == TupleFilter.FilterOperatorEnum.ISNULL) {
+            return new ColumnPredicate(col) {
+                @Override
+                boolean test(ByteArray c) {
+                    return isNull(c);
+                }
+            };
+        }
+
+        final ByteArray first = (ByteArray) filter.getFirstValue();
+        if (first == null || isNull(first)) {
+            // a null condition value never matches, except ISNULL above
+            return FALSE;
+        }
+        final byte[] v = first.array();
+        final int vOffset = first.offset();
+        final int vLength = first.length();
+
+        switch (filter.getOperator()) {
+        case EQ:
+            // a null row value can't be equal to a non-null constant, so skip the null check
+            return new ColumnPredicate(col) {
+                @Override
+                boolean test(ByteArray c) {
+                    return c.length() == vLength && Bytes.equals(c.array(), c.offset(), c.length(), v, vOffset, vLength);
+                }
+            };
+        case NEQ:
+            return new ColumnPredicate(col) {
+                @Override
+                boolean test(ByteArray c) {
+                    return !isNull(c) && !Bytes.equals(c.array(), c.offset(), c.length(), v, vOffset, vLength);
+                }
+            };
+        case LT:
+            return new ColumnPredicate(col) {
+                @Override
+                boolean test(ByteArray c) {
+                    return !isNull(c) && Bytes.compareTo(c.array(), c.offset(), c.length(), v, vOffset, vLength) < 0;
+                }
+            };
+        case LTE:
+            return new ColumnPredicate(col) {
+                @Override
+                boolean test(ByteArray c) {
+                    return !isNull(c) && Bytes.compareTo(c.array(), c.offset(), c.length(), v, vOffset, vLength) <= 0;
+                }
+            };
+        case GT:
+            return new ColumnPredicate(col) {
+                @Override
+                boolean test(ByteArray c) {
+                    return !isNull(c) && Bytes.compareTo(c.array(), c.offset(), c.length(), v, vOffset, vLength) > 0;
+                }
+            };
+        case GTE:
+            return new ColumnPredicate(col) {
+                @Override
+                boolean test(ByteArray c) {
+                    return !isNull(c) && Bytes.compareTo(c.array(), c.offset(), c.length(), v, vOffset, vLength) >= 0;
+                }
+            };
+        case IN:
+        case NOTIN:
+            final Set<ByteArray> values = Sets.newHashSet();
+            for (Object value : filter.getValues()) {
+                values.add((ByteArray) value);
+            }
+            final boolean in = filter.getOperator() == TupleFilter.FilterOperatorEnum.IN;
+            if (values.size() == 1) {
+                return new ColumnPredicate(col) {
+                    @Override
+                    boolean test(ByteArray c) {
+                        return !isNull(c) && Bytes.equals(c.array(), c.offset(), c.length(), v, vOffset, vLength) == in;
+                    }
+                };
+            }
+            return new ColumnPredicate(col) {
+                @Override
+                boolean test(ByteArray c) {
+                    return !isNull(c) && values.contains(c) == in;
+                }
+            };
+        default:
+            // e.g. ISNOTNULL, leave the corner cases to the interpreter
+            return null;
+        }
+    }
+
+    private static boolean isNull(ByteArray code) {
+        return DimensionEncoding.isNull(code.array(), code.offset(), code.length());
+    }
+
+    private static final CompiledFilter TRUE = new CompiledFilter() {
+        @Override
+        public boolean evaluate(GTRecord record) {
+            return true;
+        }
+
+        @Override
+        public int select(GTRecordBlock block, int[] sel, int n) {
+            return n;
+        }
+    };
+
+    private static final CompiledFilter FALSE = new CompiledFilter() {
+        @Override
+        public boolean evaluate(GTRecord record) {
+            return false;
+        }
+
+        @Override
+        public int select(GTRecordBlock block, int[] sel, int n) {
+            return 0;
+        }
+    };
+}
@@ -35,12 +35,14 @@ import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
 
 public class GTFilterScanner implements IGTScanner {
 
-    final private IGTScanner inputScanner;
-    final private TupleFilter filter;
+    final protected IGTScanner inputScanner;
+    final protected TupleFilter filter;
+    final protected GTFilterCompiler.CompiledFilter compiledFilter;
     final private IFilterCodeSystem<ByteArray> filterCodeSystem;
     final private IEvaluatableTuple oneTuple; // avoid instance creation
 
     private GTRecord next = null;
+    private GTRecord evaluating = null;
 
     public GTFilterScanner(IGTScanner inputScanner, GTScanRequest req) throws IOException {
         this.inputScanner = inputScanner;
@@ -49,12 +51,14 @@ public class GTFilterScanner implements IGTScanner {
         this.oneTuple = new IEvaluatableTuple() {
             @Override
             public Object getValue(TblColRef col) {
-                return next.get(col.getColumnDesc().getZeroBasedIndex());
+                return evaluating.get(col.getColumnDesc().getZeroBasedIndex());
             }
         };
 
         if (TupleFilter.isEvaluableRecursively(filter) == false)
             throw new IllegalArgumentException();
+
+        this.compiledFilter = GTFilterCompiler.compile(filter, getInfo());
     }
 
     @Override
@@ -91,17 +95,7 @@ public class GTFilterScanner implements IGTScanner {
             }
 
             private boolean evaluate() {
-                if (filter == null)
-                    return true;
-
-                // 'next' and 'oneTuple' are referring to the same record
-                boolean[] cachedResult = resultCache.checkCache(next);
-                if (cachedResult != null)
-                    return cachedResult[0];
-
-                boolean result = filter.evaluate(oneTuple, filterCodeSystem);
-                resultCache.setLastResult(result);
-                return result;
+                return GTFilterScanner.this.evaluate(next, resultCache);
             }
 
             @Override
@@ -126,6 +120,26 @@ public class GTFilterScanner implements IGTScanner {
         };
     }
 
+    protected boolean evaluate(GTRecord record, FilterResultCache resultCache) {
+        if (filter == null)
+            return true;
+
+        boolean[] cachedResult = resultCache.checkCache(record);
+        if (cachedResult != null)
+            return cachedResult[0];
+
+        boolean result;
+        if (compiledFilter != null) {
+            result = compiledFilter.evaluate(record);
+        } else {
+            // 'evaluating' and 'oneTuple' are referring to the same record
+            evaluating = record;
+            result = filter.evaluate(oneTuple, filterCodeSystem);
+        }
+        resultCache.setLastResult(result);
+        return result;
+    }
+
     // cache the last one input and result, can reuse because rowkey are ordered, and same input could come in small group
     public static class FilterResultCache {
         static final int CHECKPOINT = 10000;
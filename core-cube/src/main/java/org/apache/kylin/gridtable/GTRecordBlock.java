@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ImmutableBitSet;
+
+/**
+ * A column oriented block of up to <code>capacity</code> records, the unit of IGTBlockScanner.
+ *
+ * Cells are kept per column, so filters and aggregations can run a tight loop over one column at a time.
+ * A selection vector lists the rows that are still alive, filters narrow it down in place instead of
+ * moving data. Cells either point to the scanner's own buffer (see appendView) or to copies in the
+ * block's buffer (see append), both are valid only until the block is reset.
+ */
+public class GTRecordBlock {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public static boolean ENABLED = true; // enable block scan by default
+
+    public static boolean isBlockScanner(IGTScanner scanner) {
+        return ENABLED && scanner instanceof IGTBlockScanner;
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    final GTInfo info;
+    final ImmutableBitSet columns;
+    final int capacity;
+    final ByteArray[][] cells; // [column][row], null for columns not in the block
+    final int[] selection;
+    final GTRecord view;
+
+    int size;
+    int selectedCount;
+
+    private byte[] buffer;
+    private int bufferPos;
+
+    public GTRecordBlock(GTInfo info, ImmutableBitSet columns) {
+        this(info, columns, DEFAULT_CAPACITY);
+    }
+
+    public GTRecordBlock(GTInfo info, ImmutableBitSet columns, int capacity) {
+        this.info = info;
+        this.columns = columns;
+        this.capacity = capacity;
+        this.cells = new ByteArray[info.getColumnCount()][];
+        for (int i = 0; i < columns.trueBitCount(); i++) {
+            int c = columns.trueBitAt(i);
+            cells[c] = new ByteArray[capacity];
+            for (int r = 0; r < capacity; r++) {
+                cells[c][r] = new ByteArray();
+            }
+        }
+        this.selection = new int[capacity];
+        this.view = new GTRecord(info);
+    }
+
+    public GTInfo getInfo() {
+        return info;
+    }
+
+    public ImmutableBitSet getColumns() {
+        return columns;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** number of rows in the block, including the ones not selected */
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    /** clear for the next batch of rows, cells handed out before become invalid */
+    public void reset() {
+        size = 0;
+        selectedCount = 0;
+        bufferPos = 0;
+    }
+
+    /** the cells of a column, indexed by row */
+    public ByteArray[] getColumn(int c) {
+        return cells[c];
+    }
+
+    public ByteArray get(int row, int c) {
+        return cells[c][row];
+    }
+
+    /** row numbers of the selected rows, valid up to getSelectedCount() */
+    public int[] getSelection() {
+        return selection;
+    }
+
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    public void setSelectedCount(int selectedCount) {
+        assert selectedCount <= size;
+        this.selectedCount = selectedCount;
+    }
+
+    /** append a copy of the block columns of given record */
+    public void append(GTRecord record) {
+        assert size < capacity;
+
+        for (int i = 0; i < columns.trueBitCount(); i++) {
+            int c = columns.trueBitAt(i);
+            ByteArray src = record.cols[c];
+            int len = src.length();
+            ensureBuffer(len);
+            System.arraycopy(src.array(), src.offset(), buffer, bufferPos, len);
+            cells[c][size].set(buffer, bufferPos, len);
+            bufferPos += len;
+        }
+        selection[selectedCount++] = size++;
+    }
+
+    /** append a row by pointing cells to data in given buffer, like GTRecord.loadColumns(), the data must outlive the block */
+    public void appendView(ImmutableBitSet selectedCols, ByteBuffer buf) {
+        assert size < capacity;
+
+        int pos = buf.position();
+        for (int i = 0; i < selectedCols.trueBitCount(); i++) {
+            int c = selectedCols.trueBitAt(i);
+            int len = info.codeSystem.codeLength(c, buf);
+            cells[c][size].set(buf.array(), buf.arrayOffset() + pos, len);
+            pos += len;
+            buf.position(pos);
+        }
+        selection[selectedCount++] = size++;
+    }
+
+    /**
+     * load a row into the shared view record and return it, the view is overwritten by the next call,
+     * only block columns are loaded
+     */
+    public GTRecord getRecord(int row) {
+        for (int i = 0; i < columns.trueBitCount(); i++) {
+            int c = columns.trueBitAt(i);
+            view.cols[c].set(cells[c][row]);
+        }
+        return view;
+    }
+
+    /** iterate the selected rows as records, the row API over a block */
+    public Iterator<GTRecord> selectedRecords() {
+        return new Iterator<GTRecord>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < selectedCount;
+            }
+
+            @Override
+            public GTRecord next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return getRecord(selection[i++]);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void ensureBuffer(int len) {
+        if (buffer != null && bufferPos + len <= buffer.length)
+            return;
+
+        // cells appended before keep pointing to the old buffer, which stays alive until reset
+        int newSize = Math.max(buffer == null ? INITIAL_BUFFER_SIZE : buffer.length * 2, len);
+        buffer = new byte[newSize];
+        bufferPos = 0;
+    }
+
+    /** iterate the blocks of a block scanner as records, for consumers that only know the row API */
+    public static Iterator<GTRecord> toRecords(final Iterator<GTRecordBlock> blocks) {
+        return new Iterator<GTRecord>() {
+            Iterator<GTRecord> current = null;
+
+            @Override
+            public boolean hasNext() {
+                while (current == null || !current.hasNext()) {
+                    if (!blocks.hasNext())
+                        return false;
+                    current = blocks.next().selectedRecords();
+                }
+                return true;
+            }
+
+            @Override
+            public GTRecord next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
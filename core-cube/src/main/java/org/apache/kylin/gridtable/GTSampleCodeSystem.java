@@ -106,6 +106,11 @@ public class GTSampleCodeSystem implements IGTCodeSystem {
         return serializers[col].deserialize(buf);
     }
 
+    @Override
+    public void aggregateColumnValue(int col, ByteBuffer buf, MeasureAggregator<?> aggr) {
+        aggr.aggregate(buf, serializers[col]);
+    }
+
     @SuppressWarnings("unused") //used by reflection
     public static final BytesSerializer<IGTCodeSystem> serializer = new BytesSerializer<IGTCodeSystem>() {
         @Override
@@ -38,6 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 
 public class GTScanRequest {
 
@@ -68,13 +69,14 @@ public class GTScanRequest {
     private double aggCacheMemThreshold;
     private int storageScanRowNumThreshold;
     private int storagePushDownLimit;
+    private boolean hashAggrEnabled;
 
     // runtime computed fields
     private transient boolean doingStorageAggregation = false;
 
     GTScanRequest(GTInfo info, List<GTScanRange> ranges, ImmutableBitSet dimensions, ImmutableBitSet aggrGroupBy, //
             ImmutableBitSet aggrMetrics, String[] aggrMetricsFuncs, TupleFilter filterPushDown, boolean allowStorageAggregation, //
-            double aggCacheMemThreshold, int storageScanRowNumThreshold, int storagePushDownLimit, String storageBehavior, long startTime, long timeout) {
+            double aggCacheMemThreshold, int storageScanRowNumThreshold, int storagePushDownLimit, String storageBehavior, long startTime, long timeout, boolean hashAggrEnabled) {
         this.info = info;
         if (ranges == null) {
             this.ranges = Lists.newArrayList(new GTScanRange(new GTRecord(info), new GTRecord(info)));
@@ -95,6 +97,7 @@ public class GTScanRequest {
         this.aggCacheMemThreshold = aggCacheMemThreshold;
         this.storageScanRowNumThreshold = storageScanRowNumThreshold;
         this.storagePushDownLimit = storagePushDownLimit;
+        this.hashAggrEnabled = hashAggrEnabled;
 
         validate(info);
     }
@@ -180,7 +183,11 @@ public class GTScanRequest {
         } else {
 
             if (this.hasFilterPushDown() && !hasPreFiltered) {
-                result = new GTFilterScanner(result, this);
+                if (GTRecordBlock.isBlockScanner(result)) {
+                    result = new GTBlockFilterScanner((IGTBlockScanner) result, this);
+                } else {
+                    result = new GTFilterScanner(result, this);
+                }
             }
 
             if (!aggrToggledOn) {//Skip reading this section if you're not profiling! 
@@ -302,6 +309,11 @@ public class GTScanRequest {
         return this.storagePushDownLimit;
     }
 
+    /** whether storage aggregation may use GTAggregationHashTable instead of a tree map */
+    public boolean isHashAggrEnabled() {
+        return hashAggrEnabled;
+    }
+
     public String getStorageBehavior() {
         return storageBehavior;
     }
@@ -319,6 +331,15 @@ public class GTScanRequest {
         return "GTScanRequest [range=" + ranges + ", columns=" + columns + ", filterPushDown=" + filterPushDown + ", aggrGroupBy=" + aggrGroupBy + ", aggrMetrics=" + aggrMetrics + ", aggrMetricsFuncs=" + Arrays.toString(aggrMetricsFuncs) + "]";
     }
 
+    /**
+     * @return digest of everything that decides the scan result, i.e. the request without start time and timeout
+     */
+    public String getResultDigest() {
+        GTScanRequest timeless = new GTScanRequest(info, ranges, columns, aggrGroupBy, aggrMetrics, aggrMetricsFuncs, filterPushDown, allowStorageAggregation, //
+                aggCacheMemThreshold, storageScanRowNumThreshold, storagePushDownLimit, storageBehavior, 0, 0, hashAggrEnabled);
+        return Hashing.md5().hashBytes(timeless.toByteArray()).toString();
+    }
+
     public byte[] toByteArray() {
         ByteBuffer byteBuffer = SerializeToByteBuffer.retrySerialize(new SerializeToByteBuffer.IWriter() {
             @Override
@@ -357,6 +378,7 @@ public class GTScanRequest {
             BytesUtil.writeVLong(value.startTime, out);
             BytesUtil.writeVLong(value.timeout, out);
             BytesUtil.writeUTFString(value.storageBehavior, out);
+            BytesUtil.writeVInt(value.hashAggrEnabled ? 1 : 0, out);
         }
 
         @Override
@@ -390,12 +412,13 @@ public class GTScanRequest {
             long startTime = BytesUtil.readVLong(in);
             long timeout = BytesUtil.readVLong(in);
             String storageBehavior = BytesUtil.readUTFString(in);
+            boolean hashAggrEnabled = (BytesUtil.readVInt(in) == 1);
 
             return new GTScanRequestBuilder().setInfo(sInfo).setRanges(sRanges).setDimensions(sColumns).//
             setAggrGroupBy(sAggGroupBy).setAggrMetrics(sAggrMetrics).setAggrMetricsFuncs(sAggrMetricFuncs).//
             setFilterPushDown(sGTFilter).setAllowStorageAggregation(sAllowPreAggr).setAggCacheMemThreshold(sAggrCacheGB).//
             setStorageScanRowNumThreshold(storageScanRowNumThreshold).setStoragePushDownLimit(storagePushDownLimit).//
-            setStartTime(startTime).setTimeout(timeout).setStorageBehavior(storageBehavior).createGTScanRequest();
+            setStartTime(startTime).setTimeout(timeout).setStorageBehavior(storageBehavior).setHashAggrEnabled(hashAggrEnabled).createGTScanRequest();
         }
 
         private void serializeGTRecord(GTRecord gtRecord, ByteBuffer out) {
@@ -40,6 +40,7 @@ public class GTScanRequestBuilder {
     private long startTime = -1;
     private long timeout = -1;
     private String storageBehavior = null;
+    private boolean hashAggrEnabled = false;
 
     public GTScanRequestBuilder setInfo(GTInfo info) {
         this.info = info;
@@ -111,6 +112,11 @@ public class GTScanRequestBuilder {
         return this;
     }
 
+    public GTScanRequestBuilder setHashAggrEnabled(boolean hashAggrEnabled) {
+        this.hashAggrEnabled = hashAggrEnabled;
+        return this;
+    }
+
     public GTScanRequest createGTScanRequest() {
         if (aggrGroupBy == null) {
             aggrGroupBy = new ImmutableBitSet(new BitSet());
@@ -131,6 +137,6 @@ public class GTScanRequestBuilder {
         this.startTime = startTime == -1 ? System.currentTimeMillis() : startTime;
         this.timeout = timeout == -1 ? 300000 : timeout;
 
-        return new GTScanRequest(info, ranges, dimensions, aggrGroupBy, aggrMetrics, aggrMetricsFuncs, filterPushDown, allowStorageAggregation, aggCacheMemThreshold, storageScanRowNumThreshold, storagePushDownLimit, storageBehavior, startTime, timeout);
+        return new GTScanRequest(info, ranges, dimensions, aggrGroupBy, aggrMetrics, aggrMetricsFuncs, filterPushDown, allowStorageAggregation, aggCacheMemThreshold, storageScanRowNumThreshold, storagePushDownLimit, storageBehavior, startTime, timeout, hashAggrEnabled);
     }
 }
\ No newline at end of file
@@ -59,6 +59,9 @@ public interface IGTCodeSystem {
     /** Decode a code into value */
     Object decodeColumnValue(int col, ByteBuffer buf);
 
+    /** Aggregate a code into the aggregator, without decoding it first if the aggregator can merge the code directly */
+    void aggregateColumnValue(int col, ByteBuffer buf, MeasureAggregator<?> aggr);
+
     /** Return aggregators for metrics */
     MeasureAggregator<?>[] newMetricsAggregators(ImmutableBitSet columns, String[] aggrFunctions);
 
@@ -28,7 +28,9 @@ import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTRecordBlock;
 import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTBlockScanner;
 import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.gridtable.IGTStore;
 import org.apache.kylin.gridtable.IGTWriter;
@@ -97,7 +99,7 @@ public class GTSimpleMemStore implements IGTStore {
     @Override
     public IGTScanner scan(GTScanRequest scanRequest) {
 
-        return new IGTScanner() {
+        return new IGTBlockScanner() {
             long count;
 
             @Override
@@ -135,6 +137,36 @@ public class GTSimpleMemStore implements IGTStore {
                     }
                 };
             }
+
+            @Override
+            public Iterator<GTRecordBlock> blockIterator() {
+                count = 0;
+                return new Iterator<GTRecordBlock>() {
+                    Iterator<byte[]> it = rowList.iterator();
+                    GTRecordBlock block = new GTRecordBlock(info, getColumns());
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public GTRecordBlock next() {
+                        // rows are immutable once written, so cells can point to them directly
+                        block.reset();
+                        while (!block.isFull() && it.hasNext()) {
+                            block.appendView(getColumns(), ByteBuffer.wrap(it.next()));
+                            count++;
+                        }
+                        return block;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
         };
     }
 
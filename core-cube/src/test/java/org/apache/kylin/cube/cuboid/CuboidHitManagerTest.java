@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.cuboid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CuboidHitManagerTest extends LocalFileMetadataTestCase {
+
+    private static final String CUBE = "test_kylin_cube_with_slr_ready";
+
+    private CuboidHitManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        manager = CuboidHitManager.getInstance(getTestConfig());
+    }
+
+    @After
+    public void after() throws Exception {
+        System.clearProperty("kylin.query.cuboid-hit-record-enabled");
+        CuboidHitManager.clearCache();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testRecordHits() throws Exception {
+        manager.record(CUBE, 3L, 7L, 100, 10);
+        manager.record(CUBE, 3L, 3L, 20, 10);
+        manager.record(CUBE, 1L, 7L, 100, 5);
+
+        CuboidHitStats stats = manager.getHitStats(CUBE);
+        assertEquals(CUBE, stats.getCube());
+        assertEquals(2, stats.getEntries().size());
+        assertEquals(3, stats.getTotalHitCount());
+
+        CuboidHitStats.Entry entry = stats.getEntry(3L);
+        assertEquals(2, entry.getHitCount());
+        assertEquals(120, entry.getScannedRows());
+        assertEquals(20, entry.getReturnedRows());
+        assertEquals(3L, entry.getServedCuboid()); // the latest one
+        assertEquals(6.0, entry.getScanReturnRatio(), 0.0001);
+
+        assertEquals(1, stats.getEntry(1L).getHitCount());
+        assertTrue(manager.getHitStats("other_cube").getEntries().isEmpty());
+    }
+
+    @Test
+    public void testSnapshotAddsPendingHits() throws Exception {
+        manager.record(CUBE, 3L, 7L, 100, 10);
+        CuboidHitStats snapshot = manager.getHitStats(CUBE);
+        assertEquals(1, snapshot.getTotalHitCount());
+
+        // hits after a snapshot are added to the persisted ones, the snapshot taken doesn't change
+        manager.record(CUBE, 3L, 7L, 100, 10);
+        manager.record(CUBE, 5L, 7L, 100, 10);
+        CuboidHitStats stats = manager.getHitStats(CUBE);
+        assertEquals(3, stats.getTotalHitCount());
+        assertEquals(2, stats.getEntry(3L).getHitCount());
+        assertEquals(1, snapshot.getTotalHitCount());
+
+        // a new manager reads what was flushed
+        CuboidHitManager.clearCache();
+        assertEquals(3, CuboidHitManager.getInstance(getTestConfig()).getHitStats(CUBE).getTotalHitCount());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        manager.record(CUBE, 3L, 7L, 100, 10);
+        manager.flush();
+        manager.record(CUBE, 5L, 7L, 100, 10);
+
+        // both the flushed and the pending hits are dropped
+        manager.removeHitStats(CUBE);
+        CuboidHitStats stats = manager.getHitStats(CUBE);
+        assertTrue(stats.getEntries().isEmpty());
+        assertNull(stats.getEntry(3L));
+
+        manager.record(CUBE, 5L, 7L, 100, 10);
+        assertEquals(1, manager.getHitStats(CUBE).getTotalHitCount());
+    }
+
+    @Test
+    public void testRecordDisabled() throws Exception {
+        System.setProperty("kylin.query.cuboid-hit-record-enabled", "false");
+        manager.record(CUBE, 3L, 7L, 100, 10);
+        assertEquals(0, manager.getHitStats(CUBE).getTotalHitCount());
+    }
+}
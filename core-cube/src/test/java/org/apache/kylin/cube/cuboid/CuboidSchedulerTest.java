@@ -19,22 +19,31 @@
 package org.apache.kylin.cube.cuboid;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.metadata.MetadataManager;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Sets;
+
 /**
  * @author George Song (ysong1)
  * 
@@ -304,6 +313,75 @@ public class CuboidSchedulerTest extends LocalFileMetadataTestCase {
         assertTrue(spanningChild.size() > 0);
     }
 
+    @Test
+    public void testWhitelist() {
+        CubeDesc cube = getTestKylinCubeWithSeller();
+        List<Long> all = new CuboidScheduler(cube).getAllCuboidIds();
+        long baseCuboid = Cuboid.getBaseCuboidId(cube);
+
+        Set<Long> whitelist = Sets.newHashSet();
+        for (int i = 1; i < all.size(); i += 3) {
+            whitelist.add(all.get(i));
+        }
+        Set<Long> expected = Sets.newHashSet(whitelist);
+        expected.add(baseCuboid);
+        long invalid = 1;
+        while (all.contains(invalid)) {
+            invalid++;
+        }
+        whitelist.add(invalid); // not valid, ignored
+
+        CuboidScheduler scheduler = new CuboidScheduler(cube, whitelist);
+        assertTrue(scheduler.hasWhitelist());
+        assertEquals(expected, Sets.newHashSet(scheduler.getAllCuboidIds()));
+        assertEquals(expected.size(), scheduler.getAllCuboidIds().size());
+        assertEquals(expected.size(), scheduler.getCuboidCount());
+        assertFalse(scheduler.isScheduled(invalid));
+
+        // every cuboid is spanned from a scheduled super set
+        for (Long parent : expected) {
+            assertTrue(scheduler.isScheduled(parent));
+            for (Long child : scheduler.getSpanningCuboid(parent)) {
+                assertTrue(scheduler.isScheduled(child));
+                assertEquals(child.longValue(), child & parent);
+                assertTrue(child < parent);
+            }
+        }
+
+        int total = 0;
+        for (List<Long> layer : scheduler.getCuboidsByLayer()) {
+            total += layer.size();
+        }
+        assertEquals(expected.size(), total);
+
+        // an empty whitelist schedules all
+        assertEquals(all, new CuboidScheduler(cube, Sets.<Long> newHashSet()).getAllCuboidIds());
+    }
+
+    @Test
+    public void testServingCuboid() throws IOException {
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready");
+        CubeDesc cubeDesc = cube.getDescriptor();
+        List<Long> all = new CuboidScheduler(cubeDesc).getAllCuboidIds();
+        long baseCuboid = Cuboid.getBaseCuboidId(cubeDesc);
+        long child = all.get(all.size() - 1);
+        Cuboid cuboid = Cuboid.findById(cubeDesc, child);
+
+        // all built
+        assertEquals(cuboid, cube.getServingCuboid(cuboid));
+
+        // not built in one segment, served by the base cuboid
+        CubeSegment seg = cube.getSegments(SegmentStatusEnum.READY).get(0);
+        seg.setCuboidWhitelist(Sets.newHashSet(baseCuboid));
+        assertEquals(baseCuboid, cube.getServingCuboid(cuboid).getId());
+
+        // or by the smallest built super set
+        long parent = new CuboidScheduler(cubeDesc).getParent(child);
+        seg.setCuboidWhitelist(Sets.newHashSet(baseCuboid, parent));
+        assertEquals(parent, cube.getServingCuboid(cuboid).getId());
+        seg.setCuboidWhitelist(null);
+    }
+
     public CubeDescManager getCubeDescManager() {
         return CubeDescManager.getInstance(getTestConfig());
     }
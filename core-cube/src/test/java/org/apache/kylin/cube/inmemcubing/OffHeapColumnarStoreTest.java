@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.gridtable.CubeCodeSystem;
+import org.apache.kylin.dict.StringBytesConverter;
+import org.apache.kylin.dict.TrieDictionaryBuilder;
+import org.apache.kylin.dimension.DictionaryDimEnc;
+import org.apache.kylin.dimension.DimensionEncoding;
+import org.apache.kylin.dimension.FixedLenDimEnc;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OffHeapColumnarStoreTest extends LocalFileMetadataTestCase {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testVarBytesAndLongs() throws IOException, InterruptedException {
+        GTInfo info = UnitTestSupport.advancedInfo();
+        verifyWriteAndRead(info, UnitTestSupport.mockupData(info, 100000), 512, 5);
+    }
+
+    @Test
+    public void testDictionaryAndFixedLength() throws IOException, InterruptedException {
+        GTInfo info = dictInfo();
+        verifyWriteAndRead(info, mockupDictData(info, 100000), 512, 5);
+    }
+
+    @Test
+    public void testSpill() throws IOException, InterruptedException {
+        GTInfo info = dictInfo();
+        verifyWriteAndRead(info, mockupDictData(info, 10000), 0, 2);
+    }
+
+    private GTInfo dictInfo() {
+        TrieDictionaryBuilder<String> b = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (int i = 0; i < 1000; i++) {
+            b.addValue("v" + i);
+        }
+        Dictionary<String> dict = b.build(0);
+
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new CubeCodeSystem(new DimensionEncoding[] { new DictionaryDimEnc(dict), new FixedLenDimEnc(6) }));
+        builder.setColumns(DataType.getType("varchar(10)"), DataType.getType("varchar(10)"), DataType.getType("bigint"), DataType.getType("decimal(19,4)"));
+        builder.setPrimaryKey(new ImmutableBitSet(0, 2));
+        return builder.build();
+    }
+
+    private List<GTRecord> mockupDictData(GTInfo info, int nRows) {
+        List<GTRecord> result = new ArrayList<GTRecord>(nRows);
+        for (int i = 0; i < nRows; i++) {
+            String fixed = i % 11 == 0 ? null : "x" + (i % 77);
+            result.add(new GTRecord(info).setValues("v" + (i * 7 % 1000), fixed, new Long(i % 5 == 0 ? -i : i * 1000L), new BigDecimal(i).movePointLeft(2)));
+        }
+        return result;
+    }
+
+    private void verifyWriteAndRead(GTInfo info, final List<GTRecord> data, int offHeapLimitMB, int readThreads) throws IOException, InterruptedException {
+        OffHeapColumnarStore store = new OffHeapColumnarStore(info, offHeapLimitMB);
+        final GridTable table = new GridTable(info, store);
+
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : data) {
+            builder.write(r);
+        }
+        builder.close();
+        assertEquals(data.size(), store.getRowCount());
+
+        final Throwable[] errors = new Throwable[readThreads];
+        Thread[] t = new Thread[readThreads];
+        for (int i = 0; i < readThreads; i++) {
+            final int id = i;
+            t[i] = new Thread() {
+                public void run() {
+                    try {
+                        IGTScanner scanner = table.scan(new GTScanRequestBuilder().setInfo(table.getInfo()).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
+                        int i = 0;
+                        for (GTRecord r : scanner) {
+                            assertEquals(data.get(i++), r);
+                        }
+                        assertEquals(data.size(), i);
+                        scanner.close();
+                    } catch (Throwable ex) {
+                        errors[id] = ex;
+                    }
+                }
+            };
+            t[i].start();
+        }
+        for (int i = 0; i < readThreads; i++) {
+            t[i].join();
+            if (errors[i] != null)
+                throw new AssertionError(errors[i]);
+        }
+
+        store.close();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RowBatchTest {
+
+    @Test
+    public void testAppend() {
+        RowBatch batch = new RowBatch(3, 4);
+        batch.appendRow(new String[] { "abc", null, "中文😀" });
+        batch.append(-1234567890123L);
+        batch.append(0L);
+        batch.endRow(); // the 3rd column is null
+        batch.appendRow(Arrays.asList("x", "", "y", "ignored"));
+
+        assertEquals(3, batch.getRowCount());
+        assertFalse(batch.isFull());
+        assertEquals("abc", batch.getString(0, 0));
+        assertTrue(batch.isNull(0, 1));
+        assertNull(batch.getString(0, 1));
+        assertEquals("中文😀", batch.getString(0, 2));
+        assertEquals("-1234567890123", batch.getString(1, 0));
+        assertEquals("0", batch.getString(1, 1));
+        assertTrue(batch.isNull(1, 2));
+        assertEquals("", batch.getString(2, 1));
+        assertFalse(batch.isNull(2, 1));
+        assertEquals("y", batch.getString(2, 2));
+
+        batch.append(Long.MIN_VALUE);
+        batch.endRow();
+        assertTrue(batch.isFull());
+        assertEquals(String.valueOf(Long.MIN_VALUE), batch.getString(3, 0));
+
+        RowBatch copy = new RowBatch(3, 4);
+        copy.copyFrom(batch);
+        assertEquals(4, copy.getRowCount());
+        for (int r = 0; r < 4; r++) {
+            for (int c = 0; c < 3; c++) {
+                assertEquals(batch.getString(r, c), copy.getString(r, c));
+            }
+        }
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+        assertFalse(batch.isEndOfInput());
+    }
+
+    @Test
+    public void testRing() throws Exception {
+        final int nRows = 10000;
+        final RowBatchRing ring = new RowBatchRing(2, 2, 7);
+        final Throwable[] producerError = new Throwable[1];
+
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    RowBatch batch = null;
+                    for (int i = 0; i < nRows; i++) {
+                        if (batch == null)
+                            batch = ring.claim();
+                        batch.append(i);
+                        batch.append("v" + i);
+                        batch.endRow();
+                        if (batch.isFull()) {
+                            ring.publish();
+                            batch = null;
+                        }
+                    }
+                    if (batch != null) {
+                        batch.markEndOfInput();
+                        ring.publish();
+                    } else {
+                        ring.publishEndOfInput(1, TimeUnit.MINUTES);
+                    }
+                } catch (Throwable e) {
+                    producerError[0] = e;
+                }
+            }
+        };
+        producer.start();
+
+        int next = 0;
+        while (true) {
+            RowBatch batch = ring.take(1, TimeUnit.MINUTES);
+            for (int r = 0; r < batch.getRowCount(); r++) {
+                assertEquals(String.valueOf(next), batch.getString(r, 0));
+                assertEquals("v" + next, batch.getString(r, 1));
+                next++;
+            }
+            boolean end = batch.isEndOfInput();
+            ring.release();
+            if (end)
+                break;
+        }
+        producer.join();
+
+        assertNull(producerError[0]);
+        assertEquals(nRows, next);
+        assertNull(ring.take(10, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class AggregationHashTableTest extends LocalFileMetadataTestCase {
+
+    final static int GROUPS = 50000;
+    final static String[] FUNCS = new String[] { "SUM", "MIN", "MAX", "SUM" };
+
+    static GTInfo INFO;
+    static List<GTRecord> DATA;
+
+    @BeforeClass
+    public static void beforeClass() {
+        staticCreateTestMetadata();
+
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        builder.setColumns(//
+                DataType.getType("varchar(10)"), //
+                DataType.getType("varchar(10)"), //
+                DataType.getType("bigint"), //
+                DataType.getType("bigint"), //
+                DataType.getType("double"), //
+                DataType.getType("double") //
+        );
+        builder.setPrimaryKey(new ImmutableBitSet(0, 2));
+        builder.setColumnPreferIndex(new ImmutableBitSet(0, 2));
+        INFO = builder.build();
+
+        // three rows per group, in descending key order so that insertion order differs from key order
+        DATA = Lists.newArrayList();
+        for (int round = 0; round < 3; round++) {
+            for (int i = GROUPS - 1; i >= 0; i--) {
+                GTRecord rec = new GTRecord(INFO);
+                rec.setValues("k" + (i % 100), "v" + i, (long) (i + round), (long) (i - round), (double) round, 0.5);
+                DATA.add(rec);
+            }
+        }
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testSameResultAsTreeMap() throws IOException {
+        GTAggregateScanner treeScanner = new GTAggregateScanner(newInput(), newRequest(false, 0, Integer.MAX_VALUE));
+        GTAggregateScanner hashScanner = new GTAggregateScanner(newInput(), newRequest(true, 0, Integer.MAX_VALUE));
+        assertNull(treeScanner.aggrCache.hashTable);
+        assertNotNull(hashScanner.aggrCache.hashTable);
+
+        Map<String, String> expected = toMap(treeScanner);
+        Map<String, String> actual = toMap(hashScanner);
+        assertEquals(GROUPS, expected.size());
+        assertEquals(expected, actual);
+
+        String sample = actual.get("[k42, v42]");
+        assertEquals(Arrays.toString(new Object[] { "k42", "v42", 42L * 3 + 3, 40L, 2.0, 1.5 }), sample);
+    }
+
+    @Test
+    public void testSortedOutputWithLimit() throws IOException {
+        List<String> expected = toList(new GTAggregateScanner(newInput(), newRequest(false, 0, 1000)));
+        List<String> actual = toList(new GTAggregateScanner(newInput(), newRequest(true, 0, 1000)));
+        assertEquals(1000, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        Map<String, String> expected = toMap(new GTAggregateScanner(newInput(), newRequest(false, 0, Integer.MAX_VALUE)));
+
+        // a bit more than one slab, the table spills whenever a second slab is allocated
+        double threshold = 1.5 * GTAggregationHashTable.SLAB_BYTES / (1024 * 1024 * 1024);
+        GTAggregateScanner hashScanner = new GTAggregateScanner(newInput(), newRequest(true, threshold, Integer.MAX_VALUE));
+        Map<String, String> actual = Maps.newHashMap();
+        for (GTRecord record : hashScanner) {
+            Object[] values = record.getValues();
+            actual.put(Arrays.toString(Arrays.copyOf(values, 2)), Arrays.toString(values));
+        }
+        assertTrue(hashScanner.getNumOfSpills() > 1);
+        hashScanner.close();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testFallbackToTreeMap() throws IOException {
+        GTInfo info = UnitTestSupport.basicInfo();
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(new ImmutableBitSet(0, 3)).setAggrGroupBy(new ImmutableBitSet(0, 1)).setAggrMetrics(new ImmutableBitSet(3, 5)).setAggrMetricsFuncs(new String[] { "SUM", "SUM" }).setHashAggrEnabled(true).createGTScanRequest();
+        final List<GTRecord> data = UnitTestSupport.mockupData(info, 100);
+        GTAggregateScanner scanner = new GTAggregateScanner(new ListScanner(info, data), req);
+
+        // decimal is not supported by the hash table
+        assertNull(scanner.aggrCache.hashTable);
+        int count = 0;
+        for (GTRecord record : scanner) {
+            assertNotNull(record);
+            count++;
+        }
+        assertEquals(40, count);
+        scanner.close();
+    }
+
+    private GTScanRequest newRequest(boolean hash, double memThreshold, int limit) {
+        return new GTScanRequestBuilder().setInfo(INFO).setRanges(null).setDimensions(new ImmutableBitSet(0, 2)).setAggrGroupBy(new ImmutableBitSet(0, 2)).setAggrMetrics(new ImmutableBitSet(2, 6)).setAggrMetricsFuncs(FUNCS).setAggCacheMemThreshold(memThreshold).setStoragePushDownLimit(limit).setHashAggrEnabled(hash).createGTScanRequest();
+    }
+
+    private IGTScanner newInput() {
+        return new ListScanner(INFO, DATA);
+    }
+
+    private Map<String, String> toMap(GTAggregateScanner scanner) throws IOException {
+        Map<String, String> result = Maps.newHashMap();
+        for (GTRecord record : scanner) {
+            Object[] values = record.getValues();
+            result.put(Arrays.toString(Arrays.copyOf(values, 2)), Arrays.toString(values));
+        }
+        scanner.close();
+        return result;
+    }
+
+    private List<String> toList(GTAggregateScanner scanner) throws IOException {
+        List<String> result = Lists.newArrayList();
+        for (GTRecord record : scanner) {
+            result.add(Arrays.toString(record.getValues()));
+        }
+        scanner.close();
+        return result;
+    }
+
+    private static class ListScanner implements IGTScanner {
+        final GTInfo info;
+        final List<GTRecord> data;
+
+        ListScanner(GTInfo info, List<GTRecord> data) {
+            this.info = info;
+            this.data = data;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return data.iterator();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class GTFilterCompilerTest extends LocalFileMetadataTestCase {
+
+    static GTInfo info;
+    static List<GTRecord> data;
+
+    @BeforeClass
+    public static void beforeClass() {
+        staticCreateTestMetadata();
+        info = UnitTestSupport.basicInfo();
+        data = UnitTestSupport.mockupData(info, 40);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testCompare() {
+        // 2015-01-16, Mahone
+        GTRecord pivot = data.get(15);
+        for (FilterOperatorEnum op : new FilterOperatorEnum[] { FilterOperatorEnum.EQ, FilterOperatorEnum.NEQ, FilterOperatorEnum.LT, FilterOperatorEnum.LTE, FilterOperatorEnum.GT, FilterOperatorEnum.GTE, FilterOperatorEnum.IN, FilterOperatorEnum.NOTIN }) {
+            assertSameAsInterpreter(compare(0, op, code(pivot, 0)));
+            assertSameAsInterpreter(compare(1, op, code(pivot, 1)));
+        }
+        assertSameAsInterpreter(compare(1, FilterOperatorEnum.IN, code(data.get(0), 1), code(data.get(3), 1), code(data.get(7), 1)));
+        assertSameAsInterpreter(compare(1, FilterOperatorEnum.NOTIN, code(data.get(0), 1), code(data.get(3), 1), code(data.get(7), 1)));
+    }
+
+    @Test
+    public void testLogical() {
+        GTRecord pivot = data.get(15);
+        TupleFilter gt = compare(0, FilterOperatorEnum.GT, code(pivot, 0));
+        TupleFilter eq = compare(1, FilterOperatorEnum.EQ, code(pivot, 1));
+        TupleFilter neq = compare(1, FilterOperatorEnum.NEQ, code(data.get(2), 1));
+
+        assertSameAsInterpreter(logical(FilterOperatorEnum.AND, gt, neq));
+        assertSameAsInterpreter(logical(FilterOperatorEnum.OR, gt, eq));
+        assertSameAsInterpreter(logical(FilterOperatorEnum.OR, gt, eq, neq));
+        assertSameAsInterpreter(logical(FilterOperatorEnum.AND, logical(FilterOperatorEnum.NOT, gt), logical(FilterOperatorEnum.OR, eq, neq)));
+        assertSameAsInterpreter(logical(FilterOperatorEnum.AND, ConstantTupleFilter.TRUE, eq));
+        assertSameAsInterpreter(logical(FilterOperatorEnum.OR, ConstantTupleFilter.FALSE, eq));
+    }
+
+    @Test
+    public void testFallback() {
+        GTRecord pivot = data.get(15);
+        CompareTupleFilter notNull = new CompareTupleFilter(FilterOperatorEnum.ISNOTNULL);
+        notNull.addChild(new ColumnTupleFilter(info.colRef(1)));
+        assertNull(GTFilterCompiler.compile(notNull, info));
+        assertNull(GTFilterCompiler.compile(logical(FilterOperatorEnum.AND, compare(0, FilterOperatorEnum.EQ, code(pivot, 0)), notNull), info));
+    }
+
+    @Test
+    public void testCached() {
+        GTRecord pivot = data.get(15);
+        GTFilterCompiler.CompiledFilter a = GTFilterCompiler.compile(compare(0, FilterOperatorEnum.EQ, code(pivot, 0)), info);
+        GTFilterCompiler.CompiledFilter b = GTFilterCompiler.compile(compare(0, FilterOperatorEnum.EQ, code(pivot, 0)), info);
+        assertNotNull(a);
+        assertSame(a, b);
+    }
+
+    private void assertSameAsInterpreter(TupleFilter filter) {
+        GTFilterCompiler.CompiledFilter compiled = GTFilterCompiler.compile(filter, info);
+        assertNotNull(compiled);
+
+        IFilterCodeSystem<ByteArray> filterCodeSystem = GTUtil.wrap(info.codeSystem.getComparator());
+        for (final GTRecord record : data) {
+            IEvaluatableTuple tuple = new IEvaluatableTuple() {
+                @Override
+                public Object getValue(TblColRef col) {
+                    return record.get(col.getColumnDesc().getZeroBasedIndex());
+                }
+            };
+            assertEquals(filter.toString(), filter.evaluate(tuple, filterCodeSystem), compiled.evaluate(record));
+        }
+
+        // the block at a time evaluation selects the same rows
+        GTRecordBlock block = new GTRecordBlock(info, info.getAllColumns(), data.size());
+        for (GTRecord record : data) {
+            block.append(record);
+        }
+        int n = compiled.select(block, block.getSelection(), block.getSelectedCount());
+        int m = 0;
+        for (int row = 0; row < data.size(); row++) {
+            if (compiled.evaluate(data.get(row))) {
+                assertEquals(filter.toString(), row, block.getSelection()[m++]);
+            }
+        }
+        assertEquals(filter.toString(), m, n);
+    }
+
+    private ByteArray code(GTRecord record, int col) {
+        return record.get(col).copy();
+    }
+
+    private TupleFilter compare(int col, FilterOperatorEnum op, ByteArray... values) {
+        CompareTupleFilter filter = new CompareTupleFilter(op);
+        filter.addChild(new ColumnTupleFilter(info.colRef(col)));
+        filter.addChild(new ConstantTupleFilter(Arrays.asList(values)));
+        return filter;
+    }
+
+    private TupleFilter logical(FilterOperatorEnum op, TupleFilter... children) {
+        LogicalTupleFilter filter = new LogicalTupleFilter(op);
+        filter.addChildren(Arrays.asList(children));
+        return filter;
+    }
+}
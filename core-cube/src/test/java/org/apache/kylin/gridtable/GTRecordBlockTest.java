@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.memstore.GTSimpleMemStore;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class GTRecordBlockTest extends LocalFileMetadataTestCase {
+
+    static GTInfo info;
+    static List<GTRecord> data;
+
+    @BeforeClass
+    public static void beforeClass() {
+        staticCreateTestMetadata();
+        info = UnitTestSupport.basicInfo();
+        data = UnitTestSupport.mockupData(info, 3000);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        cleanAfterClass();
+        GTRecordBlock.ENABLED = true;
+    }
+
+    @Test
+    public void testBasics() {
+        GTRecordBlock block = new GTRecordBlock(info, info.getAllColumns(), 4);
+        for (int i = 0; i < 4; i++) {
+            block.append(data.get(i));
+        }
+        assertTrue(block.isFull());
+        assertEquals(4, block.getSelectedCount());
+        for (int i = 0; i < 4; i++) {
+            assertArrayEquals(data.get(i).getValues(), block.getRecord(i).getValues());
+        }
+
+        // narrow down the selection
+        block.getSelection()[0] = 1;
+        block.getSelection()[1] = 3;
+        block.setSelectedCount(2);
+        Iterator<GTRecord> it = block.selectedRecords();
+        assertArrayEquals(data.get(1).getValues(), it.next().getValues());
+        assertArrayEquals(data.get(3).getValues(), it.next().getValues());
+        assertFalse(it.hasNext());
+
+        block.reset();
+        assertEquals(0, block.size());
+        assertEquals(0, block.getSelectedCount());
+    }
+
+    @Test
+    public void testScanByBlock() throws IOException {
+        GridTable table = newTable();
+
+        ByteArray name = data.get(5).get(1).copy();
+        assertSameResult(table, newRequest(compare(1, FilterOperatorEnum.NEQ, name), new String[] { "sum", "sum" }, setOf(3, 4), true));
+        assertSameResult(table, newRequest(compare(1, FilterOperatorEnum.EQ, name), new String[] { "count", "sum" }, setOf(3, 4), false));
+        // hash aggregation
+        assertSameResult(table, newRequest(compare(1, FilterOperatorEnum.NEQ, name), new String[] { "sum" }, setOf(3), true));
+        assertSameResult(table, newRequest(null, new String[] { "sum" }, setOf(3), true));
+    }
+
+    private GridTable newTable() throws IOException {
+        GridTable table = new GridTable(info, new GTSimpleMemStore(info));
+        GTBuilder builder = table.rebuild();
+        for (GTRecord r : data) {
+            builder.write(r);
+        }
+        builder.close();
+        return table;
+    }
+
+    private GTScanRequest newRequest(TupleFilter filter, String[] funcs, ImmutableBitSet metrics, boolean hashAggr) {
+        return new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setAggrGroupBy(setOf(0, 1)).setAggrMetrics(metrics).setAggrMetricsFuncs(funcs).setFilterPushDown(filter).setHashAggrEnabled(hashAggr).createGTScanRequest();
+    }
+
+    private void assertSameResult(GridTable table, GTScanRequest req) throws IOException {
+        GTRecordBlock.ENABLED = false;
+        List<String> byRow = scan(table, req);
+        GTRecordBlock.ENABLED = true;
+        List<String> byBlock = scan(table, req);
+
+        assertFalse(byRow.isEmpty());
+        assertEquals(byRow, byBlock);
+    }
+
+    private List<String> scan(GridTable table, GTScanRequest req) throws IOException {
+        List<String> result = Lists.newArrayList();
+        IGTScanner scanner = table.scan(req);
+        for (GTRecord r : scanner) {
+            result.add(r.toString());
+        }
+        scanner.close();
+        return result;
+    }
+
+    private TupleFilter compare(int col, FilterOperatorEnum op, ByteArray... values) {
+        CompareTupleFilter filter = new CompareTupleFilter(op);
+        filter.addChild(new ColumnTupleFilter(info.colRef(col)));
+        filter.addChild(new ConstantTupleFilter(Arrays.asList(values)));
+        return filter;
+    }
+
+    private static ImmutableBitSet setOf(int... values) {
+        return ImmutableBitSet.valueOf(values);
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.apache.kylin.dict;
 
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.Dictionary;
 
 import java.lang.ref.SoftReference;
@@ -33,6 +34,8 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
 
     private transient SoftReference<Object[]> idToValueCache;
 
+    private transient long sharedCacheId = -1; // >= 0 if decoded values go to the SharedDictionaryCache
+
     protected transient int baseId;
 
     protected BytesConverter<T> bytesConvert;
@@ -61,9 +64,37 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
         return getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
     }
 
+    @Override
+    public boolean isValueBytesSupported() {
+        return bytesConvert instanceof StringBytesConverter;
+    }
+
+    @Override
+    public int getIdFromValueBytes(byte[] value, int offset, int length, int roundingFlag) throws IllegalArgumentException {
+        if (!isValueBytesSupported())
+            throw new UnsupportedOperationException();
+
+        int id = getIdFromValueBytesWithoutCache(value, offset, length, roundingFlag);
+        if (id == -1) {
+            throw new IllegalArgumentException("Value : " + Bytes.toString(value, offset, length) + " not exists");
+        }
+        return id;
+    }
+
     //id --> value
     @Override
     protected final T getValueFromIdImpl(int id) {
+        if (this.sharedCacheId >= 0) {
+            SharedDictionaryCache cache = SharedDictionaryCache.getInstance();
+            int seq = calcSeqNoFromId(id);
+            T value = (T) cache.get(sharedCacheId, seq);
+            if (value != null)
+                return value;
+            byte[] valueBytes = getValueBytesFromIdWithoutCache(id);
+            value = bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
+            cache.put(sharedCacheId, seq, value);
+            return value;
+        }
         if (this.idToValueCache != null) {
             Object[] cache = idToValueCache.get();
             if (cache != null) {
@@ -98,6 +129,16 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     public final void disableCache() {
         this.valueToIdCache = null;
         this.idToValueCache = null;
+        this.sharedCacheId = -1;
+    }
+
+    /**
+     * replace the per dictionary caches with the bounded SharedDictionaryCache for id to value, value to id
+     * lookups then go to the dictionary directly, they are rare at query time
+     */
+    public final void enableSharedCache() {
+        disableCache();
+        this.sharedCacheId = SharedDictionaryCache.newDictionaryId();
     }
 
     abstract protected byte[] getValueBytesFromIdWithoutCache(int id);
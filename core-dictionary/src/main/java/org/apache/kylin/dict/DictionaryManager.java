@@ -93,6 +93,10 @@ public class DictionaryManager {
             @Override
             public void onRemoval(RemovalNotification<String, DictionaryInfo> notification) {
                 DictionaryManager.logger.info("Dict with resource path " + notification.getKey() + " is removed due to " + notification.getCause());
+                DictionaryInfo dictInfo = notification.getValue();
+                if (dictInfo != null && dictInfo.getDictionaryObject() != null) {
+                    OffHeapDictionaries.release(dictInfo.getDictionaryObject());
+                }
             }
         }).maximumSize(config.getCachedDictMaxEntrySize())//
                 .expireAfterWrite(1, TimeUnit.DAYS).build(new CacheLoader<String, DictionaryInfo>() {
@@ -102,6 +106,9 @@ public class DictionaryManager {
                         if (dictInfo == null) {
                             return NONE_INDICATOR;
                         } else {
+                            if (dictInfo.getDictionaryObject() != null) {
+                                OffHeapDictionaries.moveOffHeap(dictInfo.getDictionaryObject(), config);
+                            }
                             return dictInfo;
                         }
                     }
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Dictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+
+/**
+ * Moves the tries of loaded dictionaries out of the java heap, as told by "kylin.dictionary.off-heap-mode":
+ * <ul>
+ * <li>heap: leave them as they are, each dictionary has its own soft referenced cache</li>
+ * <li>direct: copy each trie into a direct buffer</li>
+ * <li>mmap: copy each trie into a memory mapped file under "kylin.dictionary.mmap-dir", the file is deleted
+ * right after mapping, so the OS can page it out under pressure and nothing is left behind on exit</li>
+ * </ul>
+ * Off heap dictionaries use the SharedDictionaryCache for decoded values. Only TrieDictionary and the trees of
+ * TrieDictionaryForest are moved, other dictionaries stay on heap.
+ */
+public class OffHeapDictionaries {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapDictionaries.class);
+
+    public static final String MODE_HEAP = "heap";
+    public static final String MODE_DIRECT = "direct";
+    public static final String MODE_MMAP = "mmap";
+
+    private static final AtomicLong offHeapBytes = new AtomicLong();
+    private static final AtomicLong offHeapTries = new AtomicLong();
+
+    public static boolean isEnabled(KylinConfig config) {
+        return !MODE_HEAP.equals(config.getDictionaryOffHeapMode());
+    }
+
+    /**
+     * move the dictionary off heap if enabled, must be called before the dictionary is shared
+     */
+    @SuppressWarnings("rawtypes")
+    public static void moveOffHeap(Dictionary dict, KylinConfig config) throws IOException {
+        if (!isEnabled(config))
+            return;
+
+        String mode = config.getDictionaryOffHeapMode();
+        if (dict instanceof TrieDictionary) {
+            TrieDictionary trie = (TrieDictionary) dict;
+            relocate(trie, mode, config);
+            trie.enableSharedCache();
+        } else if (dict instanceof TrieDictionaryForest) {
+            TrieDictionaryForest forest = (TrieDictionaryForest) dict;
+            for (Object tree : forest.getTrees()) {
+                relocate((TrieDictionary) tree, mode, config);
+            }
+            forest.enableSharedCache();
+        }
+    }
+
+    /**
+     * account for a dictionary no longer held, its off heap memory is freed once garbage collected
+     */
+    @SuppressWarnings("rawtypes")
+    public static void release(Dictionary dict) {
+        if (dict instanceof TrieDictionary) {
+            release((TrieDictionary) dict);
+        } else if (dict instanceof TrieDictionaryForest) {
+            for (Object tree : ((TrieDictionaryForest) dict).getTrees()) {
+                release((TrieDictionary) tree);
+            }
+        }
+    }
+
+    private static void release(TrieDictionary trie) {
+        if (trie.isOffHeap()) {
+            offHeapBytes.addAndGet(-trie.getTrieSize());
+            offHeapTries.decrementAndGet();
+        }
+    }
+
+    private static void relocate(TrieDictionary trie, String mode, KylinConfig config) throws IOException {
+        if (trie.isOffHeap())
+            return;
+
+        int size = trie.getTrieSize();
+        ByteBuffer buffer;
+        if (MODE_DIRECT.equals(mode)) {
+            buffer = ByteBuffer.allocateDirect(size);
+        } else if (MODE_MMAP.equals(mode)) {
+            buffer = mapTempFile(new File(config.getDictionaryMmapDir()), size);
+        } else {
+            throw new IllegalArgumentException("Unknown kylin.dictionary.off-heap-mode " + mode);
+        }
+        trie.relocate(buffer);
+        logger.debug("Moved a trie of {} bytes to {}", size, mode);
+
+        offHeapBytes.addAndGet(size);
+        offHeapTries.incrementAndGet();
+    }
+
+    private static ByteBuffer mapTempFile(File dir, int size) throws IOException {
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+            throw new IOException("Failed to create dir " + dir);
+
+        File file = File.createTempFile("dict", ".trie", dir);
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+                // the mapping stays valid after the channel is closed
+                return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                raf.close();
+            }
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /** number of tries and their bytes off heap, plus the statistics of the shared cache */
+    public static Map<String, Long> getStats() {
+        SharedDictionaryCache cache = SharedDictionaryCache.getInstance();
+        CacheStats stats = cache.getStats();
+
+        Map<String, Long> result = Maps.newLinkedHashMap();
+        result.put("offHeapTries", offHeapTries.get());
+        result.put("offHeapBytes", offHeapBytes.get());
+        result.put("cacheEntries", cache.size());
+        result.put("cacheBytes", cache.getCachedBytes());
+        result.put("cacheHits", stats.hitCount());
+        result.put("cacheMisses", stats.missCount());
+        result.put("cacheEvictions", stats.evictionCount());
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.KylinConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+/**
+ * The id to value cache shared by all dictionaries that called CacheDictionary.enableSharedCache(), an alternative
+ * to the per dictionary caches behind soft references.
+ *
+ * Memory is bounded by "kylin.dictionary.shared-cache-max-mb" and accounted by an estimate of the decoded values,
+ * the least recently used values are evicted first. Entries of a dictionary that is no longer used just age out.
+ */
+public class SharedDictionaryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedDictionaryCache.class);
+
+    // rough overhead of the cache entry and the Long key
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final AtomicLong nextDictionaryId = new AtomicLong();
+
+    private static SharedDictionaryCache instance = null;
+
+    public static SharedDictionaryCache getInstance() {
+        synchronized (SharedDictionaryCache.class) {
+            if (instance == null) {
+                instance = new SharedDictionaryCache(KylinConfig.getInstanceFromEnv().getDictionarySharedCacheMaxMB() * 1024L * 1024L);
+            }
+            return instance;
+        }
+    }
+
+    static long newDictionaryId() {
+        return nextDictionaryId.getAndIncrement();
+    }
+
+    private final Cache<Long, Object> cache;
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    SharedDictionaryCache(long maxBytes) {
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<Long, Object>() {
+            @Override
+            public int weigh(Long key, Object value) {
+                return weightOf(value);
+            }
+        }).removalListener(new RemovalListener<Long, Object>() {
+            @Override
+            public void onRemoval(RemovalNotification<Long, Object> notification) {
+                cachedBytes.addAndGet(-weightOf(notification.getValue()));
+            }
+        }).recordStats().build();
+        logger.info("Shared dictionary cache initialized with max {} bytes", maxBytes);
+    }
+
+    private static long key(long dictionaryId, int seq) {
+        return (dictionaryId << 32) | (seq & 0xFFFFFFFFL);
+    }
+
+    private static int weightOf(Object value) {
+        if (value instanceof String)
+            return ENTRY_OVERHEAD + 40 + ((String) value).length() * 2;
+        if (value instanceof byte[])
+            return ENTRY_OVERHEAD + 16 + ((byte[]) value).length;
+        return ENTRY_OVERHEAD + 32;
+    }
+
+    public Object get(long dictionaryId, int seq) {
+        return cache.getIfPresent(key(dictionaryId, seq));
+    }
+
+    public void put(long dictionaryId, int seq, Object value) {
+        if (value == null)
+            return;
+        cachedBytes.addAndGet(weightOf(value));
+        cache.put(key(dictionaryId, seq), value);
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /** estimated bytes of the cached values */
+    public long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -27,7 +27,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 
 import org.apache.kylin.common.util.Bytes;
@@ -48,6 +48,9 @@ import com.google.common.base.Preconditions;
  * roughly 10 times slower, so there's a cache layer overlays on top of Trie and
  * gracefully fall back to Trie using a weak reference.
  * 
+ * The trie is read through a ByteBuffer, which is on heap after loading and can be
+ * moved off heap by {@link OffHeapDictionaries}.
+ * 
  * The implementation is thread-safe.
  * 
  * @author yangli9
@@ -64,7 +67,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(TrieDictionary.class);
 
-    private byte[] trieBytes;
+    transient private ByteBuffer trie; // heap, direct or memory mapped
+    transient private byte[] trieArray; // the backing array if the trie is on heap
 
     // non-persistent part
     transient private int headSize;
@@ -88,13 +92,24 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     private void init(byte[] trieBytes) {
-        this.trieBytes = trieBytes;
-        if (BytesUtil.compareBytes(MAGIC, 0, trieBytes, 0, MAGIC.length) != 0)
+        init(ByteBuffer.wrap(trieBytes));
+    }
+
+    private void init(ByteBuffer trie) {
+        this.trie = trie;
+        this.trieArray = trie.hasArray() && trie.arrayOffset() == 0 ? trie.array() : null;
+
+        // the head is small, parse it from a copy
+        byte[] head = new byte[Math.min(trie.limit(), MAGIC_SIZE_I + 2)];
+        getBytes(0, head, 0, head.length);
+        if (head.length < MAGIC_SIZE_I || BytesUtil.compareBytes(MAGIC, 0, head, 0, MAGIC.length) != 0)
             throw new IllegalArgumentException("Wrong file type (magic does not match)");
+        head = new byte[trie.getShort(MAGIC_SIZE_I)];
+        getBytes(0, head, 0, head.length);
 
         try {
             DataInputStream headIn = new DataInputStream(//
-                    new ByteArrayInputStream(trieBytes, MAGIC_SIZE_I, trieBytes.length - MAGIC_SIZE_I));
+                    new ByteArrayInputStream(head, MAGIC_SIZE_I, head.length - MAGIC_SIZE_I));
             this.headSize = headIn.readShort();
             this.bodyLen = headIn.readInt();
             this.sizeChildOffset = headIn.read();
@@ -106,7 +121,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             if (converterName.isEmpty() == false)
                 this.bytesConvert = ClassUtil.forName(converterName, BytesConverter.class).newInstance();
 
-            this.nValues = BytesUtil.readUnsigned(trieBytes, headSize + sizeChildOffset, sizeNoValuesBeneath);
+            this.nValues = readUnsigned(headSize + sizeChildOffset, sizeNoValuesBeneath);
             this.sizeOfId = BytesUtil.sizeForValue(baseId + nValues + 1L); // note baseId could raise 1 byte in ID space, +1 to reserve all 0xFF for NULL case
             this.childOffsetMask = ~((long) (BIT_IS_LAST_CHILD | BIT_IS_END_OF_VALUE) << ((sizeChildOffset - 1) * 8));
             this.firstByteOffset = sizeChildOffset + sizeNoValuesBeneath + 1; // the offset from begin of node to its first value byte
@@ -119,6 +134,25 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         }
     }
 
+    /** number of bytes of the trie */
+    public int getTrieSize() {
+        return trie.limit();
+    }
+
+    public boolean isOffHeap() {
+        return trieArray == null;
+    }
+
+    /** copy the trie into given buffer and read from there, e.g. a direct or memory mapped buffer */
+    void relocate(ByteBuffer newTrie) {
+        ByteBuffer src = trie.duplicate();
+        src.position(0);
+        newTrie.clear();
+        newTrie.put(src);
+        newTrie.flip();
+        init(newTrie);
+    }
+
     @Override
     public int getMinId() {
         return baseId;
@@ -175,12 +209,12 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             // match the current node, note [0] of node's value has been matched
             // when this node is selected by its parent
             int p = n + firstByteOffset; // start of node's value
-            int end = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1); // end of node's value
+            int end = p + readUnsigned(p - 1, 1); // end of node's value
             for (p++; p < end && o < inpEnd; p++, o++) { // note matching start from [1]
-                if (trieBytes[p] != inp[o]) {
-                    int comp = BytesUtil.compareByteUnsigned(trieBytes[p], inp[o]);
+                if (trie.get(p) != inp[o]) {
+                    int comp = BytesUtil.compareByteUnsigned(trie.get(p), inp[o]);
                     if (comp < 0) {
-                        seq += BytesUtil.readUnsigned(trieBytes, n + sizeChildOffset, sizeNoValuesBeneath);
+                        seq += readUnsigned(n + sizeChildOffset, sizeNoValuesBeneath);
                     }
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // mismatch
                 }
@@ -202,16 +236,16 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             int comp;
             while (true) {
                 p = c + firstByteOffset;
-                comp = BytesUtil.compareByteUnsigned(trieBytes[p], inpByte);
+                comp = BytesUtil.compareByteUnsigned(trie.get(p), inpByte);
                 if (comp == 0) { // continue in the matching child, reset n and loop again
                     n = c;
                     o++;
                     break;
                 } else if (comp < 0) { // try next child
-                    seq += BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                    seq += readUnsigned(c + sizeChildOffset, sizeNoValuesBeneath);
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + readUnsigned(p - 1, 1);
                 } else { // children are ordered by their first value byte
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
                 }
@@ -220,8 +254,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     private int getChildOffset(int n) {
-        long offset = headSize + (BytesUtil.readLong(trieBytes, n, sizeChildOffset) & childOffsetMask);
-        assert offset < trieBytes.length;
+        long offset = headSize + (readLong(n, sizeChildOffset) & childOffsetMask);
+        assert offset < trie.limit();
         return (int) offset;
     }
 
@@ -270,8 +304,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         while (true) {
             // write current node value
             int p = n + firstByteOffset;
-            int len = BytesUtil.readUnsigned(trieBytes, p - 1, 1);
-            System.arraycopy(trieBytes, p, returnValue, o, len);
+            int len = readUnsigned(p - 1, 1);
+            getBytes(p, returnValue, o, len);
             o += len;
 
             // if the value is ended
@@ -288,7 +322,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                 return -1; // no child? corrupted dictionary!
             int nValuesBeneath;
             while (true) {
-                nValuesBeneath = BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                nValuesBeneath = readUnsigned(c + sizeChildOffset, sizeNoValuesBeneath);
                 if (seq - nValuesBeneath < 0) { // value is under this child, reset n and loop again
                     n = c;
                     break;
@@ -297,14 +331,55 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return -1; // no more child? corrupted dictionary!
                     p = c + firstByteOffset;
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + readUnsigned(p - 1, 1);
                 }
             }
         }
     }
 
     private boolean checkFlag(int offset, int bit) {
-        return (trieBytes[offset] & bit) > 0;
+        return (trie.get(offset) & bit) > 0;
+    }
+
+    private int readUnsigned(int offset, int size) {
+        int integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (int) trie.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
+    private long readLong(int offset, int size) {
+        long integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (long) trie.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
+    private void getBytes(int offset, byte[] dst, int dstOffset, int len) {
+        if (trieArray != null) {
+            System.arraycopy(trieArray, offset, dst, dstOffset, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dst[dstOffset + i] = trie.get(offset + i);
+            }
+        }
+    }
+
+    private void writeTrie(DataOutput out) throws IOException {
+        if (trieArray != null) {
+            out.write(trieArray, 0, trie.limit());
+        } else {
+            byte[] buf = new byte[Math.min(trie.limit(), 64 * 1024)];
+            for (int p = 0; p < trie.limit(); p += buf.length) {
+                int len = Math.min(buf.length, trie.limit() - p);
+                getBytes(p, buf, 0, len);
+                out.write(buf, 0, len);
+            }
+        }
     }
 
     private int calcIdFromSeqNo(int seq) {
@@ -316,7 +391,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.write(trieBytes);
+        writeTrie(out);
     }
 
     @Override
@@ -341,8 +416,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     private void writeObject(java.io.ObjectOutputStream stream) throws IOException {
-        stream.writeInt(trieBytes.length);
-        stream.write(trieBytes);
+        stream.writeInt(trie.limit());
+        writeTrie(stream);
     }
 
     private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
@@ -368,7 +443,9 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(trieBytes);
+        ByteBuffer all = trie.duplicate();
+        all.position(0);
+        return all.hashCode();
     }
 
     @Override
@@ -378,7 +455,11 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             return false;
         }
         TrieDictionary that = (TrieDictionary) o;
-        return Arrays.equals(this.trieBytes, that.trieBytes);
+        ByteBuffer a = this.trie.duplicate();
+        ByteBuffer b = that.trie.duplicate();
+        a.position(0);
+        b.position(0);
+        return a.equals(b);
     }
 
     @Override
@@ -77,6 +77,10 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
         initForestCache();
     }
 
+    List<TrieDictionary<T>> getTrees() {
+        return trees;
+    }
+
     @Override
     public int getMinId() {
         return this.minId;
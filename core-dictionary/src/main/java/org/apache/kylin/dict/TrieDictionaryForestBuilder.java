@@ -19,13 +19,23 @@ package org.apache.kylin.dict;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.DaemonThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Build a trie dictionary forest if the input values is ordered, or the forest falls back to a single trie.
+ * With more than one build thread, the ordered input is cut into slices and the trees of the slices are
+ * built in parallel, at most as many slices as threads are held in memory.
  */
 public class TrieDictionaryForestBuilder<T> {
 
@@ -55,20 +65,33 @@ public class TrieDictionaryForestBuilder<T> {
 
     private boolean isOrdered = true;
 
+    private int buildThreads;
+
+    private ExecutorService sliceExecutor; // created on the first slice
+
+    private List<byte[]> sliceValues = new ArrayList<>(); // values of the slice being cut
+
+    private LinkedList<Future<TrieDictionary<T>>> pendingTrees = new LinkedList<>(); // in value order
+
     public TrieDictionaryForestBuilder(BytesConverter<T> bytesConverter) {
         this(bytesConverter, 0);
     }
 
     public TrieDictionaryForestBuilder(BytesConverter<T> bytesConverter, int baseId) {
-        this(bytesConverter, baseId, getMaxTrieSizeInMB());
+        this(bytesConverter, baseId, getMaxTrieSizeInMB(), getBuildThreads());
     }
 
     public TrieDictionaryForestBuilder(BytesConverter<T> bytesConverter, int baseId, int maxTrieTreeSizeMB) {
+        this(bytesConverter, baseId, maxTrieTreeSizeMB, 1);
+    }
+
+    public TrieDictionaryForestBuilder(BytesConverter<T> bytesConverter, int baseId, int maxTrieTreeSizeMB, int buildThreads) {
         this.bytesConverter = bytesConverter;
         this.trieBuilder = new TrieDictionaryBuilder<T>(bytesConverter);
         this.baseId = baseId;
         this.curOffset = 0;
         this.maxTrieTreeSize = maxTrieTreeSizeMB * 1024 * 1024;
+        this.buildThreads = buildThreads;
     }
 
     public void addValue(T value) {
@@ -88,15 +111,29 @@ public class TrieDictionaryForestBuilder<T> {
             if (comp > 0) {
                 logger.info("values not in ascending order, previous '{}', current '{}'", previousValue, valueByteArray);
                 isOrdered = false;
-                if (trees.size() > 0) {
+                if (trees.size() > 0 || pendingTrees.size() > 0) {
                     throw new IllegalStateException("Invalid input data. Unordered data cannot be split into multi trees");
                 }
+                // fall back to a single trie built in the calling thread
+                for (byte[] v : sliceValues) {
+                    trieBuilder.addValue(v);
+                }
+                sliceValues.clear();
             }
         }
         previousValue = valueByteArray;
-        trieBuilder.addValue(valueBytes);
         curTreeSize += valueBytes.length;
 
+        if (buildThreads > 1 && isOrdered) {
+            sliceValues.add(valueBytes);
+            if (curTreeSize >= maxTrieTreeSize) {
+                submitSlice();
+            }
+            return;
+        }
+
+        trieBuilder.addValue(valueBytes);
+
         if (curTreeSize >= maxTrieTreeSize && isOrdered) {
             TrieDictionary<T> tree = trieBuilder.build(0);
             addTree(tree);
@@ -105,6 +142,24 @@ public class TrieDictionaryForestBuilder<T> {
     }
 
     public TrieDictionaryForest<T> build() {
+        if (pendingTrees.isEmpty()) {
+            // a single slice left, build it here
+            for (byte[] v : sliceValues) {
+                trieBuilder.addValue(v);
+            }
+            sliceValues.clear();
+        } else {
+            try {
+                if (!sliceValues.isEmpty()) { //last slice
+                    submitSlice();
+                }
+                while (!pendingTrees.isEmpty()) {
+                    addPendingTree();
+                }
+            } finally {
+                sliceExecutor.shutdownNow();
+            }
+        }
         if (curTreeSize != 0) { //last tree
             TrieDictionary<T> tree = trieBuilder.build(0);
             addTree(tree);
@@ -127,6 +182,44 @@ public class TrieDictionaryForestBuilder<T> {
         logger.info("maxTrieSize is set to:" + maxTrieTreeSize + "B");
     }
 
+    private void submitSlice() {
+        final List<byte[]> values = sliceValues;
+        sliceValues = new ArrayList<>();
+        curTreeSize = 0;
+
+        if (sliceExecutor == null) {
+            sliceExecutor = Executors.newFixedThreadPool(buildThreads, new DaemonThreadFactory());
+        }
+        pendingTrees.add(sliceExecutor.submit(new Callable<TrieDictionary<T>>() {
+            @Override
+            public TrieDictionary<T> call() throws Exception {
+                TrieDictionaryBuilder<T> builder = new TrieDictionaryBuilder<T>(bytesConverter);
+                for (byte[] v : values) {
+                    builder.addValue(v);
+                }
+                return builder.build(0);
+            }
+        }));
+
+        // bound the slices in memory
+        while (pendingTrees.size() > buildThreads) {
+            addPendingTree();
+        }
+    }
+
+    private void addPendingTree() {
+        try {
+            addTree(pendingTrees.removeFirst().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sliceExecutor.shutdownNow();
+            throw new IllegalStateException("Interrupted while building trie dictionary slices", e);
+        } catch (ExecutionException e) {
+            sliceExecutor.shutdownNow();
+            throw new IllegalStateException("Failed to build a trie dictionary slice", e.getCause());
+        }
+    }
+
     private void addTree(TrieDictionary<T> tree) {
         trees.add(tree);
         int minId = tree.getMinId();
@@ -141,6 +234,15 @@ public class TrieDictionaryForestBuilder<T> {
         trieBuilder = new TrieDictionaryBuilder<T>(bytesConverter);
     }
 
+    public static int getBuildThreads() {
+        try {
+            return KylinConfig.getInstanceFromEnv().getTrieDictionaryForestBuildThreads();
+        } catch (RuntimeException e) {
+            logger.info("cannot get KylinConfig from env, build the trees in a single thread");
+            return 1;
+        }
+    }
+
     public static int getMaxTrieSizeInMB() {
         KylinConfig config = null;
         try {
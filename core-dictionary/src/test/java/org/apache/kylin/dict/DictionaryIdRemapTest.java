@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.DictionaryIdRemap;
+import org.junit.Test;
+
+public class DictionaryIdRemapTest {
+
+    @Test
+    public void testRemap() throws IOException {
+        Dictionary<String> source = newDict(0, 1000, 3);
+        Dictionary<String> merged = newDict(0, 100000, 1);
+        DictionaryIdRemap remap = DictionaryIdRemap.build(source, merged);
+        assertEquals(source.getSize(), remap.size());
+        verify(remap, source, merged);
+
+        // a remap table read back works the same
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        remap.write(new DataOutputStream(bytes));
+        DictionaryIdRemap read = DictionaryIdRemap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        verify(read, source, merged);
+    }
+
+    private void verify(DictionaryIdRemap remap, Dictionary<String> source, Dictionary<String> merged) {
+        assertEquals(merged.getSizeOfId(), remap.getTargetSizeOfId());
+        for (int id = source.getMinId(); id <= source.getMaxId(); id++) {
+            assertEquals(merged.getIdFromValue(source.getValueFromId(id)), remap.remap(id));
+        }
+        assertEquals(merged.nullId(), remap.remap(source.nullId()));
+
+        byte[] sourceId = new byte[source.getSizeOfId()];
+        byte[] mergedId = new byte[merged.getSizeOfId()];
+        int id = source.getIdFromValue("v" + 300);
+        BytesUtil.writeUnsigned(id, sourceId, 0, sourceId.length);
+        assertEquals(merged.getSizeOfId(), remap.remap(sourceId, 0, sourceId.length, mergedId, 0));
+        assertEquals(merged.getIdFromValue("v" + 300), BytesUtil.readUnsigned(mergedId, 0, mergedId.length));
+    }
+
+    private Dictionary<String> newDict(int from, int to, int step) {
+        TrieDictionaryBuilder<String> b = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (int i = from; i < to; i += step) {
+            b.addValue("v" + i);
+        }
+        return b.build(0);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapDictionariesTest extends LocalFileMetadataTestCase {
+
+    private ArrayList<String> values;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        values = new ArrayList<String>();
+        for (int i = 0; i < 2000; i++) {
+            values.add("value-" + i);
+        }
+        Collections.sort(values);
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testDirect() throws IOException {
+        testTrie(OffHeapDictionaries.MODE_DIRECT);
+    }
+
+    @Test
+    public void testMmap() throws IOException {
+        testTrie(OffHeapDictionaries.MODE_MMAP);
+    }
+
+    private void testTrie(String mode) throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.dictionary.off-heap-mode", mode);
+
+        TrieDictionaryBuilder<String> b = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (String v : values) {
+            b.addValue(v);
+        }
+        TrieDictionary<String> heap = b.build(0);
+        TrieDictionary<String> dict = b.build(0);
+        assertFalse(dict.isOffHeap());
+
+        OffHeapDictionaries.moveOffHeap(dict, config);
+        assertTrue(dict.isOffHeap());
+        assertEquals(heap, dict);
+        assertEquals(heap.hashCode(), dict.hashCode());
+        assertSameValues(heap, dict);
+        // second round is served by the shared cache
+        assertSameValues(heap, dict);
+
+        Map<String, Long> stats = OffHeapDictionaries.getStats();
+        assertTrue(stats.get("offHeapBytes") >= dict.getTrieSize());
+        assertTrue(stats.get("cacheHits") >= values.size());
+
+        OffHeapDictionaries.release(dict);
+    }
+
+    @Test
+    public void testForest() throws IOException {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        config.setProperty("kylin.dictionary.off-heap-mode", OffHeapDictionaries.MODE_DIRECT);
+
+        TrieDictionaryForest<String> heap = TrieDictionaryForestTest.newDictBuilder(values, 0, 1024).build();
+        TrieDictionaryForest<String> dict = TrieDictionaryForestTest.newDictBuilder(values, 0, 1024).build();
+        assertTrue(dict.getTrees().size() > 1);
+
+        OffHeapDictionaries.moveOffHeap(dict, config);
+        for (TrieDictionary<String> tree : dict.getTrees()) {
+            assertTrue(tree.isOffHeap());
+        }
+        assertSameValues(heap, dict);
+
+        OffHeapDictionaries.release(dict);
+    }
+
+    @Test
+    public void testSharedCacheBound() {
+        SharedDictionaryCache cache = new SharedDictionaryCache(64 * 1024);
+        long dictId = SharedDictionaryCache.newDictionaryId();
+        for (int i = 0; i < 10000; i++) {
+            cache.put(dictId, i, "value-" + i);
+        }
+        assertTrue(cache.getCachedBytes() <= 64 * 1024);
+        assertTrue(cache.getStats().evictionCount() > 0);
+        assertEquals("value-9999", cache.get(dictId, 9999));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getCachedBytes());
+    }
+
+    private void assertSameValues(CacheDictionary<String> expected, CacheDictionary<String> actual) {
+        for (String v : values) {
+            int id = expected.getIdFromValue(v);
+            assertEquals(id, actual.getIdFromValue(v));
+            assertEquals(v, actual.getValueFromId(id));
+        }
+    }
+}
@@ -165,6 +165,41 @@ public class TrieDictionaryForestTest {
         }
     }
 
+    @Test
+    public void testParallelSlices() {
+        ArrayList<String> strs = new ArrayList<>();
+        Iterator<String> it = new RandomStrings(10 * 10000).iterator();
+        int totalSize = 0;
+        final StringBytesConverter converter = new StringBytesConverter();
+        while (it.hasNext()) {
+            String str = it.next();
+            totalSize += converter.convertToBytes(str).length;
+            strs.add(str);
+        }
+        Collections.sort(strs);
+        int baseId = 20;
+        Map<String, Integer> idMap = rightIdMap(baseId, strs);
+
+        TrieDictionaryForestBuilder<String> serial = new TrieDictionaryForestBuilder<String>(converter, baseId, 0, 1);
+        serial.setMaxTrieTreeSize(totalSize / 10);
+        TrieDictionaryForestBuilder<String> parallel = new TrieDictionaryForestBuilder<String>(converter, baseId, 0, 4);
+        parallel.setMaxTrieTreeSize(totalSize / 10);
+        for (String str : strs) {
+            serial.addValue(str);
+            parallel.addValue(str);
+        }
+        TrieDictionaryForest<String> serialDict = serial.build();
+        TrieDictionaryForest<String> parallelDict = parallel.build();
+
+        assertTrue(parallelDict.getTrees().size() > 1);
+        assertEquals(serialDict.getTrees().size(), parallelDict.getTrees().size());
+        assertEquals(serialDict, parallelDict);
+        for (Map.Entry<String, Integer> entry : idMap.entrySet()) {
+            assertEquals(entry.getValue().intValue(), parallelDict.getIdFromValue(entry.getKey()));
+            assertEquals(entry.getKey(), parallelDict.getValueFromId(entry.getValue()));
+        }
+    }
+
     @Test
     public void partOverflowTest() {
         ArrayList<String> str = new ArrayList<String>();
@@ -20,6 +20,7 @@ package org.apache.kylin.dimension;
 
 import java.io.Externalizable;
 
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.StringUtil;
 import org.apache.kylin.metadata.datatype.DataTypeSerializer;
 
@@ -69,6 +70,11 @@ public abstract class DimensionEncoding implements Externalizable {
     /** encode given value to bytes, note the NULL convention */
     abstract public void encode(String value, byte[] output, int outputOffset);
 
+    /** encode given value in UTF-8 bytes (null for NULL), subclasses may override to skip the String decoding */
+    public void encode(byte[] value, int offset, int length, byte[] output, int outputOffset) {
+        encode(value == null ? null : Bytes.toString(value, offset, length), output, outputOffset);
+    }
+
     /** decode given bytes to value string, note the NULL convention */
     abstract public String decode(byte[] bytes, int offset, int len);
 
@@ -112,6 +112,27 @@ public class FixedLenDimEnc extends DimensionEncoding implements Serializable{
         }
     }
 
+    @Override
+    public void encode(byte[] value, int offset, int length, byte[] output, int outputOffset) {
+        if (value == null) {
+            Arrays.fill(output, outputOffset, outputOffset + fixedLen, NULL);
+            return;
+        }
+
+        if (length > fixedLen) {
+            if (avoidVerbose++ % 10000 == 0) {
+                logger.warn("Expect at most " + fixedLen + " bytes, but got " + length + ", will truncate, value string: " + Bytes.toString(value, offset, length) + " times:" + avoidVerbose);
+            }
+        }
+
+        int n = Math.min(length, fixedLen);
+        System.arraycopy(value, offset, output, outputOffset, n);
+
+        if (n < fixedLen) {
+            Arrays.fill(output, outputOffset + n, outputOffset + fixedLen, ROWKEY_PLACE_HOLDER_BYTE);
+        }
+    }
+
     @Override
     public String decode(byte[] bytes, int offset, int len) {
         if (isNull(bytes, offset, len)) {
@@ -60,6 +60,10 @@ public class BufferedMeasureCodec implements java.io.Serializable {
         this.measureSizes = new int[codec.getMeasuresCount()];
     }
 
+    public MeasureCodec getCodec() {
+        return codec;
+    }
+
     /** return the buffer that contains result of last encoding */
     public ByteBuffer getBuffer() {
         return buf;
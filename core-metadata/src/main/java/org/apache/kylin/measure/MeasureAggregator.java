@@ -19,8 +19,10 @@
 package org.apache.kylin.measure;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
 
 /**
  */
@@ -71,6 +73,15 @@ abstract public class MeasureAggregator<V> implements Serializable {
 
     abstract public void aggregate(V value);
 
+    /**
+     * Aggregate a value in its serialized form, the buffer position is moved past the value.
+     * By default the value is deserialized then aggregated. Aggregators of sketches override this
+     * to merge straight from the bytes, so the state is materialized only once for the whole group.
+     */
+    public void aggregate(ByteBuffer in, DataTypeSerializer<V> serializer) {
+        aggregate(serializer.deserialize(in));
+    }
+
     abstract public V aggregate(V value1, V value2);
 
     abstract public V getState();
@@ -19,10 +19,12 @@
 package org.apache.kylin.measure;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.MeasureDesc;
 
@@ -84,6 +86,29 @@ public class MeasureAggregators implements Serializable {
         }
     }
 
+    /** Aggregate an encoded row of all measures straight from the buffer, see MeasureAggregator.aggregate(ByteBuffer, DataTypeSerializer) */
+    public void aggregate(ByteBuffer buf, MeasureCodec codec) {
+        assert codec.getMeasuresCount() == descLength;
+        for (int i = 0; i < descLength; i++) {
+            aggs[i].aggregate(buf, codec.getSerializer(i));
+        }
+    }
+
+    /** Aggregate the given measures of an encoded row straight from the buffer, the others are skipped; measures must be in ascending order */
+    public void aggregate(ByteBuffer buf, MeasureCodec codec, int[] measures) {
+        assert codec.getMeasuresCount() == descLength;
+        int next = 0;
+        for (int i = 0; i < descLength; i++) {
+            DataTypeSerializer serializer = codec.getSerializer(i);
+            if (next < measures.length && measures[next] == i) {
+                aggs[i].aggregate(buf, serializer);
+                next++;
+            } else {
+                buf.position(buf.position() + serializer.peekLength(buf));
+            }
+        }
+    }
+
     public void aggregate(Object[] values1, Object[] values2, Object[] result) {
         assert values1.length == values2.length && values2.length == descLength && values1.length == result.length;
 
@@ -108,4 +133,12 @@ public class MeasureAggregators implements Serializable {
         }
     }
 
+    public int getMemBytesEstimate() {
+        int est = 0;
+        for (int i = 0; i < descLength; i++) {
+            est += aggs[i].getMemBytesEstimate();
+        }
+        return est;
+    }
+
 }
@@ -76,6 +76,10 @@ public class MeasureCodec implements java.io.Serializable {
         serializers[idx].serialize(o, buf);
     }
 
+    public DataTypeSerializer getSerializer(int idx) {
+        return serializers[idx];
+    }
+
     public int getMeasuresCount() {
         return nMeasures;
     }
@@ -18,7 +18,9 @@
 
 package org.apache.kylin.measure;
 
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.DictionaryIdRemap;
 import org.apache.kylin.metadata.model.MeasureDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 
@@ -43,6 +45,11 @@ abstract public class MeasureIngester<V> implements java.io.Serializable {
 
     abstract public V valueOf(String[] values, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> dictionaryMap);
 
+    /** the same as valueOf(String[]) on a single parameter given in UTF-8 bytes (null for NULL), subclasses may override to skip the String decoding */
+    public V valueOf(byte[] value, int offset, int length, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        return valueOf(new String[] { value == null ? null : Bytes.toString(value, offset, length) }, measureDesc, dictionaryMap);
+    }
+
     public void reset() {
 
     }
@@ -50,4 +57,9 @@ abstract public class MeasureIngester<V> implements java.io.Serializable {
     public V reEncodeDictionary(V value, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> oldDicts, Map<TblColRef, Dictionary<String>> newDicts) {
         throw new UnsupportedOperationException();
     }
+
+    /** the same as reEncodeDictionary(), subclasses may override to map the IDs of a column by its remap table if given */
+    public V reEncodeDictionary(V value, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> oldDicts, Map<TblColRef, Dictionary<String>> newDicts, Map<TblColRef, DictionaryIdRemap> remaps) {
+        return reEncodeDictionary(value, measureDesc, oldDicts, newDicts);
+    }
 }
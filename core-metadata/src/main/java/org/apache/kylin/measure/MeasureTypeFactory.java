@@ -28,8 +28,10 @@ import org.apache.kylin.measure.bitmap.BitmapMeasureType;
 import org.apache.kylin.measure.dim.DimCountDistinctMeasureType;
 import org.apache.kylin.measure.extendedcolumn.ExtendedColumnMeasureType;
 import org.apache.kylin.measure.hllc.HLLCMeasureType;
+import org.apache.kylin.measure.percentile.DDSketchMeasureType;
 import org.apache.kylin.measure.percentile.PercentileMeasureType;
 import org.apache.kylin.measure.raw.RawMeasureType;
+import org.apache.kylin.measure.theta.ThetaMeasureType;
 import org.apache.kylin.measure.topn.TopNMeasureType;
 import org.apache.kylin.metadata.datatype.DataType;
 import org.apache.kylin.metadata.datatype.DataTypeSerializer;
@@ -111,6 +113,8 @@ abstract public class MeasureTypeFactory<T> {
         factoryInsts.add(new RawMeasureType.Factory());
         factoryInsts.add(new ExtendedColumnMeasureType.Factory());
         factoryInsts.add(new PercentileMeasureType.Factory());
+        factoryInsts.add(new DDSketchMeasureType.Factory());
+        factoryInsts.add(new ThetaMeasureType.Factory());
 
         logger.info("Checking custom measure types from kylin config");
 
@@ -163,8 +167,12 @@ abstract public class MeasureTypeFactory<T> {
             if (udaf.equals(FunctionDesc.FUNC_COUNT_DISTINCT))
                 continue; // skip built-in function
 
-            if (udafFactories.containsKey(udaf))
+            if (udafFactories.containsKey(udaf)) {
+                // another data type of the same function, each measure is rewritten to the UDAF of its own type
+                if (udafFactories.get(udaf).getAggrFunctionName().equals(factory.getAggrFunctionName()))
+                    continue;
                 throw new IllegalStateException("UDAF '" + udaf + "' was dup declared by " + udafFactories.get(udaf) + " and " + factory);
+            }
 
             udafFactories.put(udaf, factory);
             udafMap.put(udaf, udafs.get(udaf));
@@ -38,6 +38,29 @@ public class LongIngester extends MeasureIngester<Long> {
             return Long.valueOf(values[0]);
     }
 
+    @Override
+    public Long valueOf(byte[] value, int offset, int length, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+        if (value == null || length == 0)
+            return new Long(0L);
+
+        // plain decimal digits are parsed in place, anything else goes the string way for the same errors
+        int i = offset, end = offset + length;
+        boolean negative = value[i] == '-';
+        if (negative || value[i] == '+')
+            i++;
+        if (i == end || end - i > 18)
+            return super.valueOf(value, offset, length, measureDesc, dictionaryMap);
+
+        long result = 0;
+        for (; i < end; i++) {
+            int d = value[i] - '0';
+            if (d < 0 || d > 9)
+                return super.valueOf(value, offset, length, measureDesc, dictionaryMap);
+            result = result * 10 + d;
+        }
+        return Long.valueOf(negative ? -result : result);
+    }
+
     @Override
     public void reset() {
 
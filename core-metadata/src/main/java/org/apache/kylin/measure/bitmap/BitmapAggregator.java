@@ -18,7 +18,11 @@
 
 package org.apache.kylin.measure.bitmap;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
 
 public class BitmapAggregator extends MeasureAggregator<BitmapCounter> {
     private static final BitmapCounterFactory bitmapFactory = RoaringBitmapCounterFactory.INSTANCE;
@@ -43,6 +47,21 @@ public class BitmapAggregator extends MeasureAggregator<BitmapCounter> {
         sum.orWith(value);
     }
 
+    @Override
+    public void aggregate(ByteBuffer in, DataTypeSerializer<BitmapCounter> serializer) {
+        // the first value is kept as a copy like above, the others are OR-ed straight from the buffer
+        if (sum == null) {
+            sum = serializer.deserialize(in);
+            return;
+        }
+
+        try {
+            sum.orWith(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public BitmapCounter aggregate(BitmapCounter value1, BitmapCounter value2) {
         BitmapCounter merged = bitmapFactory.newBitmap();
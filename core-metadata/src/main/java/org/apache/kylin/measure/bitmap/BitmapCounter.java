@@ -39,6 +39,12 @@ public interface BitmapCounter extends Iterable<Integer> {
      */
     void orWith(BitmapCounter another);
 
+    /**
+     * In-place bitwise OR with the bitmap serialized at the current position of `in`, without deserializing it.
+     * The position is moved past the serialized bitmap, and later changes to `in` do not affect this counter.
+     */
+    void orWith(ByteBuffer in) throws IOException;
+
     /**
      * In-place bitwise AND (intersection) operation. The current bitmap is modified.
      * @param another other bitmap
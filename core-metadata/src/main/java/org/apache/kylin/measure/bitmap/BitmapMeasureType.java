@@ -25,7 +25,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.DictionaryIdRemap;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.measure.MeasureIngester;
 import org.apache.kylin.measure.MeasureType;
@@ -96,10 +98,14 @@ public class BitmapMeasureType extends MeasureType<BitmapCounter> {
 
     @Override
     public MeasureIngester<BitmapCounter> newIngester() {
-        final BitmapCounterFactory factory = RoaringBitmapCounterFactory.INSTANCE;
+        final int shardBits = KylinConfig.getInstanceFromEnv().getBitmapShardBits();
 
         return new MeasureIngester<BitmapCounter>() {
-            BitmapCounter current = factory.newBitmap();
+            BitmapCounter current = newBitmap();
+
+            private BitmapCounter newBitmap() {
+                return shardBits > 0 ? new ShardedBitmapCounter(shardBits) : RoaringBitmapCounterFactory.INSTANCE.newBitmap();
+            }
 
             @Override
             public BitmapCounter valueOf(String[] values, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
@@ -133,7 +139,7 @@ public class BitmapMeasureType extends MeasureType<BitmapCounter> {
                 Dictionary<String> sourceDict = oldDicts.get(colRef);
                 Dictionary<String> mergedDict = newDicts.get(colRef);
 
-                BitmapCounter retValue = factory.newBitmap();
+                BitmapCounter retValue = newBitmap();
                 for (int id : value) {
                     int newId;
                     String v = sourceDict.getValueFromId(id);
@@ -147,9 +153,27 @@ public class BitmapMeasureType extends MeasureType<BitmapCounter> {
                 return retValue;
             }
 
+            @Override
+            public BitmapCounter reEncodeDictionary(BitmapCounter value, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> oldDicts, Map<TblColRef, Dictionary<String>> newDicts, Map<TblColRef, DictionaryIdRemap> remaps) {
+                if (!needDictionaryColumn(measureDesc.getFunction())) {
+                    return value;
+                }
+                TblColRef colRef = measureDesc.getFunction().getParameter().getColRefs().get(0);
+                DictionaryIdRemap remap = remaps.get(colRef);
+                if (remap == null) {
+                    return reEncodeDictionary(value, measureDesc, oldDicts, newDicts);
+                }
+
+                BitmapCounter retValue = newBitmap();
+                for (int id : value) {
+                    retValue.add(remap.remap(id));
+                }
+                return retValue;
+            }
+
             @Override
             public void reset() {
-                current = factory.newBitmap();
+                current = newBitmap();
             }
         };
     }
@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 public class BitmapSerializer extends DataTypeSerializer<BitmapCounter> {
     private static final BitmapCounterFactory factory = RoaringBitmapCounterFactory.INSTANCE;
     private static final BitmapCounter DELEGATE = factory.newBitmap();
+    private static final BitmapCounter SHARDED_DELEGATE = new ShardedBitmapCounter(16);
 
     // called by reflection
     public BitmapSerializer(DataType type) {
@@ -53,7 +54,7 @@ public class BitmapSerializer extends DataTypeSerializer<BitmapCounter> {
 
     @Override
     public int peekLength(ByteBuffer in) {
-        return DELEGATE.peekLength(in);
+        return ShardedBitmapCounter.isSharded(in) ? SHARDED_DELEGATE.peekLength(in) : DELEGATE.peekLength(in);
     }
 
     @Override
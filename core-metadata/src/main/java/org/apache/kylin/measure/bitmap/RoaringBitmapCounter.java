@@ -54,6 +54,10 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
         return result;
     }
 
+    ImmutableRoaringBitmap getBitmap() {
+        return bitmap;
+    }
+
     @Override
     public void add(int value) {
         getMutableBitmap().add(value);
@@ -66,9 +70,30 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
             getMutableBitmap().or(input.bitmap);
             return;
         }
+        if (another instanceof ShardedBitmapCounter) {
+            ShardedBitmapCounter input = (ShardedBitmapCounter) another;
+            for (int i = 0; i < input.getShardCount(); i++) {
+                if (input.getCount(i) > 0)
+                    getMutableBitmap().or(input.shard(i).bitmap);
+            }
+            return;
+        }
         throw new IllegalArgumentException("Unsupported type: " + another.getClass().getCanonicalName());
     }
 
+    @Override
+    public void orWith(ByteBuffer in) throws IOException {
+        if (ShardedBitmapCounter.isSharded(in)) {
+            orWith(RoaringBitmapCounterFactory.INSTANCE.newBitmap(in));
+            return;
+        }
+        // the input only maps the buffer, the union copies what it takes from it
+        ImmutableRoaringBitmap input = new ImmutableRoaringBitmap(in);
+        int size = input.serializedSizeInBytes();
+        getMutableBitmap().or(input);
+        in.position(in.position() + size);
+    }
+
     @Override
     public void andWith(BitmapCounter another) {
         if (another instanceof RoaringBitmapCounter) {
@@ -76,6 +101,10 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
             getMutableBitmap().and(input.bitmap);
             return;
         }
+        if (another instanceof ShardedBitmapCounter) {
+            andWith(((ShardedBitmapCounter) another).toPlain());
+            return;
+        }
         throw new IllegalArgumentException("Unsupported type: " + another.getClass().getCanonicalName());
     }
 
@@ -41,7 +41,8 @@ public class RoaringBitmapCounterFactory implements BitmapCounterFactory, Serial
 
     @Override
     public BitmapCounter newBitmap(ByteBuffer in) throws IOException {
-        RoaringBitmapCounter counter = new RoaringBitmapCounter();
+        BitmapCounter counter = ShardedBitmapCounter.isSharded(in) ? new ShardedBitmapCounter(16) : new RoaringBitmapCounter();
+        // the shard bits are read from the serialization
         counter.readFields(in);
         return counter;
     }
@@ -0,0 +1,422 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.bitmap;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+/**
+ * A {@link BitmapCounter} that splits the id space by the high bits into shards of roaring bitmaps.
+ * Shard i holds the ids from (i << shardBits) to ((i + 1) << shardBits) - 1.
+ * <p>
+ * The shards are disjoint, so the count is the sum of the shard counts and no union of the shards is ever built.
+ * Each shard is serialized on its own, so merging from a buffer touches only the shards that are present,
+ * and big counters merge their shards in parallel.
+ * <p>
+ * The serialization starts with a marker byte that a plain roaring bitmap never starts with,
+ * so segments in both layouts can be stored and merged under the same measure.
+ */
+@SuppressWarnings("serial")
+public class ShardedBitmapCounter implements BitmapCounter, Serializable {
+
+    // a plain roaring bitmap starts with its cookie, 12346 or 12347 in little endian
+    static final byte FORMAT_SHARDED = (byte) 0xff;
+
+    // counters bigger than this merge their shards in parallel
+    private static final int PARALLEL_MERGE_BYTES = 1024 * 1024;
+
+    private static volatile ExecutorService mergePool;
+
+    private int shardBits;
+    private RoaringBitmapCounter[] shards; // null for an empty shard
+
+    public ShardedBitmapCounter(int shardBits) {
+        // a shard must hold whole roaring containers
+        if (shardBits < 16 || shardBits > 31)
+            throw new IllegalArgumentException("shard bits must be between 16 and 31, got " + shardBits);
+        this.shardBits = shardBits;
+        this.shards = new RoaringBitmapCounter[0];
+    }
+
+    /** Whether the serialization at the current position of `in` is sharded, the position is not changed. */
+    public static boolean isSharded(ByteBuffer in) {
+        return in.remaining() > 0 && in.get(in.position()) == FORMAT_SHARDED;
+    }
+
+    public int getShardBits() {
+        return shardBits;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /** The count of one shard, the cardinality-only partial of the ids in that shard */
+    public long getCount(int shard) {
+        return shard < shards.length && shards[shard] != null ? shards[shard].getCount() : 0;
+    }
+
+    // the shard of index i, created if absent
+    RoaringBitmapCounter shard(int i) {
+        if (i >= shards.length) {
+            shards = Arrays.copyOf(shards, i + 1);
+        }
+        if (shards[i] == null) {
+            shards[i] = new RoaringBitmapCounter();
+        }
+        return shards[i];
+    }
+
+    @Override
+    public void add(int value) {
+        shard(value >>> shardBits).add(value);
+    }
+
+    @Override
+    public void orWith(BitmapCounter another) {
+        if (another instanceof ShardedBitmapCounter) {
+            ShardedBitmapCounter input = (ShardedBitmapCounter) another;
+            if (input.shardBits == shardBits) {
+                orWithShards(input);
+            } else {
+                for (RoaringBitmapCounter shard : input.shards) {
+                    if (shard != null)
+                        orWithPlain(shard.getBitmap());
+                }
+            }
+            return;
+        }
+        if (another instanceof RoaringBitmapCounter) {
+            orWithPlain(((RoaringBitmapCounter) another).getBitmap());
+            return;
+        }
+        throw new IllegalArgumentException("Unsupported type: " + another.getClass().getCanonicalName());
+    }
+
+    private void orWithShards(final ShardedBitmapCounter input) {
+        if (input.shards.length > shards.length) {
+            shards = Arrays.copyOf(shards, input.shards.length);
+        }
+        if (input.shards.length < 2 || input.getMemBytes() < PARALLEL_MERGE_BYTES) {
+            for (int i = 0; i < input.shards.length; i++) {
+                orShard(i, input.shards[i]);
+            }
+            return;
+        }
+
+        // every task touches its own shard only, the array is not resized meanwhile
+        List<Future<?>> futures = Lists.newArrayListWithCapacity(input.shards.length);
+        for (int i = 0; i < input.shards.length; i++) {
+            if (input.shards[i] == null)
+                continue;
+            final int shard = i;
+            futures.add(getMergePool().submit(new Runnable() {
+                @Override
+                public void run() {
+                    orShard(shard, input.shards[shard]);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while merging bitmap shards", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to merge bitmap shards", e.getCause());
+        }
+    }
+
+    private void orShard(int i, RoaringBitmapCounter input) {
+        if (input == null)
+            return;
+        if (shards[i] == null) {
+            shards[i] = new RoaringBitmapCounter();
+        }
+        shards[i].orWith(input);
+    }
+
+    // split a plain bitmap by the shard ranges, only for counters of the plain layout
+    private void orWithPlain(ImmutableRoaringBitmap bitmap) {
+        if (bitmap.isEmpty())
+            return;
+
+        // ids are ordered as unsigned, the same as the shard index
+        int first = bitmap.getIntIterator().next() >>> shardBits;
+        int last = bitmap.getReverseIntIterator().next() >>> shardBits;
+        if (first == last) {
+            shard(first).orWith(new RoaringBitmapCounter(bitmap));
+            return;
+        }
+        for (int i = first; i <= last; i++) {
+            MutableRoaringBitmap range = new MutableRoaringBitmap();
+            range.add((long) i << shardBits, (long) (i + 1) << shardBits);
+            MutableRoaringBitmap part = ImmutableRoaringBitmap.and(bitmap, range);
+            if (!part.isEmpty()) {
+                shard(i).orWith(new RoaringBitmapCounter(part));
+            }
+        }
+    }
+
+    @Override
+    public void orWith(ByteBuffer in) throws IOException {
+        if (!isSharded(in)) {
+            // the input only maps the buffer, the shards copy what they take from it
+            ImmutableRoaringBitmap input = new ImmutableRoaringBitmap(in);
+            int size = input.serializedSizeInBytes();
+            orWithPlain(input);
+            in.position(in.position() + size);
+            return;
+        }
+
+        int mark = in.position();
+        in.get();
+        int bits = BytesUtil.readVInt(in);
+        if (bits != shardBits) {
+            in.position(mark);
+            ShardedBitmapCounter input = new ShardedBitmapCounter(bits);
+            input.readFields(in);
+            orWith(input);
+            return;
+        }
+
+        int[] header = readHeader(in);
+        for (int h = 0; h < header.length; h += 2) {
+            int i = header[h];
+            if (i >= shards.length) {
+                shards = Arrays.copyOf(shards, i + 1);
+            }
+            if (shards[i] == null) {
+                shards[i] = new RoaringBitmapCounter();
+                shards[i].readFields(in);
+            } else {
+                shards[i].orWith(in);
+            }
+        }
+    }
+
+    @Override
+    public void andWith(BitmapCounter another) {
+        if (another instanceof ShardedBitmapCounter && ((ShardedBitmapCounter) another).shardBits == shardBits) {
+            ShardedBitmapCounter input = (ShardedBitmapCounter) another;
+            for (int i = 0; i < shards.length; i++) {
+                if (shards[i] == null)
+                    continue;
+                if (i < input.shards.length && input.shards[i] != null) {
+                    shards[i].andWith(input.shards[i]);
+                } else {
+                    shards[i] = null;
+                }
+            }
+            return;
+        }
+        if (another instanceof ShardedBitmapCounter) {
+            another = ((ShardedBitmapCounter) another).toPlain();
+        }
+        if (another instanceof RoaringBitmapCounter) {
+            // the intersection with the whole bitmap keeps a shard in its range
+            for (RoaringBitmapCounter shard : shards) {
+                if (shard != null)
+                    shard.andWith(another);
+            }
+            return;
+        }
+        throw new IllegalArgumentException("Unsupported type: " + another.getClass().getCanonicalName());
+    }
+
+    /** Union of the shards as one plain counter */
+    RoaringBitmapCounter toPlain() {
+        RoaringBitmapCounter result = new RoaringBitmapCounter();
+        for (RoaringBitmapCounter shard : shards) {
+            if (shard != null)
+                result.orWith(shard);
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        shards = new RoaringBitmapCounter[0];
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (RoaringBitmapCounter shard : shards) {
+            if (shard != null)
+                count += shard.getCount();
+        }
+        return count;
+    }
+
+    @Override
+    public int getMemBytes() {
+        int bytes = 16 + 8 * shards.length;
+        for (RoaringBitmapCounter shard : shards) {
+            if (shard != null)
+                bytes += shard.getMemBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        List<Iterator<Integer>> iterators = Lists.newArrayListWithCapacity(shards.length);
+        for (RoaringBitmapCounter shard : shards) {
+            if (shard != null)
+                iterators.add(shard.iterator());
+        }
+        return Iterators.concat(iterators.iterator());
+    }
+
+    /**
+     * Format: the marker byte, shard bits as vint, the count of non-empty shards as vint, the index of each
+     * non-empty shard as vint followed by its length as int, then the roaring serialization of those shards.
+     * Empty shards take no space, however high the ids are.
+     */
+    @Override
+    public void write(ByteBuffer out) throws IOException {
+        int nonEmpty = 0;
+        for (RoaringBitmapCounter shard : shards) {
+            if (shard != null && shard.getCount() > 0)
+                nonEmpty++;
+        }
+
+        out.put(FORMAT_SHARDED);
+        BytesUtil.writeVInt(shardBits, out);
+        BytesUtil.writeVInt(nonEmpty, out);
+        int[] lengthPos = new int[nonEmpty];
+        for (int i = 0, n = 0; i < shards.length; i++) {
+            if (shards[i] == null || shards[i].getCount() == 0)
+                continue;
+            BytesUtil.writeVInt(i, out);
+            lengthPos[n++] = out.position();
+            out.putInt(0);
+        }
+        for (int i = 0, n = 0; i < shards.length; i++) {
+            if (shards[i] == null || shards[i].getCount() == 0)
+                continue;
+            int start = out.position();
+            shards[i].write(out);
+            out.putInt(lengthPos[n++], out.position() - start);
+        }
+    }
+
+    @Override
+    public void readFields(ByteBuffer in) throws IOException {
+        if (in.get() != FORMAT_SHARDED)
+            throw new IllegalStateException("Not a sharded bitmap");
+        shardBits = BytesUtil.readVInt(in);
+        int[] header = readHeader(in);
+        shards = new RoaringBitmapCounter[header.length == 0 ? 0 : header[header.length - 2] + 1];
+        for (int h = 0; h < header.length; h += 2) {
+            int i = header[h];
+            shards[i] = new RoaringBitmapCounter();
+            shards[i].readFields(in);
+        }
+    }
+
+    // the (shard index, length) pairs of the non-empty shards, in ascending shard index
+    private static int[] readHeader(ByteBuffer in) {
+        int[] header = new int[2 * BytesUtil.readVInt(in)];
+        for (int h = 0; h < header.length; h += 2) {
+            header[h] = BytesUtil.readVInt(in);
+            header[h + 1] = in.getInt();
+        }
+        return header;
+    }
+
+    @Override
+    public int peekLength(ByteBuffer in) {
+        int mark = in.position();
+        in.get();
+        BytesUtil.readVInt(in);
+        int[] header = readHeader(in);
+        int len = in.position() - mark;
+        for (int h = 1; h < header.length; h += 2) {
+            len += header[h];
+        }
+        in.position(mark);
+        return len;
+    }
+
+    private static ExecutorService getMergePool() {
+        if (mergePool == null) {
+            synchronized (ShardedBitmapCounter.class) {
+                if (mergePool == null) {
+                    mergePool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory());
+                }
+            }
+        }
+        return mergePool;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ShardedBitmapCounter))
+            return false;
+        ShardedBitmapCounter other = (ShardedBitmapCounter) obj;
+        if (shardBits != other.shardBits)
+            return false;
+        for (int i = 0, n = Math.max(shards.length, other.shards.length); i < n; i++) {
+            RoaringBitmapCounter a = i < shards.length ? shards[i] : null;
+            RoaringBitmapCounter b = i < other.shards.length ? other.shards[i] : null;
+            if (a == null || b == null) {
+                if ((a == null ? 0 : a.getCount()) + (b == null ? 0 : b.getCount()) > 0)
+                    return false;
+            } else if (!a.equals(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = shardBits;
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] != null && shards[i].getCount() > 0)
+                result = 31 * result + i * 17 + shards[i].hashCode();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedBitmapCounter[" + getCount() + "]";
+    }
+}
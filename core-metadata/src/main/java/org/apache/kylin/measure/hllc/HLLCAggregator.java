@@ -18,7 +18,10 @@
 
 package org.apache.kylin.measure.hllc;
 
+import java.nio.ByteBuffer;
+
 import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
 
 /**
  */
@@ -45,6 +48,13 @@ public class HLLCAggregator extends MeasureAggregator<HLLCounter> {
             sum.merge(value);
     }
 
+    @Override
+    public void aggregate(ByteBuffer in, DataTypeSerializer<HLLCounter> serializer) {
+        if (sum == null)
+            sum = new HLLCounter(precision);
+        sum.mergeRegisters(in);
+    }
+
     @Override
     public HLLCounter aggregate(HLLCounter value1, HLLCounter value2) {
         HLLCounter result = new HLLCounter(value1);
@@ -99,21 +99,30 @@ public class HLLCounter implements Serializable, Comparable<HLLCounter> {
         add(hashFunc.hashBytes(value, offset, length).asLong());
     }
 
+    /** Add a value by its 64 bits hash, which must be evenly distributed like the output of the hash function. */
+    public void addHashDirectly(long hash) {
+        add(hash);
+    }
+
     protected void add(long hash) {
         int bucketMask = m - 1;
         int bucket = (int) (hash & bucketMask);
         int firstOnePos = Long.numberOfLeadingZeros(hash | bucketMask) + 1;
+        mergeRegister(bucket, (byte) firstOnePos);
+    }
+
+    private void mergeRegister(int bucket, byte value) {
         if (register.getRegisterType() == RegisterType.SINGLE_VALUE) {
             SingleValueRegister sr = (SingleValueRegister) register;
             int pos = sr.getSingleValuePos();
             if (pos < 0 || pos == bucket) { //one or zero value
-                setIfBigger(register, bucket, (byte) firstOnePos);
+                setIfBigger(register, bucket, value);
             } else { //two value
                 this.register = sr.toSparse();
-                setIfBigger(register, bucket, (byte) firstOnePos);
+                setIfBigger(register, bucket, value);
             }
         } else {
-            setIfBigger(register, bucket, (byte) firstOnePos);
+            setIfBigger(register, bucket, value);
             toDenseIfNeeded();
         }
     }
@@ -334,6 +343,54 @@ public class HLLCounter implements Serializable, Comparable<HLLCounter> {
             throw new IllegalStateException();
     }
 
+    /**
+     * Merge the registers serialized by writeRegisters() at the buffer into this counter, without reading them
+     * into another counter first. The buffer position is moved past the registers.
+     */
+    public void mergeRegisters(ByteBuffer in) {
+        byte scheme = in.get();
+        if (scheme == 0) { // map scheme
+            int size = BytesUtil.readVInt(in);
+            if (size > m)
+                throw new IllegalArgumentException("register size (" + size + ") cannot be larger than m (" + m + ")");
+            int indexLen = getRegisterIndexSize();
+            for (int i = 0; i < size; i++) {
+                int key = readUnsigned(in, indexLen);
+                mergeRegister(key, in.get());
+            }
+        } else if (scheme == 1) { // array scheme
+            if (register.getRegisterType() == RegisterType.SINGLE_VALUE) {
+                register = ((SingleValueRegister) register).toDense(p);
+            } else if (register.getRegisterType() == RegisterType.SPARSE) {
+                register = ((SparseRegister) register).toDense(p);
+            }
+            maxMerge(((DenseRegister) register).getRawRegister(), in);
+        } else
+            throw new IllegalStateException();
+    }
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // a register is never more than 65, so the top bit of every byte is free and a long compares eight registers at once
+    private static void maxMerge(byte[] registers, ByteBuffer in) {
+        ByteBuffer words = ByteBuffer.wrap(registers).order(in.order());
+        int i = 0;
+        for (; i + 8 <= registers.length; i += 8) {
+            long a = words.getLong(i);
+            long b = in.getLong();
+            if (a != b) {
+                long aNotLess = ((a | HIGH_BITS) - b) & HIGH_BITS; // top bit of a byte is set where a >= b
+                long mask = (aNotLess >>> 7) * 0xFF;
+                words.putLong(i, (a & mask) | (b & ~mask));
+            }
+        }
+        for (; i < registers.length; i++) {
+            byte b = in.get();
+            if (b > registers[i])
+                registers[i] = b;
+        }
+    }
+
     public int peekLength(ByteBuffer in) {
         int mark = in.position();
         int len;
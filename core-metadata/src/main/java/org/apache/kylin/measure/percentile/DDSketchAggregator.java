@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.percentile;
+
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+
+@SuppressWarnings("serial")
+public class DDSketchAggregator extends MeasureAggregator<DDSketchCounter> {
+    final int precision;
+    DDSketchCounter sum = null;
+
+    public DDSketchAggregator(int precision) {
+        this.precision = precision;
+    }
+
+    @Override
+    public void reset() {
+        sum = null;
+    }
+
+    @Override
+    public void aggregate(DDSketchCounter value) {
+        if (sum == null)
+            sum = new DDSketchCounter(value);
+        else
+            sum.merge(value);
+    }
+
+    @Override
+    public void aggregate(ByteBuffer in, DataTypeSerializer<DDSketchCounter> serializer) {
+        if (sum == null)
+            sum = new DDSketchCounter(precision);
+        sum.mergeRegisters(in);
+    }
+
+    @Override
+    public DDSketchCounter aggregate(DDSketchCounter value1, DDSketchCounter value2) {
+        DDSketchCounter merged = new DDSketchCounter(value1);
+        merged.merge(value2);
+        return merged;
+    }
+
+    @Override
+    public DDSketchCounter getState() {
+        return sum;
+    }
+
+    @Override
+    public int getMemBytesEstimate() {
+        // the buckets grow with the range of the values, up to MAX_BUCKETS a sign
+        return sum == null ? 64 : sum.getMemBytes();
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.percentile;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.common.util.BytesUtil;
+
+import com.tdunning.math.stats.AVLTreeDigest;
+import com.tdunning.math.stats.Centroid;
+import com.tdunning.math.stats.TDigest;
+
+/**
+ * A DDSketch quantile sketch with relative error bound. A value v falls in the bucket of index
+ * ceil(log(v) / log(gamma)), gamma = (1 + a) / (1 - a), and any quantile is answered within the relative
+ * error a = 1 / precision of the true value. Adding a value is one logarithm and one array increment,
+ * merging two sketches adds their bucket arrays.
+ * <p>
+ * Positive and negative values have their own buckets, by magnitude. A store keeps at most MAX_BUCKETS
+ * buckets, beyond that the buckets of the smallest magnitudes are collapsed, which only loses accuracy
+ * for the values closest to zero.
+ * <p>
+ * The serialization starts with a marker byte. Bytes of a PercentileCounter (t-digest) do not, and are
+ * converted on read, so a percentile measure can move to this sketch with its old segments in place.
+ */
+@SuppressWarnings("serial")
+public class DDSketchCounter implements Serializable {
+    private static final double INVALID_QUANTILE_RATIO = -1;
+
+    // the t-digest encoding starts with an int of a small value, whose first byte is 0
+    static final byte FORMAT_DDSKETCH = (byte) 0xdd;
+
+    static final int MAX_BUCKETS = 2048;
+    private static final int INIT_BUCKETS = 32;
+
+    // magnitudes below this are counted as zero
+    private static final double MIN_INDEXABLE = Double.MIN_NORMAL;
+
+    final int precision;
+    double quantileRatio;
+
+    private final double gamma;
+    private final double logGamma;
+
+    private final Store positives = new Store();
+    private final Store negatives = new Store();
+    private long zeroCount;
+
+    public DDSketchCounter(int precision) {
+        this(precision, INVALID_QUANTILE_RATIO);
+    }
+
+    public DDSketchCounter(DDSketchCounter another) {
+        this(another.precision, another.quantileRatio);
+        merge(another);
+    }
+
+    public DDSketchCounter(int precision, double quantileRatio) {
+        if (precision < 2)
+            throw new IllegalArgumentException("precision must be at least 2, got " + precision);
+        this.precision = precision;
+        this.quantileRatio = quantileRatio;
+        double alpha = 1.0 / precision;
+        this.gamma = (1 + alpha) / (1 - alpha);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // the value of a bucket, within the relative error of all values in it
+    private double value(int index) {
+        return 2 * Math.exp(index * logGamma) / (gamma + 1);
+    }
+
+    public void add(double v) {
+        add(v, 1);
+    }
+
+    public void add(double v, long count) {
+        if (v > MIN_INDEXABLE) {
+            positives.add(index(v), count);
+        } else if (v < -MIN_INDEXABLE) {
+            negatives.add(index(-v), count);
+        } else if (!Double.isNaN(v)) {
+            zeroCount += count;
+        }
+    }
+
+    public void merge(DDSketchCounter another) {
+        if (another.precision == precision) {
+            positives.merge(another.positives);
+            negatives.merge(another.negatives);
+        } else {
+            // buckets of another precision are added by their values
+            another.addBucketsTo(another.positives, this, 1);
+            another.addBucketsTo(another.negatives, this, -1);
+        }
+        zeroCount += another.zeroCount;
+    }
+
+    private void addBucketsTo(Store store, DDSketchCounter target, int sign) {
+        for (int i = 0; i < store.counts.length; i++) {
+            if (store.counts[i] != 0)
+                target.add(sign * value(store.offset + i), store.counts[i]);
+        }
+    }
+
+    public long getCount() {
+        return positives.total + negatives.total + zeroCount;
+    }
+
+    public double getResultEstimate() {
+        return getQuantile(quantileRatio);
+    }
+
+    public double getQuantile(double q) {
+        long count = getCount();
+        if (count == 0 || q < 0 || q > 1)
+            return Double.NaN;
+
+        long rank = (long) (q * (count - 1));
+        long seen = 0;
+        // from the most negative value up
+        for (int i = negatives.counts.length - 1; i >= 0; i--) {
+            seen += negatives.counts[i];
+            if (seen > rank)
+                return -value(negatives.offset + i);
+        }
+        seen += zeroCount;
+        if (seen > rank)
+            return 0;
+        for (int i = 0; i < positives.counts.length; i++) {
+            seen += positives.counts[i];
+            if (seen > rank)
+                return value(positives.offset + i);
+        }
+        return value(positives.offset + positives.counts.length - 1);
+    }
+
+    public void clear() {
+        positives.clear();
+        negatives.clear();
+        zeroCount = 0;
+    }
+
+    public int getMemBytes() {
+        return 64 + 8 * (positives.counts.length + negatives.counts.length);
+    }
+
+    // ============================================================================
+
+    /** Format: the marker byte, precision as vint, the zero count as vlong, then the positive and the negative store */
+    public void writeRegisters(ByteBuffer out) {
+        out.put(FORMAT_DDSKETCH);
+        BytesUtil.writeVInt(precision, out);
+        BytesUtil.writeVLong(zeroCount, out);
+        positives.write(out);
+        negatives.write(out);
+    }
+
+    public void readRegisters(ByteBuffer in) {
+        clear();
+        mergeRegisters(in);
+    }
+
+    /**
+     * Merge the serialization at the buffer into this sketch, the buckets are added straight from the bytes.
+     * A serialized t-digest is merged by its centroids. The buffer position is moved past the serialization.
+     */
+    public void mergeRegisters(ByteBuffer in) {
+        if (in.get(in.position()) != FORMAT_DDSKETCH) {
+            TDigest digest = AVLTreeDigest.fromBytes(in);
+            for (Centroid centroid : digest.centroids()) {
+                add(centroid.mean(), centroid.count());
+            }
+            return;
+        }
+
+        in.get();
+        int inPrecision = BytesUtil.readVInt(in);
+        if (inPrecision != precision) {
+            DDSketchCounter another = new DDSketchCounter(inPrecision);
+            another.zeroCount = BytesUtil.readVLong(in);
+            another.positives.read(in);
+            another.negatives.read(in);
+            merge(another);
+            return;
+        }
+        zeroCount += BytesUtil.readVLong(in);
+        positives.mergeFrom(in);
+        negatives.mergeFrom(in);
+    }
+
+    public int peekLength(ByteBuffer in) {
+        int mark = in.position();
+        if (in.get(mark) != FORMAT_DDSKETCH) {
+            AVLTreeDigest.fromBytes(in);
+        } else {
+            in.get();
+            BytesUtil.readVInt(in);
+            BytesUtil.readVLong(in);
+            Store.skip(in);
+            Store.skip(in);
+        }
+        int total = in.position() - mark;
+        in.position(mark);
+        return total;
+    }
+
+    public int maxLength() {
+        // the header, and each store with offset, length and counts of up to 9 bytes
+        return 1 + 5 + 9 + 2 * (5 + 5 + 9 * MAX_BUCKETS);
+    }
+
+    public int getBytesEstimate() {
+        // around a thousand buckets of small counts for data spanning a few orders of magnitude
+        return 2 * 1024;
+    }
+
+    /**
+     * Bucket counts of one sign over a window of bucket indexes, counts[i] is the bucket of index offset + i.
+     * The window grows by doubling up to MAX_BUCKETS, then buckets below it are collapsed into its lowest bucket.
+     */
+    private static class Store implements Serializable {
+        long[] counts = new long[0];
+        int offset;
+        long total;
+
+        void add(int index, long count) {
+            if (count == 0)
+                return;
+            // slot() may reallocate counts, so it must run before the array is read
+            int slot = slot(index);
+            counts[slot] += count;
+            total += count;
+        }
+
+        private int slot(int index) {
+            if (counts.length == 0) {
+                counts = new long[INIT_BUCKETS];
+                offset = index;
+            }
+            int top = offset + counts.length;
+            if (index < offset) {
+                int newLength = Math.min(MAX_BUCKETS, Math.max(top - index, counts.length * 2));
+                if (newLength != counts.length)
+                    resize(top - newLength, newLength);
+                return Math.max(0, index - offset);
+            }
+            if (index >= top) {
+                if (index - offset + 1 > MAX_BUCKETS) {
+                    resize(index - MAX_BUCKETS + 1, MAX_BUCKETS);
+                } else {
+                    resize(offset, Math.min(MAX_BUCKETS, Math.max(index - offset + 1, counts.length * 2)));
+                }
+            }
+            return index - offset;
+        }
+
+        // move the window, buckets below the new offset collapse into the lowest bucket
+        private void resize(int newOffset, int newLength) {
+            long[] newCounts = new long[newLength];
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0)
+                    newCounts[Math.max(0, i + offset - newOffset)] += counts[i];
+            }
+            counts = newCounts;
+            offset = newOffset;
+        }
+
+        void merge(Store another) {
+            int first = another.firstNonZero();
+            if (first < 0)
+                return;
+            int last = another.lastNonZero();
+            // grow the window to both ends once
+            slot(another.offset + last);
+            slot(another.offset + first);
+            for (int i = first; i <= last; i++) {
+                add(another.offset + i, another.counts[i]);
+            }
+        }
+
+        int firstNonZero() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0)
+                    return i;
+            }
+            return -1;
+        }
+
+        int lastNonZero() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0)
+                    return i;
+            }
+            return -1;
+        }
+
+        void clear() {
+            counts = new long[0];
+            total = 0;
+        }
+
+        /** Format: the number of buckets from the lowest to the highest non-empty one as vint, then if not 0, the offset as vint and the counts as vlong */
+        void write(ByteBuffer out) {
+            int first = firstNonZero();
+            if (first < 0) {
+                BytesUtil.writeVInt(0, out);
+                return;
+            }
+            int last = lastNonZero();
+            BytesUtil.writeVInt(last - first + 1, out);
+            BytesUtil.writeVInt(offset + first, out);
+            for (int i = first; i <= last; i++) {
+                BytesUtil.writeVLong(counts[i], out);
+            }
+        }
+
+        void read(ByteBuffer in) {
+            clear();
+            mergeFrom(in);
+        }
+
+        void mergeFrom(ByteBuffer in) {
+            int length = BytesUtil.readVInt(in);
+            if (length == 0)
+                return;
+            int inOffset = BytesUtil.readVInt(in);
+            // the last bucket is never empty, grow the window to both ends once
+            if (length > 1)
+                slot(inOffset + length - 1);
+            for (int i = 0; i < length; i++) {
+                add(inOffset + i, BytesUtil.readVLong(in));
+            }
+        }
+
+        static void skip(ByteBuffer in) {
+            int length = BytesUtil.readVInt(in);
+            if (length == 0)
+                return;
+            BytesUtil.readVInt(in);
+            for (int i = 0; i < length; i++) {
+                BytesUtil.readVLong(in);
+            }
+        }
+    }
+}
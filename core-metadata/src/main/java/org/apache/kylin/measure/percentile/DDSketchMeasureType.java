@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.percentile;
+
+import java.util.Map;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.measure.MeasureIngester;
+import org.apache.kylin.measure.MeasureType;
+import org.apache.kylin.measure.MeasureTypeFactory;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The PERCENTILE function backed by a DDSketch instead of a t-digest, e.g. "returntype": "ddsketch(100)"
+ * for a relative error of 1/100. Queries of PERCENTILE go to whichever type the measure has.
+ * <p>
+ * To migrate a percentile measure, change its return type from percentile(N) to ddsketch(N);
+ * the t-digests of existing segments are converted when read.
+ */
+public class DDSketchMeasureType extends MeasureType<DDSketchCounter> {
+    // relative accuracy saved in DataType.precision, as its reciprocal
+    private final DataType dataType;
+    public static final String DATATYPE_DDSKETCH = "ddsketch";
+
+    static final int DEFAULT_PRECISION = 100;
+
+    public DDSketchMeasureType(String funcName, DataType dataType) {
+        this.dataType = dataType;
+    }
+
+    static int getPrecision(DataType dataType) {
+        return dataType.getPrecision() > 0 ? dataType.getPrecision() : DEFAULT_PRECISION;
+    }
+
+    public static class Factory extends MeasureTypeFactory<DDSketchCounter> {
+
+        @Override
+        public MeasureType<DDSketchCounter> createMeasureType(String funcName, DataType dataType) {
+            return new DDSketchMeasureType(funcName, dataType);
+        }
+
+        @Override
+        public String getAggrFunctionName() {
+            return PercentileMeasureType.FUNC_PERCENTILE;
+        }
+
+        @Override
+        public String getAggrDataTypeName() {
+            return DATATYPE_DDSKETCH;
+        }
+
+        @Override
+        public Class<? extends DataTypeSerializer<DDSketchCounter>> getAggrDataTypeSerializer() {
+            return DDSketchSerializer.class;
+        }
+    }
+
+    @Override
+    public MeasureIngester<DDSketchCounter> newIngester() {
+        return new MeasureIngester<DDSketchCounter>() {
+            DDSketchCounter current = new DDSketchCounter(getPrecision(dataType));
+
+            @Override
+            public DDSketchCounter valueOf(String[] values, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> dictionaryMap) {
+                DDSketchCounter counter = current;
+                counter.clear();
+                for (String v : values) {
+                    if (v != null)
+                        counter.add(Double.parseDouble(v));
+                }
+                return counter;
+            }
+        };
+    }
+
+    @Override
+    public MeasureAggregator<DDSketchCounter> newAggregator() {
+        return new DDSketchAggregator(getPrecision(dataType));
+    }
+
+    @Override
+    public boolean needRewrite() {
+        return true;
+    }
+
+    static final Map<String, Class<?>> UDAF_MAP = ImmutableMap.<String, Class<?>> of(PercentileMeasureType.FUNC_PERCENTILE, DDSketchAggFunc.class);
+
+    @Override
+    public Map<String, Class<?>> getRewriteCalciteAggrFunctions() {
+        return UDAF_MAP;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.Map;
 import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.DictionaryIdRemap;
 import org.apache.kylin.measure.MeasureAggregator;
 import org.apache.kylin.measure.MeasureIngester;
 import org.apache.kylin.measure.MeasureType;
@@ -153,6 +154,25 @@ public class RawMeasureType extends MeasureType<List<ByteArray>> {
                 }
                 return value;
             }
+
+            @Override
+            public List<ByteArray> reEncodeDictionary(List<ByteArray> value, MeasureDesc measureDesc, Map<TblColRef, Dictionary<String>> oldDicts, Map<TblColRef, Dictionary<String>> newDicts, Map<TblColRef, DictionaryIdRemap> remaps) {
+                TblColRef colRef = getRawColumn(measureDesc.getFunction());
+                DictionaryIdRemap remap = remaps.get(colRef);
+                if (remap == null) {
+                    return reEncodeDictionary(value, measureDesc, oldDicts, newDicts);
+                }
+
+                int sizeOfId = remap.getTargetSizeOfId();
+                byte[] newIdBuf = new byte[value.size() * sizeOfId];
+                int bufOffset = 0;
+                for (ByteArray c : value) {
+                    remap.remap(c.array(), c.offset(), c.length(), newIdBuf, bufOffset);
+                    c.set(newIdBuf, bufOffset, sizeOfId);
+                    bufOffset += sizeOfId;
+                }
+                return value;
+            }
         };
     }
 
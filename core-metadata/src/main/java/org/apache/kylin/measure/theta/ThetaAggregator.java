@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+
+@SuppressWarnings("serial")
+public class ThetaAggregator extends MeasureAggregator<ThetaCounter> {
+    final int lgK;
+    ThetaCounter sum = null;
+
+    public ThetaAggregator(int lgK) {
+        this.lgK = lgK;
+    }
+
+    @Override
+    public void reset() {
+        sum = null;
+    }
+
+    @Override
+    public void aggregate(ThetaCounter value) {
+        if (sum == null)
+            sum = new ThetaCounter(value);
+        else
+            sum.merge(value);
+    }
+
+    @Override
+    public void aggregate(ByteBuffer in, DataTypeSerializer<ThetaCounter> serializer) {
+        if (sum == null)
+            sum = new ThetaCounter(lgK);
+        sum.mergeRegisters(in);
+    }
+
+    @Override
+    public ThetaCounter aggregate(ThetaCounter value1, ThetaCounter value2) {
+        ThetaCounter merged = new ThetaCounter(value1);
+        merged.merge(value2);
+        return merged;
+    }
+
+    @Override
+    public ThetaCounter getState() {
+        return sum;
+    }
+
+    @Override
+    public int getMemBytesEstimate() {
+        // the retained hashes grow with the distinct values, up to 2^lgK
+        return sum == null ? 64 : sum.getMemBytes();
+    }
+}
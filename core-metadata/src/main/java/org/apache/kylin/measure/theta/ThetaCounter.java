@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.kylin.common.util.BytesUtil;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A theta sketch of the KMV (k minimum values) kind for approximate count distinct. Values are hashed
+ * to 63 bits, and the k smallest hashes below theta are kept as a sorted array. The count is estimated
+ * as retained / (theta / 2^63), the relative standard error is about 1 / sqrt(k).
+ *
+ * Unlike HLL, sketches can be intersected as well as unioned, both a linear merge of the sorted hashes
+ * below the smaller theta. So the intersection of sets is estimated without precise bitmaps and without
+ * a global dictionary, in memory bounded by k whatever the cardinality.
+ */
+@SuppressWarnings("serial")
+public class ThetaCounter implements Serializable {
+
+    /** theta of a sketch that has seen at most k values, the count is then exact */
+    public static final long MAX_THETA = Long.MAX_VALUE;
+
+    private static final double TWO_POW_63 = Math.pow(2, 63);
+    private static final int MIN_BUFFER = 16;
+
+    private static final HashFunction hashFunc = Hashing.murmur3_128();
+
+    private final int lgK;
+    private final int k;
+
+    // the sketch: hashes[0, size) are sorted, distinct and below theta
+    private long theta = MAX_THETA;
+    private long[] hashes = new long[0];
+    private int size;
+
+    // hashes added but not merged into the sketch yet, unsorted and possibly duplicated
+    private long[] buffer;
+    private int buffered;
+
+    public ThetaCounter(int lgK) {
+        if (lgK < 4 || lgK > 26)
+            throw new IllegalArgumentException("lgK must be between 4 and 26, got " + lgK);
+        this.lgK = lgK;
+        this.k = 1 << lgK;
+    }
+
+    public ThetaCounter(ThetaCounter another) {
+        this(another.lgK);
+        merge(another);
+    }
+
+    public int getLgK() {
+        return lgK;
+    }
+
+    public void add(String value) {
+        addHash(hashFunc.hashString(value, Charset.defaultCharset()).asLong());
+    }
+
+    public void add(byte[] value) {
+        addHash(hashFunc.hashBytes(value).asLong());
+    }
+
+    void addHash(long hash) {
+        hash >>>= 1;
+        if (hash >= theta)
+            return;
+
+        if (buffer == null) {
+            buffer = new long[Math.min(k, MIN_BUFFER)];
+        } else if (buffered == buffer.length) {
+            if (buffer.length < k) {
+                buffer = Arrays.copyOf(buffer, Math.min(k, buffer.length * 2));
+            } else {
+                compact();
+            }
+        }
+        buffer[buffered++] = hash;
+    }
+
+    // merge the buffered hashes into the sketch
+    private void compact() {
+        if (buffered == 0)
+            return;
+        Arrays.sort(buffer, 0, buffered);
+        union(LongBuffer.wrap(buffer), buffered, theta);
+        buffered = 0;
+    }
+
+    public void clear() {
+        theta = MAX_THETA;
+        size = 0;
+        buffered = 0;
+    }
+
+    public void merge(ThetaCounter another) {
+        compact();
+        another.compact();
+        union(LongBuffer.wrap(another.hashes), another.size, another.theta);
+    }
+
+    /** Keep only the values also in another sketch */
+    public void intersect(ThetaCounter another) {
+        compact();
+        another.compact();
+        long newTheta = Math.min(theta, another.theta);
+        long[] other = another.hashes;
+        int n = 0;
+        for (int i = 0, j = 0; i < size && j < another.size;) {
+            long a = hashes[i];
+            long b = other[j];
+            if (a >= newTheta || b >= newTheta)
+                break;
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                hashes[n++] = a;
+                i++;
+                j++;
+            }
+        }
+        size = n;
+        theta = newTheta;
+    }
+
+    // union the sorted hashes src[0, len) below srcTheta into the sketch, keeping the k smallest
+    private void union(LongBuffer src, int len, long srcTheta) {
+        long newTheta = Math.min(theta, srcTheta);
+        long[] merged = new long[Math.min(size + len, k + 1)];
+        int n = 0;
+        int i = 0, j = 0;
+        while (n < merged.length) {
+            long a = i < size ? hashes[i] : Long.MAX_VALUE;
+            long b = j < len ? src.get(j) : Long.MAX_VALUE;
+            long min = Math.min(a, b);
+            if (min >= newTheta)
+                break;
+            // the buffer may hold duplicates, skip them as well as the values in both
+            if (n == 0 || merged[n - 1] != min)
+                merged[n++] = min;
+            if (a == min)
+                i++;
+            if (b == min)
+                j++;
+        }
+        if (n > k) {
+            newTheta = merged[k];
+            n = k;
+        }
+        hashes = merged;
+        size = n;
+        theta = newTheta;
+    }
+
+    public long getCountEstimate() {
+        compact();
+        if (theta == MAX_THETA)
+            return size;
+        return Math.round(size * (TWO_POW_63 / theta));
+    }
+
+    /** Theta as a fraction of the hash space, the sampling rate of the retained hashes */
+    public double getTheta() {
+        return theta / TWO_POW_63;
+    }
+
+    public int getRetainedCount() {
+        compact();
+        return size;
+    }
+
+    public int getMemBytes() {
+        return 48 + 8 * (hashes.length + (buffer == null ? 0 : buffer.length));
+    }
+
+    /** Format: theta as long, the number of retained hashes as vint, then the hashes as longs in ascending order */
+    public void writeRegisters(ByteBuffer out) {
+        compact();
+        out.putLong(theta);
+        BytesUtil.writeVInt(size, out);
+        for (int i = 0; i < size; i++) {
+            out.putLong(hashes[i]);
+        }
+    }
+
+    public void readRegisters(ByteBuffer in) {
+        clear();
+        mergeRegisters(in);
+    }
+
+    /** Union the serialized sketch at the position of the buffer into this one, without deserializing it */
+    public void mergeRegisters(ByteBuffer in) {
+        compact();
+        long srcTheta = in.getLong();
+        int n = BytesUtil.readVInt(in);
+        union(in.asLongBuffer(), n, srcTheta);
+        in.position(in.position() + n * 8);
+    }
+
+    public int peekLength(ByteBuffer in) {
+        int mark = in.position();
+        in.position(mark + 8);
+        int n = BytesUtil.readVInt(in);
+        int total = in.position() - mark + n * 8;
+        in.position(mark);
+        return total;
+    }
+
+    public int maxLength() {
+        // theta, the vint count and the hashes, no matter how many values were added
+        return 8 + 5 + 8 * k;
+    }
+
+    @Override
+    public int hashCode() {
+        compact();
+        int result = 31 * lgK + (int) (theta ^ (theta >>> 32));
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + (int) (hashes[i] ^ (hashes[i] >>> 32));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        ThetaCounter other = (ThetaCounter) obj;
+        compact();
+        other.compact();
+        if (lgK != other.lgK || theta != other.theta || size != other.size)
+            return false;
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] != other.hashes[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ThetaCounter[lgK=" + lgK + ", theta=" + getTheta() + ", retained=" + getRetainedCount() + "]";
+    }
+}
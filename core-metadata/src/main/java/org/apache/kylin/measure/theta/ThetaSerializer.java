@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+
+public class ThetaSerializer extends DataTypeSerializer<ThetaCounter> {
+
+    private int lgK;
+
+    public ThetaSerializer(DataType type) {
+        this.lgK = type.getPrecision();
+    }
+
+    private ThetaCounter current() {
+        ThetaCounter counter = (ThetaCounter) current.get();
+        if (counter == null) {
+            counter = new ThetaCounter(lgK);
+            current.set(counter);
+        }
+        return counter;
+    }
+
+    @Override
+    public void serialize(ThetaCounter value, ByteBuffer out) {
+        value.writeRegisters(out);
+    }
+
+    @Override
+    public ThetaCounter deserialize(ByteBuffer in) {
+        ThetaCounter counter = current();
+        counter.readRegisters(in);
+        return counter;
+    }
+
+    @Override
+    public int peekLength(ByteBuffer in) {
+        return current().peekLength(in);
+    }
+
+    @Override
+    public int maxLength() {
+        return current().maxLength();
+    }
+
+    @Override
+    public int getStorageBytesEstimate() {
+        return current().maxLength();
+    }
+}
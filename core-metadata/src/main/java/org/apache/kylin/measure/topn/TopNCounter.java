@@ -15,20 +15,13 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
 */
-
 package org.apache.kylin.measure.topn;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import java.util.NoSuchElementException;
 
 /**
  * Modified from the StreamSummary.java in https://github.com/addthis/stream-lib
@@ -38,33 +31,51 @@ import com.google.common.collect.Maps;
  * <i>Efficient Computation of Frequent and Top-k Elements in Data Streams</i>
  * by Metwally, Agrawal, and Abbadi
  *
+ * The counters are kept in parallel arrays of items and primitive counts, looked up by an open
+ * addressing index. Offer and merge are linear; the counters are ordered only when asked, by
+ * topK(), iterator() or sortAndRetain(), while retain() cuts to the top counters by selection.
+ *
  * @param <T> type of data in the stream to be summarized
  */
 public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializable {
 
     public static final int EXTRA_SPACE_RATE = 50;
 
+    private static final int INIT_ARRAY_SIZE = 16;
+
     protected int capacity;
-    private HashMap<T, Counter<T>> counterMap;
-    protected LinkedList<Counter<T>> counterList; //a linked list, first the is the toppest element
+
+    // the first "size" slots are in use, in descending order of count when "ordered"
+    private Object[] items;
+    private double[] counts;
+    private int size;
     private boolean ordered = true;
-    private boolean descending = true;
+
+    // open addressing hash index, holds position + 1 of the item, 0 for an empty slot; rebuilt lazily
+    private transient int[] index;
 
     /**
      * @param capacity maximum size (larger capacities improve accuracy)
      */
     public TopNCounter(int capacity) {
         this.capacity = capacity;
-        counterMap = Maps.newHashMap();
-        counterList = Lists.newLinkedList();
+        int arraySize = Math.max(1, Math.min(capacity, INIT_ARRAY_SIZE));
+        this.items = new Object[arraySize];
+        this.counts = new double[arraySize];
     }
 
-    public int getCapacity() {
-        return capacity;
+    /**
+     * Takes over the arrays of counters in descending order of count, used by deserialization.
+     */
+    TopNCounter(int capacity, Object[] items, double[] counts, int size) {
+        this.capacity = capacity;
+        this.items = items;
+        this.counts = counts;
+        this.size = size;
     }
 
-    public LinkedList<Counter<T>> getCounterList() {
-        return counterList;
+    public int getCapacity() {
+        return capacity;
     }
 
     public void offer(T item) {
@@ -75,16 +86,13 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
      * Algorithm: <i>Space-Saving</i>
      *
      * @param item stream element (<i>e</i>)
-     * @return false if item was already in the stream summary, true otherwise
      */
     public void offer(T item, double incrementCount) {
-        Counter<T> counterNode = counterMap.get(item);
-        if (counterNode == null) {
-            counterNode = new Counter<T>(item, incrementCount);
-            counterMap.put(item, counterNode);
-            counterList.add(counterNode);
+        int pos = find(item);
+        if (pos < 0) {
+            append(item, incrementCount);
         } else {
-            counterNode.setCount(counterNode.getCount() + incrementCount);
+            counts[pos] += incrementCount;
         }
         ordered = false;
     }
@@ -93,25 +101,22 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
      * Sort and keep the expected size;
      */
     public void sortAndRetain() {
-        Collections.sort(counterList, this.descending ? DESC_COMPARATOR : ASC_COMPARATOR);
+        if (!ordered) {
+            sortDescending(0, size - 1);
+            ordered = true;
+        }
         retain(capacity);
-        ordered = true;
     }
 
     public List<Counter<T>> topK(int k) {
         if (ordered == false) {
             sortAndRetain();
         }
-        List<Counter<T>> topK = new ArrayList<>(k);
-        Iterator<Counter<T>> iterator = counterList.iterator();
-        while (iterator.hasNext()) {
-            Counter<T> b = iterator.next();
-            if (topK.size() == k) {
-                return topK;
-            }
-            topK.add(b);
+        int n = Math.min(k, size);
+        List<Counter<T>> topK = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            topK.add(counterAt(i));
         }
-
         return topK;
     }
 
@@ -119,19 +124,17 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
      * @return number of items stored
      */
     public int size() {
-        return counterMap.size();
+        return size;
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append('[');
-        Iterator<Counter<T>> iterator = counterList.iterator();
-        while (iterator.hasNext()) {
-            Counter<T> b = iterator.next();
-            sb.append(b.item);
+        for (int i = 0; i < size; i++) {
+            sb.append(items[i]);
             sb.append(':');
-            sb.append(b.count);
+            sb.append(counts[i]);
         }
         sb.append(']');
         return sb.toString();
@@ -139,59 +142,64 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
 
     /**
      * Put element to the head position;
-     * The consumer should call this method with count in ascending way; the item will be directly put to the head of the list, without comparison for best performance;
+     * The consumer should call this method with count in ascending way; the counters are ordered again when asked.
      * @param item
      * @param count
      */
     public void offerToHead(T item, double count) {
-        Counter<T> c = new Counter<T>(item, count);
-        counterList.addFirst(c);
-        counterMap.put(c.item, c);
+        append(item, count);
+        ordered = false;
     }
 
     /**
-     * Merge another counter into this counter;
+     * Merge another counter into this counter, in linear time; the result is cut to the capacity but not ordered.
      * @param another
      * @return
      */
     public TopNCounter<T> merge(TopNCounter<T> another) {
-        boolean thisFull = this.size() >= this.capacity;
-        boolean anotherFull = another.size() >= another.capacity;
-        double m1 = thisFull ? this.counterList.getLast().count : 0.0;
-        double m2 = anotherFull ? another.counterList.getLast().count : 0.0;
+        boolean thisFull = this.size >= this.capacity;
+        boolean anotherFull = another.size >= another.capacity;
+        double m1 = thisFull ? this.minCount() : 0.0;
+        double m2 = anotherFull ? another.minCount() : 0.0;
 
         if (anotherFull == true) {
-            for (Counter<T> entry : this.counterMap.values()) {
-                entry.count += m2;
+            for (int i = 0; i < this.size; i++) {
+                this.counts[i] += m2;
             }
         }
 
-        for (Map.Entry<T, Counter<T>> entry : another.counterMap.entrySet()) {
-            if (this.counterMap.containsKey(entry.getKey())) {
-                this.offer(entry.getValue().getItem(), (entry.getValue().count - m2));
+        for (int i = 0; i < another.size; i++) {
+            @SuppressWarnings("unchecked")
+            T item = (T) another.items[i];
+            int pos = this.find(item);
+            if (pos >= 0) {
+                this.counts[pos] += another.counts[i] - m2;
             } else {
-                this.offer(entry.getValue().getItem(), entry.getValue().count + m1);
+                this.append(item, another.counts[i] + m1);
             }
         }
+        if (another.size > 0) {
+            ordered = false;
+        }
 
-        this.sortAndRetain();
+        retain(capacity);
         return this;
     }
 
     /**
-     * Retain the capacity to the given number; The extra counters will be cut off
+     * Retain the capacity to the given number; The extra counters with the smallest counts will be cut off
      * @param newCapacity
      */
     public void retain(int newCapacity) {
         this.capacity = newCapacity;
-        if (this.size() > newCapacity) {
-            Counter<T> toRemoved;
-            for (int i = 0, n = this.size() - newCapacity; i < n; i++) {
-                toRemoved = counterList.pollLast();
-                this.counterMap.remove(toRemoved.item);
+        if (this.size > newCapacity) {
+            if (!ordered) {
+                selectTop(newCapacity);
             }
+            Arrays.fill(items, newCapacity, size, null);
+            size = newCapacity;
+            index = null;
         }
-
     }
 
     /**
@@ -199,47 +207,207 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
      * @return
      */
     public double[] getCounters() {
-        double[] counters = new double[size()];
-        int index = 0;
-
-        if (this.descending == true) {
-            Iterator<Counter<T>> iterator = counterList.descendingIterator();
-            while (iterator.hasNext()) {
-                Counter<T> b = iterator.next();
-                counters[index] = b.count;
-                index++;
-            }
-        } else {
-            throw new IllegalStateException(); // support in future
+        if (ordered == false) {
+            sortAndRetain();
+        }
+        double[] counters = new double[size];
+        for (int i = 0; i < size; i++) {
+            counters[i] = counts[size - 1 - i];
         }
-
-        assert index == size();
         return counters;
     }
 
+    /**
+     * Iterate the counters in ascending order
+     */
     @Override
     public Iterator<Counter<T>> iterator() {
-        if (this.descending == true) {
-            return this.counterList.descendingIterator();
+        if (ordered == false) {
+            sortAndRetain();
+        }
+        return new Iterator<Counter<T>>() {
+            int next = size - 1;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Counter<T> next() {
+                if (next < 0)
+                    throw new NoSuchElementException();
+                return counterAt(next--);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /** The item at the given position, in descending order of count once ordered */
+    Object itemAt(int pos) {
+        return items[pos];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Counter<T> counterAt(int pos) {
+        return new Counter<T>((T) items[pos], counts[pos]);
+    }
+
+    private double minCount() {
+        if (size == 0) {
+            return 0.0;
+        }
+        if (ordered) {
+            return counts[size - 1];
+        }
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, counts[i]);
+        }
+        return min;
+    }
+
+    // ============================================================================
+    // the open addressing index
+
+    private int find(Object item) {
+        if (index == null) {
+            rebuildIndex(Math.max(size, INIT_ARRAY_SIZE));
+        }
+        int mask = index.length - 1;
+        int slot = hash(item) & mask;
+        while (index[slot] != 0) {
+            int pos = index[slot] - 1;
+            if (items[pos].equals(item)) {
+                return pos;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void append(Object item, double count) {
+        if (size == items.length) {
+            int newSize = Math.max(size * 2, INIT_ARRAY_SIZE);
+            items = Arrays.copyOf(items, newSize);
+            counts = Arrays.copyOf(counts, newSize);
+        }
+        items[size] = item;
+        counts[size] = count;
+        size++;
+
+        if (index == null || size * 2 > index.length) {
+            rebuildIndex(size);
         } else {
-            throw new IllegalStateException(); // support in future
+            putIndex(size - 1);
         }
     }
 
-    private static final Comparator ASC_COMPARATOR = new Comparator<Counter>() {
-        @Override
-        public int compare(Counter o1, Counter o2) {
-            return o1.getCount() > o2.getCount() ? 1 : o1.getCount() == o2.getCount() ? 0 : -1;
+    private void rebuildIndex(int expectSize) {
+        // keep the load factor under 0.5
+        int indexSize = Integer.highestOneBit(Math.max(expectSize, 1) * 4 - 1);
+        index = new int[Math.max(indexSize, INIT_ARRAY_SIZE * 2)];
+        for (int pos = 0; pos < size; pos++) {
+            putIndex(pos);
         }
+    }
 
-    };
+    private void putIndex(int pos) {
+        int mask = index.length - 1;
+        int slot = hash(items[pos]) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = pos + 1;
+    }
 
-    private static final Comparator DESC_COMPARATOR = new Comparator<Counter>() {
-        @Override
-        public int compare(Counter o1, Counter o2) {
-            return o1.getCount() > o2.getCount() ? -1 : o1.getCount() == o2.getCount() ? 0 : 1;
+    private static int hash(Object item) {
+        // the finalizer of murmur3, dictionary IDs hash to nearby numbers which would cluster in linear probing
+        int h = item.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    // ============================================================================
+    // ordering on the parallel arrays, the positions change so the index is dropped
+
+    private void selectTop(int k) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            long p = partition(low, high);
+            int lt = (int) (p >>> 32);
+            int gt = (int) p;
+            if (k - 1 < lt) {
+                high = lt - 1;
+            } else if (k - 1 > gt) {
+                low = gt + 1;
+            } else {
+                break;
+            }
         }
+        index = null;
+    }
 
-    };
+    private void sortDescending(int low, int high) {
+        while (high - low > 16) {
+            long p = partition(low, high);
+            int lt = (int) (p >>> 32);
+            int gt = (int) p;
+            // recurse into the smaller part, loop on the larger
+            if (lt - low < high - gt) {
+                sortDescending(low, lt - 1);
+                low = gt + 1;
+            } else {
+                sortDescending(gt + 1, high);
+                high = lt - 1;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && counts[j - 1] < counts[j]; j--) {
+                swap(j - 1, j);
+            }
+        }
+        index = null;
+    }
+
+    /**
+     * Three-way partition of the range by a median-of-three pivot, larger counts first, since many counters
+     * often share the same count. Returns the range equal to the pivot, the low bound in the high 32 bits.
+     */
+    private long partition(int low, int high) {
+        int mid = (low + high) >>> 1;
+        double a = counts[low], b = counts[mid], c = counts[high];
+        double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+
+        int lt = low, i = low, gt = high;
+        while (i <= gt) {
+            if (counts[i] > pivot) {
+                swap(lt++, i++);
+            } else if (counts[i] < pivot) {
+                swap(i, gt--);
+            } else {
+                i++;
+            }
+        }
+        return ((long) lt << 32) | (gt & 0xffffffffL);
+    }
+
+    private void swap(int i, int j) {
+        Object item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        double count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+    }
 
 }
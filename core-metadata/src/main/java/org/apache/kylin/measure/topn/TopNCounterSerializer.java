@@ -19,8 +19,6 @@
 package org.apache.kylin.measure.topn;
 
 import java.nio.ByteBuffer;
-import java.util.Iterator;
-import java.util.List;
 
 import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.dimension.DictionaryDimEnc;
@@ -71,17 +69,17 @@ public class TopNCounterSerializer extends DataTypeSerializer<TopNCounter<ByteAr
 
     @Override
     public void serialize(TopNCounter<ByteArray> value, ByteBuffer out) {
+        // counters and keys in ascending order of count
         double[] counters = value.getCounters();
-        List<Counter<ByteArray>> peek = value.topK(1);
-        int keyLength = peek.size() > 0 ? peek.get(0).getItem().length() : 0;
+        int size = value.size();
+        int keyLength = size > 0 ? ((ByteArray) value.itemAt(0)).length() : 0;
         out.putInt(value.getCapacity());
-        out.putInt(value.size());
+        out.putInt(size);
         out.putInt(keyLength);
         dds.serialize(counters, out);
-        Iterator<Counter<ByteArray>> iterator = value.iterator();
         ByteArray item;
-        while (iterator.hasNext()) {
-            item = iterator.next().getItem();
+        for (int i = size - 1; i >= 0; i--) {
+            item = (ByteArray) value.itemAt(i);
             out.put(item.array(), item.offset(), item.length());
         }
     }
@@ -93,18 +91,17 @@ public class TopNCounterSerializer extends DataTypeSerializer<TopNCounter<ByteAr
         int keyLength = in.getInt();
         double[] counters = dds.deserialize(in);
 
-        TopNCounter<ByteArray> counter = new TopNCounter<ByteArray>(capacity);
-        ByteArray byteArray;
+        // the keys share one slab, read in bulk; the counter takes the arrays in descending order
         byte[] keyArray = new byte[size * keyLength];
-        int offset = 0;
+        in.get(keyArray);
+        Object[] items = new Object[size];
+        double[] counts = new double[size];
         for (int i = 0; i < size; i++) {
-            in.get(keyArray, offset, keyLength);
-            byteArray = new ByteArray(keyArray, offset, keyLength);
-            counter.offerToHead(byteArray, counters[i]);
-            offset += keyLength;
+            items[size - 1 - i] = new ByteArray(keyArray, i * keyLength, keyLength);
+            counts[size - 1 - i] = counters[i];
         }
 
-        return counter;
+        return new TopNCounter<ByteArray>(capacity, items, counts, size);
     }
 
 }
@@ -87,4 +87,32 @@ public class BitmapAggregatorTest {
 
 
     }
+
+    @Test
+    public void testAggregateFromBuffer() throws IOException {
+        BitmapCounter counter1 = factory.newBitmap(1, 3, 5);
+        BitmapCounter counter2 = factory.newBitmap(1, 2, 4, 6);
+        BitmapCounter counter3 = factory.newBitmap(1, 5, 7, 100000);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        counter1.write(buffer);
+        counter2.write(buffer);
+        counter3.write(buffer);
+        buffer.flip();
+
+        BitmapAggregator aggregator = new BitmapAggregator();
+        BitmapSerializer serializer = new BitmapSerializer(null);
+        aggregator.aggregate(buffer, serializer);
+        aggregator.aggregate(buffer, serializer);
+        aggregator.aggregate(buffer, serializer);
+        assertEquals(buffer.limit(), buffer.position());
+
+        // the state must not refer to the buffer
+        buffer.clear();
+        while (buffer.hasRemaining())
+            buffer.put((byte) 0xff);
+
+        BitmapCounter result = factory.newBitmap(1, 2, 3, 4, 5, 6, 7, 100000);
+        assertEquals(result, aggregator.getState());
+    }
 }
\ No newline at end of file
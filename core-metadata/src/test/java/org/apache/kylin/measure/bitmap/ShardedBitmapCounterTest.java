@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.bitmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ShardedBitmapCounterTest {
+    private static final BitmapCounterFactory factory = RoaringBitmapCounterFactory.INSTANCE;
+
+    @Test
+    public void testShardedCounter() {
+        ShardedBitmapCounter counter = new ShardedBitmapCounter(16);
+        counter.add(10);
+        counter.add(70000);
+        counter.add(20);
+        counter.add(200000);
+        assertEquals(4, counter.getCount());
+        assertEquals(4, counter.getShardCount());
+        assertEquals(2, counter.getCount(0));
+        assertEquals(0, counter.getCount(2));
+        assertEquals(1, counter.getCount(3));
+
+        int i = 0;
+        int[] values = new int[(int) counter.getCount()];
+        for (int value : counter) {
+            values[i++] = value;
+        }
+        assertArrayEquals(new int[] { 10, 20, 70000, 200000 }, values);
+
+        counter.clear();
+        assertEquals(0, counter.getCount());
+    }
+
+    @Test
+    public void testSerialize() throws IOException {
+        ShardedBitmapCounter counter = new ShardedBitmapCounter(16);
+        for (int i = 0; i < 300000; i += 7) {
+            counter.add(i);
+        }
+
+        BitmapSerializer serializer = new BitmapSerializer(null);
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        serializer.serialize(counter, buffer);
+        int length = buffer.position();
+        buffer.flip();
+
+        assertEquals(length, serializer.peekLength(buffer));
+        assertEquals(0, buffer.position());
+        BitmapCounter read = serializer.deserialize(buffer);
+        assertEquals(length, buffer.position());
+        assertTrue(read instanceof ShardedBitmapCounter);
+        assertEquals(counter, read);
+    }
+
+    @Test
+    public void testSerializeSparseShards() throws IOException {
+        // a global dictionary id and a negative raw int, their shards are far apart
+        ShardedBitmapCounter counter = new ShardedBitmapCounter(16);
+        counter.add(500000000);
+        counter.add(-5);
+        assertEquals(65536, counter.getShardCount());
+
+        ByteBuffer single = ByteBuffer.allocate(1024);
+        factory.newBitmap(500000000).write(single);
+        int singleLength = single.position();
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        counter.write(buffer);
+        int length = buffer.position();
+        // marker, shard bits, shard count, then a 3 byte vint index and an int length per non-empty shard
+        assertEquals(3 + 2 * (3 + 4) + 2 * singleLength, length);
+
+        buffer.flip();
+        assertEquals(length, counter.peekLength(buffer));
+        ShardedBitmapCounter read = new ShardedBitmapCounter(16);
+        read.readFields(buffer);
+        assertEquals(length, buffer.position());
+        assertEquals(counter, read);
+        assertEquals(2, read.getCount());
+
+        buffer.rewind();
+        ShardedBitmapCounter union = new ShardedBitmapCounter(16);
+        union.add(7);
+        union.orWith(buffer);
+        assertEquals(length, buffer.position());
+        assertEquals(factory.newBitmap(7, 500000000, -5), union.toPlain());
+    }
+
+    @Test
+    public void testMixedLayouts() throws IOException {
+        BitmapCounter plain = factory.newBitmap(1, 5, 70000, 140000);
+        ShardedBitmapCounter sharded = new ShardedBitmapCounter(16);
+        sharded.add(5);
+        sharded.add(6);
+        sharded.add(140001);
+
+        BitmapCounter expected = factory.newBitmap(1, 5, 6, 70000, 140000, 140001);
+
+        ShardedBitmapCounter union1 = new ShardedBitmapCounter(17);
+        union1.orWith(plain);
+        union1.orWith(sharded);
+        assertEquals(6, union1.getCount());
+        assertEquals(expected, union1.toPlain());
+
+        BitmapCounter union2 = factory.newBitmap();
+        union2.orWith(plain);
+        union2.orWith(sharded);
+        assertEquals(expected, union2);
+
+        // OR straight from the buffer, in both layouts
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        plain.write(buffer);
+        sharded.write(buffer);
+        buffer.flip();
+        ShardedBitmapCounter union3 = new ShardedBitmapCounter(16);
+        union3.orWith(buffer);
+        union3.orWith(buffer);
+        assertEquals(buffer.limit(), buffer.position());
+        assertEquals(expected, union3.toPlain());
+
+        union3.andWith(plain);
+        assertEquals(factory.newBitmap(1, 5, 70000, 140000), union3.toPlain());
+        union3.andWith(sharded);
+        assertEquals(factory.newBitmap(5), union3.toPlain());
+    }
+
+    @Test
+    public void testParallelMerge() {
+        Random rand = new Random(0);
+        ShardedBitmapCounter one = new ShardedBitmapCounter(20);
+        ShardedBitmapCounter another = new ShardedBitmapCounter(20);
+        BitmapCounter expected = factory.newBitmap();
+        for (int i = 0; i < 1000000; i++) {
+            int v1 = rand.nextInt(1 << 24);
+            int v2 = rand.nextInt(1 << 24);
+            one.add(v1);
+            another.add(v2);
+            expected.add(v1);
+            expected.add(v2);
+        }
+        assertTrue(another.getMemBytes() > 1024 * 1024);
+
+        one.orWith(another);
+        assertEquals(expected.getCount(), one.getCount());
+        assertEquals(expected, one.toPlain());
+    }
+}
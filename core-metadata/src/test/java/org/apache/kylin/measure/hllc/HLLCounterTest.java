@@ -30,6 +30,9 @@ import org.apache.kylin.common.util.Bytes;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
 /**
  * Created by xiefan on 16-12-12.
  */
@@ -68,6 +71,49 @@ public class HLLCounterTest {
         assertTrue(hllc.getCountEstimate() > 10 * 0.9);
     }
 
+    @Test
+    public void testAddHashDirectly() {
+        // two columns hashed separately and summed, as the statistics of FactDistinctColumnsMapper do
+        HashFunction hf0 = Hashing.murmur3_128(0);
+        HashFunction hf1 = Hashing.murmur3_128(1);
+        HLLCounter hllc = new HLLCounter(14);
+        int n = 1000;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                hllc.addHashDirectly(hf0.hashString(String.valueOf(i)).asLong() + hf1.hashString(String.valueOf(j)).asLong());
+            }
+        }
+        double actualError = (double) Math.abs(n * n - hllc.getCountEstimate()) / (n * n);
+        Assert.assertTrue(actualError < hllc.getErrorRate() * 3.0);
+    }
+
+    @Test
+    public void testMergeRegisters() throws IOException {
+        // single value, sparse and dense counters, serialized in both the map and the array scheme
+        int[] sizes = { 0, 1, 10, 300, 5000 };
+        for (int a : sizes) {
+            for (int b : sizes) {
+                HLLCounter one = new HLLCounter(10);
+                HLLCounter another = new HLLCounter(10);
+                for (int i = 0; i < a; i++)
+                    one.add(rand1.nextInt());
+                for (int i = 0; i < b; i++)
+                    another.add(rand1.nextInt());
+
+                buf.clear();
+                another.writeRegisters(buf);
+                int length = buf.position();
+                buf.flip();
+
+                HLLCounter expected = new HLLCounter(one);
+                expected.merge(another);
+                one.mergeRegisters(buf);
+                assertEquals(length, buf.position());
+                assertEquals(expected.getCountEstimate(), one.getCountEstimate());
+            }
+        }
+    }
+
     @Test
     public void countTest() throws IOException {
         int n = 10;
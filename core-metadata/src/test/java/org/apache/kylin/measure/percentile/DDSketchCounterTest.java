@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.percentile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DDSketchCounterTest {
+
+    @Test
+    public void testRelativeError() {
+        int precision = 100;
+        DDSketchCounter counter = new DDSketchCounter(precision);
+        Random random = new Random(0);
+        double[] values = new double[100000];
+        for (int i = 0; i < values.length; i++) {
+            // spanning many orders of magnitude, with negatives and zeros
+            double v = Math.exp(random.nextGaussian() * 3);
+            if (i % 10 == 0)
+                v = -v;
+            if (i % 1000 == 0)
+                v = 0;
+            values[i] = v;
+            counter.add(v);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, counter.getCount());
+        for (int i = 0; i <= 100; i++) {
+            double q = i / 100.0;
+            double expected = values[(int) (q * (values.length - 1))];
+            double actual = counter.getQuantile(q);
+            assertEquals(expected, actual, Math.abs(expected) / precision + 1e-9);
+        }
+    }
+
+    @Test
+    public void testMergeRegisters() {
+        Random random = new Random(1);
+        DDSketchCounter merged = new DDSketchCounter(100);
+        DDSketchCounter fromBuffer = new DDSketchCounter(100);
+        for (int k = 0; k < 20; k++) {
+            DDSketchCounter part = new DDSketchCounter(100);
+            for (int i = 0; i < 500; i++) {
+                part.add(random.nextGaussian() * Math.pow(10, k % 7));
+            }
+            merged.merge(part);
+
+            ByteBuffer buf = ByteBuffer.allocate(part.maxLength());
+            part.writeRegisters(buf);
+            int length = buf.position();
+            buf.flip();
+            assertEquals(length, part.peekLength(buf));
+            fromBuffer.mergeRegisters(buf);
+            assertEquals(length, buf.position());
+        }
+
+        assertEquals(merged.getCount(), fromBuffer.getCount());
+        assertEquals(bytesOf(merged), bytesOf(fromBuffer));
+    }
+
+    @Test
+    public void testMergeDifferentPrecision() {
+        Random random = new Random(2);
+        DDSketchCounter fine = new DDSketchCounter(100);
+        DDSketchCounter coarse = new DDSketchCounter(50);
+        double[] values = new double[20000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 1e6;
+            (i % 2 == 0 ? fine : coarse).add(values[i]);
+        }
+        fine.merge(coarse);
+        Arrays.sort(values);
+
+        assertEquals(values.length, fine.getCount());
+        // the error of the coarse sketch adds up with the error of re-bucketing
+        double median = values[(values.length - 1) / 2];
+        assertEquals(median, fine.getQuantile(0.5), median * (1.0 / 100 + 1.0 / 50));
+    }
+
+    @Test
+    public void testSerialization() {
+        DDSketchCounter counter = new DDSketchCounter(100, 0.9);
+        for (int i = 1; i <= 1000; i++) {
+            counter.add(i);
+        }
+        ByteBuffer buf = bytesOf(counter);
+
+        DDSketchCounter copy = new DDSketchCounter(100, 0.9);
+        copy.readRegisters(buf);
+        assertEquals(counter.getCount(), copy.getCount());
+        assertEquals(counter.getResultEstimate(), copy.getResultEstimate(), 0);
+        assertEquals(900, copy.getResultEstimate(), 900.0 / 100);
+
+        DDSketchCounter empty = new DDSketchCounter(100);
+        assertTrue(Double.isNaN(empty.getQuantile(0.5)));
+        copy.readRegisters(bytesOf(empty));
+        assertEquals(0, copy.getCount());
+    }
+
+    @Test
+    public void testReadPercentileCounter() {
+        PercentileCounter tdigest = new PercentileCounter(100);
+        for (int i = 1; i <= 10000; i++) {
+            tdigest.add(i);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(tdigest.maxLength());
+        tdigest.writeRegisters(buf);
+        buf.flip();
+
+        DDSketchCounter counter = new DDSketchCounter(100, 0.5);
+        counter.readRegisters(buf);
+        assertEquals(10000, counter.getCount());
+        assertEquals(5000, counter.getResultEstimate(), 5000 * 0.02);
+    }
+
+    private static ByteBuffer bytesOf(DDSketchCounter counter) {
+        ByteBuffer buf = ByteBuffer.allocate(counter.maxLength());
+        counter.writeRegisters(buf);
+        buf.flip();
+        return buf;
+    }
+}
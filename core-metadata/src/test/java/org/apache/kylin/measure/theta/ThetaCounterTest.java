@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.theta;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ThetaCounterTest {
+
+    private static ThetaCounter newCounter(int lgK, int from, int to) {
+        ThetaCounter counter = new ThetaCounter(lgK);
+        for (int i = from; i < to; i++) {
+            counter.add("user_" + i);
+        }
+        return counter;
+    }
+
+    @Test
+    public void testExactBelowK() {
+        ThetaCounter counter = newCounter(12, 0, 1000);
+        // duplicates are not counted
+        for (int i = 0; i < 1000; i++) {
+            counter.add("user_" + i);
+        }
+        assertEquals(1000, counter.getCountEstimate());
+        assertEquals(1.0, counter.getTheta(), 0);
+    }
+
+    @Test
+    public void testEstimate() {
+        ThetaCounter counter = newCounter(12, 0, 1000000);
+        assertEquals(4096, counter.getRetainedCount());
+        // 1/sqrt(4096) is the standard error, allow 3 of it
+        assertEquals(1000000, counter.getCountEstimate(), 1000000 * 3 / 64.0);
+    }
+
+    @Test
+    public void testUnionAndIntersect() {
+        ThetaCounter a = newCounter(12, 0, 600000);
+        ThetaCounter b = newCounter(12, 400000, 1000000);
+
+        ThetaCounter union = new ThetaCounter(a);
+        union.merge(b);
+        assertEquals(1000000, union.getCountEstimate(), 1000000 * 3 / 64.0);
+        assertEquals(newCounter(12, 0, 1000000), union);
+
+        ThetaCounter intersection = new ThetaCounter(a);
+        intersection.intersect(b);
+        assertEquals(200000, intersection.getCountEstimate(), 200000 * 0.1);
+
+        ThetaCounter empty = new ThetaCounter(a);
+        empty.intersect(newCounter(12, 2000000, 2001000));
+        assertEquals(0, empty.getCountEstimate());
+    }
+
+    @Test
+    public void testMergeRegisters() {
+        ThetaCounter merged = new ThetaCounter(10);
+        ThetaCounter fromBuffer = new ThetaCounter(10);
+        for (int k = 0; k < 20; k++) {
+            ThetaCounter part = newCounter(10, k * 300, k * 300 + 1000 * (k % 3));
+            merged.merge(part);
+
+            ByteBuffer buf = ByteBuffer.allocate(part.maxLength());
+            part.writeRegisters(buf);
+            int length = buf.position();
+            buf.flip();
+            assertEquals(length, part.peekLength(buf));
+            fromBuffer.mergeRegisters(buf);
+            assertEquals(length, buf.position());
+        }
+        assertEquals(merged, fromBuffer);
+        assertEquals(merged.getCountEstimate(), fromBuffer.getCountEstimate());
+
+        ByteBuffer buf = ByteBuffer.allocate(merged.maxLength());
+        merged.writeRegisters(buf);
+        buf.flip();
+        ThetaCounter copy = new ThetaCounter(10);
+        copy.readRegisters(buf);
+        assertEquals(merged, copy);
+    }
+
+    @Test
+    public void testIntersectAggFunc() {
+        ThetaIntersectDistinctCountAggFunc.RetentionPartialResult result = ThetaIntersectDistinctCountAggFunc.init();
+        List<String> keys = Arrays.asList("A", "B");
+        ThetaIntersectDistinctCountAggFunc.add(result, newCounter(12, 0, 100), "A", keys);
+        ThetaIntersectDistinctCountAggFunc.add(result, newCounter(12, 100, 200), "A", keys);
+        ThetaIntersectDistinctCountAggFunc.add(result, newCounter(12, 150, 300), "B", keys);
+        ThetaIntersectDistinctCountAggFunc.add(result, newCounter(12, 0, 1000), "C", keys);
+        assertEquals(50, ThetaIntersectDistinctCountAggFunc.result(result));
+
+        ThetaIntersectDistinctCountAggFunc.RetentionPartialResult missing = ThetaIntersectDistinctCountAggFunc.init();
+        ThetaIntersectDistinctCountAggFunc.add(missing, newCounter(12, 0, 100), "A", keys);
+        assertEquals(0, ThetaIntersectDistinctCountAggFunc.result(missing));
+    }
+}
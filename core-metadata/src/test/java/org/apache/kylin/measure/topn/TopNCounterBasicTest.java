@@ -130,4 +130,42 @@ public class TopNCounterBasicTest {
         }
 
     }
+
+    @Test
+    public void testRetainKeepsTop() {
+        TopNCounter<String> vs = new TopNCounter<String>(100);
+        // many equal counts, as the ordering must cope with
+        for (int i = 0; i < 1000; i++) {
+            vs.offer("v" + i, i % 10 == 0 ? i : 1);
+        }
+
+        vs.retain(10);
+        assertEquals(10, vs.size());
+        List<Counter<String>> topK = vs.topK(10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("v" + (990 - i * 10), topK.get(i).getItem());
+        }
+
+        double last = -1;
+        for (Counter<String> c : vs) {
+            assertTrue(c.getCount() >= last);
+            last = c.getCount();
+        }
+    }
+
+    @Test
+    public void testMergeManyEqualCounts() {
+        TopNCounter<String> vs = new TopNCounter<String>(50);
+        TopNCounter<String> vs2 = new TopNCounter<String>(50);
+        for (int i = 0; i < 50; i++) {
+            vs.offer("a" + i);
+            vs2.offer("b" + i);
+        }
+        vs2.offer("b0", 5);
+
+        vs.merge(vs2);
+        assertEquals(50, vs.size());
+        assertEquals("b0", vs.topK(1).get(0).getItem());
+        assertEquals(7.0, vs.topK(1).get(0).getCount(), 0.0);
+    }
 }
@@ -40,6 +40,8 @@ public class StorageContext {
     private boolean hasSort = false;
     private boolean acceptPartialResult = false;
     private long deadline;
+    private int segmentScanConcurrency = 1;
+    private int segmentScanQueueDepth = 1;
 
     private boolean exactAggregation = false;
     private boolean needStorageAggregation = false;
@@ -49,6 +51,7 @@ public class StorageContext {
     private IStorageQuery storageQuery;
     private AtomicLong processedRowCount = new AtomicLong();
     private Cuboid cuboid;
+    private Cuboid requestedCuboid; // differs from the cuboid if some segment did not build it
     private boolean partialResultReturned = false;
 
     private Range<Long> reusedPeriod;
@@ -123,6 +126,27 @@ public class StorageContext {
         }
     }
 
+    public int getSegmentScanConcurrency() {
+        return segmentScanConcurrency;
+    }
+
+    public void setSegmentScanConcurrency(int segmentScanConcurrency) {
+        this.segmentScanConcurrency = segmentScanConcurrency;
+    }
+
+    public int getSegmentScanQueueDepth() {
+        return segmentScanQueueDepth;
+    }
+
+    public void setSegmentScanQueueDepth(int segmentScanQueueDepth) {
+        this.segmentScanQueueDepth = segmentScanQueueDepth;
+    }
+
+    public void setSegmentScanParallelism(IRealization realization) {
+        this.segmentScanConcurrency = realization.getConfig().getQuerySegmentScanConcurrency();
+        this.segmentScanQueueDepth = realization.getConfig().getQuerySegmentScanQueueDepth();
+    }
+
     public void markSort() {
         this.hasSort = true;
     }
@@ -139,6 +163,14 @@ public class StorageContext {
         return cuboid;
     }
 
+    public void setRequestedCuboid(Cuboid c) {
+        requestedCuboid = c;
+    }
+
+    public Cuboid getRequestedCuboid() {
+        return requestedCuboid == null ? cuboid : requestedCuboid;
+    }
+
     public long getProcessedRowCount() {
         return processedRowCount.get();
     }
@@ -151,7 +151,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
             scanRequest = new GTScanRequestBuilder().setInfo(gtInfo).setRanges(scanRanges).setDimensions(gtDimensions).//
                     setAggrGroupBy(gtAggrGroups).setAggrMetrics(gtAggrMetrics).setAggrMetricsFuncs(gtAggrFuncs).setFilterPushDown(gtFilter).//
                     setAllowStorageAggregation(context.isNeedStorageAggregation()).setAggCacheMemThreshold(cubeSegment.getConfig().getQueryCoprocessorMemGB()).//
-                    setStoragePushDownLimit(context.getFinalPushDownLimit()).createGTScanRequest();
+                    setStoragePushDownLimit(context.getFinalPushDownLimit()).setHashAggrEnabled(cubeSegment.getConfig().getQueryCoprocessorHashAggrEnabled()).createGTScanRequest();
         } else {
             scanRequest = null;
         }
@@ -21,8 +21,10 @@ package org.apache.kylin.storage.gtrecord;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
+import org.apache.kylin.common.QueryContext;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.dict.BuiltInFunctionTransformer;
@@ -50,6 +52,10 @@ public class CubeSegmentScanner implements IGTScanner {
 
     final GTScanRequest scanRequest;
 
+    final SegmentResultCache resultCache;
+    final String resultCacheKey;
+    final List<GTRecord> cachedResult;
+
     public CubeSegmentScanner(CubeSegment cubeSeg, Cuboid cuboid, Set<TblColRef> dimensions, Set<TblColRef> groups, //
             Collection<FunctionDesc> metrics, TupleFilter originalfilter, StorageContext context) {
         
@@ -77,18 +83,42 @@ public class CubeSegmentScanner implements IGTScanner {
             throw new RuntimeException(e);
         }
         scanRequest = scanRangePlanner.planScanRequest();
-        String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage();
-        scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage);
+
+        if (SegmentResultCache.isCacheable(cubeSeg, scanRequest)) {
+            resultCache = SegmentResultCache.getInstance();
+            resultCacheKey = SegmentResultCache.getKey(cubeSeg, cuboid, scanRequest);
+            cachedResult = resultCache.get(resultCacheKey);
+        } else {
+            resultCache = null;
+            resultCacheKey = null;
+            cachedResult = null;
+        }
+
+        if (cachedResult != null) {
+            logger.info("Segment {} hits result cache, {} records", cubeSeg.getName(), cachedResult.size());
+            QueryContext.current().addAndGetSegmentCacheHits(1);
+            scanner = null;
+        } else {
+            if (resultCache != null)
+                QueryContext.current().addAndGetSegmentCacheMisses(1);
+            String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage();
+            scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage);
+        }
     }
 
     @Override
     public Iterator<GTRecord> iterator() {
+        if (cachedResult != null)
+            return cachedResult.iterator();
+        if (resultCache != null)
+            return resultCache.wrap(resultCacheKey, scanRequest.getColumns(), scanner.iterator());
         return scanner.iterator();
     }
 
     @Override
     public void close() throws IOException {
-        scanner.close();
+        if (scanner != null)
+            scanner.close();
     }
 
     @Override
@@ -107,6 +107,12 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         dimensionsD.addAll(otherDimsD);
         Cuboid cuboid = Cuboid.identifyCuboid(cubeDesc, dimensionsD, metrics);
         logger.info("Cuboid identified: cube={}, cuboidId={}, groupsD={}, otherDimsD={}", cubeInstance.getName(), cuboid.getId(), groupsD, otherDimsD);
+        context.setRequestedCuboid(cuboid);
+        Cuboid servingCuboid = cubeInstance.getServingCuboid(cuboid);
+        if (servingCuboid != cuboid) {
+            logger.info("Cuboid {} is not built in all segments, serve by cuboid {}", cuboid.getId(), servingCuboid.getId());
+            cuboid = servingCuboid;
+        }
         context.setCuboid(cuboid);
 
         // set whether to aggr at storage
@@ -122,6 +128,8 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         enableStorageLimitIfPossible(cuboid, groups, derivedPostAggregation, groupsD, filter, loosenedColumnD, sqlDigest.aggregations, context);
         // set query deadline
         context.setDeadline(cubeInstance);
+        // set segment scan parallelism
+        context.setSegmentScanParallelism(cubeInstance);
 
         List<CubeSegmentScanner> scanners = Lists.newArrayList();
         for (CubeSegment cubeSeg : cubeInstance.getSegments(SegmentStatusEnum.READY)) {
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.exceptions.KylinTimeoutException;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * Drains a list of segment tuple iterators on a shared thread pool, at most <code>concurrency</code>
+ * segments at a time for one query, and hands the tuples back to the query thread as one iterator per segment.
+ *
+ * The shared pool has at most "kylin.query.segment-scan-max-threads" threads, the workers of busy queries wait
+ * in its queue. A query always drains its segments in order, so a worker that got a thread makes progress and
+ * gives it back, the waiting query is at worst timed out by its deadline.
+ *
+ * Segments are claimed in list order, which is also the order Iterators.concat consumes them, so a bounded
+ * queue of <code>queueDepth</code> tuples per segment gives back-pressure without dead lock.
+ *
+ * With a limit, SortedIteratorMergerWithLimit peeks every segment before merging, so segment queues are unbounded
+ * instead and each producer stops right after the last tuple that can survive the merge, i.e. after the
+ * <code>limit</code>-th distinct key of its (sorted) segment.
+ */
+public class ParallelSegmentFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelSegmentFetcher.class);
+
+    private static final Object END = new Object();
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private static volatile ExecutorService executorService = null;
+
+    private final List<SegmentFeed> feeds;
+    private final int limit;
+    private final Comparator<ITuple> comparator;
+    private final long deadline;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param limit the number of distinct keys each segment needs to return, or Integer.MAX_VALUE if unlimited
+     * @param comparator orders the tuples of each segment, required when there is a limit
+     */
+    public ParallelSegmentFetcher(ExecutorService executor, List<? extends ITupleIterator> sources, int concurrency, int queueDepth, //
+            int limit, Comparator<ITuple> comparator, long deadline) {
+        Preconditions.checkArgument(concurrency > 0, "concurrency must be positive");
+        Preconditions.checkArgument(queueDepth > 0, "queueDepth must be positive");
+        Preconditions.checkArgument(limit == Integer.MAX_VALUE || comparator != null, "comparator is required with limit");
+
+        this.limit = limit;
+        this.comparator = comparator;
+        this.deadline = deadline;
+
+        this.feeds = Lists.newArrayListWithCapacity(sources.size());
+        for (ITupleIterator source : sources) {
+            BlockingQueue<Object> queue = limit == Integer.MAX_VALUE ? new ArrayBlockingQueue<Object>(queueDepth) : new LinkedBlockingQueue<Object>();
+            feeds.add(new SegmentFeed(source, queue));
+        }
+
+        int workers = Math.min(concurrency, feeds.size());
+        logger.info("Fetching {} segments with {} threads", feeds.size(), workers);
+        for (int i = 0; i < workers; i++) {
+            executor.submit(new Worker());
+        }
+    }
+
+    /** the thread pool shared by all queries of this server */
+    public static ExecutorService getExecutorService() {
+        if (executorService != null) {
+            return executorService;
+        }
+
+        synchronized (ParallelSegmentFetcher.class) {
+            if (executorService == null) {
+                int maxThreads = KylinConfig.getInstanceFromEnv().getQuerySegmentScanMaxThreads();
+                logger.info("Creating segment scan thread pool with max of {} threads", maxThreads);
+                executorService = createExecutorService(maxThreads);
+            }
+            return executorService;
+        }
+    }
+
+    static ExecutorService createExecutorService(int maxThreads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public List<Iterator<ITuple>> getIterators() {
+        List<Iterator<ITuple>> result = Lists.newArrayListWithCapacity(feeds.size());
+        for (SegmentFeed feed : feeds) {
+            result.add(new FeedIterator(feed));
+        }
+        return result;
+    }
+
+    /**
+     * stop the workers and close the segments not yet claimed, segments in progress are closed by their worker
+     */
+    public void close() {
+        closed = true;
+        for (SegmentFeed feed : feeds) {
+            if (feed.claimed.compareAndSet(false, true)) {
+                feed.source.close();
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            for (SegmentFeed feed : feeds) {
+                if (closed)
+                    return;
+                if (feed.claimed.compareAndSet(false, true)) {
+                    drain(feed);
+                }
+            }
+        }
+
+        private void drain(SegmentFeed feed) {
+            try {
+                ITuple last = null;
+                int distinct = 0;
+                while (!closed && feed.source.hasNext()) {
+                    ITuple tuple = feed.source.next().makeCopy();
+                    if (limit != Integer.MAX_VALUE) {
+                        if (last == null || comparator.compare(last, tuple) != 0)
+                            distinct++;
+                        if (distinct > limit)
+                            break;
+                        last = tuple;
+                    }
+                    if (!put(feed.queue, tuple))
+                        return;
+                }
+            } catch (Throwable e) {
+                logger.error("Error when fetching segment", e);
+                feed.error = e;
+            } finally {
+                feed.source.close();
+            }
+            put(feed.queue, END);
+        }
+
+        private boolean put(BlockingQueue<Object> queue, Object item) {
+            try {
+                while (!closed) {
+                    if (queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS))
+                        return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    private class FeedIterator implements Iterator<ITuple> {
+        private final SegmentFeed feed;
+        private Object next;
+        private boolean ended = false;
+
+        FeedIterator(SegmentFeed feed) {
+            this.feed = feed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ended)
+                return false;
+            if (next != null)
+                return true;
+
+            try {
+                while ((next = feed.queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) == null) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw new KylinTimeoutException("Query timeout after \"kylin.query.timeout-seconds\" seconds");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted when fetching segment", e);
+            }
+
+            if (next == END) {
+                next = null;
+                ended = true;
+                if (feed.error != null) {
+                    throw Throwables.propagate(feed.error);
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public ITuple next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ITuple result = (ITuple) next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class SegmentFeed {
+        final ITupleIterator source;
+        final BlockingQueue<Object> queue;
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+        volatile Throwable error;
+
+        SegmentFeed(ITupleIterator source, BlockingQueue<Object> queue) {
+            this.source = source;
+            this.queue = queue;
+        }
+    }
+}
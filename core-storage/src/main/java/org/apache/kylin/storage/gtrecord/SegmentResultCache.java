@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+
+/**
+ * Caches the storage result of a segment, keyed by (cube, segment uuid, cuboid, scan request digest).
+ *
+ * A READY segment never changes (refresh and merge create segments of new uuid), so its result for the
+ * same scan request can be reused until evicted. When a new segment is built, the query cache of the cube is
+ * wiped but the next query only scans the new segment, cached results of the other segments are merged
+ * in by the tuple iterators like any other segment result. Only the results of segments that leave the cube,
+ * by merge, refresh, purge or drop, are removed on the cube update, see {@link #retainSegments}.
+ *
+ * Memory is bounded by "kylin.query.segment-cache-max-mb", the least recently used results are evicted first.
+ */
+public class SegmentResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentResultCache.class);
+
+    // rough per record overhead of GTRecord and its ByteArray columns
+    private static final int RECORD_OVERHEAD = 64;
+    private static final int COLUMN_OVERHEAD = 24;
+
+    private static SegmentResultCache instance = null;
+
+    public static SegmentResultCache getInstance() {
+        synchronized (SegmentResultCache.class) {
+            if (instance == null) {
+                instance = new SegmentResultCache(KylinConfig.getInstanceFromEnv().getQuerySegmentCacheMaxMB() * 1024 * 1024);
+            }
+            return instance;
+        }
+    }
+
+    public static boolean isCacheable(CubeSegment cubeSeg, GTScanRequest scanRequest) {
+        return scanRequest != null && cubeSeg.getStatus() == SegmentStatusEnum.READY && cubeSeg.getConfig().isQuerySegmentCacheEnabled();
+    }
+
+    public static String getKey(CubeSegment cubeSeg, Cuboid cuboid, GTScanRequest scanRequest) {
+        return getSegmentKeyPrefix(cubeSeg.getCubeInstance().getName(), cubeSeg.getUuid()) + cuboid.getId() + "/" + scanRequest.getResultDigest();
+    }
+
+    static String getSegmentKeyPrefix(String cubeName, String segmentUuid) {
+        return getCubeKeyPrefix(cubeName) + segmentUuid + "/";
+    }
+
+    private static String getCubeKeyPrefix(String cubeName) {
+        return cubeName.toUpperCase() + "/";
+    }
+
+    private final Cache<String, CachedResult> cache;
+    private final long maxEntryBytes;
+
+    SegmentResultCache(long maxBytes) {
+        // a single huge result should not flush the whole cache
+        this.maxEntryBytes = maxBytes / 8;
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<String, CachedResult>() {
+            @Override
+            public int weigh(String key, CachedResult value) {
+                return (int) Math.min(Integer.MAX_VALUE, value.bytes + key.length() * 2);
+            }
+        }).recordStats().build();
+        logger.info("Segment result cache initialized with max {} bytes", maxBytes);
+    }
+
+    /**
+     * @return the cached records, which are shared among queries and must not be modified; or null if missed
+     */
+    public List<GTRecord> get(String key) {
+        CachedResult result = cache.getIfPresent(key);
+        return result == null ? null : result.records;
+    }
+
+    /**
+     * @return an iterator that returns the same records as <code>input</code>, and puts copies of them
+     * into the cache once the input is fully consumed
+     */
+    public Iterator<GTRecord> wrap(String key, ImmutableBitSet columns, Iterator<GTRecord> input) {
+        return new CachingIterator(key, columns, input);
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Removes the results of the cube's segments other than the given ones, i.e. of the segments the cube
+     * no longer has. Pass no segment when the cube is dropped.
+     */
+    public void retainSegments(String cubeName, Collection<String> segmentUuids) {
+        String cubePrefix = getCubeKeyPrefix(cubeName);
+        List<String> toRemove = Lists.newArrayList();
+        for (String key : cache.asMap().keySet()) {
+            if (!key.startsWith(cubePrefix))
+                continue;
+            String segmentUuid = key.substring(cubePrefix.length(), key.indexOf('/', cubePrefix.length()));
+            if (!segmentUuids.contains(segmentUuid)) {
+                toRemove.add(key);
+            }
+        }
+        if (!toRemove.isEmpty()) {
+            cache.invalidateAll(toRemove);
+            logger.info("Removed {} cached results of the segments no longer in cube {}", toRemove.size(), cubeName);
+        }
+    }
+
+    private class CachingIterator implements Iterator<GTRecord> {
+        private final String key;
+        private final ImmutableBitSet columns;
+        private final Iterator<GTRecord> input;
+        private List<GTRecord> records = Lists.newArrayList();
+        private long bytes = 0;
+
+        CachingIterator(String key, ImmutableBitSet columns, Iterator<GTRecord> input) {
+            this.key = key;
+            this.columns = columns;
+            this.input = input;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = input.hasNext();
+            if (!hasNext && records != null) {
+                cache.put(key, new CachedResult(records, bytes));
+                logger.info("Cached {} records ({} bytes) of {}", records.size(), bytes, key);
+                records = null;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public GTRecord next() {
+            GTRecord record = input.next();
+            if (records != null) {
+                // the input may reuse the record instance
+                records.add(record.copy(columns));
+                bytes += record.sizeOf(columns) + RECORD_OVERHEAD + COLUMN_OVERHEAD * columns.trueBitCount();
+                if (bytes > maxEntryBytes) {
+                    logger.info("Result of {} exceeds {} bytes, not cached", key, maxEntryBytes);
+                    records = null;
+                }
+            }
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class CachedResult {
+        final List<GTRecord> records;
+        final long bytes;
+
+        CachedResult(List<GTRecord> records, long bytes) {
+            this.records = records;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -26,8 +26,11 @@ import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import org.apache.kylin.common.QueryContext;
 import org.apache.kylin.common.exceptions.KylinTimeoutException;
+import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidHitManager;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.metadata.tuple.ITuple;
@@ -50,21 +53,40 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
     protected List<SegmentCubeTupleIterator> segmentCubeTupleIterators;
     protected Iterator<ITuple> tupleIterator;
     protected StorageContext context;
+    protected ParallelSegmentFetcher parallelFetcher;
 
     private int scanCount;
     private int scanCountDelta;
 
+    private QueryContext queryContext;
+    private long scannedRowsBefore;
+    private boolean hitRecorded;
+
     public SequentialCubeTupleIterator(List<CubeSegmentScanner> scanners, Cuboid cuboid, Set<TblColRef> selectedDimensions, //
             Set<FunctionDesc> selectedMetrics, TupleInfo returnTupleInfo, StorageContext context) {
         this.context = context;
         this.scanners = scanners;
+        this.queryContext = QueryContext.current();
+        this.scannedRowsBefore = queryContext.getScannedRows();
 
         segmentCubeTupleIterators = Lists.newArrayList();
         for (CubeSegmentScanner scanner : scanners) {
             segmentCubeTupleIterators.add(new SegmentCubeTupleIterator(scanner, cuboid, selectedDimensions, selectedMetrics, returnTupleInfo, context));
         }
 
-        if (!context.isLimitEnabled()) {
+        if (context.getSegmentScanConcurrency() > 1 && segmentCubeTupleIterators.size() > 1) {
+            // drain segments in parallel, the merge below stays in the query thread
+            int limit = context.isLimitEnabled() ? context.getFinalPushDownLimit() : Integer.MAX_VALUE;
+            Comparator<ITuple> comparator = context.isLimitEnabled() ? getTupleDimensionComparator(cuboid, returnTupleInfo) : null;
+            parallelFetcher = new ParallelSegmentFetcher(ParallelSegmentFetcher.getExecutorService(), segmentCubeTupleIterators, context.getSegmentScanConcurrency(), context.getSegmentScanQueueDepth(), //
+                    limit, comparator, context.getDeadline());
+            List<Iterator<ITuple>> fetched = parallelFetcher.getIterators();
+            if (!context.isLimitEnabled()) {
+                tupleIterator = Iterators.concat(fetched.iterator());
+            } else {
+                tupleIterator = new SortedIteratorMergerWithLimit<ITuple>(fetched.iterator(), limit, comparator).getIterator();
+            }
+        } else if (!context.isLimitEnabled()) {
             //normal case
             tupleIterator = Iterators.concat(segmentCubeTupleIterators.iterator());
         } else {
@@ -159,8 +181,29 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
         // close all the remaining segmentIterator
         flushScanCountDelta();
 
-        for (SegmentCubeTupleIterator iterator : segmentCubeTupleIterators) {
-            iterator.close();
+        if (parallelFetcher != null) {
+            parallelFetcher.close();
+        } else {
+            for (SegmentCubeTupleIterator iterator : segmentCubeTupleIterators) {
+                iterator.close();
+            }
+        }
+
+        recordCuboidHit();
+    }
+
+    private void recordCuboidHit() {
+        if (hitRecorded || scanners.isEmpty())
+            return;
+        hitRecorded = true;
+
+        CubeInstance cube = scanners.get(0).cubeSeg.getCubeInstance();
+        long scannedRows = queryContext.getScannedRows() - scannedRowsBefore;
+        try {
+            CuboidHitManager.getInstance(cube.getConfig()).record(cube.getName(), context.getRequestedCuboid().getId(), //
+                    context.getCuboid().getId(), scannedRows, context.getProcessedRowCount());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to record cuboid hit of cube " + cube.getName(), e);
         }
     }
 
@@ -35,7 +35,8 @@ import com.google.common.base.Function;
 import com.google.common.collect.Iterators;
 
 /**
- * scatter the blob returned from region server to a iterable of gtrecords
+ * scatter the blobs returned from region servers to a iterable of gtrecords.
+ * a region may return its rows in several pages, each of them is sorted on its own, and is decoded as soon as it arrives.
  */
 public class StorageResponseGTScatter implements IGTScanner {
 
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+public class ParallelSegmentFetcherTest {
+
+    private ExecutorService executor = ParallelSegmentFetcher.createExecutorService(4);
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    /** a single int column tuple, reused across next() like the real segment iterator does */
+    static class IntTuple implements ITuple {
+        final Object[] values = new Object[1];
+
+        @Override
+        public List<String> getAllFields() {
+            return null;
+        }
+
+        @Override
+        public List<TblColRef> getAllColumns() {
+            return null;
+        }
+
+        @Override
+        public Object[] getAllValues() {
+            return values;
+        }
+
+        @Override
+        public ITuple makeCopy() {
+            IntTuple copy = new IntTuple();
+            copy.values[0] = values[0];
+            return copy;
+        }
+
+        @Override
+        public Object getValue(TblColRef col) {
+            return values[0];
+        }
+
+        @Override
+        public Object clone() {
+            return makeCopy();
+        }
+    }
+
+    static class IntTupleIterator implements ITupleIterator {
+        final Iterator<Integer> source;
+        final IntTuple tuple = new IntTuple();
+        final RuntimeException failure;
+        volatile boolean closed = false;
+
+        IntTupleIterator(RuntimeException failure, Integer... values) {
+            this.source = Lists.newArrayList(values).iterator();
+            this.failure = failure;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!source.hasNext() && failure != null)
+                throw failure;
+            return source.hasNext();
+        }
+
+        @Override
+        public ITuple next() {
+            tuple.values[0] = source.next();
+            return tuple;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private Comparator<ITuple> getComp() {
+        return new Comparator<ITuple>() {
+            @Override
+            public int compare(ITuple o1, ITuple o2) {
+                return (Integer) o1.getAllValues()[0] - (Integer) o2.getAllValues()[0];
+            }
+        };
+    }
+
+    private List<Integer> toInts(Iterator<ITuple> iterator) {
+        List<Integer> result = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            result.add((Integer) iterator.next().getAllValues()[0]);
+        }
+        return result;
+    }
+
+    @Test
+    public void testConcat() {
+        List<IntTupleIterator> segments = Lists.newArrayList();
+        List<Integer> expected = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            Integer[] values = new Integer[100];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = i * 100 + j;
+                expected.add(values[j]);
+            }
+            segments.add(new IntTupleIterator(null, values));
+        }
+
+        // queue much smaller than a segment, producers have to wait for the consumer
+        ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(executor, segments, 2, 3, Integer.MAX_VALUE, null, Long.MAX_VALUE);
+        List<Integer> result = toInts(Iterators.concat(fetcher.getIterators().iterator()));
+        fetcher.close();
+
+        Assert.assertEquals(expected, result);
+        for (IntTupleIterator segment : segments) {
+            Assert.assertTrue(segment.closed);
+        }
+    }
+
+    @Test
+    public void testLimit() {
+        List<IntTupleIterator> segments = Lists.newArrayList();
+        segments.add(new IntTupleIterator(null, 1, 2, 3, 4, 5));
+        segments.add(new IntTupleIterator(null, 1, 2, 3, 3, 4));
+        segments.add(new IntTupleIterator(null, 2, 5));
+
+        // fewer threads than segments, the merger peeks all segments before any is drained
+        ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(executor, segments, 1, 1, 3, getComp(), Long.MAX_VALUE);
+        Iterator<ITuple> merged = new SortedIteratorMergerWithLimit<ITuple>(fetcher.getIterators().iterator(), 3, getComp()).getIterator();
+        List<Integer> result = toInts(merged);
+        fetcher.close();
+
+        Assert.assertEquals(Lists.newArrayList(1, 1, 2, 2, 2, 3, 3, 3), result);
+    }
+
+    @Test
+    public void testSegmentFailure() {
+        List<IntTupleIterator> segments = Lists.newArrayList();
+        segments.add(new IntTupleIterator(null, 1, 2));
+        segments.add(new IntTupleIterator(new IllegalStateException("segment failed"), 3));
+
+        ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(executor, segments, 2, 10, Integer.MAX_VALUE, null, Long.MAX_VALUE);
+        Iterator<ITuple> iterator = Iterators.concat(fetcher.getIterators().iterator());
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+            Assert.fail("exception expected");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("segment failed", e.getMessage());
+        } finally {
+            fetcher.close();
+        }
+        Assert.assertEquals(3, count);
+    }
+
+    @Test
+    public void testEarlyClose() throws InterruptedException {
+        List<IntTupleIterator> segments = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            segments.add(new IntTupleIterator(null, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+        }
+
+        ParallelSegmentFetcher fetcher = new ParallelSegmentFetcher(executor, segments, 1, 2, Integer.MAX_VALUE, null, Long.MAX_VALUE);
+        Iterator<ITuple> iterator = Iterators.concat(fetcher.getIterators().iterator());
+        Assert.assertEquals(1, iterator.next().getAllValues()[0]);
+        fetcher.close();
+
+        // the blocked worker notices close() within one poll interval
+        for (int i = 0; i < 50 && !segments.get(0).closed; i++) {
+            Thread.sleep(100);
+        }
+        for (IntTupleIterator segment : segments) {
+            Assert.assertTrue(segment.closed);
+        }
+    }
+
+    @Test
+    public void testSaturatedPool() {
+        executor.shutdownNow();
+        executor = ParallelSegmentFetcher.createExecutorService(1);
+
+        List<IntTupleIterator> segments1 = Lists.newArrayList();
+        List<IntTupleIterator> segments2 = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            segments1.add(new IntTupleIterator(null, 1, 2, 3, 4, 5));
+            segments2.add(new IntTupleIterator(null, 6, 7, 8, 9, 10));
+        }
+
+        // the workers of the second query wait in the pool until the first query is drained
+        ParallelSegmentFetcher fetcher1 = new ParallelSegmentFetcher(executor, segments1, 2, 2, Integer.MAX_VALUE, null, Long.MAX_VALUE);
+        ParallelSegmentFetcher fetcher2 = new ParallelSegmentFetcher(executor, segments2, 2, 2, Integer.MAX_VALUE, null, Long.MAX_VALUE);
+        List<Integer> result1 = toInts(Iterators.concat(fetcher1.getIterators().iterator()));
+        List<Integer> result2 = toInts(Iterators.concat(fetcher2.getIterators().iterator()));
+        fetcher1.close();
+        fetcher2.close();
+
+        Assert.assertEquals(Lists.newArrayList(1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2, 3, 4, 5), result1);
+        Assert.assertEquals(Lists.newArrayList(6, 7, 8, 9, 10, 6, 7, 8, 9, 10, 6, 7, 8, 9, 10), result2);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SegmentResultCacheTest extends LocalFileMetadataTestCase {
+
+    static GTInfo info;
+    static List<GTRecord> data;
+
+    @BeforeClass
+    public static void beforeClass() {
+        staticCreateTestMetadata();
+        info = UnitTestSupport.basicInfo();
+        data = UnitTestSupport.mockupData(info, 100);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        cleanAfterClass();
+    }
+
+    @Test
+    public void testCacheAfterFullScan() {
+        SegmentResultCache cache = new SegmentResultCache(1024 * 1024);
+        Assert.assertNull(cache.get("seg1"));
+
+        Iterator<GTRecord> iterator = cache.wrap("seg1", info.getAllColumns(), data.iterator());
+        for (int i = 0; i < 10; i++) {
+            iterator.next();
+        }
+        // partially consumed result is not cached
+        Assert.assertNull(cache.get("seg1"));
+
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+        List<GTRecord> cached = cache.get("seg1");
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(data.size(), cached.size());
+        for (int i = 0; i < data.size(); i++) {
+            Assert.assertArrayEquals(data.get(i).getValues(), cached.get(i).getValues());
+        }
+
+        Assert.assertEquals(2, cache.getStats().missCount());
+        Assert.assertEquals(1, cache.getStats().hitCount());
+    }
+
+    @Test
+    public void testMemoryBound() {
+        // each entry may take at most 1/8 of the cache, i.e. 2 KB here
+        SegmentResultCache cache = new SegmentResultCache(16 * 1024);
+
+        Iterator<GTRecord> iterator = cache.wrap("big", info.getAllColumns(), data.iterator());
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+        Assert.assertNull(cache.get("big"));
+
+        for (int i = 0; i < 20; i++) {
+            iterator = cache.wrap("small" + i, info.getAllColumns(), data.subList(0, 5).iterator());
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+        }
+        // older entries are evicted to stay within the bound
+        Assert.assertNotNull(cache.get("small19"));
+        Assert.assertTrue(cache.size() < 20);
+    }
+
+    private void fill(SegmentResultCache cache, String key) {
+        Iterator<GTRecord> iterator = cache.wrap(key, info.getAllColumns(), data.subList(0, 5).iterator());
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+    }
+
+    @Test
+    public void testRetainSegments() {
+        SegmentResultCache cache = new SegmentResultCache(1024 * 1024);
+        String seg1 = SegmentResultCache.getSegmentKeyPrefix("cube_a", "seg1") + "255/digest";
+        String seg2 = SegmentResultCache.getSegmentKeyPrefix("cube_a", "seg2") + "255/digest";
+        String other = SegmentResultCache.getSegmentKeyPrefix("cube_b", "seg1") + "255/digest";
+        fill(cache, seg1);
+        fill(cache, seg2);
+        fill(cache, other);
+
+        // a new segment is built, the results of the older segments stay
+        cache.retainSegments("cube_a", Lists.newArrayList("seg1", "seg2", "seg3"));
+        Assert.assertNotNull(cache.get(seg1));
+        Assert.assertNotNull(cache.get(seg2));
+
+        // seg1 and seg2 are merged into seg4, the other cube is not touched
+        cache.retainSegments("CUBE_A", Lists.newArrayList("seg3", "seg4"));
+        Assert.assertNull(cache.get(seg1));
+        Assert.assertNull(cache.get(seg2));
+        Assert.assertNotNull(cache.get(other));
+
+        // the cube is dropped
+        cache.retainSegments("cube_b", Collections.<String> emptyList());
+        Assert.assertNull(cache.get(other));
+        Assert.assertEquals(0, cache.size());
+    }
+}
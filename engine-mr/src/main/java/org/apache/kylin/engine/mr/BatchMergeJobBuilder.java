@@ -65,11 +65,11 @@ public class BatchMergeJobBuilder extends JobBuilderSupport {
         }
 
         // Phase 1: Merge Dictionary
-        result.addTask(createMergeDictionaryStep(mergingSegmentIds));
+        result.addTask(createMergeDictionaryStep(jobId, mergingSegmentIds));
 
         // Phase 2: Merge Cube Files
         String formattedPath = StringUtil.join(mergingCuboidPaths, ",");
-        result.addTask(createMergeCuboidDataStep(cubeSegment, formattedPath, cuboidRootPath));
+        result.addTask(createMergeCuboidDataStep(cubeSegment, formattedPath, cuboidRootPath, getDictRemapPath(jobId)));
         outputSide.addStepPhase2_BuildCube(result, cuboidRootPath);
 
         // Phase 3: Update Metadata & Cleanup
@@ -79,7 +79,7 @@ public class BatchMergeJobBuilder extends JobBuilderSupport {
         return result;
     }
 
-    private MapReduceExecutable createMergeCuboidDataStep(CubeSegment seg, String inputPath, String outputPath) {
+    private MapReduceExecutable createMergeCuboidDataStep(CubeSegment seg, String inputPath, String outputPath, String dictRemapPath) {
         MapReduceExecutable mergeCuboidDataStep = new MapReduceExecutable();
         mergeCuboidDataStep.setName(ExecutableConstants.STEP_NAME_MERGE_CUBOID);
         StringBuilder cmd = new StringBuilder();
@@ -89,6 +89,7 @@ public class BatchMergeJobBuilder extends JobBuilderSupport {
         appendExecCmdParameters(cmd, BatchConstants.ARG_SEGMENT_ID, seg.getUuid());
         appendExecCmdParameters(cmd, BatchConstants.ARG_INPUT, inputPath);
         appendExecCmdParameters(cmd, BatchConstants.ARG_OUTPUT, outputPath);
+        appendExecCmdParameters(cmd, BatchConstants.ARG_DICT_REMAP_PATH, dictRemapPath);
         appendExecCmdParameters(cmd, BatchConstants.ARG_JOB_NAME, "Kylin_Merge_Cuboid_" + seg.getCubeInstance().getName() + "_Step");
 
         mergeCuboidDataStep.setMapReduceParams(cmd.toString());
@@ -287,7 +287,9 @@ public class CubingJob extends DefaultChainedExecutable {
             if (value != null)
                 return value;
         }
-        return dft;
+        // a step may also record the info on the job, e.g. when it skips the step that would claim it
+        String value = getExtraInfo().get(key);
+        return value != null ? value : dft;
     }
 
 }
@@ -19,6 +19,7 @@
 package org.apache.kylin.engine.mr;
 
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.kylin.cube.inmemcubing.RowBatch;
 import org.apache.kylin.job.execution.DefaultChainedExecutable;
 import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
 import org.apache.kylin.metadata.model.ISegment;
@@ -51,6 +52,9 @@ public interface IMRInput {
 
         /** Parse a mapper input object into column values. */
         public String[] parseMapperInput(Object mapperInput);
+
+        /** Parse a mapper input object into the next row of given batch. */
+        public void parseMapperInput(Object mapperInput, RowBatch batch);
     }
 
     /**
@@ -18,11 +18,13 @@
 
 package org.apache.kylin.engine.mr;
 
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.mapreduce.Job;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.job.execution.DefaultChainedExecutable;
 
-import java.util.List;
-
 public interface IMROutput2 {
 
     /** Return a helper to participate in batch cubing job flow. */
@@ -53,6 +55,21 @@ public interface IMROutput2 {
 
         /** Add step that does any necessary clean up. */
         public void addStepPhase4_Cleanup(DefaultChainedExecutable jobFlow);
+
+        /** Return a helper to let the in-mem cubing job write storage files directly, or null if not supported. */
+        public IMRInMemCubingOutputFormat getInMemCubingOutputFormat();
+    }
+
+    /**
+     * Takes over the reduce side of the in-mem cubing job, so the reducers write storage
+     * files directly and the storage can skip its own conversion of the cuboid files.
+     * The cuboid files must still end up at the cuboid path, merge reads them later. The job
+     * is submitted asynchronously, so any work after it belongs to a step of phase 3.
+     */
+    public interface IMRInMemCubingOutputFormat {
+
+        /** Configure the reducer, partitioner and output of the in-mem cubing job. */
+        public void configureJob(Job job, CubeSegment seg, String cuboidRootPath) throws IOException;
     }
 
     /** Return a helper to participate in batch merge job flow. */
@@ -108,13 +108,14 @@ public class JobBuilderSupport {
         return result;
     }
 
-    public MergeDictionaryStep createMergeDictionaryStep(List<String> mergingSegmentIds) {
+    public MergeDictionaryStep createMergeDictionaryStep(String jobId, List<String> mergingSegmentIds) {
         MergeDictionaryStep result = new MergeDictionaryStep();
         result.setName(ExecutableConstants.STEP_NAME_MERGE_DICTIONARY);
 
         CubingExecutableUtil.setCubeName(seg.getRealization().getName(), result.getParams());
         CubingExecutableUtil.setSegmentId(seg.getUuid(), result.getParams());
         CubingExecutableUtil.setMergingSegmentIds(mergingSegmentIds, result.getParams());
+        CubingExecutableUtil.setDictRemapPath(getDictRemapPath(jobId), result.getParams());
 
         return result;
     }
@@ -172,6 +173,10 @@ public class JobBuilderSupport {
         return getRealizationRootPath(jobId) + "/fact_distinct_columns";
     }
 
+    public String getDictRemapPath(String jobId) {
+        return getRealizationRootPath(jobId) + "/dict_remap";
+    }
+
     public String getStatisticsPath(String jobId) {
         return getRealizationRootPath(jobId) + "/fact_distinct_columns/" + BatchConstants.CFG_OUTPUT_STATISTICS;
     }
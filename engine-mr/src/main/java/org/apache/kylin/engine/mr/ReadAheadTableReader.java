@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.apache.kylin.engine.mr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.kylin.source.ReadableTable;
+
+/**
+ * Reads the rows of another TableReader ahead in a daemon thread, in batches, so that reading and
+ * parsing the file overlap with the consumer, e.g. the dictionary builder.
+ */
+public class ReadAheadTableReader implements ReadableTable.TableReader {
+
+    public static final int BATCH_ROWS = 1024;
+
+    private static final List<String[]> END = Collections.emptyList();
+
+    private final ReadableTable.TableReader reader;
+    private final BlockingQueue<List<String[]>> queue;
+    private final Thread thread;
+    private volatile Throwable error;
+    private volatile boolean closed;
+
+    private Iterator<String[]> batch = Collections.<String[]> emptyList().iterator();
+    private boolean eof;
+    private String[] row;
+
+    public ReadAheadTableReader(ReadableTable.TableReader reader, int readAheadRows) {
+        this.reader = reader;
+        this.queue = new ArrayBlockingQueue<List<String[]>>(Math.max(1, readAheadRows / BATCH_ROWS));
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readAhead();
+            }
+        }, "ReadAheadTableReader-" + reader);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void readAhead() {
+        try {
+            List<String[]> rows = new ArrayList<String[]>(BATCH_ROWS);
+            while (!closed && reader.next()) {
+                rows.add(reader.getRow());
+                if (rows.size() == BATCH_ROWS) {
+                    queue.put(rows);
+                    rows = new ArrayList<String[]>(BATCH_ROWS);
+                }
+            }
+            if (!rows.isEmpty()) {
+                queue.put(rows);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // closed
+        } catch (Throwable e) {
+            error = e;
+        }
+
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (!batch.hasNext()) {
+            if (eof)
+                return false;
+
+            List<String[]> rows;
+            try {
+                rows = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            if (rows == END) {
+                eof = true;
+                if (error != null)
+                    throw new IOException("Failed to read ahead " + reader, error);
+            }
+            batch = rows.iterator();
+        }
+        row = batch.next();
+        return true;
+    }
+
+    @Override
+    public String[] getRow() {
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reader.close();
+    }
+}
@@ -24,6 +24,7 @@ import java.util.Comparator;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.dict.ByteComparator;
 import org.apache.kylin.dict.StringBytesConverter;
@@ -73,8 +74,12 @@ public class SortedColumnDFSFile implements ReadableTable {
                     allFiles.add(f);
             }
         }
+        int readAheadRows = KylinConfig.getInstanceFromEnv().getDictionaryReadAheadRows();
         for (FileStatus f : allFiles) {
-            DFSFileTableReader reader = new DFSFileTableReader(f.getPath().toString(), -1);
+            TableReader reader = new DFSFileTableReader(f.getPath().toString(), -1);
+            if (readAheadRows > 0) {
+                reader = new ReadAheadTableReader(reader, readAheadRows);
+            }
             readers.add(reader);
         }
 
@@ -40,6 +40,7 @@ public interface BatchConstants {
     String CFG_OUTPUT_PATH = "output.path";
     String CFG_TABLE_NAME = "table.name";
     String CFG_IS_MERGE = "is.merge";
+    String CFG_DICT_REMAP_PATH = "dict.remap.path";
     String CFG_CUBE_INTERMEDIATE_TABLE_ROW_DELIMITER = "cube.intermediate.table.row.delimiter";
     String CFG_REGION_NUMBER_MIN = "region.number.min";
     String CFG_REGION_NUMBER_MAX = "region.number.max";
@@ -81,6 +82,7 @@ public interface BatchConstants {
     String ARG_HTABLE_NAME = "htablename";
     String ARG_INPUT_FORMAT = "inputformat";
     String ARG_LEVEL = "level";
+    String ARG_DICT_REMAP_PATH = "dictremappath";
 
     /**
      * logger and counter
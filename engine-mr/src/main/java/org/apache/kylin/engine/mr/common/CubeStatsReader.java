@@ -81,7 +81,7 @@ public class CubeStatsReader {
 
     public CubeStatsReader(CubeSegment cubeSegment, KylinConfig kylinConfig) throws IOException {
         ResourceStore store = ResourceStore.getStore(kylinConfig);
-        cuboidScheduler = new CuboidScheduler(cubeSegment.getCubeDesc());
+        cuboidScheduler = cubeSegment.getCuboidScheduler(); // stats always cover all cuboids, the scheduler has what the segment builds
         String statsKey = cubeSegment.getStatisticsResourcePath();
         File tmpSeqFile = writeTmpSeqFile(store.getResource(statsKey).inputStream);
         Reader reader = null;
@@ -149,8 +149,23 @@ public class CubeStatsReader {
         return getCuboidSizeMapFromRowCount(seg, getCuboidRowEstimatesHLL());
     }
 
+    // return map of Cuboid ID => MB, of only the cuboids built in the segment
+    public Map<Long, Double> getScheduledCuboidSizeMap() {
+        Map<Long, Double> sizeMap = getCuboidSizeMap();
+        if (!cuboidScheduler.hasWhitelist())
+            return sizeMap;
+
+        Map<Long, Double> result = Maps.newHashMap();
+        for (Map.Entry<Long, Double> entry : sizeMap.entrySet()) {
+            if (cuboidScheduler.isScheduled(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
     public double estimateCubeSize() {
-        return SumHelper.sumDouble(getCuboidSizeMap().values());
+        return SumHelper.sumDouble(getScheduledCuboidSizeMap().values());
     }
 
     public int getMapperNumberOfFirstBuild() {
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.common;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidHitManager;
+import org.apache.kylin.cube.cuboid.CuboidHitStats;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Recommends the cuboids of a cube from its query history. The row and size estimates of every cuboid come
+ * from the statistics of the latest ready segment. The weight of a queried cuboid is how often queries asked for
+ * it, times their scan/return ratio: a query that scans many rows per row returned gains the most from a closer cuboid.
+ * Starting from the base cuboid, cuboids are greedily picked by the saved rows to scan per MB, until the
+ * storage budget is spent or no cuboid saves any more. The plan becomes the cuboid whitelist of new segments.
+ * <p>
+ * Candidates are the cuboids of the aggregation groups, as queries are mapped to those.
+ */
+public class CuboidRecommender {
+
+    private static final Logger logger = LoggerFactory.getLogger(CuboidRecommender.class);
+
+    private final CubeInstance cube;
+    private final KylinConfig config;
+
+    public CuboidRecommender(CubeInstance cube) {
+        this(cube, cube.getConfig());
+    }
+
+    public CuboidRecommender(CubeInstance cube, KylinConfig config) {
+        this.cube = cube;
+        this.config = config;
+    }
+
+    /** recommend in the budget of "kylin.cube.cuboid-recommend.budget-ratio" times the current size */
+    public Plan recommend() throws IOException {
+        return recommend(-1);
+    }
+
+    /** recommend in the given budget in MB, a negative budget means the default one */
+    public Plan recommend(double budgetMB) throws IOException {
+        CubeSegment seg = cube.getLatestReadySegment();
+        if (seg == null)
+            throw new IllegalStateException("Cube " + cube.getName() + " has no ready segment to estimate cuboids");
+
+        CubeDesc cubeDesc = cube.getDescriptor();
+        CubeStatsReader statsReader = new CubeStatsReader(seg, config);
+        Map<Long, Long> rows = statsReader.getCuboidRowEstimatesHLL();
+        Map<Long, Double> sizes = statsReader.getCuboidSizeMap();
+        CuboidHitStats hitStats = CuboidHitManager.getInstance(config).getHitStats(cube.getName());
+
+        Set<Long> current = Sets.newHashSet(cube.getCuboidWhitelist());
+        if (current.isEmpty()) {
+            current.addAll(rows.keySet());
+        }
+        double currentMB = 0;
+        for (Long cuboid : current) {
+            currentMB += sizes.containsKey(cuboid) ? sizes.get(cuboid) : 0;
+        }
+        if (budgetMB < 0) {
+            budgetMB = currentMB * config.getCuboidRecommendBudgetRatio();
+        }
+
+        Map<Long, Long> hits = Maps.newHashMap();
+        Map<Long, Double> scanReturnRatios = Maps.newHashMap();
+        for (Map.Entry<Long, CuboidHitStats.Entry> e : hitStats.getEntries().entrySet()) {
+            hits.put(e.getKey(), e.getValue().getHitCount());
+            scanReturnRatios.put(e.getKey(), e.getValue().getScanReturnRatio());
+        }
+
+        long baseCuboid = Cuboid.getBaseCuboidId(cubeDesc);
+        Plan plan = new Plan();
+        plan.cube = cube.getName();
+        plan.segment = seg.getName();
+        plan.budgetMB = budgetMB;
+        plan.currentSizeMB = currentMB;
+        plan.totalHits = hitStats.getTotalHitCount();
+
+        Set<Long> selected;
+        if (hits.isEmpty()) {
+            logger.info("No query hits of cube {} yet, keep the current cuboids", cube.getName());
+            selected = current;
+        } else {
+            selected = select(rows, sizes, hits, scanReturnRatios, baseCuboid, budgetMB, plan.benefits);
+        }
+
+        for (Long cuboid : selected) {
+            plan.estimatedSizeMB += sizes.containsKey(cuboid) ? sizes.get(cuboid) : 0;
+        }
+        plan.selected = sorted(selected);
+        plan.added = sorted(Sets.difference(selected, current));
+        plan.removed = sorted(Sets.difference(current, selected));
+        for (Map.Entry<Long, CuboidHitStats.Entry> e : hitStats.getEntries().entrySet()) {
+            QueryEntry q = new QueryEntry();
+            q.cuboid = e.getKey();
+            q.hits = e.getValue().getHitCount();
+            q.scanReturnRatio = e.getValue().getScanReturnRatio();
+            q.servedCuboid = e.getValue().getServedCuboid();
+            q.plannedCuboid = findAncestor(e.getKey(), selected, rows, baseCuboid);
+            plan.queries.add(q);
+        }
+
+        logger.info("Recommend {} cuboids for cube {}, {} added, {} removed, {} MB of budget {} MB", plan.selected.size(), cube.getName(), plan.added.size(), plan.removed.size(), plan.estimatedSizeMB, budgetMB);
+        return plan;
+    }
+
+    /**
+     * Greedy selection of HRU style: each round picks the cuboid whose saved rows to scan, weighted by the
+     * hits and the scan/return ratio of the queries it may serve, is the biggest per MB and still fits in the budget.
+     * A query without a ratio, or with a ratio below 1, weighs its hits only.
+     */
+    static Set<Long> select(Map<Long, Long> rows, Map<Long, Double> sizes, Map<Long, Long> hits, Map<Long, Double> scanReturnRatios, //
+            long baseCuboid, double budgetMB, Map<Long, Double> benefits) {
+        Set<Long> selected = Sets.newHashSet(baseCuboid);
+        double spent = sizes.containsKey(baseCuboid) ? sizes.get(baseCuboid) : 0;
+
+        // the rows each queried cuboid scans now, and the weight of saving one of them
+        Map<Long, Long> costs = Maps.newHashMap();
+        Map<Long, Double> weights = Maps.newHashMap();
+        for (Map.Entry<Long, Long> q : hits.entrySet()) {
+            costs.put(q.getKey(), rowsOf(baseCuboid, rows));
+            Double ratio = scanReturnRatios.get(q.getKey());
+            weights.put(q.getKey(), q.getValue() * (ratio == null ? 1 : Math.max(1, ratio)));
+        }
+
+        while (true) {
+            long best = -1;
+            double bestScore = 0;
+            double bestBenefit = 0;
+            for (Long c : rows.keySet()) {
+                if (selected.contains(c))
+                    continue;
+                double size = sizes.containsKey(c) ? sizes.get(c) : 0;
+                if (spent + size > budgetMB)
+                    continue;
+
+                double benefit = 0;
+                long cRows = rowsOf(c, rows);
+                for (Map.Entry<Long, Double> q : weights.entrySet()) {
+                    long saved = costs.get(q.getKey()) - cRows;
+                    if ((c & q.getKey()) == q.getKey() && saved > 0) {
+                        benefit += saved * q.getValue();
+                    }
+                }
+                double score = benefit / Math.max(size, 0.001);
+                if (benefit > 0 && (score > bestScore || (score == bestScore && Cuboid.cuboidSelectComparator.compare(c, best) < 0))) {
+                    best = c;
+                    bestScore = score;
+                    bestBenefit = benefit;
+                }
+            }
+
+            if (best < 0)
+                break;
+
+            selected.add(best);
+            spent += sizes.containsKey(best) ? sizes.get(best) : 0;
+            benefits.put(best, bestBenefit);
+            long bestRows = rowsOf(best, rows);
+            for (Long q : hits.keySet()) {
+                if ((best & q) == q && bestRows < costs.get(q)) {
+                    costs.put(q, bestRows);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static long findAncestor(long cuboid, Set<Long> selected, Map<Long, Long> rows, long baseCuboid) {
+        long result = baseCuboid;
+        for (Long c : selected) {
+            if ((c & cuboid) == cuboid && rowsOf(c, rows) < rowsOf(result, rows)) {
+                result = c;
+            }
+        }
+        return result;
+    }
+
+    private static long rowsOf(long cuboid, Map<Long, Long> rows) {
+        Long r = rows.get(cuboid);
+        return r == null ? Long.MAX_VALUE : r;
+    }
+
+    private static List<Long> sorted(Set<Long> cuboids) {
+        List<Long> result = Lists.newArrayList(cuboids);
+        Collections.sort(result);
+        return result;
+    }
+
+    public static class Plan {
+        private String cube;
+        private String segment;
+        private double budgetMB;
+        private double currentSizeMB;
+        private double estimatedSizeMB;
+        private long totalHits;
+        private List<Long> selected;
+        private List<Long> added;
+        private List<Long> removed;
+        private Map<Long, Double> benefits = Maps.newHashMap(); // selected cuboid ==> weighted rows saved when picked
+        private List<QueryEntry> queries = Lists.newArrayList();
+
+        public String getCube() {
+            return cube;
+        }
+
+        /** the segment whose statistics were used */
+        public String getSegment() {
+            return segment;
+        }
+
+        public double getBudgetMB() {
+            return budgetMB;
+        }
+
+        public double getCurrentSizeMB() {
+            return currentSizeMB;
+        }
+
+        public double getEstimatedSizeMB() {
+            return estimatedSizeMB;
+        }
+
+        public long getTotalHits() {
+            return totalHits;
+        }
+
+        public List<Long> getSelected() {
+            return selected;
+        }
+
+        public List<Long> getAdded() {
+            return added;
+        }
+
+        public List<Long> getRemoved() {
+            return removed;
+        }
+
+        public Map<Long, Double> getBenefits() {
+            return benefits;
+        }
+
+        public List<QueryEntry> getQueries() {
+            return queries;
+        }
+    }
+
+    public static class QueryEntry {
+        private long cuboid;
+        private long hits;
+        private double scanReturnRatio;
+        private long servedCuboid;
+        private long plannedCuboid;
+
+        public long getCuboid() {
+            return cuboid;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public double getScanReturnRatio() {
+            return scanReturnRatio;
+        }
+
+        /** the cuboid scanned for the queries lately */
+        public long getServedCuboid() {
+            return servedCuboid;
+        }
+
+        /** the cuboid to scan for the queries under the plan */
+        public long getPlannedCuboid() {
+            return plannedCuboid;
+        }
+    }
+}
@@ -44,6 +44,7 @@ public class CubingExecutableUtil {
     public static final String CUBING_JOB_ID = "cubingJobId";
     public static final String MERGED_STATISTICS_PATH = "mergedStatisticsPath";
     public static final String INDEX_PATH = "indexPath";
+    public static final String DICT_REMAP_PATH = "dictRemapPath";
 
     public static void setStatisticsPath(String path, Map<String, String> params) {
         params.put(STATISTICS_PATH, path);
@@ -135,4 +136,12 @@ public class CubingExecutableUtil {
         return params.get(MERGED_STATISTICS_PATH);
     }
 
+    public static void setDictRemapPath(String path, Map<String, String> params) {
+        params.put(DICT_REMAP_PATH, path);
+    }
+
+    public static String getDictRemapPath(Map<String, String> params) {
+        return params.get(DICT_REMAP_PATH);
+    }
+
 }
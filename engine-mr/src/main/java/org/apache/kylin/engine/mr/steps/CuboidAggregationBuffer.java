@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.measure.MeasureAggregators;
+import org.apache.kylin.metadata.model.MeasureDesc;
+
+/**
+ * Aggregates the child cuboid records of a mapper by rowkey before they are written, so that a layer shuffles
+ * less than parent rows times fan-out. Bounded by memory: once full, the least recently used rowkeys are
+ * written out. Aggregates the same measures as CuboidReducer does at the same cuboid level.
+ */
+public class CuboidAggregationBuffer {
+
+    public interface Output {
+        void write(byte[] key, int keyLength, ByteBuffer value) throws IOException, InterruptedException;
+    }
+
+    // the map entry, the key object and the array of the aggregators
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int MAX_FREE_AGGRS = 1024;
+
+    private final List<MeasureDesc> measureDescs;
+    private final BufferedMeasureCodec codec;
+    private final int[] needAggrMeasures;
+    private final long maxBytes;
+
+    private final LinkedHashMap<ByteArray, Entry> entries = new LinkedHashMap<ByteArray, Entry>(1024, 0.75f, true);
+    private final ArrayList<MeasureAggregators> freeAggrs = new ArrayList<MeasureAggregators>();
+    private final ByteArray probe = new ByteArray();
+    private final Object[] values;
+
+    private byte[] valueBytes = new byte[0];
+    private int valueLength;
+    private boolean valueDecoded;
+    private long usedBytes;
+
+    private long inputRecords;
+    private long outputRecords;
+    private long flushes;
+
+    public CuboidAggregationBuffer(List<MeasureDesc> measureDescs, int cuboidLevel, long maxBytes) {
+        this.measureDescs = measureDescs;
+        this.codec = new BufferedMeasureCodec(measureDescs);
+        this.needAggrMeasures = CuboidReducer.getNeedAggrMeasures(measureDescs, cuboidLevel);
+        this.maxBytes = maxBytes;
+        this.values = new Object[measureDescs.size()];
+    }
+
+    /** Sets the encoded measures of the parent row, to be aggregated into each of its child rowkeys. */
+    public void setValue(byte[] bytes, int length) {
+        // copy, the input buffer is reused by MR while the decoded measures may refer to it
+        if (valueBytes.length < length) {
+            valueBytes = new byte[Math.max(length, valueBytes.length * 2)];
+        }
+        System.arraycopy(bytes, 0, valueBytes, 0, length);
+        valueLength = length;
+        valueDecoded = false;
+    }
+
+    /** Aggregates the current value into a child rowkey, writes out the least recently used rowkeys if full. */
+    public void aggregate(byte[] key, int keyLength, Output output) throws IOException, InterruptedException {
+        inputRecords++;
+
+        probe.set(key, 0, keyLength);
+        Entry entry = entries.get(probe);
+        if (entry == null) {
+            entry = new Entry(newAggregators());
+            entries.put(new ByteArray(Arrays.copyOf(key, keyLength)), entry);
+            // a new aggregator may keep the first value as its state, give it a copy of its own
+            Object[] copy = new Object[values.length];
+            decode(copy);
+            entry.aggrs.aggregate(copy, needAggrMeasures);
+        } else {
+            if (!valueDecoded) {
+                decode(values);
+                valueDecoded = true;
+            }
+            usedBytes -= entry.memBytes;
+            entry.aggrs.aggregate(values, needAggrMeasures);
+        }
+        entry.memBytes = ENTRY_OVERHEAD_BYTES + keyLength + entry.aggrs.getMemBytesEstimate();
+        usedBytes += entry.memBytes;
+
+        if (usedBytes > maxBytes) {
+            flushes++;
+            // leave some room, or every new rowkey would trigger a write
+            writeOut(maxBytes * 3 / 4, output);
+        }
+    }
+
+    private void decode(Object[] result) {
+        codec.decode(ByteBuffer.wrap(valueBytes, 0, valueLength), result);
+    }
+
+    private MeasureAggregators newAggregators() {
+        if (freeAggrs.isEmpty()) {
+            return new MeasureAggregators(measureDescs);
+        }
+        MeasureAggregators aggrs = freeAggrs.remove(freeAggrs.size() - 1);
+        aggrs.reset();
+        return aggrs;
+    }
+
+    /** Writes out all the rowkeys, at the end of the mapper. */
+    public void flush(Output output) throws IOException, InterruptedException {
+        writeOut(0, output);
+        freeAggrs.clear();
+    }
+
+    private void writeOut(long targetBytes, Output output) throws IOException, InterruptedException {
+        Object[] states = new Object[values.length];
+        Iterator<Map.Entry<ByteArray, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes > targetBytes && it.hasNext()) {
+            Map.Entry<ByteArray, Entry> e = it.next();
+            Entry entry = e.getValue();
+            entry.aggrs.collectStates(states);
+            output.write(e.getKey().array(), e.getKey().length(), codec.encode(states));
+            outputRecords++;
+
+            it.remove();
+            usedBytes -= entry.memBytes;
+            if (freeAggrs.size() < MAX_FREE_AGGRS) {
+                freeAggrs.add(entry.aggrs);
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /** the child records offered */
+    public long getInputRecords() {
+        return inputRecords;
+    }
+
+    /** the records written out */
+    public long getOutputRecords() {
+        return outputRecords;
+    }
+
+    /** times the buffer was full */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    private static class Entry {
+        final MeasureAggregators aggrs;
+        int memBytes;
+
+        Entry(MeasureAggregators aggrs) {
+            this.aggrs = aggrs;
+        }
+    }
+}
@@ -114,7 +114,9 @@ public class CuboidJob extends AbstractHadoopJob {
             job.setMapperClass(this.mapperClass);
             job.setMapOutputKeyClass(Text.class);
             job.setMapOutputValueClass(Text.class);
-            job.setCombinerClass(CuboidReducer.class); // for base cuboid shuffle skew, some rowkey aggregates far more records than others
+            if (cube.getConfig().isLayerCubingCombinerEnabled()) {
+                job.setCombinerClass(CuboidReducer.class); // for base cuboid shuffle skew, some rowkey aggregates far more records than others
+            }
 
             // Reducer
             job.setReducerClass(CuboidReducer.class);
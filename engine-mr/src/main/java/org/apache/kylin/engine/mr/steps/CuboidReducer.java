@@ -53,7 +53,6 @@ public class CuboidReducer extends KylinReducer<Text, Text, Text, Text> {
 
     private int cuboidLevel;
     private int[] needAggrMeasures;
-    private Object[] input;
     private Object[] result;
     private int vcounter;
 
@@ -75,9 +74,13 @@ public class CuboidReducer extends KylinReducer<Text, Text, Text, Text> {
         codec = new BufferedMeasureCodec(measuresDescs);
         aggs = new MeasureAggregators(measuresDescs);
 
-        input = new Object[measuresDescs.size()];
         result = new Object[measuresDescs.size()];
 
+        needAggrMeasures = getNeedAggrMeasures(measuresDescs, cuboidLevel);
+    }
+
+    /** The measures to aggregate at given cuboid level, some measure types only aggregate in the base cuboid. */
+    public static int[] getNeedAggrMeasures(List<MeasureDesc> measuresDescs, int cuboidLevel) {
         List<Integer> needAggMeasuresList = Lists.newArrayList();
         for (int i = 0; i < measuresDescs.size(); i++) {
             if (cuboidLevel == 0) {
@@ -89,10 +92,11 @@ public class CuboidReducer extends KylinReducer<Text, Text, Text, Text> {
             }
         }
 
-        needAggrMeasures = new int[needAggMeasuresList.size()];
+        int[] needAggrMeasures = new int[needAggMeasuresList.size()];
         for (int i = 0; i < needAggMeasuresList.size(); i++) {
             needAggrMeasures[i] = needAggMeasuresList.get(i);
         }
+        return needAggrMeasures;
     }
 
     @Override
@@ -103,8 +107,7 @@ public class CuboidReducer extends KylinReducer<Text, Text, Text, Text> {
             if (vcounter++ % BatchConstants.NORMAL_RECORD_LOG_THRESHOLD == 0) {
                 logger.info("Handling value with ordinal (This is not KV number!): " + vcounter);
             }
-            codec.decode(ByteBuffer.wrap(value.getBytes(), 0, value.getLength()), input);
-            aggs.aggregate(input, needAggrMeasures);
+            aggs.aggregate(ByteBuffer.wrap(value.getBytes(), 0, value.getLength()), codec.getCodec(), needAggrMeasures);
         }
         aggs.collectStates(result);
 
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.util.DictionaryIdRemap;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.metadata.model.TblColRef;
+
+/**
+ * The dictionary ID remap tables of a merge job, from the dictionary of each merging segment to the merged
+ * dictionary. Made by MergeDictionaryStep and read by the mappers of MergeCuboidJob.
+ */
+public class DictionaryRemapUtil {
+
+    public static Path getRemapPath(String remapDir, String segmentUuid, TblColRef col) {
+        return new Path(remapDir, segmentUuid + "/" + col.getIdentity());
+    }
+
+    public static void write(DictionaryIdRemap remap, Path path) throws IOException {
+        FileSystem fs = HadoopUtil.getFileSystem(path);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(path, true)));
+        try {
+            remap.write(out);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /** @return null if there is no such remap table */
+    public static DictionaryIdRemap read(Path path) throws IOException {
+        FileSystem fs = HadoopUtil.getFileSystem(path);
+        if (!fs.exists(path))
+            return null;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(fs.open(path)));
+        try {
+            return DictionaryIdRemap.read(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+}
@@ -24,7 +24,6 @@ import java.util.Collection;
 import java.util.List;
 
 import org.apache.hadoop.io.Text;
-import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.StringUtil;
 import org.apache.kylin.cube.cuboid.CuboidScheduler;
@@ -37,7 +36,6 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 
 /**
@@ -53,17 +51,31 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
     protected boolean collectStatistics = false;
     protected CuboidScheduler cuboidScheduler = null;
     protected int nRowKey;
-    private Integer[][] allCuboidsBitSet = null;
     private HLLCounter[] allCuboidsHLL = null;
     private Long[] cuboidIds;
-    private HashFunction hf = null;
     private int rowCount = 0;
     private int samplingPercentage;
-    private ByteArray[] row_hashcodes = null;
     private ByteBuffer tmpbuf;
     private static final Text EMPTY_TEXT = new Text();
     public static final byte MARK_FOR_PARTITION_COL = (byte) 0xFE;
     public static final byte MARK_FOR_HLL = (byte) 0xFF;
+    /** the cuboid ID under MARK_FOR_HLL that carries the effective sampling percentage of a mapper */
+    public static final long CUBOID_ID_FOR_SAMPLING = -1L;
+
+    // cuboids in the order of the spanning tree, a parent comes before its children
+    private int[] parentIndex;
+    private int[][] removedColumns;
+    private HashFunction[] columnHashFunctions;
+    private long[] columnHashes;
+    private long[] cuboidHashes;
+
+    // adaptive sampling, stops when the base cuboid's cardinality converges
+    private double convergeThreshold;
+    private int convergeCheckRows;
+    private int sampledRows = 0;
+    private long lastBaseEstimate = 0;
+    private int convergedChecks = 0;
+    private boolean samplingConverged = false;
 
     private int partitionColumnIndex = -1;
     private boolean needFetchPartitionCol = true;
@@ -74,27 +86,7 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
         tmpbuf = ByteBuffer.allocate(4096);
         collectStatistics = Boolean.parseBoolean(context.getConfiguration().get(BatchConstants.CFG_STATISTICS_ENABLED));
         if (collectStatistics) {
-            samplingPercentage = Integer.parseInt(context.getConfiguration().get(BatchConstants.CFG_STATISTICS_SAMPLING_PERCENT));
-            cuboidScheduler = new CuboidScheduler(cubeDesc);
-            nRowKey = cubeDesc.getRowkey().getRowKeyColumns().length;
-
-            List<Long> cuboidIdList = Lists.newArrayList();
-            List<Integer[]> allCuboidsBitSetList = Lists.newArrayList();
-            addCuboidBitSet(baseCuboidId, allCuboidsBitSetList, cuboidIdList);
-
-            allCuboidsBitSet = allCuboidsBitSetList.toArray(new Integer[cuboidIdList.size()][]);
-            cuboidIds = cuboidIdList.toArray(new Long[cuboidIdList.size()]);
-
-            allCuboidsHLL = new HLLCounter[cuboidIds.length];
-            for (int i = 0; i < cuboidIds.length; i++) {
-                allCuboidsHLL[i] = new HLLCounter(cubeDesc.getConfig().getCubeStatsHLLPrecision());
-            }
-
-            hf = Hashing.murmur3_32();
-            row_hashcodes = new ByteArray[nRowKey];
-            for (int i = 0; i < nRowKey; i++) {
-                row_hashcodes[i] = new ByteArray();
-            }
+            initStatistics(Integer.parseInt(context.getConfiguration().get(BatchConstants.CFG_STATISTICS_SAMPLING_PERCENT)));
 
             TblColRef partitionColRef = cubeDesc.getModel().getPartitionDesc().getPartitionDateColumnRef();
             if (partitionColRef != null) {
@@ -111,25 +103,67 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
         }
     }
 
-    private void addCuboidBitSet(long cuboidId, List<Integer[]> allCuboidsBitSet, List<Long> allCuboids) {
+    // package-private for test, needs cubeDesc, baseCuboidId and intermediateTableDesc set
+    void initStatistics(int samplingPercentage) {
+        this.samplingPercentage = samplingPercentage;
+        cuboidScheduler = new CuboidScheduler(cubeDesc);
+        nRowKey = cubeDesc.getRowkey().getRowKeyColumns().length;
+
+        List<Long> cuboidIdList = Lists.newArrayList();
+        List<Integer> parentIndexList = Lists.newArrayList();
+        List<int[]> removedColumnsList = Lists.newArrayList();
+        addCuboid(baseCuboidId, -1, cuboidIdList, parentIndexList, removedColumnsList);
+
+        cuboidIds = cuboidIdList.toArray(new Long[cuboidIdList.size()]);
+        parentIndex = new int[cuboidIds.length];
+        for (int i = 0; i < cuboidIds.length; i++) {
+            parentIndex[i] = parentIndexList.get(i);
+        }
+        removedColumns = removedColumnsList.toArray(new int[cuboidIds.length][]);
+        cuboidHashes = new long[cuboidIds.length];
+
+        allCuboidsHLL = new HLLCounter[cuboidIds.length];
+        for (int i = 0; i < cuboidIds.length; i++) {
+            allCuboidsHLL[i] = new HLLCounter(cubeDesc.getConfig().getCubeStatsHLLPrecision());
+        }
+
+        // seeded by the column position, so that equal values in different columns don't cancel out
+        columnHashFunctions = new HashFunction[nRowKey];
+        for (int i = 0; i < nRowKey; i++) {
+            columnHashFunctions[i] = Hashing.murmur3_128(i);
+        }
+        columnHashes = new long[nRowKey];
+
+        convergeThreshold = cubeDesc.getConfig().getCubeStatsConvergeThreshold();
+        convergeCheckRows = cubeDesc.getConfig().getCubeStatsConvergeCheckRows();
+    }
+
+    private void addCuboid(long cuboidId, int parent, List<Long> allCuboids, List<Integer> parentIndexList, List<int[]> removedColumnsList) {
+        int index = allCuboids.size();
         allCuboids.add(cuboidId);
-        Integer[] indice = new Integer[Long.bitCount(cuboidId)];
+        parentIndexList.add(parent);
+        // the base cuboid hash sums all columns, a child subtracts the columns it drops from its parent
+        removedColumnsList.add(parent < 0 ? new int[0] : toRowKeyColumns(allCuboids.get(parent) & ~cuboidId));
+
+        Collection<Long> children = cuboidScheduler.getSpanningCuboid(cuboidId);
+        for (Long childId : children) {
+            addCuboid(childId, index, allCuboids, parentIndexList, removedColumnsList);
+        }
+    }
+
+    private int[] toRowKeyColumns(long bits) {
+        int[] indice = new int[Long.bitCount(bits)];
 
         long mask = Long.highestOneBit(baseCuboidId);
         int position = 0;
         for (int i = 0; i < nRowKey; i++) {
-            if ((mask & cuboidId) > 0) {
+            if ((mask & bits) > 0) {
                 indice[position] = i;
                 position++;
             }
             mask = mask >> 1;
         }
-
-        allCuboidsBitSet.add(indice);
-        Collection<Long> children = cuboidScheduler.getSpanningCuboid(cuboidId);
-        for (Long childId : children) {
-            addCuboidBitSet(childId, allCuboidsBitSet, allCuboids);
-        }
+        return indice;
     }
 
     @Override
@@ -168,9 +202,7 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
         }
 
         if (collectStatistics) {
-            if (rowCount % 100 < samplingPercentage) {
-                putRowKeyToHLL(row);
-            }
+            sampleRow(row);
 
             if (needFetchPartitionCol == true) {
                 String fieldValue = row[partitionColumnIndex];
@@ -197,27 +229,61 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
         return size;
     }
 
+    // package-private for test
+    void sampleRow(String[] row) {
+        if (!samplingConverged && rowCount % 100 < samplingPercentage) {
+            putRowKeyToHLL(row);
+
+            if (convergeThreshold > 0 && ++sampledRows % convergeCheckRows == 0) {
+                checkSamplingConverged();
+            }
+        }
+    }
+
+    boolean isSamplingConverged() {
+        return samplingConverged;
+    }
+
     private void putRowKeyToHLL(String[] row) {
 
-        //generate hash for each row key column
+        //generate hash for each row key column, only once per row
+        int[] rowKeyColumnIndexes = intermediateTableDesc.getRowKeyColumnIndexes();
+        long baseHash = 0;
         for (int i = 0; i < nRowKey; i++) {
-            Hasher hc = hf.newHasher();
-            String colValue = row[intermediateTableDesc.getRowKeyColumnIndexes()[i]];
+            String colValue = row[rowKeyColumnIndexes[i]];
             if (colValue != null) {
-                row_hashcodes[i].set(hc.putString(colValue).hash().asBytes());
+                columnHashes[i] = columnHashFunctions[i].hashString(colValue).asLong();
             } else {
-                row_hashcodes[i].set(hc.putInt(0).hash().asBytes());
+                columnHashes[i] = columnHashFunctions[i].hashInt(0).asLong();
             }
+            baseHash += columnHashes[i];
         }
 
-        // user the row key column hash to get a consolidated hash for each cuboid
-        for (int i = 0, n = allCuboidsBitSet.length; i < n; i++) {
-            Hasher hc = hf.newHasher();
-            for (int position = 0; position < allCuboidsBitSet[i].length; position++) {
-                hc.putBytes(row_hashcodes[allCuboidsBitSet[i][position]].array());
+        // the sum of the column hashes is a cuboid's hash, derived from the parent's hash along the spanning tree
+        for (int i = 0, n = cuboidIds.length; i < n; i++) {
+            long hash = parentIndex[i] < 0 ? baseHash : cuboidHashes[parentIndex[i]];
+            for (int col : removedColumns[i]) {
+                hash -= columnHashes[col];
             }
+            cuboidHashes[i] = hash;
+            allCuboidsHLL[i].addHashDirectly(hash);
+        }
+    }
+
+    private void checkSamplingConverged() {
+        // the base cuboid comes first, no other cuboid gets new rows when the base cuboid doesn't;
+        // converged when few of the rows sampled since the last check were new distinct rows
+        long estimate = allCuboidsHLL[0].getCountEstimate();
+        if ((estimate - lastBaseEstimate) / (double) convergeCheckRows <= convergeThreshold) {
+            convergedChecks++;
+        } else {
+            convergedChecks = 0;
+        }
+        lastBaseEstimate = estimate;
 
-            allCuboidsHLL[i].add(hc.hash().asBytes());
+        if (convergedChecks >= 2) {
+            samplingConverged = true;
+            logger.info("Sampling converged after " + sampledRows + " sampled rows of " + rowCount + ", base cuboid cardinality " + estimate);
         }
     }
 
@@ -241,6 +307,16 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
                 sortableKey.setTypeId((byte) 0);
                 context.write(sortableKey, outputValue);
             }
+
+            // a converged sample has seen all the distinct rows, it stands for the full data
+            tmpbuf.clear();
+            tmpbuf.put(MARK_FOR_HLL);
+            tmpbuf.putLong(CUBOID_ID_FOR_SAMPLING);
+            outputKey.set(tmpbuf.array(), 0, tmpbuf.position());
+            outputValue.set(Bytes.toBytes(samplingConverged ? 100 : samplingPercentage));
+            sortableKey.setText(outputKey);
+            sortableKey.setTypeId((byte) 0);
+            context.write(sortableKey, outputValue);
         }
     }
 }
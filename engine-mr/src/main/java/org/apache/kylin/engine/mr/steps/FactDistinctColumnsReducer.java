@@ -68,6 +68,7 @@ public class FactDistinctColumnsReducer extends KylinReducer<SelfDefineSortableK
     protected CubeDesc cubeDesc;
     private long totalRowsBeforeMerge = 0;
     private int samplingPercentage;
+    private int effectiveSamplingPercentage = Integer.MAX_VALUE;
     private TblColRef col = null;
     private boolean isStatistics = false;
     private KylinConfig cubeConfig;
@@ -165,6 +166,13 @@ public class FactDistinctColumnsReducer extends KylinReducer<SelfDefineSortableK
         if (isStatistics) {
             // for hll
             long cuboidId = Bytes.toLong(key.getBytes(), 1, Bytes.SIZEOF_LONG);
+            if (cuboidId == FactDistinctColumnsMapper.CUBOID_ID_FOR_SAMPLING) {
+                // the statistics stand for the full data only if the sampling converged in every mapper
+                for (Text value : values) {
+                    effectiveSamplingPercentage = Math.min(effectiveSamplingPercentage, Bytes.toInt(value.getBytes(), 0, Bytes.SIZEOF_INT));
+                }
+                return;
+            }
             for (Text value : values) {
                 HLLCounter hll = new HLLCounter(cubeConfig.getCubeStatsHLLPrecision());
                 ByteBuffer bf = ByteBuffer.wrap(value.getBytes(), 0, value.getLength());
@@ -215,6 +223,10 @@ public class FactDistinctColumnsReducer extends KylinReducer<SelfDefineSortableK
     @Override
     protected void doCleanup(Context context) throws IOException, InterruptedException {
         if (isStatistics) {
+            if (effectiveSamplingPercentage != Integer.MAX_VALUE) {
+                samplingPercentage = effectiveSamplingPercentage;
+            }
+
             //output the hll info;
             List<Long> allCuboids = Lists.newArrayList();
             allCuboids.addAll(cuboidHLLMap.keySet());
@@ -37,6 +37,7 @@ import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.engine.mr.ByteArrayWritable;
 import org.apache.kylin.engine.mr.CubingJob;
 import org.apache.kylin.engine.mr.IMRInput.IMRTableInputFormat;
+import org.apache.kylin.engine.mr.IMROutput2.IMRInMemCubingOutputFormat;
 import org.apache.kylin.engine.mr.MRUtil;
 import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
@@ -100,8 +101,8 @@ public class InMemCuboidJob extends AbstractHadoopJob {
 
             setJobClasspath(job, cube.getConfig());
 
-            // add metadata to distributed cache
-            attachSegmentMetadataWithDict(segment, job.getConfiguration());
+            // add metadata to distributed cache, the statistics plan the cuboid tasks in mapper
+            attachSegmentMetadataWithDictAndStats(segment, job.getConfiguration());
 
             // set job configuration
             job.getConfiguration().set(BatchConstants.CFG_CUBE_NAME, cubeName);
@@ -116,19 +117,25 @@ public class InMemCuboidJob extends AbstractHadoopJob {
             job.setMapOutputKeyClass(ByteArrayWritable.class);
             job.setMapOutputValueClass(ByteArrayWritable.class);
 
-            // set output
-            job.setReducerClass(InMemCuboidReducer.class);
-            job.setNumReduceTasks(calculateReducerNum(segment));
+            // set output, the storage may take over to write its files directly
+            IMRInMemCubingOutputFormat storageOutputFormat = MRUtil.getBatchCubingOutputSide2(segment).getInMemCubingOutputFormat();
+            if (storageOutputFormat != null) {
+                logger.info("Reducers write storage files directly by " + storageOutputFormat.getClass().getName());
+                storageOutputFormat.configureJob(job, segment, output);
+            } else {
+                job.setReducerClass(InMemCuboidReducer.class);
+                job.setNumReduceTasks(calculateReducerNum(segment));
 
-            // the cuboid file and KV class must be compatible with 0.7 version for smooth upgrade
-            job.setOutputFormatClass(SequenceFileOutputFormat.class);
-            job.setOutputKeyClass(Text.class);
-            job.setOutputValueClass(Text.class);
+                // the cuboid file and KV class must be compatible with 0.7 version for smooth upgrade
+                job.setOutputFormatClass(SequenceFileOutputFormat.class);
+                job.setOutputKeyClass(Text.class);
+                job.setOutputValueClass(Text.class);
 
-            Path outputPath = new Path(output);
-            FileOutputFormat.setOutputPath(job, outputPath);
+                Path outputPath = new Path(output);
+                FileOutputFormat.setOutputPath(job, outputPath);
 
-            HadoopUtil.deletePath(job.getConfiguration(), outputPath);
+                HadoopUtil.deletePath(job.getConfiguration(), outputPath);
+            }
 
             return waitForCompletion(job);
         } finally {
@@ -140,7 +147,7 @@ public class InMemCuboidJob extends AbstractHadoopJob {
     private int calculateReducerNum(CubeSegment cubeSeg) throws IOException {
         KylinConfig kylinConfig = cubeSeg.getConfig();
 
-        Map<Long, Double> cubeSizeMap = new CubeStatsReader(cubeSeg, kylinConfig).getCuboidSizeMap();
+        Map<Long, Double> cubeSizeMap = new CubeStatsReader(cubeSeg, kylinConfig).getScheduledCuboidSizeMap();
         double totalSizeInM = 0;
         for (Double cuboidSize : cubeSizeMap.values()) {
             totalSizeInM += cuboidSize;
@@ -19,12 +19,7 @@
 package org.apache.kylin.engine.mr.steps;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -37,7 +32,11 @@ import org.apache.kylin.common.util.MemoryBudgetController;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.inmemcubing.CuboidResult;
 import org.apache.kylin.cube.inmemcubing.DoggedCubeBuilder;
+import org.apache.kylin.cube.inmemcubing.ICuboidBuildListener;
+import org.apache.kylin.cube.inmemcubing.RowBatch;
+import org.apache.kylin.cube.inmemcubing.RowBatchRing;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.engine.EngineFactory;
 import org.apache.kylin.engine.mr.ByteArrayWritable;
@@ -46,6 +45,7 @@ import org.apache.kylin.engine.mr.KylinMapper;
 import org.apache.kylin.engine.mr.MRUtil;
 import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.engine.mr.common.CubeStatsReader;
 import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.slf4j.Logger;
@@ -59,16 +59,26 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
 
     private static final Logger logger = LoggerFactory.getLogger(InMemCuboidMapper.class);
 
+    public static enum InMemCuboidCounter {
+        CUBOIDS, CUBOID_BUILD_MILLIS, CUBOID_AGGR_CACHE_MB
+    }
+
+    // beyond this many cuboids, per-cuboid counters would exceed the counter limit of MR
+    private static final int MAX_PER_CUBOID_COUNTERS = 16;
+    private static final String PER_CUBOID_MILLIS_GROUP = "InMemCuboidBuildMillis";
+    private static final String PER_CUBOID_MB_GROUP = "InMemCuboidAggrCacheMB";
+
     private CubeInstance cube;
     private CubeDesc cubeDesc;
     private CubeSegment cubeSegment;
     private IMRTableInputFormat flatTableInputFormat;
 
-    private BlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(64);
+    private RowBatchRing ring;
+    private RowBatch batch;
     private Future<?> future;
 
     @Override
-    protected void setup(Context context) throws IOException {
+    protected void setup(final Context context) throws IOException {
         super.bindCurrentConfiguration(context.getConfiguration());
 
         Configuration conf = context.getConfiguration();
@@ -95,15 +105,43 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
         }
 
         int taskCount = config.getCubeAlgorithmInMemConcurrentThreads();
-        DoggedCubeBuilder cubeBuilder = new DoggedCubeBuilder(cube.getDescriptor(), flatDesc, dictionaryMap);
+        DoggedCubeBuilder cubeBuilder = new DoggedCubeBuilder(cubeSegment.getCuboidScheduler(), cube.getDescriptor(), flatDesc, dictionaryMap);
         cubeBuilder.setReserveMemoryMB(calculateReserveMB(context.getConfiguration()));
         cubeBuilder.setConcurrentThreads(taskCount);
+        cubeBuilder.setCuboidSizeEstimates(loadCuboidSizeEstimates(config));
+
+        final boolean perCuboidCounters = cubeSegment.getCuboidScheduler().getCuboidCount() <= MAX_PER_CUBOID_COUNTERS;
+        cubeBuilder.setBuildListener(new ICuboidBuildListener() {
+            @Override
+            public void onCuboidBuilt(CuboidResult result) {
+                synchronized (context) {
+                    context.getCounter(InMemCuboidCounter.CUBOIDS).increment(1);
+                    context.getCounter(InMemCuboidCounter.CUBOID_BUILD_MILLIS).increment(result.timeSpent);
+                    context.getCounter(InMemCuboidCounter.CUBOID_AGGR_CACHE_MB).increment(result.aggrCacheMB);
+                    if (perCuboidCounters) {
+                        String cuboid = String.valueOf(result.cuboidId);
+                        context.getCounter(PER_CUBOID_MILLIS_GROUP, cuboid).increment(result.timeSpent);
+                        context.getCounter(PER_CUBOID_MB_GROUP, cuboid).increment(result.aggrCacheMB);
+                    }
+                }
+            }
+        });
 
+        ring = new RowBatchRing(flatDesc.getAllColumns().size());
         ExecutorService executorService = Executors.newSingleThreadExecutor();
-        future = executorService.submit(cubeBuilder.buildAsRunnable(queue, new MapContextGTRecordWriter(context, cubeDesc, cubeSegment)));
+        future = executorService.submit(cubeBuilder.buildAsRunnable(ring, new MapContextGTRecordWriter(context, cubeDesc, cubeSegment)));
 
     }
 
+    private Map<Long, Double> loadCuboidSizeEstimates(KylinConfig config) {
+        try {
+            return new CubeStatsReader(cubeSegment, config).getScheduledCuboidSizeMap();
+        } catch (Exception e) {
+            logger.warn("Cube statistics not available, cuboid tasks are planned without size estimates", e);
+            return null;
+        }
+    }
+
     private int calculateReserveMB(Configuration configuration) {
         int sysAvailMB = MemoryBudgetController.getSystemAvailMB();
         int mrReserve = configuration.getInt("mapreduce.task.io.sort.mb", 100);
@@ -115,14 +153,17 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
 
     @Override
     public void doMap(KEYIN key, Object record, Context context) throws IOException, InterruptedException {
-        // put each row to the queue
-        String[] row = flatTableInputFormat.parseMapperInput(record);
-        List<String> rowAsList = Arrays.asList(row);
+        // parse each row into the current batch, publish it when full
+        while (batch == null && !future.isDone()) {
+            batch = ring.claim(1, TimeUnit.SECONDS);
+        }
+        if (batch == null)
+            return; // the build has ended, its error is thrown in cleanup
 
-        while (!future.isDone()) {
-            if (queue.offer(rowAsList, 1, TimeUnit.SECONDS)) {
-                break;
-            }
+        flatTableInputFormat.parseMapperInput(record, batch);
+        if (batch.isFull()) {
+            ring.publish();
+            batch = null;
         }
     }
 
@@ -130,9 +171,15 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
     protected void doCleanup(Context context) throws IOException, InterruptedException {
         logger.info("Totally handled " + mapCounter + " records!");
 
-        while (!future.isDone()) {
-            if (queue.offer(Collections.<String> emptyList(), 1, TimeUnit.SECONDS)) {
-                break;
+        if (batch != null) {
+            batch.markEndOfInput();
+            ring.publish();
+            batch = null;
+        } else {
+            while (!future.isDone()) {
+                if (ring.publishEndOfInput(1, TimeUnit.SECONDS)) {
+                    break;
+                }
             }
         }
 
@@ -141,7 +188,6 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
         } catch (Exception e) {
             throw new IOException("Failed to build cube in mapper " + context.getTaskAttemptID().getTaskID().getId(), e);
         }
-        queue.clear();
     }
 
 }
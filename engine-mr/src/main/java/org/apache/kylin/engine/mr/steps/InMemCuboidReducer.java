@@ -46,7 +46,6 @@ public class InMemCuboidReducer extends KylinReducer<ByteArrayWritable, ByteArra
     private BufferedMeasureCodec codec;
     private MeasureAggregators aggs;
 
-    private Object[] input;
     private Object[] result;
 
     private int vcounter;
@@ -66,7 +65,6 @@ public class InMemCuboidReducer extends KylinReducer<ByteArrayWritable, ByteArra
         List<MeasureDesc> measuresDescs = cubeDesc.getMeasures();
         codec = new BufferedMeasureCodec(measuresDescs);
         aggs = new MeasureAggregators(measuresDescs);
-        input = new Object[measuresDescs.size()];
         result = new Object[measuresDescs.size()];
 
         outputKey = new Text();
@@ -82,20 +80,29 @@ public class InMemCuboidReducer extends KylinReducer<ByteArrayWritable, ByteArra
             if (vcounter++ % BatchConstants.NORMAL_RECORD_LOG_THRESHOLD == 0) {
                 logger.info("Handling value with ordinal (This is not KV number!): " + vcounter);
             }
-            codec.decode(value.asBuffer(), input);
-            aggs.aggregate(input);
+            aggs.aggregate(value.asBuffer(), codec.getCodec());
         }
         aggs.collectStates(result);
 
-        // output key
-        outputKey.set(key.array(), key.offset(), key.length());
+        writeRow(key, result, codec.encode(result), context);
+    }
 
-        // output value
-        ByteBuffer valueBuf = codec.encode(result);
-        outputValue.set(valueBuf.array(), 0, valueBuf.position());
+    /**
+     * Output one aggregated cuboid row, the measures are given both as objects and in the encoded form.
+     * Subclasses may write the row in a storage format instead of the cuboid file.
+     */
+    protected void writeRow(ByteArrayWritable key, Object[] measures, ByteBuffer valueBuf, Context context) throws IOException, InterruptedException {
+        context.write(toCuboidKey(key), toCuboidValue(valueBuf));
+    }
 
-        context.write(outputKey, outputValue);
+    protected Text toCuboidKey(ByteArrayWritable key) {
+        outputKey.set(key.array(), key.offset(), key.length());
+        return outputKey;
+    }
 
+    protected Text toCuboidValue(ByteBuffer valueBuf) {
+        outputValue.set(valueBuf.array(), 0, valueBuf.position());
+        return outputValue;
     }
 
 }
@@ -42,6 +42,7 @@ public class MergeCuboidJob extends CuboidJob {
             options.addOption(OPTION_SEGMENT_ID);
             options.addOption(OPTION_INPUT_PATH);
             options.addOption(OPTION_OUTPUT_PATH);
+            options.addOption(OPTION_DICT_REMAP_PATH);
             parseOptions(options, args);
 
             String cubeName = getOptionValue(OPTION_CUBE_NAME).toUpperCase();
@@ -77,6 +78,9 @@ public class MergeCuboidJob extends CuboidJob {
             // set job configuration
             job.getConfiguration().set(BatchConstants.CFG_CUBE_NAME, cubeName);
             job.getConfiguration().set(BatchConstants.CFG_CUBE_SEGMENT_ID, segmentID);
+            if (hasOption(OPTION_DICT_REMAP_PATH)) {
+                job.getConfiguration().set(BatchConstants.CFG_DICT_REMAP_PATH, getOptionValue(OPTION_DICT_REMAP_PATH));
+            }
 
             // add metadata to distributed cache
             // TODO actually only dictionaries from merging segments are needed
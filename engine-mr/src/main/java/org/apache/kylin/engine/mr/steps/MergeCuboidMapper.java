@@ -32,6 +32,7 @@ import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.DictionaryIdRemap;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.common.util.SplittedBytes;
 import org.apache.kylin.cube.CubeInstance;
@@ -39,6 +40,7 @@ import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.common.RowKeySplitter;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.kv.RowConstants;
 import org.apache.kylin.cube.kv.RowKeyEncoder;
 import org.apache.kylin.cube.kv.RowKeyEncoderProvider;
@@ -54,6 +56,9 @@ import org.apache.kylin.metadata.model.MeasureDesc;
 import org.apache.kylin.metadata.model.TableRef;
 import org.apache.kylin.metadata.model.TblColRef;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -63,6 +68,8 @@ import com.google.common.collect.Maps;
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
 
+    private static final Logger logger = LoggerFactory.getLogger(MergeCuboidMapper.class);
+
     private KylinConfig config;
     private String cubeName;
     private String segmentID;
@@ -78,13 +85,19 @@ public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
     private ByteArray newKeyBuf;
     private RowKeySplitter rowKeySplitter;
     private RowKeyEncoderProvider rowKeyEncoderProvider;
+    private CuboidScheduler cuboidScheduler;
 
     private HashMap<TblColRef, Boolean> dimensionsNeedDict = new HashMap<TblColRef, Boolean>();
 
+    // old ID to new ID of the dictionary columns, a null value if the dictionary is unchanged
+    private String dictRemapPath;
+    private HashMap<TblColRef, DictionaryIdRemap> dictRemaps = new HashMap<TblColRef, DictionaryIdRemap>();
+
     // for re-encode measures that use dictionary
     private List<Pair<Integer, MeasureIngester>> dictMeasures;
     private Map<TblColRef, Dictionary<String>> oldDicts;
     private Map<TblColRef, Dictionary<String>> newDicts;
+    private Map<TblColRef, DictionaryIdRemap> measureDictRemaps;
     private List<MeasureDesc> measureDescs;
     private BufferedMeasureCodec codec;
     private Object[] measureObjs;
@@ -114,6 +127,8 @@ public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
 
         rowKeySplitter = new RowKeySplitter(sourceCubeSegment, 65, 255);
         rowKeyEncoderProvider = new RowKeyEncoderProvider(mergedCubeSegment);
+        cuboidScheduler = mergedCubeSegment.getCuboidScheduler();
+        dictRemapPath = context.getConfiguration().get(BatchConstants.CFG_DICT_REMAP_PATH);
 
         measureDescs = cubeDesc.getMeasures();
         codec = new BufferedMeasureCodec(measureDescs);
@@ -123,6 +138,7 @@ public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
         dictMeasures = Lists.newArrayList();
         oldDicts = Maps.newHashMap();
         newDicts = Maps.newHashMap();
+        measureDictRemaps = Maps.newHashMap();
         for (int i = 0; i < measureDescs.size(); i++) {
             MeasureDesc measureDesc = measureDescs.get(i);
             MeasureType measureType = measureDesc.getFunction().getMeasureType();
@@ -137,6 +153,7 @@ public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
                 if (!sourceCubeSegment.getDictionary(col).equals(mergedCubeSegment.getDictionary(col))) {
                     oldDicts.put(col, sourceCubeSegment.getDictionary(col));
                     newDicts.put(col, mergedCubeSegment.getDictionary(col));
+                    measureDictRemaps.put(col, getDictRemap(col));
                     needReEncode = true;
                 }
             }
@@ -177,6 +194,9 @@ public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
     @Override
     public void doMap(Text key, Text value, Context context) throws IOException, InterruptedException {
         long cuboidID = rowKeySplitter.split(key.getBytes());
+        if (cuboidScheduler.hasWhitelist() && !cuboidScheduler.isScheduled(cuboidID)) {
+            return; // not built in all the merging segments
+        }
         Cuboid cuboid = Cuboid.findById(cubeDesc, cuboidID);
         RowKeyEncoder rowkeyEncoder = rowKeyEncoderProvider.getRowkeyEncoder(cuboid);
 
@@ -188,53 +208,32 @@ public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
             int useSplit = i + bodySplitOffset;
             TblColRef col = cuboid.getColumns().get(i);
 
+            SplittedBytes split = splittedByteses[useSplit];
+
             if (this.checkNeedMerging(col)) {
                 // if dictionary on fact table column, needs rewrite
-                DictionaryManager dictMgr = DictionaryManager.getInstance(config);
-                Dictionary<String> mergedDict = dictMgr.getDictionary(mergedCubeSegment.getDictResPath(col));
-
-                Dictionary<String> sourceDict;
                 // handle the column that all records is null
                 if (sourceCubeSegment.getDictionary(col) == null) {
+                    Dictionary<String> mergedDict = DictionaryManager.getInstance(config).getDictionary(mergedCubeSegment.getDictResPath(col));
+                    ensureKeyBodyBuf(bufOffset + mergedDict.getSizeOfId());
                     BytesUtil.writeUnsigned(mergedDict.nullId(), newKeyBodyBuf, bufOffset, mergedDict.getSizeOfId());
                     bufOffset += mergedDict.getSizeOfId();
                     continue;
-                } else {
-                    sourceDict = dictMgr.getDictionary(sourceCubeSegment.getDictResPath(col));
                 }
 
-                while (sourceDict.getSizeOfValue() > newKeyBodyBuf.length - bufOffset || //
-                        mergedDict.getSizeOfValue() > newKeyBodyBuf.length - bufOffset || //
-                        mergedDict.getSizeOfId() > newKeyBodyBuf.length - bufOffset) {
-                    byte[] oldBuf = newKeyBodyBuf;
-                    newKeyBodyBuf = new byte[2 * newKeyBodyBuf.length];
-                    System.arraycopy(oldBuf, 0, newKeyBodyBuf, 0, oldBuf.length);
-                }
-
-                int idInSourceDict = BytesUtil.readUnsigned(splittedByteses[useSplit].value, 0, splittedByteses[useSplit].length);
-                int idInMergedDict;
-
-                //int size = sourceDict.getValueBytesFromId(idInSourceDict, newKeyBodyBuf, bufOffset);
-                String v = sourceDict.getValueFromId(idInSourceDict);
-                if (v == null) {
-                    idInMergedDict = mergedDict.nullId();
-                } else {
-                    idInMergedDict = mergedDict.getIdFromValue(v);
-                }
-
-                BytesUtil.writeUnsigned(idInMergedDict, newKeyBodyBuf, bufOffset, mergedDict.getSizeOfId());
-                bufOffset += mergedDict.getSizeOfId();
-            } else {
-                // keep as it is
-                while (splittedByteses[useSplit].length > newKeyBodyBuf.length - bufOffset) {
-                    byte[] oldBuf = newKeyBodyBuf;
-                    newKeyBodyBuf = new byte[2 * newKeyBodyBuf.length];
-                    System.arraycopy(oldBuf, 0, newKeyBodyBuf, 0, oldBuf.length);
+                DictionaryIdRemap remap = getDictRemap(col);
+                if (remap != null) {
+                    ensureKeyBodyBuf(bufOffset + remap.getTargetSizeOfId());
+                    bufOffset += remap.remap(split.value, 0, split.length, newKeyBodyBuf, bufOffset);
+                    continue;
                 }
-
-                System.arraycopy(splittedByteses[useSplit].value, 0, newKeyBodyBuf, bufOffset, splittedByteses[useSplit].length);
-                bufOffset += splittedByteses[useSplit].length;
+                // else the dictionary is unchanged, keep the ID
             }
+
+            // keep as it is
+            ensureKeyBodyBuf(bufOffset + split.length);
+            System.arraycopy(split.value, 0, newKeyBodyBuf, bufOffset, split.length);
+            bufOffset += split.length;
         }
 
         int fullKeySize = rowkeyEncoder.getBytesLength();
@@ -252,7 +251,7 @@ public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
             for (Pair<Integer, MeasureIngester> pair : dictMeasures) {
                 int i = pair.getFirst();
                 MeasureIngester ingester = pair.getSecond();
-                measureObjs[i] = ingester.reEncodeDictionary(measureObjs[i], measureDescs.get(i), oldDicts, newDicts);
+                measureObjs[i] = ingester.reEncodeDictionary(measureObjs[i], measureDescs.get(i), oldDicts, newDicts, measureDictRemaps);
             }
             ByteBuffer valueBuf = codec.encode(measureObjs);
             outputValue.set(valueBuf.array(), 0, valueBuf.position());
@@ -262,6 +261,41 @@ public class MergeCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
         context.write(outputKey, value);
     }
 
+    private void ensureKeyBodyBuf(int size) {
+        while (size > newKeyBodyBuf.length) {
+            byte[] oldBuf = newKeyBodyBuf;
+            newKeyBodyBuf = new byte[2 * newKeyBodyBuf.length];
+            System.arraycopy(oldBuf, 0, newKeyBodyBuf, 0, oldBuf.length);
+        }
+    }
+
+    /** @return null if the dictionary of the source segment is the merged dictionary */
+    private DictionaryIdRemap getDictRemap(TblColRef col) throws IOException {
+        if (dictRemaps.containsKey(col))
+            return dictRemaps.get(col);
+
+        DictionaryIdRemap remap = null;
+        String sourcePath = sourceCubeSegment.getDictResPath(col);
+        String mergedPath = mergedCubeSegment.getDictResPath(col);
+        if (!sourcePath.equals(mergedPath)) {
+            DictionaryManager dictMgr = DictionaryManager.getInstance(config);
+            Dictionary<String> sourceDict = dictMgr.getDictionary(sourcePath);
+            Dictionary<String> mergedDict = dictMgr.getDictionary(mergedPath);
+            if (!sourceDict.equals(mergedDict)) {
+                if (dictRemapPath != null) {
+                    remap = DictionaryRemapUtil.read(DictionaryRemapUtil.getRemapPath(dictRemapPath, sourceCubeSegment.getUuid(), col));
+                }
+                if (remap == null) {
+                    // the merge job is made before remap tables are, make it here
+                    logger.info("No dictionary remap of " + col + " for segment " + sourceCubeSegment + ", make it in mapper");
+                    remap = DictionaryIdRemap.build(sourceDict, mergedDict);
+                }
+            }
+        }
+        dictRemaps.put(col, remap);
+        return remap;
+    }
+
     private Boolean checkNeedMerging(TblColRef col) throws IOException {
         Boolean ret = dimensionsNeedDict.get(col);
         if (ret != null)
@@ -24,8 +24,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.DictionaryIdRemap;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
@@ -65,9 +69,14 @@ public class MergeDictionaryStep extends AbstractExecutable {
         try {
             checkLookupSnapshotsMustIncremental(mergingSegments);
 
-            makeDictForNewSegment(conf, cube, newSegment, mergingSegments);
+            Set<TblColRef> mergedDictCols = makeDictForNewSegment(conf, cube, newSegment, mergingSegments);
             makeSnapshotForNewSegment(cube, newSegment, mergingSegments);
 
+            String dictRemapPath = CubingExecutableUtil.getDictRemapPath(this.getParams());
+            if (dictRemapPath != null) {
+                makeDictRemapForMergingSegments(conf, newSegment, mergingSegments, mergedDictCols, dictRemapPath);
+            }
+
             CubeUpdate cubeBuilder = new CubeUpdate(cube);
             cubeBuilder.setToUpdateSegs(newSegment);
             mgr.updateCube(cubeBuilder);
@@ -101,9 +110,10 @@ public class MergeDictionaryStep extends AbstractExecutable {
      *
      * @param cube
      * @param newSeg
+     * @return the columns whose dictionaries are merged
      * @throws IOException
      */
-    private void makeDictForNewSegment(KylinConfig conf, CubeInstance cube, CubeSegment newSeg, List<CubeSegment> mergingSegments) throws IOException {
+    private Set<TblColRef> makeDictForNewSegment(KylinConfig conf, CubeInstance cube, CubeSegment newSeg, List<CubeSegment> mergingSegments) throws IOException {
         HashSet<TblColRef> colsNeedMeringDict = new HashSet<TblColRef>();
         HashSet<TblColRef> colsNeedCopyDict = new HashSet<TblColRef>();
         DictionaryManager dictMgr = DictionaryManager.getInstance(conf);
@@ -140,6 +150,39 @@ public class MergeDictionaryStep extends AbstractExecutable {
             String path = mergingSegments.get(0).getDictResPath(col);
             newSeg.putDictResPath(col, path);
         }
+        return colsNeedMeringDict;
+    }
+
+    /**
+     * For each merging segment and merged dictionary, make the table from the IDs of the segment dictionary to the
+     * IDs of the merged dictionary, so the merge mappers re-encode an ID by an array lookup. Not made where the
+     * segment dictionary is the merged dictionary, the IDs are kept as they are.
+     */
+    private void makeDictRemapForMergingSegments(KylinConfig conf, CubeSegment newSeg, List<CubeSegment> mergingSegments, Set<TblColRef> mergedDictCols, String dictRemapPath) throws IOException {
+        DictionaryManager dictMgr = DictionaryManager.getInstance(conf);
+
+        for (TblColRef col : mergedDictCols) {
+            String mergedPath = newSeg.getDictResPath(col);
+            if (mergedPath == null)
+                continue;
+
+            Dictionary<String> mergedDict = dictMgr.getDictionary(mergedPath);
+            for (CubeSegment segment : mergingSegments) {
+                String sourcePath = segment.getDictResPath(col);
+                if (sourcePath == null || sourcePath.equals(mergedPath))
+                    continue;
+
+                Dictionary<String> sourceDict = dictMgr.getDictionary(sourcePath);
+                if (sourceDict == null || sourceDict.equals(mergedDict))
+                    continue;
+
+                long start = System.currentTimeMillis();
+                DictionaryIdRemap remap = DictionaryIdRemap.build(sourceDict, mergedDict);
+                Path path = DictionaryRemapUtil.getRemapPath(dictRemapPath, segment.getUuid(), col);
+                DictionaryRemapUtil.write(remap, path);
+                logger.info("Made dictionary remap of " + remap.size() + " IDs for " + col + " of segment " + segment + " in " + (System.currentTimeMillis() - start) + " ms, " + path);
+            }
+        }
     }
 
     private DictionaryInfo mergeDictionaries(DictionaryManager dictMgr, CubeSegment cubeSeg, List<DictionaryInfo> dicts, TblColRef col) throws IOException {
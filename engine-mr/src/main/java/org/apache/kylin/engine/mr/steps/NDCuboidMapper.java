@@ -37,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 
 /**
@@ -47,6 +48,11 @@ public class NDCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
 
     private static final Logger logger = LoggerFactory.getLogger(NDCuboidMapper.class);
 
+    /** compare CHILD_RECORDS to MAP_OUTPUT_RECORDS for the reduction by the in-mapper aggregation of the layer */
+    public static enum NDCuboidCounter {
+        CHILD_RECORDS, AGGR_BUFFER_FLUSHES
+    }
+
     private Text outputKey = new Text();
     private String cubeName;
     private String segmentID;
@@ -61,6 +67,9 @@ public class NDCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
 
     private NDCuboidBuilder ndCuboidBuilder;
 
+    private CuboidAggregationBuffer aggrBuffer;
+    private CuboidAggregationBuffer.Output aggrOutput;
+
     @Override
     protected void setup(Context context) throws IOException {
         super.bindCurrentConfiguration(context.getConfiguration());
@@ -74,9 +83,17 @@ public class NDCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
         cubeSegment = cube.getSegmentById(segmentID);
         cubeDesc = cube.getDescriptor();
         ndCuboidBuilder = new NDCuboidBuilder(cubeSegment);
-        // initialize CubiodScheduler
-        cuboidScheduler = new CuboidScheduler(cubeDesc);
+        // initialize CubiodScheduler, the segment may build only the cuboids in its whitelist
+        cuboidScheduler = cubeSegment.getCuboidScheduler();
         rowKeySplitter = new RowKeySplitter(cubeSegment, 65, 256);
+
+        int aggrMB = config.getNDCuboidMapperAggrMB();
+        if (aggrMB > 0) {
+            int cuboidLevel = context.getConfiguration().getInt(BatchConstants.CFG_CUBE_CUBOID_LEVEL, 0);
+            aggrBuffer = new CuboidAggregationBuffer(cubeDesc.getMeasures(), cuboidLevel, (long) aggrMB * 1024 * 1024);
+            aggrOutput = new AggrBufferOutput(context);
+            logger.info("Aggregate child cuboid records in mapper with " + aggrMB + " MB");
+        }
     }
 
 
@@ -103,12 +120,48 @@ public class NDCuboidMapper extends KylinMapper<Text, Text, Text, Text> {
             logger.info("Handling record with ordinal: " + handleCounter);
         }
 
+        if (aggrBuffer != null) {
+            aggrBuffer.setValue(value.getBytes(), value.getLength());
+        }
         for (Long child : myChildren) {
             Cuboid childCuboid = Cuboid.findById(cubeDesc, child);
             Pair<Integer, ByteArray> result = ndCuboidBuilder.buildKey(parentCuboid, childCuboid, rowKeySplitter.getSplitBuffers());
-            outputKey.set(result.getSecond().array(), 0, result.getFirst());
-            context.write(outputKey, value);
+            if (aggrBuffer != null) {
+                aggrBuffer.aggregate(result.getSecond().array(), result.getFirst(), aggrOutput);
+            } else {
+                outputKey.set(result.getSecond().array(), 0, result.getFirst());
+                context.write(outputKey, value);
+            }
         }
+        context.getCounter(NDCuboidCounter.CHILD_RECORDS).increment(myChildren.size());
+
+    }
 
+    @Override
+    protected void doCleanup(Context context) throws IOException, InterruptedException {
+        if (aggrBuffer != null) {
+            aggrBuffer.flush(aggrOutput);
+            context.getCounter(NDCuboidCounter.AGGR_BUFFER_FLUSHES).increment(aggrBuffer.getFlushes());
+
+            long in = aggrBuffer.getInputRecords();
+            long out = aggrBuffer.getOutputRecords();
+            logger.info("In-mapper aggregation reduced " + in + " child cuboid records to " + out + (in == 0 ? "" : String.format(" (%.1f%%)", 100.0 * out / in)) + ", buffer full " + aggrBuffer.getFlushes() + " times");
+        }
+    }
+
+    private class AggrBufferOutput implements CuboidAggregationBuffer.Output {
+        final Context context;
+        final Text outputValue = new Text();
+
+        AggrBufferOutput(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public void write(byte[] key, int keyLength, ByteBuffer value) throws IOException, InterruptedException {
+            outputKey.set(key, 0, keyLength);
+            outputValue.set(value.array(), 0, value.position());
+            context.write(outputKey, outputValue);
+        }
     }
 }
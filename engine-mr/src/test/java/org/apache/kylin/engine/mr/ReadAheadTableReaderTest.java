@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.apache.kylin.engine.mr;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ReadAheadTableReaderTest {
+
+    @Test
+    public void testSameRows() throws IOException {
+        File f = new File("src/test/resources/dict/DW_SITES");
+        DFSFileTableReader reader = new DFSFileTableReader("file://" + f.getAbsolutePath(), DFSFileTable.DELIM_AUTO, 10);
+        // a small read ahead, so the reading thread waits for the consumer
+        ReadAheadTableReader readAhead = new ReadAheadTableReader(new DFSFileTableReader("file://" + f.getAbsolutePath(), DFSFileTable.DELIM_AUTO, 10), 1);
+
+        int rows = 0;
+        while (reader.next()) {
+            assertEquals(true, readAhead.next());
+            assertArrayEquals(reader.getRow(), readAhead.getRow());
+            rows++;
+        }
+        assertFalse(readAhead.next());
+        assertFalse(readAhead.next());
+        assertEquals(true, rows > 0);
+
+        reader.close();
+        readAhead.close();
+    }
+
+    @Test
+    public void testCloseEarly() throws IOException {
+        File f = new File("src/test/resources/dict/DW_SITES");
+        ReadAheadTableReader readAhead = new ReadAheadTableReader(new DFSFileTableReader("file://" + f.getAbsolutePath(), DFSFileTable.DELIM_AUTO, 10), 1);
+        readAhead.next();
+        readAhead.close();
+    }
+}
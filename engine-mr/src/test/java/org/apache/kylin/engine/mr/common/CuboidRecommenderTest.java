@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class CuboidRecommenderTest {
+
+    private static final long BASE = 7L;
+
+    // 3 dimensions, a cuboid with fewer dimensions has fewer rows and is smaller
+    private Map<Long, Long> rows() {
+        Map<Long, Long> rows = Maps.newHashMap();
+        rows.put(7L, 1000L);
+        rows.put(6L, 500L);
+        rows.put(5L, 400L);
+        rows.put(3L, 300L);
+        rows.put(4L, 50L);
+        rows.put(2L, 40L);
+        rows.put(1L, 30L);
+        return rows;
+    }
+
+    private Map<Long, Double> sizes() {
+        Map<Long, Double> sizes = Maps.newHashMap();
+        sizes.put(7L, 10.0);
+        sizes.put(6L, 5.0);
+        sizes.put(5L, 4.0);
+        sizes.put(3L, 3.0);
+        sizes.put(4L, 0.5);
+        sizes.put(2L, 0.4);
+        sizes.put(1L, 0.3);
+        return sizes;
+    }
+
+    private Map<Long, Long> hits() {
+        Map<Long, Long> hits = Maps.newHashMap();
+        hits.put(4L, 10L);
+        hits.put(2L, 1L);
+        return hits;
+    }
+
+    private Map<Long, Double> noRatios() {
+        return Maps.newHashMap();
+    }
+
+    @Test
+    public void testBaseCuboidAlwaysSelected() {
+        Map<Long, Double> benefits = Maps.newHashMap();
+        Set<Long> selected = CuboidRecommender.select(rows(), sizes(), hits(), noRatios(), BASE, 0, benefits);
+
+        // the base cuboid alone exceeds the budget, yet it is the one that can serve every query
+        assertEquals(Sets.newHashSet(BASE), selected);
+        assertTrue(benefits.isEmpty());
+    }
+
+    @Test
+    public void testBudgetLimit() {
+        Map<Long, Double> benefits = Maps.newHashMap();
+        Set<Long> selected = CuboidRecommender.select(rows(), sizes(), hits(), noRatios(), BASE, 10.45, benefits);
+
+        // cuboid 4 has the best benefit per MB but doesn't fit, cuboid 2 does
+        assertEquals(Sets.newHashSet(BASE, 2L), selected);
+        assertEquals(960.0, benefits.get(2L), 0.0001);
+    }
+
+    @Test
+    public void testBenefitOrdering() {
+        Map<Long, Double> benefits = Maps.newLinkedHashMap();
+        Set<Long> selected = CuboidRecommender.select(rows(), sizes(), hits(), noRatios(), BASE, 100, benefits);
+
+        // cuboid 4 saves (1000 - 50) * 10 rows first, then cuboid 2 saves (1000 - 40) * 1 rows,
+        // none of the bigger cuboids saves any more after that
+        assertEquals(Sets.newHashSet(BASE, 4L, 2L), selected);
+        assertEquals(Lists.newArrayList(4L, 2L), Lists.newArrayList(benefits.keySet()));
+        assertEquals(9500.0, benefits.get(4L), 0.0001);
+        assertEquals(960.0, benefits.get(2L), 0.0001);
+    }
+
+    @Test
+    public void testNoHits() {
+        Map<Long, Double> benefits = Maps.newHashMap();
+        Set<Long> selected = CuboidRecommender.select(rows(), sizes(), Maps.<Long, Long> newHashMap(), noRatios(), BASE, 100, benefits);
+
+        assertEquals(Sets.newHashSet(BASE), selected);
+    }
+
+    @Test
+    public void testScanReturnRatioWeighting() {
+        // equal hits, the budget fits only one of cuboid 4 and 2
+        Map<Long, Long> hits = Maps.newHashMap();
+        hits.put(4L, 10L);
+        hits.put(2L, 10L);
+
+        // by hits alone, cuboid 2 saves more per MB
+        Set<Long> selected = CuboidRecommender.select(rows(), sizes(), hits, noRatios(), BASE, 10.5, Maps.<Long, Double> newHashMap());
+        assertEquals(Sets.newHashSet(BASE, 2L), selected);
+
+        // the queries of cuboid 4 over-scan 20 rows per row returned, they gain more from a closer cuboid
+        Map<Long, Double> ratios = Maps.newHashMap();
+        ratios.put(4L, 20.0);
+        ratios.put(2L, 1.0);
+        Map<Long, Double> benefits = Maps.newHashMap();
+        selected = CuboidRecommender.select(rows(), sizes(), hits, ratios, BASE, 10.5, benefits);
+        assertEquals(Sets.newHashSet(BASE, 4L), selected);
+        assertEquals((1000 - 50) * 10 * 20.0, benefits.get(4L), 0.0001);
+    }
+}
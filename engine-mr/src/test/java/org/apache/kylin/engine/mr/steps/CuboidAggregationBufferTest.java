@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CuboidAggregationBufferTest extends LocalFileMetadataTestCase {
+
+    private List<MeasureDesc> measures;
+    private BufferedMeasureCodec codec;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        // GMV_SUM, GMV_MIN, GMV_MAX, TRANS_CNT, ITEM_COUNT_SUM
+        measures = CubeDescManager.getInstance(getTestConfig()).getCubeDesc("test_kylin_cube_with_slr_desc").getMeasures();
+        codec = new BufferedMeasureCodec(measures);
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testAggregateAll() throws IOException, InterruptedException {
+        verifyAggregation(Long.MAX_VALUE, 10, 10000);
+    }
+
+    @Test
+    public void testFlushWhenFull() throws IOException, InterruptedException {
+        CuboidAggregationBuffer buffer = verifyAggregation(10 * 1024, 1000, 20000);
+        assertTrue(buffer.getFlushes() > 0);
+        assertTrue(buffer.getOutputRecords() > 1000);
+    }
+
+    private CuboidAggregationBuffer verifyAggregation(long maxBytes, int nKeys, int nRows) throws IOException, InterruptedException {
+        CuboidAggregationBuffer buffer = new CuboidAggregationBuffer(measures, 1, maxBytes);
+        final Map<ByteArray, Object[]> merged = new HashMap<>();
+        CuboidAggregationBuffer.Output output = new CuboidAggregationBuffer.Output() {
+            @Override
+            public void write(byte[] key, int keyLength, ByteBuffer value) {
+                Object[] values = new Object[measures.size()];
+                codec.decode(ByteBuffer.wrap(value.array(), 0, value.position()), values);
+                ByteArray k = new ByteArray(Bytes.copy(key, 0, keyLength));
+                Object[] prev = merged.get(k);
+                if (prev != null) {
+                    values[0] = ((BigDecimal) values[0]).add((BigDecimal) prev[0]);
+                    values[3] = (Long) values[3] + (Long) prev[3];
+                }
+                merged.put(k, values);
+            }
+        };
+
+        // each parent row goes to two children, one key shared by all rows
+        byte[] key = new byte[8];
+        for (int i = 0; i < nRows; i++) {
+            ByteBuffer value = codec.encode(new Object[] { new BigDecimal(i), new BigDecimal(i), new BigDecimal(i), 1L, 1L });
+            buffer.setValue(value.array(), value.position());
+
+            Bytes.putLong(key, 0, i % nKeys);
+            buffer.aggregate(key, key.length, output);
+            Bytes.putLong(key, 0, -1L);
+            buffer.aggregate(key, key.length, output);
+        }
+        buffer.flush(output);
+
+        assertEquals(2L * nRows, buffer.getInputRecords());
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getUsedBytes());
+        assertEquals(nKeys + 1, merged.size());
+
+        Object[] all = merged.get(new ByteArray(Bytes.toBytes(-1L)));
+        assertEquals(new BigDecimal((long) nRows * (nRows - 1) / 2).setScale(4), ((BigDecimal) all[0]).setScale(4));
+        assertEquals((long) nRows, all[3]);
+
+        long count = 0;
+        for (Object[] values : merged.values()) {
+            count += (Long) values[3];
+        }
+        assertEquals(2L * nRows, count);
+        return buffer;
+    }
+}
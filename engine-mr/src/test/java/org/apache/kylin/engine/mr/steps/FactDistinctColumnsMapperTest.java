@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.steps;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableEnrich;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FactDistinctColumnsMapperTest extends LocalFileMetadataTestCase {
+
+    private FactDistinctColumnsMapper<Object> mapper;
+    private int columnCount;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        System.setProperty("kylin.job.sampling-converge-threshold", "0.01");
+        System.setProperty("kylin.job.sampling-converge-check-rows", "1000");
+
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready");
+        CubeSegment segment = cube.getFirstSegment();
+
+        mapper = new FactDistinctColumnsMapper<Object>();
+        mapper.cubeDesc = cube.getDescriptor();
+        mapper.baseCuboidId = Cuboid.getBaseCuboidId(mapper.cubeDesc);
+        mapper.intermediateTableDesc = new CubeJoinedFlatTableEnrich(new CubeJoinedFlatTableDesc(segment), mapper.cubeDesc);
+        mapper.initStatistics(100);
+        columnCount = mapper.intermediateTableDesc.getAllColumns().size();
+    }
+
+    @After
+    public void after() throws Exception {
+        System.clearProperty("kylin.job.sampling-converge-threshold");
+        System.clearProperty("kylin.job.sampling-converge-check-rows");
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSamplingNotConvergedOnDistinctRows() {
+        // every row is new, the base cuboid keeps growing by one per sampled row
+        for (int i = 0; i < 10000; i++) {
+            mapper.sampleRow(row(i));
+        }
+        assertFalse(mapper.isSamplingConverged());
+    }
+
+    @Test
+    public void testSamplingConvergedOnRepeatedRows() {
+        // 50 distinct rows, all seen within the first check
+        for (int i = 0; i < 10000; i++) {
+            mapper.sampleRow(row(i % 50));
+        }
+        assertTrue(mapper.isSamplingConverged());
+    }
+
+    private String[] row(int i) {
+        String[] row = new String[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            row[c] = "v" + i;
+        }
+        return row;
+    }
+}
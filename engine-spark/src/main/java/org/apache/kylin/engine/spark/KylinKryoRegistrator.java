@@ -99,6 +99,7 @@ public class KylinKryoRegistrator implements KryoRegistrator {
         addClassQuitely(kyroClasses, "org.apache.spark.sql.catalyst.expressions.GenericInternalRow");
         addClassQuitely(kyroClasses, "org.apache.spark.unsafe.types.UTF8String");
         addClassQuitely(kyroClasses, "com.tdunning.math.stats.AVLGroupTree");
+        addClassQuitely(kyroClasses, "org.apache.kylin.measure.percentile.DDSketchCounter$Store");
 
         for (Class kyroClass : kyroClasses) {
             kryo.register(kyroClass);
@@ -224,6 +225,7 @@ public class KylinKryoRegistrator implements KryoRegistrator {
         kyroClasses.add(org.apache.kylin.measure.bitmap.BitmapSerializer.class);
         kyroClasses.add(org.apache.kylin.measure.bitmap.RoaringBitmapCounter.class);
         kyroClasses.add(org.apache.kylin.measure.bitmap.RoaringBitmapCounterFactory.class);
+        kyroClasses.add(org.apache.kylin.measure.bitmap.ShardedBitmapCounter.class);
         kyroClasses.add(org.apache.kylin.measure.dim.DimCountDistinctMeasureType.class);
         kyroClasses.add(org.apache.kylin.measure.extendedcolumn.ExtendedColumnMeasureType.class);
         kyroClasses.add(org.apache.kylin.measure.extendedcolumn.ExtendedColumnSerializer.class);
@@ -241,9 +243,17 @@ public class KylinKryoRegistrator implements KryoRegistrator {
         kyroClasses.add(org.apache.kylin.measure.percentile.PercentileCounter.class);
         kyroClasses.add(org.apache.kylin.measure.percentile.PercentileMeasureType.class);
         kyroClasses.add(org.apache.kylin.measure.percentile.PercentileSerializer.class);
+        kyroClasses.add(org.apache.kylin.measure.percentile.DDSketchAggregator.class);
+        kyroClasses.add(org.apache.kylin.measure.percentile.DDSketchCounter.class);
+        kyroClasses.add(org.apache.kylin.measure.percentile.DDSketchMeasureType.class);
+        kyroClasses.add(org.apache.kylin.measure.percentile.DDSketchSerializer.class);
         kyroClasses.add(org.apache.kylin.measure.raw.RawAggregator.class);
         kyroClasses.add(org.apache.kylin.measure.raw.RawMeasureType.class);
         kyroClasses.add(org.apache.kylin.measure.raw.RawSerializer.class);
+        kyroClasses.add(org.apache.kylin.measure.theta.ThetaAggregator.class);
+        kyroClasses.add(org.apache.kylin.measure.theta.ThetaCounter.class);
+        kyroClasses.add(org.apache.kylin.measure.theta.ThetaMeasureType.class);
+        kyroClasses.add(org.apache.kylin.measure.theta.ThetaSerializer.class);
         kyroClasses.add(org.apache.kylin.measure.topn.Counter.class);
         kyroClasses.add(org.apache.kylin.measure.topn.DoubleDeltaSerializer.class);
         kyroClasses.add(org.apache.kylin.measure.topn.TopNAggregator.class);
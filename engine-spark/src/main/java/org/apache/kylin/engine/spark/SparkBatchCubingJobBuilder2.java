@@ -42,9 +42,26 @@ public class SparkBatchCubingJobBuilder2 extends BatchCubingJobBuilder2 {
 
     @Override
     protected void addLayerCubingSteps(final CubingJob result, final String jobId, final String cuboidRootPath) {
+        if (!isInMemAlgorithm()) {
+            result.addTask(createSparkCubingStep(SparkCubingByLayer.class, cuboidRootPath));
+        }
+    }
+
+    @Override
+    protected void addInMemCubingSteps(final CubingJob result, String jobId, String cuboidRootPath) {
+        if (isInMemAlgorithm()) {
+            result.addTask(createSparkCubingStep(SparkCubingInMem.class, cuboidRootPath));
+        }
+    }
+
+    private boolean isInMemAlgorithm() {
+        return "inmem".equalsIgnoreCase(seg.getConfig().getSparkCubeAlgorithm());
+    }
+
+    private SparkExecutable createSparkCubingStep(Class<?> sparkApplication, final String cuboidRootPath) {
         IJoinedFlatTableDesc flatTableDesc = EngineFactory.getJoinedFlatTableDesc(seg);
         final SparkExecutable sparkExecutable = new SparkExecutable();
-        sparkExecutable.setClassName(SparkCubingByLayer.class.getName());
+        sparkExecutable.setClassName(sparkApplication.getName());
         sparkExecutable.setParam(SparkCubingByLayer.OPTION_CUBE_NAME.getOpt(), seg.getRealization().getName());
         sparkExecutable.setParam(SparkCubingByLayer.OPTION_SEGMENT_ID.getOpt(), seg.getUuid());
         sparkExecutable.setParam(SparkCubingByLayer.OPTION_INPUT_PATH.getOpt(), flatTableDesc.getTableName());
@@ -66,12 +83,7 @@ public class SparkBatchCubingJobBuilder2 extends BatchCubingJobBuilder2 {
         sparkExecutable.setJars(jars.toString());
 
         sparkExecutable.setName(ExecutableConstants.STEP_NAME_BUILD_SPARK_CUBE);
-        result.addTask(sparkExecutable);
-    }
-
-    @Override
-    protected void addInMemCubingSteps(final CubingJob result, String jobId, String cuboidRootPath) {
-
+        return sparkExecutable;
     }
 
     private String findJar(String className, String perferLibraryName) {
@@ -123,7 +123,7 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         }
     }
 
-    private static final void prepare() {
+    static void prepare() {
         File file = new File(SparkFiles.get("kylin.properties"));
         String confPath = file.getParentFile().getAbsolutePath();
         logger.info("conf directory:" + confPath);
@@ -166,7 +166,7 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         final Broadcast<CubeSegment> vCubeSegment = sc.broadcast(cubeSegment);
         final NDCuboidBuilder ndCuboidBuilder = new NDCuboidBuilder(vCubeSegment.getValue(), new RowKeyEncoderProvider(vCubeSegment.getValue()));
 
-        final Broadcast<CuboidScheduler> vCuboidScheduler = sc.broadcast(new CuboidScheduler(vCubeDesc.getValue()));
+        final Broadcast<CuboidScheduler> vCuboidScheduler = sc.broadcast(cubeSegment.getCuboidScheduler());
         final int measureNum = cubeDesc.getMeasures().size();
 
         int countMeasureIndex = 0;
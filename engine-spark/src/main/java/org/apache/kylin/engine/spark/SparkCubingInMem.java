@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.apache.kylin.engine.spark;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.AbstractApplication;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ClassUtil;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.common.util.OptionsHelper;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.inmemcubing.DoggedCubeBuilder;
+import org.apache.kylin.cube.inmemcubing.RowBatch;
+import org.apache.kylin.cube.inmemcubing.RowBatchRing;
+import org.apache.kylin.engine.EngineFactory;
+import org.apache.kylin.engine.mr.common.CubeStatsReader;
+import org.apache.kylin.engine.spark.cube.BufferedCuboidWriter;
+import org.apache.kylin.engine.spark.cube.DefaultTupleConverter;
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.measure.MeasureAggregators;
+import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.api.java.function.Function2;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+import org.apache.spark.api.java.function.PairFunction;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.hive.HiveContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import scala.Tuple2;
+
+/**
+ * Spark cubing by the in-mem cube builder. Each input partition is cubed by a DoggedCubeBuilder into
+ * partially aggregated rows of all cuboids, which are then merged by one shuffle on the cuboid rowkey.
+ * The output is the same as InMemCuboidJob, a sequence file of all cuboids under the cuboid root path.
+ */
+public class SparkCubingInMem extends AbstractApplication implements Serializable {
+
+    protected static final Logger logger = LoggerFactory.getLogger(SparkCubingInMem.class);
+
+    private Options options;
+
+    public SparkCubingInMem() {
+        options = new Options();
+        options.addOption(SparkCubingByLayer.OPTION_INPUT_PATH);
+        options.addOption(SparkCubingByLayer.OPTION_CUBE_NAME);
+        options.addOption(SparkCubingByLayer.OPTION_SEGMENT_ID);
+        options.addOption(SparkCubingByLayer.OPTION_CONF_PATH);
+        options.addOption(SparkCubingByLayer.OPTION_OUTPUT_PATH);
+    }
+
+    @Override
+    protected Options getOptions() {
+        return options;
+    }
+
+    private void setupClasspath(JavaSparkContext sc, String confPath) throws Exception {
+        ClassUtil.addClasspath(confPath);
+        final File[] files = new File(confPath).listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getAbsolutePath().endsWith(".xml") || pathname.getAbsolutePath().endsWith(".properties");
+            }
+        });
+        for (File file : files) {
+            sc.addFile(file.getAbsolutePath());
+        }
+    }
+
+    @Override
+    protected void execute(OptionsHelper optionsHelper) throws Exception {
+        final String hiveTable = optionsHelper.getOptionValue(SparkCubingByLayer.OPTION_INPUT_PATH);
+        final String cubeName = optionsHelper.getOptionValue(SparkCubingByLayer.OPTION_CUBE_NAME);
+        final String segmentId = optionsHelper.getOptionValue(SparkCubingByLayer.OPTION_SEGMENT_ID);
+        final String confPath = optionsHelper.getOptionValue(SparkCubingByLayer.OPTION_CONF_PATH);
+        final String outputPath = optionsHelper.getOptionValue(SparkCubingByLayer.OPTION_OUTPUT_PATH);
+
+        SparkConf conf = new SparkConf().setAppName("In-mem cubing for:" + cubeName + " segment " + segmentId);
+        //serialization conf
+        conf.set("spark.serializer", "org.apache.spark.serializer.KryoSerializer");
+        conf.set("spark.kryo.registrator", "org.apache.kylin.engine.spark.KylinKryoRegistrator");
+        conf.set("spark.kryo.registrationRequired", "true");
+
+        JavaSparkContext sc = new JavaSparkContext(conf);
+        setupClasspath(sc, confPath);
+        HadoopUtil.deletePath(sc.hadoopConfiguration(), new Path(outputPath));
+
+        System.setProperty(KylinConfig.KYLIN_CONF, confPath);
+        final KylinConfig envConfig = KylinConfig.getInstanceFromEnv();
+
+        HiveContext sqlContext = new HiveContext(sc.sc());
+        final DataFrame intermediateTable = sqlContext.table(envConfig.getHiveDatabaseForIntermediateTable() + "." + hiveTable);
+
+        final CubeInstance cubeInstance = CubeManager.getInstance(envConfig).getCube(cubeName);
+        final CubeSegment cubeSegment = cubeInstance.getSegmentById(segmentId);
+        final KylinConfig kylinConfig = cubeInstance.getDescriptor().getConfig();
+
+        final CubeStatsReader cubeStatsReader = new CubeStatsReader(cubeSegment, kylinConfig);
+        final int partition = estimateRDDPartitionNum(cubeStatsReader, kylinConfig);
+        final int taskSlots = sc.getConf().getInt("spark.executor.cores", 1);
+        logger.info("Input partition number: " + intermediateTable.javaRDD().getNumPartitions() + ", output partition number: " + partition);
+
+        JavaRDD<String[]> flatRows = intermediateTable.javaRDD().map(new Function<Row, String[]>() {
+            @Override
+            public String[] call(Row row) throws Exception {
+                String[] result = new String[row.size()];
+                for (int i = 0; i < row.size(); i++) {
+                    final Object o = row.get(i);
+                    result[i] = o == null ? null : o.toString();
+                }
+                return result;
+            }
+        });
+
+        JavaPairRDD<ByteArray, byte[]> cuboidRDD = buildCuboids(flatRows, cubeSegment, cubeStatsReader.getScheduledCuboidSizeMap(), taskSlots, true) //
+                .reduceByKey(new MeasureMergeFunction(cubeInstance.getDescriptor().getMeasures()), partition);
+
+        Configuration confOverwrite = new Configuration(sc.hadoopConfiguration());
+        confOverwrite.set("dfs.replication", "2"); // cuboid intermediate files, replication=2
+        saveToHDFS(cuboidRDD, outputPath, confOverwrite);
+        logger.info("Finished on calculating all cuboids.");
+    }
+
+    /**
+     * Cubes each partition of the flat table rows by a DoggedCubeBuilder, returns the encoded rowkey and
+     * measures of all cuboids, not yet aggregated across partitions. The taskSlots is the number of tasks
+     * sharing one executor, and the builder of each task reserves the memory of the others. Without
+     * loadSparkFilesConf, the tasks use the KylinConfig of their JVM, as in the local mode.
+     */
+    public static JavaPairRDD<ByteArray, byte[]> buildCuboids(JavaRDD<String[]> flatRows, final CubeSegment cubeSegment, final Map<Long, Double> cuboidSizeEstimates, final int taskSlots, final boolean loadSparkFilesConf) {
+        final String cubeName = cubeSegment.getCubeInstance().getName();
+        final String segmentId = cubeSegment.getUuid();
+
+        return flatRows.mapPartitionsToPair(new PairFlatMapFunction<Iterator<String[]>, ByteArray, byte[]>() {
+            @Override
+            public Iterable<Tuple2<ByteArray, byte[]>> call(Iterator<String[]> rows) throws Exception {
+                if (loadSparkFilesConf) {
+                    SparkCubingByLayer.prepare();
+                }
+                if (!rows.hasNext()) {
+                    return Collections.emptyList();
+                }
+
+                KylinConfig config = KylinConfig.getInstanceFromEnv();
+                CubeSegment segment = CubeManager.getInstance(config).getCube(cubeName).getSegmentById(segmentId);
+                IJoinedFlatTableDesc flatDesc = EngineFactory.getJoinedFlatTableDesc(segment);
+                Map<TblColRef, Dictionary<String>> dictionaryMap = segment.buildDictionaryMap();
+
+                DoggedCubeBuilder cubeBuilder = new DoggedCubeBuilder(segment.getCuboidScheduler(), segment.getCubeDesc(), flatDesc, dictionaryMap);
+                cubeBuilder.setReserveMemoryMB(calculateReserveMB(taskSlots));
+                cubeBuilder.setConcurrentThreads(config.getCubeAlgorithmInMemConcurrentThreads());
+                cubeBuilder.setCuboidSizeEstimates(cuboidSizeEstimates);
+
+                BufferedCuboidWriter writer = new BufferedCuboidWriter(new DefaultTupleConverter(segment, Collections.<TblColRef, Integer> emptyMap()));
+                RowBatchRing ring = new RowBatchRing(flatDesc.getAllColumns().size());
+                ExecutorService executorService = Executors.newSingleThreadExecutor();
+                Future<?> future = executorService.submit(cubeBuilder.buildAsRunnable(ring, writer));
+                executorService.shutdown();
+
+                feed(rows, ring, future);
+                return new CuboidRows(writer.getResult(), future);
+            }
+        });
+    }
+
+    // parse rows into batches of the ring, the cube builder outputs after the end of input
+    private static void feed(Iterator<String[]> rows, RowBatchRing ring, Future<?> future) throws InterruptedException {
+        RowBatch batch = null;
+        while (rows.hasNext()) {
+            while (batch == null && !future.isDone()) {
+                batch = ring.claim(1, TimeUnit.SECONDS);
+            }
+            if (batch == null)
+                return; // the build has ended, its error is thrown at the end of output
+
+            batch.appendRow(rows.next());
+            if (batch.isFull()) {
+                ring.publish();
+                batch = null;
+            }
+        }
+
+        if (batch != null) {
+            batch.markEndOfInput();
+            ring.publish();
+        } else {
+            while (!future.isDone()) {
+                if (ring.publishEndOfInput(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int calculateReserveMB(int taskSlots) {
+        int sysAvailMB = MemoryBudgetController.getSystemAvailMB();
+        int taskMB = sysAvailMB / Math.max(1, taskSlots);
+        int sysReserve = Math.max(taskMB / 10, 100);
+        int reserveMB = sysAvailMB - taskMB + sysReserve;
+        logger.info("Reserve " + reserveMB + " MB = " + (sysAvailMB - taskMB) + " (other " + (taskSlots - 1) + " tasks) + " + sysReserve + " (SYS reserve)");
+        return reserveMB;
+    }
+
+    private static int estimateRDDPartitionNum(CubeStatsReader statsReader, KylinConfig kylinConfig) {
+        double cubeSize = statsReader.estimateCubeSize();
+        float rddCut = kylinConfig.getSparkRDDPartitionCutMB();
+        int partition = (int) (cubeSize / rddCut);
+        partition = Math.max(kylinConfig.getSparkMinPartition(), partition);
+        partition = Math.min(kylinConfig.getSparkMaxPartition(), partition);
+        logger.debug("Estimated cube size " + cubeSize + " MB, partition number: " + partition);
+        return partition;
+    }
+
+    private static void saveToHDFS(final JavaPairRDD<ByteArray, byte[]> rdd, final String outputPath, Configuration conf) {
+        rdd.mapToPair(new PairFunction<Tuple2<ByteArray, byte[]>, Text, Text>() {
+            @Override
+            public Tuple2<Text, Text> call(Tuple2<ByteArray, byte[]> tuple2) throws Exception {
+                return new Tuple2<>(new Text(tuple2._1().array()), new Text(tuple2._2()));
+            }
+        }).saveAsNewAPIHadoopFile(outputPath, Text.class, Text.class, SequenceFileOutputFormat.class, conf);
+        logger.info("Persisting RDD of all cuboids into " + outputPath);
+    }
+
+    /**
+     * The cuboid rows of one partition, streamed from the cube builder. The error of the build, if any,
+     * is thrown when the rows run out.
+     */
+    private static class CuboidRows implements Iterable<Tuple2<ByteArray, byte[]>> {
+        private final Iterable<Tuple2<byte[], byte[]>> result;
+        private final Future<?> future;
+
+        CuboidRows(Iterable<Tuple2<byte[], byte[]>> result, Future<?> future) {
+            this.result = result;
+            this.future = future;
+        }
+
+        @Override
+        public Iterator<Tuple2<ByteArray, byte[]>> iterator() {
+            final Iterator<Tuple2<byte[], byte[]>> it = result.iterator();
+            return new Iterator<Tuple2<ByteArray, byte[]>>() {
+                @Override
+                public boolean hasNext() {
+                    if (it.hasNext())
+                        return true;
+
+                    try {
+                        future.get();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Failed to build cube in partition", e);
+                    }
+                    return false;
+                }
+
+                @Override
+                public Tuple2<ByteArray, byte[]> next() {
+                    Tuple2<byte[], byte[]> tuple2 = it.next();
+                    return new Tuple2<>(new ByteArray(tuple2._1()), tuple2._2());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /**
+     * Merges two encoded measure values of the same cuboid row, like the InMemCuboidReducer does.
+     */
+    public static class MeasureMergeFunction implements Function2<byte[], byte[], byte[]> {
+        private final List<MeasureDesc> measures;
+        private transient BufferedMeasureCodec codec;
+        private transient MeasureAggregators aggs;
+        private transient Object[] input;
+        private transient Object[] result;
+
+        public MeasureMergeFunction(List<MeasureDesc> measures) {
+            this.measures = Lists.newArrayList(measures);
+        }
+
+        private void init() {
+            codec = new BufferedMeasureCodec(measures);
+            aggs = new MeasureAggregators(measures);
+            input = new Object[measures.size()];
+            result = new Object[measures.size()];
+        }
+
+        @Override
+        public byte[] call(byte[] v1, byte[] v2) throws Exception {
+            if (codec == null) {
+                init();
+            }
+
+            aggs.reset();
+            codec.decode(ByteBuffer.wrap(v1), input);
+            aggs.aggregate(input);
+            codec.decode(ByteBuffer.wrap(v2), input);
+            aggs.aggregate(input);
+            aggs.collectStates(result);
+
+            ByteBuffer valueBuf = codec.encode(result);
+            byte[] bytes = new byte[valueBuf.position()];
+            System.arraycopy(valueBuf.array(), 0, bytes, 0, valueBuf.position());
+            return bytes;
+        }
+    }
+}
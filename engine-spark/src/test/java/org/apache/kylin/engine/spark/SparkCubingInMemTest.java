@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.apache.kylin.engine.spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.inmemcubing.ICuboidWriter;
+import org.apache.kylin.cube.inmemcubing.InMemCubeBuilder;
+import org.apache.kylin.engine.EngineFactory;
+import org.apache.kylin.engine.spark.cube.DefaultTupleConverter;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import scala.Tuple2;
+
+/**
+ * The cubing and the final merge of SparkCubingInMem, run in the Spark local mode.
+ */
+public class SparkCubingInMemTest extends LocalFileMetadataTestCase {
+
+    private JavaSparkContext sc;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        sc = new JavaSparkContext(new SparkConf().setMaster("local[2]").setAppName("SparkCubingInMemTest"));
+    }
+
+    @After
+    public void after() throws Exception {
+        sc.stop();
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testMergePartialCuboids() throws Exception {
+        // SUM, MIN, MAX of decimal, COUNT, SUM of bigint
+        List<MeasureDesc> measures = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_without_slr_ready").getDescriptor().getMeasures().subList(0, 5);
+        BufferedMeasureCodec codec = new BufferedMeasureCodec(measures);
+
+        // each key is output by 4 partitions, with the values 1, 2, 3, 4
+        List<Tuple2<ByteArray, byte[]>> partials = Lists.newArrayList();
+        for (int part = 1; part <= 4; part++) {
+            for (int key = 0; key < 100; key++) {
+                Object[] values = new Object[] { new BigDecimal(part), new BigDecimal(part), new BigDecimal(part), (long) part, (long) part * key };
+                ByteBuffer buf = codec.encode(values);
+                byte[] bytes = new byte[buf.position()];
+                System.arraycopy(buf.array(), 0, bytes, 0, bytes.length);
+                partials.add(new Tuple2<>(new ByteArray(Bytes.toBytes(key)), bytes));
+            }
+        }
+
+        Map<ByteArray, byte[]> merged = sc.parallelizePairs(partials, 4).reduceByKey(new SparkCubingInMem.MeasureMergeFunction(measures), 3).collectAsMap();
+
+        assertEquals(100, merged.size());
+        Object[] result = new Object[measures.size()];
+        for (Map.Entry<ByteArray, byte[]> entry : merged.entrySet()) {
+            int key = Bytes.toInt(entry.getKey().array());
+            codec.decode(ByteBuffer.wrap(entry.getValue()), result);
+            assertEquals(0, new BigDecimal(10).compareTo((BigDecimal) result[0]));
+            assertEquals(0, new BigDecimal(1).compareTo((BigDecimal) result[1]));
+            assertEquals(0, new BigDecimal(4).compareTo((BigDecimal) result[2]));
+            assertEquals(10L, result[3]);
+            assertEquals(10L * key, result[4]);
+        }
+    }
+
+    @Test
+    public void testBuildCuboids() throws Exception {
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready");
+        CubeSegment segment = cube.getFirstSegment();
+        List<MeasureDesc> measures = cube.getDescriptor().getMeasures();
+        List<String[]> flatRows = generateFlatRows(segment, 2000);
+
+        // 4 partitions cubed by 2 local tasks, merged across partitions as in the cubing job
+        Map<ByteArray, byte[]> sparkResult = SparkCubingInMem.buildCuboids(sc.parallelize(flatRows, 4), segment, null, 2, false) //
+                .reduceByKey(new SparkCubingInMem.MeasureMergeFunction(measures), 3).collectAsMap();
+
+        Map<ByteArray, byte[]> expected = buildByInMemCubeBuilder(segment, flatRows);
+
+        assertTrue(expected.size() > 0);
+        assertEquals(expected.size(), sparkResult.size());
+        BufferedMeasureCodec codec = new BufferedMeasureCodec(measures);
+        Object[] expectedValues = new Object[measures.size()];
+        Object[] actualValues = new Object[measures.size()];
+        for (Map.Entry<ByteArray, byte[]> entry : expected.entrySet()) {
+            byte[] actual = sparkResult.get(entry.getKey());
+            assertTrue(actual != null);
+            codec.decode(ByteBuffer.wrap(entry.getValue()), expectedValues);
+            codec.decode(ByteBuffer.wrap(actual), actualValues);
+            for (int i = 0; i < measures.size(); i++) {
+                if (expectedValues[i] instanceof BigDecimal) {
+                    assertEquals(0, ((BigDecimal) expectedValues[i]).compareTo((BigDecimal) actualValues[i]));
+                } else {
+                    assertEquals(expectedValues[i], actualValues[i]);
+                }
+            }
+        }
+    }
+
+    // random rows of the flat table, the dictionary columns take values of the segment's dictionaries
+    private List<String[]> generateFlatRows(CubeSegment segment, int count) {
+        IJoinedFlatTableDesc flatDesc = EngineFactory.getJoinedFlatTableDesc(segment);
+        Map<TblColRef, Dictionary<String>> dictionaryMap = segment.buildDictionaryMap();
+        List<TblColRef> columns = flatDesc.getAllColumns();
+
+        Random rand = new Random(1);
+        List<String[]> rows = Lists.newArrayListWithCapacity(count);
+        for (int r = 0; r < count; r++) {
+            String[] row = new String[columns.size()];
+            for (int c = 0; c < columns.size(); c++) {
+                TblColRef col = columns.get(c);
+                Dictionary<String> dict = dictionaryMap.get(col);
+                if (dict != null) {
+                    row[c] = dict.getValueFromId(dict.getMinId() + rand.nextInt(dict.getMaxId() - dict.getMinId() + 1));
+                } else if (col.getType().isNumberFamily()) {
+                    row[c] = String.valueOf(rand.nextInt(100));
+                } else if (col.getType().isDateTimeFamily()) {
+                    row[c] = "2013-01-0" + (1 + rand.nextInt(9));
+                } else {
+                    row[c] = "v" + rand.nextInt(10);
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private Map<ByteArray, byte[]> buildByInMemCubeBuilder(CubeSegment segment, List<String[]> flatRows) throws Exception {
+        InMemCubeBuilder cubeBuilder = new InMemCubeBuilder(segment.getCuboidScheduler(), segment.getCubeDesc(), EngineFactory.getJoinedFlatTableDesc(segment), segment.buildDictionaryMap());
+        final DefaultTupleConverter converter = new DefaultTupleConverter(segment, Collections.<TblColRef, Integer> emptyMap());
+        final Map<ByteArray, byte[]> result = Maps.newHashMap();
+
+        ArrayBlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(flatRows.size() + 1);
+        for (String[] row : flatRows) {
+            queue.put(Lists.newArrayList(row));
+        }
+        queue.put(Collections.<String> emptyList());
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> future = executorService.submit(cubeBuilder.buildAsRunnable(queue, new ICuboidWriter() {
+                @Override
+                public void write(long cuboidId, GTRecord record) throws IOException {
+                    Tuple2<byte[], byte[]> tuple = converter.convert(cuboidId, record);
+                    result.put(new ByteArray(tuple._1()), tuple._2());
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            }));
+            future.get();
+        } finally {
+            executorService.shutdown();
+        }
+        return result;
+    }
+}
@@ -70,10 +70,10 @@ public class KylinClient implements IRemoteClient {
 
     private static final Logger logger = LoggerFactory.getLogger(KylinClient.class);
 
-    private final KylinConnection conn;
-    private final Properties connProps;
-    private DefaultHttpClient httpClient;
-    private final ObjectMapper jsonMapper;
+    protected final KylinConnection conn;
+    protected final Properties connProps;
+    protected DefaultHttpClient httpClient;
+    protected final ObjectMapper jsonMapper;
 
     public KylinClient(KylinConnection conn) {
         this.conn = conn;
@@ -204,11 +204,11 @@ public class KylinClient implements IRemoteClient {
         return Boolean.parseBoolean(connProps.getProperty("ssl", "false"));
     }
 
-    private String baseUrl() {
+    protected String baseUrl() {
         return (isSSL() ? "https://" : "http://") + conn.getBaseUrl();
     }
 
-    private void addHttpHeaders(HttpRequestBase method) {
+    protected void addHttpHeaders(HttpRequestBase method) {
         method.addHeader("Accept", "application/json, text/plain, */*");
         method.addHeader("Content-Type", "application/json");
 
@@ -333,7 +333,7 @@ public class KylinClient implements IRemoteClient {
         return new QueryResult(metas, data);
     }
 
-    private List<StatementParameter> convertParameters(List<AvaticaParameter> params, List<Object> paramValues) {
+    protected List<StatementParameter> convertParameters(List<AvaticaParameter> params, List<Object> paramValues) {
         if (params == null || params.isEmpty())
             return null;
 
@@ -346,21 +346,26 @@ public class KylinClient implements IRemoteClient {
         return result;
     }
 
-    private SQLResponseStub executeKylinQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
-        String url = baseUrl() + "/kylin/api/query";
-        String project = conn.getProject();
-
+    protected QueryRequest newQueryRequest(String sql, List<StatementParameter> params, Map<String, String> queryToggles) {
         QueryRequest request = null;
         if (null != params) {
             request = new PreparedQueryRequest();
             ((PreparedQueryRequest) request).setParams(params);
-            url += "/prestate"; // means prepared statement..
         } else {
             request = new QueryRequest();
         }
         request.setSql(sql);
-        request.setProject(project);
+        request.setProject(conn.getProject());
         request.setBackdoorToggles(queryToggles);
+        return request;
+    }
+
+    private SQLResponseStub executeKylinQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
+        String url = baseUrl() + "/kylin/api/query";
+        if (null != params) {
+            url += "/prestate"; // means prepared statement..
+        }
+        QueryRequest request = newQueryRequest(sql, params, queryToggles);
 
         HttpPost post = new HttpPost(url);
         addHttpHeaders(post);
@@ -382,9 +387,13 @@ public class KylinClient implements IRemoteClient {
     }
 
     private List<ColumnMetaData> convertColumnMeta(SQLResponseStub queryResp) {
+        return convertColumnMeta(queryResp.getColumnMetas());
+    }
+
+    protected List<ColumnMetaData> convertColumnMeta(List<SQLResponseStub.ColumnMetaStub> columnMetas) {
         List<ColumnMetaData> metas = new ArrayList<ColumnMetaData>();
-        for (int i = 0; i < queryResp.getColumnMetas().size(); i++) {
-            SQLResponseStub.ColumnMetaStub scm = queryResp.getColumnMetas().get(i);
+        for (int i = 0; i < columnMetas.size(); i++) {
+            SQLResponseStub.ColumnMetaStub scm = columnMetas.get(i);
             Class columnClass = convertType(scm.getColumnType());
             ScalarType type = ColumnMetaData.scalar(scm.getColumnType(), scm.getColumnTypeName(), Rep.of(columnClass));
 
@@ -412,7 +421,7 @@ public class KylinClient implements IRemoteClient {
         return (List<Object>) data;
     }
 
-    private IOException asIOException(HttpRequestBase request, HttpResponse response) throws IOException {
+    protected IOException asIOException(HttpRequestBase request, HttpResponse response) throws IOException {
         return new IOException(request.getMethod() + " failed, error code " + response.getStatusLine().getStatusCode() + " and response: " + EntityUtils.toString(response.getEntity()));
     }
 
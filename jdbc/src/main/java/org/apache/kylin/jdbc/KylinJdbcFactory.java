@@ -105,6 +105,8 @@ public class KylinJdbcFactory implements AvaticaFactory {
     }
 
     public IRemoteClient newRemoteClient(KylinConnection conn) {
+        if (Boolean.parseBoolean(conn.getConnectionProperties().getProperty("streaming", "false")))
+            return new KylinStreamingClient(conn);
         return new KylinClient(conn);
     }
 }
@@ -18,6 +18,7 @@
 
 package org.apache.kylin.jdbc;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -37,6 +38,8 @@ import org.apache.kylin.jdbc.IRemoteClient.QueryResult;
 
 public class KylinResultSet extends AvaticaResultSet {
 
+    private Iterable<Object> data;
+
     public KylinResultSet(AvaticaStatement statement, QueryState state, Signature signature, ResultSetMetaData resultSetMetaData, TimeZone timeZone, Frame firstFrame) {
         super(statement, state, signature, resultSetMetaData, timeZone, firstFrame);
     }
@@ -74,8 +77,22 @@ public class KylinResultSet extends AvaticaResultSet {
         columnMetaDataList.clear();
         columnMetaDataList.addAll(result.columnMeta);
 
+        data = result.iterable;
         cursor = MetaImpl.createCursor(signature.cursorFactory, result.iterable);
         return super.execute2(cursor, columnMetaDataList);
     }
 
+    @Override
+    public void close() {
+        // a streaming result holds the http connection until fully read
+        if (data instanceof Closeable) {
+            try {
+                ((Closeable) data).close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        super.close();
+    }
+
 }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.calcite.avatica.AvaticaParameter;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.kylin.jdbc.json.QueryRequest;
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+import org.apache.kylin.jdbc.json.StatementParameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches query result from the streaming endpoint, rows are decoded batch by batch as the result set advances,
+ * so memory stays bounded regardless of the result size. Enabled by connection property "streaming=true", and
+ * "compress=true" further asks for a gzip response.
+ */
+public class KylinStreamingClient extends KylinClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(KylinStreamingClient.class);
+
+    public KylinStreamingClient(KylinConnection conn) {
+        super(conn);
+    }
+
+    private boolean isCompress() {
+        return Boolean.parseBoolean(connProps.getProperty("compress", "false"));
+    }
+
+    @Override
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles) throws IOException {
+        List<StatementParameter> stmtParams = convertParameters(params, paramValues);
+
+        String url = baseUrl() + "/kylin/api/query";
+        if (null != stmtParams) {
+            url += "/prestate";
+        }
+        url += "/stream";
+        QueryRequest request = newQueryRequest(sql, stmtParams, queryToggles);
+
+        HttpPost post = new HttpPost(url);
+        addHttpHeaders(post);
+        if (isCompress()) {
+            post.addHeader("Accept-Encoding", "gzip");
+        }
+
+        String postBody = jsonMapper.writeValueAsString(request);
+        logger.debug("Post body:\n " + postBody);
+        post.setEntity(new StringEntity(postBody, ContentType.create("application/json", "UTF-8")));
+
+        StreamingResultReader reader = null;
+        try {
+            HttpResponse response = httpClient.execute(post);
+
+            if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
+                throw asIOException(post, response);
+            }
+
+            InputStream in = response.getEntity().getContent();
+            Header encoding = response.getFirstHeader("Content-Encoding");
+            if (encoding != null && encoding.getValue().contains("gzip")) {
+                in = new GZIPInputStream(in);
+            }
+
+            reader = new StreamingResultReader(in, post);
+            List<SQLResponseStub.ColumnMetaStub> columnMetas = reader.readColumnMetas(jsonMapper);
+            return new QueryResult(convertColumnMeta(columnMetas), reader);
+        } catch (IOException e) {
+            if (reader != null) {
+                reader.close();
+            } else {
+                post.abort();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            post.abort();
+            throw e;
+        }
+    }
+}
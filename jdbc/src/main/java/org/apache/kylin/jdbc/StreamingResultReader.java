@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.kylin.jdbc.json.SQLResponseStub.ColumnMetaStub;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads the binary result frames written by org.apache.kylin.rest.util.StreamingResultWriter on server side,
+ * one batch of rows at a time. Rows are decoded into the same java types as KylinClient.wrapObject() gives.
+ */
+public class StreamingResultReader implements Iterable<Object>, Iterator<Object>, Closeable {
+
+    static final byte FRAME_META = 'M';
+    static final byte FRAME_ROWS = 'R';
+    static final byte FRAME_ERROR = 'E';
+    static final byte FRAME_END = 'F';
+
+    static final byte ENC_STRING = 0;
+    static final byte ENC_LONG = 1;
+    static final byte ENC_DOUBLE = 2;
+    static final byte ENC_DECIMAL = 3;
+    static final byte ENC_BOOLEAN = 4;
+
+    private final DataInputStream in;
+    private final HttpRequestBase request;
+
+    private int[] sqlTypes;
+    private byte[] encodings;
+
+    private DataInputStream batch;
+    private int batchRowsLeft = 0;
+    private boolean finished = false;
+    private boolean closed = false;
+    private long totalScanCount = -1;
+    private long totalScanBytes = -1;
+
+    /**
+     * @param request the http request to release when the result is consumed or closed, could be null
+     */
+    public StreamingResultReader(InputStream in, HttpRequestBase request) {
+        this.in = new DataInputStream(in);
+        this.request = request;
+    }
+
+    public List<ColumnMetaStub> readColumnMetas(ObjectMapper jsonMapper) throws IOException {
+        byte frame = in.readByte();
+        if (frame == FRAME_ERROR) {
+            String message = readError();
+            close();
+            throw new IOException(message);
+        }
+        if (frame != FRAME_META)
+            throw new IOException("Unexpected frame " + frame + ", expecting column metas");
+
+        byte[] json = new byte[in.readInt()];
+        in.readFully(json);
+        List<ColumnMetaStub> columnMetas = jsonMapper.readValue(json, new TypeReference<List<ColumnMetaStub>>() {
+        });
+
+        encodings = new byte[in.readInt()];
+        in.readFully(encodings);
+        sqlTypes = new int[encodings.length];
+        for (int i = 0; i < sqlTypes.length; i++) {
+            sqlTypes[i] = columnMetas.get(i).getColumnType();
+        }
+        return columnMetas;
+    }
+
+    public long getTotalScanCount() {
+        return totalScanCount;
+    }
+
+    public long getTotalScanBytes() {
+        return totalScanBytes;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (batchRowsLeft > 0)
+            return true;
+        if (finished || closed)
+            return false;
+
+        try {
+            readFrame();
+        } catch (IOException e) {
+            closeQuietly();
+            throw new RuntimeException("Failed to read query result", e);
+        }
+        return batchRowsLeft > 0;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        try {
+            Object[] row = new Object[encodings.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = readValue(i);
+            }
+            batchRowsLeft--;
+            return row;
+        } catch (IOException e) {
+            closeQuietly();
+            throw new RuntimeException("Failed to read query result", e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+
+        if (request != null) {
+            if (finished) {
+                request.releaseConnection();
+            } else {
+                // stop the server from sending the rest
+                request.abort();
+            }
+        }
+        in.close();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private void readFrame() throws IOException {
+        byte frame = in.readByte();
+        switch (frame) {
+        case FRAME_ROWS:
+            batchRowsLeft = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            batch = new DataInputStream(new ByteArrayInputStream(bytes));
+            break;
+        case FRAME_END:
+            totalScanCount = in.readLong();
+            totalScanBytes = in.readLong();
+            finished = true;
+            close();
+            break;
+        case FRAME_ERROR:
+            String message = readError();
+            close();
+            throw new IOException(message);
+        default:
+            throw new IOException("Unexpected frame " + frame);
+        }
+    }
+
+    private String readError() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Object readValue(int col) throws IOException {
+        if (batch.readBoolean())
+            return null;
+
+        int sqlType = sqlTypes[col];
+        switch (encodings[col]) {
+        case ENC_LONG:
+            long l = batch.readLong();
+            switch (sqlType) {
+            case Types.TINYINT:
+                return (byte) l;
+            case Types.SMALLINT:
+                return (short) l;
+            case Types.INTEGER:
+                return (int) l;
+            default:
+                return l;
+            }
+        case ENC_DOUBLE:
+            double d = batch.readDouble();
+            return sqlType == Types.FLOAT ? (Object) (float) d : (Object) d;
+        case ENC_DECIMAL:
+            int scale = batch.readInt();
+            byte[] unscaled = new byte[batch.readShort()];
+            batch.readFully(unscaled);
+            return new BigDecimal(new BigInteger(unscaled), scale);
+        case ENC_BOOLEAN:
+            return batch.readBoolean();
+        default:
+            byte[] bytes = new byte[batch.readInt()];
+            batch.readFully(bytes);
+            return KylinClient.wrapObject(new String(bytes, StandardCharsets.UTF_8), sqlType);
+        }
+    }
+}
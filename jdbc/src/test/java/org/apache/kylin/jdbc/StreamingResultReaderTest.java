@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.List;
+
+import org.apache.kylin.jdbc.json.SQLResponseStub.ColumnMetaStub;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StreamingResultReaderTest {
+
+    private static final String METAS = "[{\"label\":\"CAL_DT\",\"columnType\":91,\"columnTypeName\":\"DATE\"}," //
+            + "{\"label\":\"CNT\",\"columnType\":4,\"columnTypeName\":\"INTEGER\"}," //
+            + "{\"label\":\"PRICE\",\"columnType\":3,\"columnTypeName\":\"DECIMAL\"}," //
+            + "{\"label\":\"AVG\",\"columnType\":8,\"columnTypeName\":\"DOUBLE\"}]";
+
+    private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private DataOutputStream out = new DataOutputStream(bytes);
+    private ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+    private DataOutputStream batch = new DataOutputStream(batchBytes);
+
+    private void writeMetas() throws IOException {
+        byte[] json = METAS.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(StreamingResultReader.FRAME_META);
+        out.writeInt(json.length);
+        out.write(json);
+        out.writeInt(4);
+        out.write(new byte[] { StreamingResultReader.ENC_STRING, StreamingResultReader.ENC_LONG, StreamingResultReader.ENC_DECIMAL, StreamingResultReader.ENC_DOUBLE });
+    }
+
+    private void writeRow(String date, Integer cnt, BigDecimal price, Double avg) throws IOException {
+        batch.writeBoolean(date == null);
+        if (date != null) {
+            byte[] b = date.getBytes(StandardCharsets.UTF_8);
+            batch.writeInt(b.length);
+            batch.write(b);
+        }
+        batch.writeBoolean(cnt == null);
+        if (cnt != null) {
+            batch.writeLong(cnt);
+        }
+        batch.writeBoolean(price == null);
+        if (price != null) {
+            byte[] unscaled = price.unscaledValue().toByteArray();
+            batch.writeInt(price.scale());
+            batch.writeShort(unscaled.length);
+            batch.write(unscaled);
+        }
+        batch.writeBoolean(avg == null);
+        if (avg != null) {
+            batch.writeDouble(avg);
+        }
+    }
+
+    private void writeBatch(int rows) throws IOException {
+        out.writeByte(StreamingResultReader.FRAME_ROWS);
+        out.writeInt(rows);
+        out.writeInt(batchBytes.size());
+        batchBytes.writeTo(out);
+        batchBytes.reset();
+    }
+
+    private StreamingResultReader newReader() {
+        return new StreamingResultReader(new ByteArrayInputStream(bytes.toByteArray()), null);
+    }
+
+    @Test
+    public void testTypedRows() throws IOException {
+        writeMetas();
+        writeRow("2013-08-07", 32996, new BigDecimal("49.05"), 1.5);
+        writeRow(null, null, null, null);
+        writeBatch(2);
+        writeRow("2013-08-08", -1, new BigDecimal("-0.001"), 2.0);
+        writeBatch(1);
+        out.writeByte(StreamingResultReader.FRAME_END);
+        out.writeLong(100);
+        out.writeLong(2048);
+
+        StreamingResultReader reader = newReader();
+        List<ColumnMetaStub> metas = reader.readColumnMetas(new ObjectMapper());
+        Assert.assertEquals(4, metas.size());
+        Assert.assertEquals("CNT", metas.get(1).getLabel());
+
+        Assert.assertTrue(reader.hasNext());
+        Object[] row = (Object[]) reader.next();
+        Assert.assertEquals(Date.valueOf("2013-08-07"), row[0]);
+        Assert.assertEquals(32996, row[1]);
+        Assert.assertEquals(new BigDecimal("49.05"), row[2]);
+        Assert.assertEquals(1.5, row[3]);
+
+        row = (Object[]) reader.next();
+        Assert.assertArrayEquals(new Object[4], row);
+
+        row = (Object[]) reader.next();
+        Assert.assertEquals(-1, row[1]);
+        Assert.assertEquals(new BigDecimal("-0.001"), row[2]);
+
+        Assert.assertFalse(reader.hasNext());
+        Assert.assertEquals(100, reader.getTotalScanCount());
+        Assert.assertEquals(2048, reader.getTotalScanBytes());
+    }
+
+    @Test
+    public void testErrorFrame() throws IOException {
+        writeMetas();
+        writeRow("2013-08-07", 1, BigDecimal.ONE, 1.0);
+        writeBatch(1);
+        byte[] message = "Query timeout".getBytes(StandardCharsets.UTF_8);
+        out.writeByte(StreamingResultReader.FRAME_ERROR);
+        out.writeInt(message.length);
+        out.write(message);
+
+        StreamingResultReader reader = newReader();
+        reader.readColumnMetas(new ObjectMapper());
+        reader.next();
+        try {
+            reader.hasNext();
+            Assert.fail("error frame should fail the iteration");
+        } catch (RuntimeException e) {
+            Assert.assertEquals("Query timeout", e.getCause().getMessage());
+        }
+        Assert.assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testErrorBeforeMetas() throws IOException {
+        byte[] message = "Table not found".getBytes(StandardCharsets.UTF_8);
+        out.writeByte(StreamingResultReader.FRAME_ERROR);
+        out.writeInt(message.length);
+        out.write(message);
+
+        try {
+            newReader().readColumnMetas(new ObjectMapper());
+            Assert.fail("error frame should fail the query");
+        } catch (IOException e) {
+            Assert.assertEquals("Table not found", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCloseEarly() throws IOException {
+        writeMetas();
+        writeRow("2013-08-07", 1, BigDecimal.ONE, 1.0);
+        writeBatch(1);
+        writeRow("2013-08-08", 2, BigDecimal.TEN, 2.0);
+        writeBatch(1);
+
+        StreamingResultReader reader = newReader();
+        reader.readColumnMetas(new ObjectMapper());
+        reader.next();
+        reader.close();
+        Assert.assertFalse(reader.hasNext());
+        reader.close();
+    }
+}
@@ -19,8 +19,10 @@
 package org.apache.kylin.rest.controller;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.dict.OffHeapDictionaries;
 import org.apache.kylin.metadata.cachesync.Broadcaster;
 import org.apache.kylin.rest.service.CacheService;
 import org.slf4j.Logger;
@@ -71,6 +73,15 @@ public class CacheController extends BasicController {
         cacheService.notifyMetadataChange(Broadcaster.SYNC_ALL, Broadcaster.Event.UPDATE, Broadcaster.SYNC_ALL);
     }
 
+    /**
+     * Off heap dictionary memory and shared dictionary cache statistics of this node
+     */
+    @RequestMapping(value = "/dictionary/stats", method = { RequestMethod.GET })
+    @ResponseBody
+    public Map<String, Long> getDictionaryStats() {
+        return OffHeapDictionaries.getStats();
+    }
+
     public void setCacheService(CacheService cacheService) {
         this.cacheService = cacheService;
     }
@@ -37,6 +37,7 @@ import org.apache.kylin.cube.model.CubeBuildTypeEnum;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.dimension.DimensionEncodingFactory;
 import org.apache.kylin.engine.EngineFactory;
+import org.apache.kylin.engine.mr.common.CuboidRecommender;
 import org.apache.kylin.job.JobInstance;
 import org.apache.kylin.job.JoinedFlatTable;
 import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
@@ -197,6 +198,30 @@ public class CubeController extends BasicController {
         }
     }
 
+    /**
+     * Preview the cuboids recommended from the query history, the plan is applied to new segments
+     * when "kylin.cube.cuboid-recommend.auto-apply" is on
+     *
+     * @param budgetMB storage budget, by default "kylin.cube.cuboid-recommend.budget-ratio" of the current size
+     */
+    @RequestMapping(value = "/{cubeName}/cuboids/recommend", method = { RequestMethod.GET })
+    @ResponseBody
+    public CuboidRecommender.Plan recommendCuboids(@PathVariable String cubeName, @RequestParam(value = "budgetMB", required = false) Double budgetMB) {
+        checkCubeName(cubeName);
+        CubeInstance cube = cubeService.getCubeManager().getCube(cubeName);
+        if (cube.getLatestReadySegment() == null) {
+            throw new BadRequestException("Cube " + cubeName + " has no ready segment to estimate cuboids");
+        }
+
+        try {
+            return cubeService.recommendCuboids(cube, budgetMB == null ? -1 : budgetMB);
+        } catch (IOException e) {
+            String message = "Failed to recommend cuboids of cube " + cubeName;
+            logger.error(message, e);
+            throw new InternalErrorException(message + " Caused by: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Force rebuild a cube's lookup table snapshot
      *
@@ -19,10 +19,13 @@
 package org.apache.kylin.rest.controller;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
@@ -36,6 +39,7 @@ import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.request.SaveSqlRequest;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.apache.kylin.rest.service.QueryService;
+import org.apache.kylin.rest.util.StreamingResultWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -76,6 +80,40 @@ public class QueryController extends BasicController {
         return queryService.doQueryWithCache(sqlRequest);
     }
 
+    /**
+     * Stream the result in binary frames, see StreamingResultWriter. Compressed if the client accepts gzip.
+     */
+    @RequestMapping(value = "/query/stream", method = RequestMethod.POST)
+    @ResponseBody
+    public void queryStream(@RequestBody SQLRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) {
+        streamQuery(sqlRequest, request, response);
+    }
+
+    @RequestMapping(value = "/query/prestate/stream", method = RequestMethod.POST)
+    @ResponseBody
+    public void prepareQueryStream(@RequestBody PrepareSqlRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) {
+        streamQuery(sqlRequest, request, response);
+    }
+
+    private void streamQuery(SQLRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) {
+        response.setContentType(StreamingResultWriter.CONTENT_TYPE);
+        StreamingResultWriter writer = null;
+        try {
+            OutputStream out = response.getOutputStream();
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                response.setHeader("Content-Encoding", "gzip");
+                out = new GZIPOutputStream(out, true);
+            }
+            writer = new StreamingResultWriter(out);
+            queryService.doQueryStream(sqlRequest, writer);
+        } catch (IOException e) {
+            throw new InternalErrorException(e);
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+
     @RequestMapping(value = "/saved_queries", method = RequestMethod.POST)
     @ResponseBody
     public void saveQuery(@RequestBody SaveSqlRequest sqlRequest) throws IOException {
@@ -47,6 +47,10 @@ public class QueryMetrics {
     @Metric
     MutableCounterLong cacheHitCount;
     MutableQuantiles[] cacheHitCountQuantiles;
+    @Metric
+    MutableCounterLong segmentCacheHitCount;
+    @Metric
+    MutableCounterLong segmentCacheMissCount;
 
     @Metric
     MutableRate queryLatency;
@@ -124,6 +128,11 @@ public class QueryMetrics {
         }
     }
 
+    public void addSegmentCacheCount(long hits, long misses) {
+        segmentCacheHitCount.incr(hits);
+        segmentCacheMissCount.incr(misses);
+    }
+
     public QueryMetrics registerWith(String name) {
         return DefaultMetricsSystem.instance().register(name, "Query", this);
     }
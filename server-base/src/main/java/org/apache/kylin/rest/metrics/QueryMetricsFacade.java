@@ -21,6 +21,7 @@ package org.apache.kylin.rest.metrics;
 import org.apache.hadoop.metrics2.MetricsException;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.slf4j.Logger;
@@ -67,6 +68,7 @@ public class QueryMetricsFacade {
         try {
             incrQueryCount(queryMetrics, sqlResponse);
             incrCacheHitCount(queryMetrics, sqlResponse);
+            incrSegmentCacheCount(queryMetrics);
 
             if (!sqlResponse.getIsException()) {
                 queryMetrics.addQueryLatency(sqlResponse.getDuration());
@@ -94,6 +96,11 @@ public class QueryMetricsFacade {
         }
     }
 
+    private static void incrSegmentCacheCount(QueryMetrics queryMetrics) {
+        QueryContext queryContext = QueryContext.current();
+        queryMetrics.addSegmentCacheCount(queryContext.getSegmentCacheHits(), queryContext.getSegmentCacheMisses());
+    }
+
     private static QueryMetrics getQueryMetrics(String name) {
         KylinConfig config = KylinConfig.getInstanceFromEnv();
         int[] intervals = config.getQueryMetricsPercentilesIntervals();
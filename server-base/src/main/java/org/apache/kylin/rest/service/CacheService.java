@@ -21,24 +21,32 @@ package org.apache.kylin.rest.service;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import javax.sql.DataSource;
 
+import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
 import org.apache.calcite.jdbc.Driver;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.metadata.cachesync.Broadcaster;
 import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.apache.kylin.metadata.project.ProjectInstance;
 import org.apache.kylin.query.schema.OLAPSchemaFactory;
+import org.apache.kylin.rest.util.PooledOLAPDataSource;
+import org.apache.kylin.storage.gtrecord.SegmentResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.Lists;
+
 import net.sf.ehcache.CacheManager;
 
 /**
@@ -60,12 +68,15 @@ public class CacheService extends BasicService {
         @Override
         public void onClearAll(Broadcaster broadcaster) throws IOException {
             removeAllOLAPDataSources();
+            EnumerableInterpretable.clearBindableCache();
             cleanAllDataCache();
         }
 
         @Override
         public void onProjectSchemaChange(Broadcaster broadcaster, String project) throws IOException {
             removeOLAPDataSource(project);
+            // the compiled code names the tables and columns of the old schema
+            EnumerableInterpretable.clearBindableCache();
             cleanDataCache(project);
         }
 
@@ -77,6 +88,10 @@ public class CacheService extends BasicService {
 
         @Override
         public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey) throws IOException {
+            if ("cube".equals(entity)) {
+                removeStaleSegmentResults(cacheKey, event);
+            }
+
             if ("cube".equals(entity) && event == Event.UPDATE) {
                 final String cubeName = cacheKey;
                 new Thread() { // do not block the event broadcast thread
@@ -122,6 +137,18 @@ public class CacheService extends BasicService {
         }
     }
 
+    // segments are immutable, only the cached results of the segments that left the cube are stale
+    private void removeStaleSegmentResults(String cubeName, Event event) {
+        List<String> segmentUuids = Lists.newArrayList();
+        CubeInstance cube = event == Event.DROP ? null : getCubeManager().getCube(cubeName);
+        if (cube != null) {
+            for (CubeSegment segment : cube.getSegments()) {
+                segmentUuids.add(segment.getUuid());
+            }
+        }
+        SegmentResultCache.getInstance().retainSegments(cubeName, segmentUuids);
+    }
+
     protected void cleanAllDataCache() {
         if (cacheManager != null) {
             logger.warn("cleaning all storage cache");
@@ -129,6 +156,7 @@ public class CacheService extends BasicService {
         } else {
             logger.warn("skip cleaning all storage cache");
         }
+        SegmentResultCache.getInstance().invalidateAll();
     }
 
     private void removeOLAPDataSource(String project) {
@@ -137,13 +165,22 @@ public class CacheService extends BasicService {
             throw new IllegalArgumentException("removeOLAPDataSource: project name not given");
 
         project = ProjectInstance.getNormalizedProjectName(project);
-        olapDataSources.remove(project);
+        closeOLAPDataSource(olapDataSources.remove(project));
     }
 
     public void removeAllOLAPDataSources() {
         // brutal, yet simplest way
         logger.info("removeAllOLAPDataSources is called.");
-        olapDataSources.clear();
+        for (String project : olapDataSources.keySet()) {
+            closeOLAPDataSource(olapDataSources.remove(project));
+        }
+    }
+
+    private void closeOLAPDataSource(DataSource ds) {
+        // release pooled connections that still hold the old schema
+        if (ds instanceof PooledOLAPDataSource) {
+            ((PooledOLAPDataSource) ds).close();
+        }
     }
 
     public DataSource getOLAPDataSource(String project) {
@@ -162,13 +199,18 @@ public class CacheService extends BasicService {
                 e.printStackTrace(); // logging failure is not critical
             }
 
-            DriverManagerDataSource ds = new DriverManagerDataSource();
+            EnumerableInterpretable.setBindableCacheSize(getConfig().getQueryBindableCacheSize());
+
+            int poolSize = getConfig().getQueryConnectionPoolSize();
+            DriverManagerDataSource ds = poolSize > 0 ? new PooledOLAPDataSource(poolSize) : new DriverManagerDataSource();
             ds.setDriverClassName(Driver.class.getName());
             ds.setUrl("jdbc:calcite:model=" + modelJson.getAbsolutePath());
 
             ret = olapDataSources.putIfAbsent(project, ds);
             if (ret == null) {
                 ret = ds;
+            } else {
+                closeOLAPDataSource(ds);
             }
         }
         return ret;
@@ -37,6 +37,7 @@ import org.apache.kylin.cube.CubeUpdate;
 import org.apache.kylin.cube.model.CubeBuildTypeEnum;
 import org.apache.kylin.engine.EngineFactory;
 import org.apache.kylin.engine.mr.CubingJob;
+import org.apache.kylin.engine.mr.common.CuboidRecommender;
 import org.apache.kylin.engine.mr.common.HadoopShellExecutable;
 import org.apache.kylin.engine.mr.common.MapReduceExecutable;
 import org.apache.kylin.engine.mr.steps.CubingExecutableUtil;
@@ -278,6 +279,7 @@ public class JobService extends BasicService implements InitializingBean {
                 ISource source = SourceFactory.tableSource(cube);
                 SourcePartition sourcePartition = new SourcePartition(startDate, endDate, startOffset, endOffset, sourcePartitionOffsetStart, sourcePartitionOffsetEnd);
                 sourcePartition = source.parsePartitionBeforeBuild(cube, sourcePartition);
+                cube = applyCuboidRecommendIfEnabled(cube);
                 newSeg = getCubeManager().appendSegment(cube, sourcePartition);
                 job = EngineFactory.createBatchCubingJob(newSeg, submitter);
             } else if (buildType == CubeBuildTypeEnum.MERGE) {
@@ -316,6 +318,24 @@ public class JobService extends BasicService implements InitializingBean {
         return jobInstance;
     }
 
+    private CubeInstance applyCuboidRecommendIfEnabled(CubeInstance cube) {
+        if (!cube.getConfig().isCuboidRecommendAutoApply() || cube.getLatestReadySegment() == null)
+            return cube;
+
+        try {
+            CuboidRecommender.Plan plan = new CuboidRecommender(cube).recommend();
+            if (plan.getAdded().isEmpty() && plan.getRemoved().isEmpty())
+                return cube;
+            logger.info("Build cube {} with the recommended cuboids, {} added, {} removed", cube.getName(), plan.getAdded().size(), plan.getRemoved().size());
+            CubeUpdate cubeBuilder = new CubeUpdate(cube).setCuboidWhitelist(Sets.newHashSet(plan.getSelected()));
+            return getCubeManager().updateCube(cubeBuilder);
+        } catch (Exception e) {
+            // build with the current cuboids
+            logger.warn("Failed to recommend cuboids for cube " + cube.getName(), e);
+            return cube;
+        }
+    }
+
     private void checkCubeDescSignature(CubeInstance cube) {
         if (!cube.getDescriptor().checkSignature())
             throw new IllegalStateException("Inconsistent cube desc signature for " + cube.getDescriptor());
@@ -78,6 +78,7 @@ import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.response.SQLResponse;
 import org.apache.kylin.rest.util.QueryUtil;
+import org.apache.kylin.rest.util.StreamingResultWriter;
 import org.apache.kylin.rest.util.Serializer;
 import org.apache.kylin.rest.util.TableauInterceptor;
 import org.apache.kylin.storage.hbase.HBaseConnection;
@@ -147,11 +148,18 @@ public class QueryService extends BasicService {
     }
 
     public SQLResponse query(SQLRequest sqlRequest) throws Exception {
+        return query(sqlRequest, null);
+    }
+
+    /**
+     * @param writer if not null, result rows are written to it instead of being returned in the response
+     */
+    public SQLResponse query(SQLRequest sqlRequest, StreamingResultWriter writer) throws Exception {
         try {
             final String user = SecurityContextHolder.getContext().getAuthentication().getName();
             badQueryDetector.queryStart(Thread.currentThread(), sqlRequest, user);
 
-            return queryWithSqlMassage(sqlRequest);
+            return queryWithSqlMassage(sqlRequest, writer);
 
         } finally {
             badQueryDetector.queryEnd(Thread.currentThread());
@@ -282,6 +290,7 @@ public class QueryService extends BasicService {
         stringBuilder.append("Is Partial Result: ").append(response.isPartial()).append(newLine);
         stringBuilder.append("Hit Exception Cache: ").append(response.isHitExceptionCache()).append(newLine);
         stringBuilder.append("Storage cache used: ").append(storageCacheUsed).append(newLine);
+        stringBuilder.append("Segment cache hits/misses: ").append(QueryContext.current().getSegmentCacheHits()).append("/").append(QueryContext.current().getSegmentCacheMisses()).append(newLine);
         stringBuilder.append("Message: ").append(response.getExceptionMessage()).append(newLine);
         stringBuilder.append("==========================[QUERY]===============================").append(newLine);
 
@@ -318,8 +327,7 @@ public class QueryService extends BasicService {
         }
     }
 
-    public SQLResponse doQueryWithCache(SQLRequest sqlRequest) {
-        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+    private void checkQueryRequest(KylinConfig kylinConfig, SQLRequest sqlRequest) {
         String serverMode = kylinConfig.getServerMode();
         if (!(Constant.SERVER_MODE_QUERY.equals(serverMode.toLowerCase()) || Constant.SERVER_MODE_ALL.equals(serverMode.toLowerCase()))) {
             throw new InternalErrorException("Query is not allowed in " + serverMode + " mode.");
@@ -327,6 +335,63 @@ public class QueryService extends BasicService {
         if (StringUtils.isBlank(sqlRequest.getProject())) {
             throw new InternalErrorException("Project cannot be empty. Please select a project.");
         }
+        if (!sqlRequest.getSql().toLowerCase().contains("select")) {
+            logger.debug("Directly return exception as not supported");
+            throw new InternalErrorException("Not Supported SQL.");
+        }
+    }
+
+    /**
+     * Execute the query and write the result rows to <code>writer</code> as they come, bypassing the query cache.
+     * Errors after the stream has started are written as the last frame.
+     */
+    public void doQueryStream(SQLRequest sqlRequest, StreamingResultWriter writer) throws IOException {
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        checkQueryRequest(kylinConfig, sqlRequest);
+
+        if (sqlRequest.getBackdoorToggles() != null)
+            BackdoorToggles.addToggles(sqlRequest.getBackdoorToggles());
+
+        final QueryContext queryContext = QueryContext.current();
+        final String queryId = UUID.randomUUID().toString();
+        queryContext.setQueryId(queryId);
+
+        try (SetThreadName ignored = new SetThreadName("Query %s", queryId)) {
+            logger.info("Using project: " + sqlRequest.getProject());
+            logger.info("The original query (streaming):  " + sqlRequest.getSql());
+
+            long startTime = System.currentTimeMillis();
+
+            SQLResponse sqlResponse;
+            try {
+                sqlResponse = query(sqlRequest, writer);
+                sqlResponse.setDuration(System.currentTimeMillis() - startTime);
+            } catch (Throwable e) { // calcite may throw AssertError
+                logger.error("Exception when execute sql", e);
+                sqlResponse = new SQLResponse(null, null, 0, true, QueryUtil.makeErrorMsgUserFriendly(e));
+                sqlResponse.setTotalScanCount(queryContext.getScannedRows());
+                sqlResponse.setTotalScanBytes(queryContext.getScannedBytes());
+            }
+            logger.info("Streamed {} rows", writer.getTotalRows());
+
+            logQuery(sqlRequest, sqlResponse);
+
+            QueryMetricsFacade.updateMetrics(sqlRequest, sqlResponse);
+
+            if (sqlResponse.getIsException())
+                writer.writeError(sqlResponse.getExceptionMessage());
+            else
+                writer.writeEnd(sqlResponse.getTotalScanCount(), sqlResponse.getTotalScanBytes());
+
+        } finally {
+            BackdoorToggles.cleanToggles();
+            QueryContext.reset();
+        }
+    }
+
+    public SQLResponse doQueryWithCache(SQLRequest sqlRequest) {
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        checkQueryRequest(kylinConfig, sqlRequest);
 
         if (sqlRequest.getBackdoorToggles() != null)
             BackdoorToggles.addToggles(sqlRequest.getBackdoorToggles());
@@ -341,11 +406,6 @@ public class QueryService extends BasicService {
             logger.info("Using project: " + project);
             logger.info("The original query:  " + sql);
 
-            if (!sql.toLowerCase().contains("select")) {
-                logger.debug("Directly return exception as not supported");
-                throw new InternalErrorException("Not Supported SQL.");
-            }
-
             long startTime = System.currentTimeMillis();
 
             SQLResponse sqlResponse = null;
@@ -437,7 +497,7 @@ public class QueryService extends BasicService {
         }
     }
 
-    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest) throws Exception {
+    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest, StreamingResultWriter writer) throws Exception {
         String userInfo = SecurityContextHolder.getContext().getAuthentication().getName();
         final Collection<? extends GrantedAuthority> grantedAuthorities = SecurityContextHolder.getContext().getAuthentication().getAuthorities();
         for (GrantedAuthority grantedAuthority : grantedAuthorities) {
@@ -448,6 +508,8 @@ public class QueryService extends BasicService {
         SQLResponse fakeResponse = TableauInterceptor.tableauIntercept(sqlRequest.getSql());
         if (null != fakeResponse) {
             logger.debug("Return fake response, is exception? " + fakeResponse.getIsException());
+            if (writer != null && !fakeResponse.getIsException())
+                writer.writeResponse(fakeResponse);
             return fakeResponse;
         }
 
@@ -467,7 +529,7 @@ public class QueryService extends BasicService {
         // force clear the query context before a new query
         OLAPContext.clearThreadLocalContexts();
 
-        return execute(correctedSql, sqlRequest);
+        return execute(correctedSql, sqlRequest, writer);
 
     }
 
@@ -517,10 +579,9 @@ public class QueryService extends BasicService {
             }
 
         } finally {
+            // the result sets go before the connection, which may be handed to another query by the pool
+            close(JDBCTableMeta, null, null);
             close(columnMeta, null, conn);
-            if (JDBCTableMeta != null) {
-                JDBCTableMeta.close();
-            }
         }
 
         return tableMetas;
@@ -540,7 +601,7 @@ public class QueryService extends BasicService {
      * @return
      * @throws Exception
      */
-    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest) throws Exception {
+    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest, StreamingResultWriter writer) throws Exception {
         Connection conn = null;
         Statement stat = null;
         ResultSet resultSet = null;
@@ -574,8 +635,19 @@ public class QueryService extends BasicService {
                 columnMetas.add(new SelectedColumnMeta(metaData.isAutoIncrement(i), metaData.isCaseSensitive(i), metaData.isSearchable(i), metaData.isCurrency(i), metaData.isNullable(i), metaData.isSigned(i), metaData.getColumnDisplaySize(i), metaData.getColumnLabel(i), metaData.getColumnName(i), metaData.getSchemaName(i), metaData.getCatalogName(i), metaData.getTableName(i), metaData.getPrecision(i), metaData.getScale(i), metaData.getColumnType(i), metaData.getColumnTypeName(i), metaData.isReadOnly(i), metaData.isWritable(i), metaData.isDefinitelyWritable(i)));
             }
 
+            if (writer != null) {
+                // rows leave the server as they come, so authorize before the first one
+                if (KylinConfig.getInstanceFromEnv().isQuerySecureEnabled())
+                    checkAuthorization(getQueriedRealization());
+
+                writer.writeColumnMetas(columnMetas, true);
+                while (resultSet.next()) {
+                    writer.writeRow(resultSet);
+                }
+            }
+
             // fill in results
-            while (resultSet.next()) {
+            while (writer == null && resultSet.next()) {
                 List<String> oneRow = Lists.newArrayListWithCapacity(columnCount);
                 for (int i = 0; i < columnCount; i++) {
                     oneRow.add((resultSet.getString(i + 1)));
@@ -588,13 +660,12 @@ public class QueryService extends BasicService {
         }
 
         boolean isPartialResult = false;
-        String cube = "";
+        String cube = getQueriedRealization();
         StringBuilder sb = new StringBuilder("Processed rows for each storageContext: ");
         if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
             for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
                 if (ctx.realization != null) {
                     isPartialResult |= ctx.storageContext.isPartialResultReturned();
-                    cube = ctx.realization.getName();
                     sb.append(ctx.storageContext.getProcessedRowCount()).append(" ");
                 }
             }
@@ -608,6 +679,18 @@ public class QueryService extends BasicService {
         return response;
     }
 
+    private String getQueriedRealization() {
+        String realization = "";
+        if (OLAPContext.getThreadLocalContexts() != null) {
+            for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
+                if (ctx.realization != null) {
+                    realization = ctx.realization.getName();
+                }
+            }
+        }
+        return realization;
+    }
+
     /**
      * @param preparedState
      * @param param
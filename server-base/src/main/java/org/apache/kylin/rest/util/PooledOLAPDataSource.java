@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Keeps closed calcite connections of a project for reuse, so that a query does not pay for opening a new connection,
+ * i.e. parsing the OLAP model and building the schema and table map of the project again.
+ *
+ * A connection is used by one query at a time. The pool lives as long as the data source, which CacheService
+ * drops on project schema and data change, so reused connections never see stale metadata.
+ */
+public class PooledOLAPDataSource extends DriverManagerDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledOLAPDataSource.class);
+
+    private final BlockingQueue<Connection> idle;
+
+    private volatile boolean closed = false;
+
+    public PooledOLAPDataSource(int maxIdle) {
+        this.idle = new ArrayBlockingQueue<Connection>(maxIdle);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection conn;
+        while ((conn = idle.poll()) != null) {
+            if (!conn.isClosed())
+                return wrap(conn);
+        }
+        return wrap(super.getConnection());
+    }
+
+    /**
+     * close the idle connections, connections in use are closed when they are released
+     */
+    public void close() {
+        closed = true;
+        Connection conn;
+        while ((conn = idle.poll()) != null) {
+            closeQuietly(conn);
+        }
+    }
+
+    private void release(Connection conn) {
+        if (closed || !idle.offer(conn)) {
+            closeQuietly(conn);
+        } else if (closed && idle.remove(conn)) {
+            // close() may run between the check and the offer
+            closeQuietly(conn);
+        }
+    }
+
+    private void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close connection", e);
+        }
+    }
+
+    private Connection wrap(final Connection conn) {
+        return (Connection) Proxy.newProxyInstance(PooledOLAPDataSource.class.getClassLoader(), new Class[] { Connection.class }, new InvocationHandler() {
+            private boolean released = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(conn, args);
+                } else if ("close".equals(name)) {
+                    if (!released) {
+                        released = true;
+                        release(conn);
+                    }
+                    return null;
+                } else if ("isClosed".equals(name)) {
+                    return released || conn.isClosed();
+                } else if (released) {
+                    throw new SQLException("Connection is closed");
+                }
+
+                try {
+                    return method.invoke(conn, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import org.apache.kylin.common.util.JsonUtil;
+import org.apache.kylin.rest.model.SelectedColumnMeta;
+import org.apache.kylin.rest.response.SQLResponse;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes a query result as a stream of binary frames, so that neither server nor client holds the whole result.
+ * The JDBC driver reads it in org.apache.kylin.jdbc.StreamingResultReader, keep the two in sync.
+ *
+ * Every frame starts with a type byte:
+ * <ul>
+ * <li>META: int length, JSON of the column metas; int column count, one encoding byte per column</li>
+ * <li>ROWS: int row count, int byte length, then per row and column a null flag byte followed by the value if not null</li>
+ * <li>ERROR: int length, UTF-8 bytes of the error message, the last frame of a failed query</li>
+ * <li>END: long total scan count, long total scan bytes, the last frame of a successful query</li>
+ * </ul>
+ * Numbers are written in binary, i.e. long, double, or scale and unscaled bytes of a decimal. Other types,
+ * including date and time, are written as length prefixed UTF-8 strings, the same text as the JSON protocol.
+ */
+public class StreamingResultWriter implements Closeable {
+
+    public static final String CONTENT_TYPE = "application/x-kylin-result";
+
+    public static final byte FRAME_META = 'M';
+    public static final byte FRAME_ROWS = 'R';
+    public static final byte FRAME_ERROR = 'E';
+    public static final byte FRAME_END = 'F';
+
+    public static final byte ENC_STRING = 0;
+    public static final byte ENC_LONG = 1;
+    public static final byte ENC_DOUBLE = 2;
+    public static final byte ENC_DECIMAL = 3;
+    public static final byte ENC_BOOLEAN = 4;
+
+    private static final int MAX_BATCH_ROWS = 1024;
+    private static final int MAX_BATCH_BYTES = 1024 * 1024;
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+    private final DataOutputStream batch = new DataOutputStream(batchBytes);
+    private int batchRows = 0;
+    private long totalRows = 0;
+
+    private byte[] encodings;
+
+    public StreamingResultWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    public static byte getEncoding(int sqlType) {
+        switch (sqlType) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+            return ENC_LONG;
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+            return ENC_DOUBLE;
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+            return ENC_DECIMAL;
+        case Types.BIT:
+        case Types.BOOLEAN:
+            return ENC_BOOLEAN;
+        default:
+            return ENC_STRING;
+        }
+    }
+
+    public boolean isStarted() {
+        return encodings != null;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * @param typed false to send every column as string, e.g. for a result that is already in string
+     */
+    public void writeColumnMetas(List<SelectedColumnMeta> columnMetas, boolean typed) throws IOException {
+        Preconditions.checkState(encodings == null, "column metas already written");
+
+        encodings = new byte[columnMetas.size()];
+        for (int i = 0; i < encodings.length; i++) {
+            encodings[i] = typed ? getEncoding(columnMetas.get(i).getColumnType()) : ENC_STRING;
+        }
+
+        byte[] json = JsonUtil.writeValueAsBytes(columnMetas);
+        out.writeByte(FRAME_META);
+        out.writeInt(json.length);
+        out.write(json);
+        out.writeInt(encodings.length);
+        out.write(encodings);
+        out.flush();
+    }
+
+    public void writeRow(ResultSet resultSet) throws IOException, SQLException {
+        for (int i = 0; i < encodings.length; i++) {
+            int col = i + 1;
+            switch (encodings[i]) {
+            case ENC_LONG: {
+                long v = resultSet.getLong(col);
+                if (writeNullFlag(resultSet.wasNull()))
+                    batch.writeLong(v);
+                break;
+            }
+            case ENC_DOUBLE: {
+                double v = resultSet.getDouble(col);
+                if (writeNullFlag(resultSet.wasNull()))
+                    batch.writeDouble(v);
+                break;
+            }
+            case ENC_DECIMAL:
+                writeDecimal(resultSet.getBigDecimal(col));
+                break;
+            case ENC_BOOLEAN: {
+                boolean v = resultSet.getBoolean(col);
+                if (writeNullFlag(resultSet.wasNull()))
+                    batch.writeBoolean(v);
+                break;
+            }
+            default:
+                writeString(resultSet.getString(col));
+            }
+        }
+        endRow();
+    }
+
+    public void writeRow(List<String> row) throws IOException {
+        for (int i = 0; i < encodings.length; i++) {
+            Preconditions.checkState(encodings[i] == ENC_STRING, "typed column needs a ResultSet");
+            writeString(row.get(i));
+        }
+        endRow();
+    }
+
+    /**
+     * send a complete result in string, like the responses of TableauInterceptor
+     */
+    public void writeResponse(SQLResponse response) throws IOException {
+        writeColumnMetas(response.getColumnMetas(), false);
+        for (List<String> row : response.getResults()) {
+            writeRow(row);
+        }
+    }
+
+    public void writeError(String message) throws IOException {
+        // the query failed, pending rows (maybe a partial one) are dropped
+        batchBytes.reset();
+        batchRows = 0;
+
+        byte[] bytes = (message == null ? "" : message).getBytes(StandardCharsets.UTF_8);
+        out.writeByte(FRAME_ERROR);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    public void writeEnd(long totalScanCount, long totalScanBytes) throws IOException {
+        flushBatch();
+        out.writeByte(FRAME_END);
+        out.writeLong(totalScanCount);
+        out.writeLong(totalScanBytes);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private boolean writeNullFlag(boolean isNull) throws IOException {
+        batch.writeBoolean(isNull);
+        return !isNull;
+    }
+
+    private void writeDecimal(BigDecimal v) throws IOException {
+        if (writeNullFlag(v == null)) {
+            byte[] unscaled = v.unscaledValue().toByteArray();
+            batch.writeInt(v.scale());
+            batch.writeShort(unscaled.length);
+            batch.write(unscaled);
+        }
+    }
+
+    private void writeString(String v) throws IOException {
+        if (writeNullFlag(v == null)) {
+            byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+            batch.writeInt(bytes.length);
+            batch.write(bytes);
+        }
+    }
+
+    private void endRow() throws IOException {
+        batchRows++;
+        totalRows++;
+        if (batchRows >= MAX_BATCH_ROWS || batchBytes.size() >= MAX_BATCH_BYTES) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() throws IOException {
+        if (batchRows == 0)
+            return;
+
+        out.writeByte(FRAME_ROWS);
+        out.writeInt(batchRows);
+        out.writeInt(batchBytes.size());
+        batchBytes.writeTo(out);
+        out.flush();
+
+        batchBytes.reset();
+        batchRows = 0;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.Driver;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PooledOLAPDataSourceTest {
+
+    private PooledOLAPDataSource newDataSource(int maxIdle) {
+        PooledOLAPDataSource ds = new PooledOLAPDataSource(maxIdle);
+        ds.setDriverClassName(Driver.class.getName());
+        ds.setUrl("jdbc:calcite:");
+        return ds;
+    }
+
+    @Test
+    public void testReuse() throws SQLException {
+        PooledOLAPDataSource ds = newDataSource(1);
+
+        Connection conn1 = ds.getConnection();
+        CalciteConnection raw1 = conn1.unwrap(CalciteConnection.class);
+        Connection conn2 = ds.getConnection();
+        CalciteConnection raw2 = conn2.unwrap(CalciteConnection.class);
+        Assert.assertNotSame(raw1, raw2);
+
+        conn1.close();
+        Assert.assertTrue(conn1.isClosed());
+        Assert.assertFalse(raw1.isClosed());
+        try {
+            conn1.createStatement();
+            Assert.fail("closed connection should not be usable");
+        } catch (SQLException e) {
+            // expected
+        }
+
+        // only one idle connection is kept
+        conn2.close();
+        Assert.assertTrue(raw2.isClosed());
+
+        Connection conn3 = ds.getConnection();
+        Assert.assertSame(raw1, conn3.unwrap(CalciteConnection.class));
+        conn3.close();
+    }
+
+    @Test
+    public void testClose() throws SQLException {
+        PooledOLAPDataSource ds = newDataSource(2);
+
+        Connection conn1 = ds.getConnection();
+        Connection conn2 = ds.getConnection();
+        CalciteConnection raw1 = conn1.unwrap(CalciteConnection.class);
+        CalciteConnection raw2 = conn2.unwrap(CalciteConnection.class);
+        conn1.close();
+
+        ds.close();
+        Assert.assertTrue(raw1.isClosed());
+
+        // connection in use is closed on release
+        Assert.assertFalse(raw2.isClosed());
+        conn2.close();
+        Assert.assertTrue(raw2.isClosed());
+    }
+}
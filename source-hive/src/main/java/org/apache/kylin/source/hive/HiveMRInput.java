@@ -36,6 +36,7 @@ import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.inmemcubing.RowBatch;
 import org.apache.kylin.engine.mr.IMRInput;
 import org.apache.kylin.engine.mr.JobBuilderSupport;
 import org.apache.kylin.engine.mr.steps.CubingExecutableUtil;
@@ -121,6 +122,11 @@ public class HiveMRInput implements IMRInput {
             return HiveTableReader.getRowAsStringArray((HCatRecord) mapperInput);
         }
 
+        @Override
+        public void parseMapperInput(Object mapperInput, RowBatch batch) {
+            HiveTableReader.appendRow((HCatRecord) mapperInput, batch);
+        }
+
     }
 
     public static class BatchCubingInputSide implements IMRBatchCubingInputSide {
@@ -33,6 +33,7 @@ import org.apache.hive.hcatalog.data.transfer.DataTransferFactory;
 import org.apache.hive.hcatalog.data.transfer.HCatReader;
 import org.apache.hive.hcatalog.data.transfer.ReadEntity;
 import org.apache.hive.hcatalog.data.transfer.ReaderContext;
+import org.apache.kylin.cube.inmemcubing.RowBatch;
 import org.apache.kylin.source.ReadableTable.TableReader;
 
 /**
@@ -131,6 +132,21 @@ public class HiveTableReader implements TableReader {
         return arr;
     }
 
+    /** append a record to given batch, strings are encoded in place and integers written without toString() */
+    public static void appendRow(HCatRecord record, RowBatch batch) {
+        for (int i = 0, n = Math.min(record.size(), batch.getColumnCount()); i < n; i++) {
+            Object o = record.get(i);
+            if (o == null) {
+                batch.appendNull();
+            } else if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte) {
+                batch.append(((Number) o).longValue());
+            } else {
+                batch.append(o.toString());
+            }
+        }
+        batch.endRow();
+    }
+
     @Override
     public void close() throws IOException {
         this.readCntxt = null;
@@ -34,6 +34,7 @@ import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.common.util.StreamingMessage;
 import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.inmemcubing.RowBatch;
 import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
 import org.apache.kylin.engine.mr.IMRInput;
 import org.apache.kylin.engine.mr.JobBuilderSupport;
@@ -134,6 +135,14 @@ public class KafkaMRInput implements IMRInput {
             return streamingMessage.getData().toArray(new String[streamingMessage.getData().size()]);
         }
 
+        @Override
+        public void parseMapperInput(Object mapperInput, RowBatch batch) {
+            Text text = (Text) mapperInput;
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(), 0, text.getLength());
+            StreamingMessage streamingMessage = streamingParser.parse(buffer);
+            batch.appendRow(streamingMessage.getData());
+        }
+
     }
 
     public static class BatchCubingInputSide implements IMRBatchCubingInputSide {
@@ -162,6 +162,7 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         }
         builder.setSpillEnabled(cubeSeg.getConfig().getQueryCoprocessorSpillEnabled());
         builder.setMaxScanBytes(cubeSeg.getConfig().getPartitionMaxScanBytes());
+        builder.setMaxChunkBytes(cubeSeg.getConfig().getPartitionResultChunkBytes());
 
         for (final Pair<byte[], byte[]> epRange : getEPKeyRanges(cuboidBaseShard, shardNum, totalShards)) {
             executorService.submit(new Runnable() {
@@ -181,14 +182,21 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                         table.coprocessorService(CubeVisitService.class, startKey, endKey, //
                                 new Batch.Call<CubeVisitService, CubeVisitResponse>() {
                                     public CubeVisitResponse call(CubeVisitService rowsService) throws IOException {
-                                        ServerRpcController controller = new ServerRpcController();
-                                        BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
-                                        rowsService.visitCube(controller, request, rpcCallback);
-                                        CubeVisitResponse response = rpcCallback.get();
-                                        if (controller.failedOnException()) {
-                                            throw controller.getFailedOn();
+                                        CubeVisitRequest pageRequest = request;
+                                        while (true) {
+                                            CubeVisitResponse response = visitCube(rowsService, pageRequest);
+
+                                            // the last page is handled by the callback, together with the region info
+                                            if (!response.hasContinuationToken() || regionErrorHolder.get() != null) {
+                                                return response;
+                                            }
+
+                                            logger.info(logHeader + "Endpoint RPC returned a page of " + response.getCompressedRows().size() + " bytes, " + response.getStats().getScannedRowCount() + " rows scanned, fetching next page");
+                                            if (!consumeResponse(response, regionErrorHolder, epResultItr, compressionResult, logHeader, false)) {
+                                                return response;
+                                            }
+                                            pageRequest = CubeVisitRequest.newBuilder(request).setContinuationToken(response.getContinuationToken()).build();
                                         }
-                                        return response;
                                     }
                                 }, new Batch.Callback<CubeVisitResponse>() {
                                     @Override
@@ -199,34 +207,10 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
                                         logger.info(logHeader + getStatsString(region, result));
 
-                                        Stats stats = result.getStats();
-                                        queryContext.addAndGetScannedRows(stats.getScannedRowCount());
-                                        queryContext.addAndGetScannedBytes(stats.getScannedBytes());
-
-                                        // if any other region has responded with error, skip further processing
-                                        if (regionErrorHolder.get() != null) {
-                                            return;
-                                        }
-
-                                        // record coprocessor error if happened
-                                        if (result.getStats().getNormalComplete() != 1) {
-                                            regionErrorHolder.compareAndSet(null, getCoprocessorException(result));
-                                            return;
-                                        }
-
-                                        if (queryContext.getScannedBytes() > cubeSeg.getConfig().getQueryMaxScanBytes()) {
-                                            throw new ResourceLimitExceededException("Query scanned " + queryContext.getScannedBytes() + " bytes exceeds threshold " + cubeSeg.getConfig().getQueryMaxScanBytes());
-                                        }
-
-                                        try {
-                                            if (compressionResult) {
-                                                epResultItr.append(CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows())));
-                                            } else {
-                                                epResultItr.append(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
-                                            }
-                                        } catch (IOException | DataFormatException e) {
-                                            throw new RuntimeException(logHeader + "Error when decompressing", e);
+                                        if (result.hasContinuationToken()) {
+                                            return; // paging was stopped due to error in another region
                                         }
+                                        consumeResponse(result, regionErrorHolder, epResultItr, compressionResult, logHeader, true);
                                     }
                                 });
 
@@ -248,6 +232,59 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         return new StorageResponseGTScatter(fullGTInfo, new DummyPartitionStreamer(epResultItr), scanRequest.getColumns(), scanRequest.getStoragePushDownLimit());
     }
 
+    private CubeVisitResponse visitCube(CubeVisitService rowsService, CubeVisitRequest request) throws IOException {
+        ServerRpcController controller = new ServerRpcController();
+        BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
+        rowsService.visitCube(controller, request, rpcCallback);
+        CubeVisitResponse response = rpcCallback.get();
+        if (controller.failedOnException()) {
+            throw controller.getFailedOn();
+        }
+        return response;
+    }
+
+    /**
+     * @return false if the region or any other region has failed and the response is dropped
+     */
+    private boolean consumeResponse(CubeVisitResponse result, AtomicReference<RuntimeException> regionErrorHolder, ExpectedSizeIterator epResultItr, boolean compressionResult, String logHeader, boolean lastPage) {
+        Stats stats = result.getStats();
+        queryContext.addAndGetScannedRows(stats.getScannedRowCount());
+        queryContext.addAndGetScannedBytes(stats.getScannedBytes());
+
+        // if any other region has responded with error, skip further processing
+        if (regionErrorHolder.get() != null) {
+            return false;
+        }
+
+        // record coprocessor error if happened
+        if (result.getStats().getNormalComplete() != 1) {
+            regionErrorHolder.compareAndSet(null, getCoprocessorException(result));
+            return false;
+        }
+
+        if (queryContext.getScannedBytes() > cubeSeg.getConfig().getQueryMaxScanBytes()) {
+            throw new ResourceLimitExceededException("Query scanned " + queryContext.getScannedBytes() + " bytes exceeds threshold " + cubeSeg.getConfig().getQueryMaxScanBytes());
+        }
+
+        byte[] rows;
+        try {
+            if (compressionResult) {
+                rows = CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
+            } else {
+                rows = HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows());
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new RuntimeException(logHeader + "Error when decompressing", e);
+        }
+
+        if (lastPage) {
+            epResultItr.append(rows);
+        } else {
+            epResultItr.appendPage(rows);
+        }
+        return true;
+    }
+
     private ByteString serializeGTScanReq(GTScanRequest scanRequest) {
         ByteString scanRequestByteString;
         int scanRequestBufferSize = BytesSerializer.SERIALIZE_BUFFER_SIZE;
@@ -22,23 +22,35 @@ import java.util.Iterator;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.kylin.gridtable.GTScanRequest;
 
 import com.google.common.base.Throwables;
 
+/**
+ * Collects the row blobs returned by region servers. Each of the expected regions sends one or more pages,
+ * the last page of a region is marked by {@link #append(byte[])}, earlier ones by {@link #appendPage(byte[])}.
+ * The queue is bounded, so regions that page faster than the query thread consumes are held back.
+ */
 class ExpectedSizeIterator implements Iterator<byte[]> {
+    private static final byte[] END_OF_DATA = new byte[0];
+
     private BlockingQueue<byte[]> queue;
     private int expectedSize;
-    private int current = 0;
+    private AtomicInteger finishedSize = new AtomicInteger(0);
     private int coprocessorTimeout;
     private long deadline;
     private volatile Throwable coprocException;
 
+    private byte[] fetched = null;
+    private boolean exhausted = false;
+
     public ExpectedSizeIterator(int expectedSize, int coprocessorTimeout) {
         this.expectedSize = expectedSize;
-        this.queue = new ArrayBlockingQueue<byte[]>(expectedSize);
+        // one slot per region plus the end marker, so that unpaged results never block the region threads
+        this.queue = new ArrayBlockingQueue<byte[]>(expectedSize + 1);
 
         this.coprocessorTimeout = coprocessorTimeout;
         //longer timeout than coprocessor so that query thread will not timeout faster than coprocessor
@@ -47,16 +59,28 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
 
     @Override
     public boolean hasNext() {
-        return (current < expectedSize);
+        if (fetched == null && !exhausted) {
+            fetched = fetch();
+            exhausted = (fetched == null);
+        }
+        return fetched != null;
     }
 
     @Override
     public byte[] next() {
-        if (current >= expectedSize) {
+        if (!hasNext()) {
             throw new IllegalStateException("Won't have more data");
         }
+        byte[] ret = fetched;
+        fetched = null;
+        return ret;
+    }
+
+    private byte[] fetch() {
+        if (expectedSize == 0) {
+            return null;
+        }
         try {
-            current++;
             byte[] ret = null;
 
             while (ret == null && coprocException == null && deadline > System.currentTimeMillis()) {
@@ -72,7 +96,7 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
                         GTScanRequest.terminateCheckInterval + " scanned rows, the configured timeout(" + coprocessorTimeout + ") cannot support this many scans?");
             }
 
-            return ret;
+            return ret == END_OF_DATA ? null : ret;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Error when waiting queue", e);
@@ -84,9 +108,29 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
         throw new NotImplementedException();
     }
 
+    /**
+     * the last (or only) page of a region
+     */
     public void append(byte[] data) {
+        put(data);
+        if (finishedSize.incrementAndGet() == expectedSize) {
+            put(END_OF_DATA);
+        }
+    }
+
+    /**
+     * a page of a region, more is to come
+     */
+    public void appendPage(byte[] data) {
+        put(data);
+    }
+
+    private void put(byte[] data) {
         try {
-            queue.put(data);
+            long wait = Math.max(deadline - System.currentTimeMillis(), 0);
+            if (!queue.offer(data, wait, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Timeout waiting the query thread to consume coprocessor results");
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("error when waiting queue", e);
@@ -25,10 +25,13 @@ import java.util.List;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTRecordBlock;
 import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTBlockScanner;
 import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.gridtable.IGTStore;
 import org.apache.kylin.gridtable.IGTWriter;
@@ -86,7 +89,7 @@ public class HBaseReadonlyStore implements IGTStore {
 
     @Override
     public IGTScanner scan(GTScanRequest scanRequest) throws IOException {
-        return new IGTScanner() {
+        return new IGTBlockScanner() {
             int count;
 
             @Override
@@ -101,50 +104,52 @@ public class HBaseReadonlyStore implements IGTStore {
 
                     @Override
                     public boolean hasNext() {
-                        if (withDelay) {
-                            try {
-                                Thread.sleep(10);
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
-                        }
+                        delayIfNeeded();
                         return cellListIterator.hasNext();
                     }
 
                     @Override
                     public GTRecord next() {
                         count++;
-                        List<Cell> oneRow = cellListIterator.next();
-                        if (oneRow.size() < 1) {
-                            throw new IllegalStateException("cell list's size less than 1");
-                        }
-
-                        // dimensions, set to primary key, also the 0th column block
-                        Cell firstCell = oneRow.get(0);
-                        ByteBuffer buf = byteBuffer(firstCell.getRowArray(), rowkeyPreambleSize + firstCell.getRowOffset(), firstCell.getRowLength() - rowkeyPreambleSize);
-                        oneRecord.loadCellBlock(0, buf);
-
-                        // metrics
-                        for (int i = 0; i < hbaseColumns.size(); i++) {
-                            Pair<byte[], byte[]> hbaseColumn = hbaseColumns.get(i);
-                            Cell cell = findCell(oneRow, hbaseColumn.getFirst(), hbaseColumn.getSecond());
-                            Preconditions.checkNotNull(cell);
-                            buf = byteBuffer(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
-                            oneRecord.loadColumns(hbaseColumnsToGT.get(i), buf);
-                        }
+                        loadRecord(cellListIterator.next(), oneRecord);
                         return oneRecord;
-
                     }
 
                     @Override
                     public void remove() {
                         throw new UnsupportedOperationException();
                     }
+                };
+            }
+
+            @Override
+            public Iterator<GTRecordBlock> blockIterator() {
+                return new Iterator<GTRecordBlock>() {
+                    GTRecord oneRecord = new GTRecord(info);
+                    GTRecordBlock block = new GTRecordBlock(info, getLoadedColumns());
+
+                    @Override
+                    public boolean hasNext() {
+                        delayIfNeeded();
+                        return cellListIterator.hasNext();
+                    }
 
-                    private ByteBuffer byteBuffer(byte[] array, int offset, int length) {
-                        return ByteBuffer.wrap(array, offset, length);
+                    @Override
+                    public GTRecordBlock next() {
+                        // cells may not outlive the next row, so copy into the block
+                        block.reset();
+                        while (!block.isFull() && cellListIterator.hasNext()) {
+                            count++;
+                            loadRecord(cellListIterator.next(), oneRecord);
+                            block.append(oneRecord);
+                        }
+                        return block;
                     }
 
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
                 };
             }
 
@@ -154,4 +159,48 @@ public class HBaseReadonlyStore implements IGTStore {
             }
         };
     }
+
+    private void delayIfNeeded() {
+        if (withDelay) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private ImmutableBitSet getLoadedColumns() {
+        ImmutableBitSet result = info.getColumnBlock(0);
+        for (List<Integer> gtColumns : hbaseColumnsToGT) {
+            for (int c : gtColumns) {
+                result = result.set(c);
+            }
+        }
+        return result;
+    }
+
+    private void loadRecord(List<Cell> oneRow, GTRecord oneRecord) {
+        if (oneRow.size() < 1) {
+            throw new IllegalStateException("cell list's size less than 1");
+        }
+
+        // dimensions, set to primary key, also the 0th column block
+        Cell firstCell = oneRow.get(0);
+        ByteBuffer buf = byteBuffer(firstCell.getRowArray(), rowkeyPreambleSize + firstCell.getRowOffset(), firstCell.getRowLength() - rowkeyPreambleSize);
+        oneRecord.loadCellBlock(0, buf);
+
+        // metrics
+        for (int i = 0; i < hbaseColumns.size(); i++) {
+            Pair<byte[], byte[]> hbaseColumn = hbaseColumns.get(i);
+            Cell cell = findCell(oneRow, hbaseColumn.getFirst(), hbaseColumn.getSecond());
+            Preconditions.checkNotNull(cell);
+            buf = byteBuffer(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+            oneRecord.loadColumns(hbaseColumnsToGT.get(i), buf);
+        }
+    }
+
+    private ByteBuffer byteBuffer(byte[] array, int offset, int length) {
+        return ByteBuffer.wrap(array, offset, length);
+    }
 }
@@ -24,6 +24,7 @@ import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -96,15 +97,87 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         }
     }
 
+    /**
+     * Remembers the last row handed out by the region scanners, so that a paged scan can resume right after it.
+     */
+    static class ScanPosition {
+        private int rawScanIndex = -1;
+        private Cell lastCell;
+
+        void update(int rawScanIndex, Cell firstCellOfRow) {
+            this.rawScanIndex = rawScanIndex;
+            this.lastCell = firstCellOfRow;
+        }
+
+        int getRawScanIndex() {
+            return rawScanIndex;
+        }
+
+        byte[] getLastRowKey() {
+            return lastCell == null ? null : CellUtil.cloneRow(lastCell);
+        }
+    }
+
+    /**
+     * Where a paged scan stopped, and the progress made before that. Opaque to the client, which
+     * simply sends it back in the request for the next page.
+     */
+    static class ScanContinuation {
+        final int rawScanIndex;
+        final byte[] lastRowKey;
+        final long emittedRowCount;
+        final long scannedRowCount;
+        final long scannedBytes;
+
+        ScanContinuation(int rawScanIndex, byte[] lastRowKey, long emittedRowCount, long scannedRowCount, long scannedBytes) {
+            this.rawScanIndex = rawScanIndex;
+            this.lastRowKey = lastRowKey;
+            this.emittedRowCount = emittedRowCount;
+            this.scannedRowCount = scannedRowCount;
+            this.scannedBytes = scannedBytes;
+        }
+
+        byte[] toBytes() {
+            ByteBuffer buffer = ByteBuffer.allocate(lastRowKey.length + 64);
+            BytesUtil.writeVInt(rawScanIndex, buffer);
+            BytesUtil.writeByteArray(lastRowKey, buffer);
+            BytesUtil.writeVLong(emittedRowCount, buffer);
+            BytesUtil.writeVLong(scannedRowCount, buffer);
+            BytesUtil.writeVLong(scannedBytes, buffer);
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+
+        static ScanContinuation fromBytes(byte[] bytes) {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            int rawScanIndex = BytesUtil.readVInt(in);
+            byte[] lastRowKey = BytesUtil.readByteArray(in);
+            long emittedRowCount = BytesUtil.readVLong(in);
+            long scannedRowCount = BytesUtil.readVLong(in);
+            long scannedBytes = BytesUtil.readVLong(in);
+            return new ScanContinuation(rawScanIndex, lastRowKey, emittedRowCount, scannedRowCount, scannedBytes);
+        }
+
+        /**
+         * the smallest row key that is greater than the last returned one
+         */
+        byte[] getResumeKey() {
+            return Arrays.copyOf(lastRowKey, lastRowKey.length + 1);
+        }
+    }
+
     static class InnerScannerAsIterator extends BaseCellListIterator {
         private RegionScanner regionScanner;
         private List<Cell> nextOne = Lists.newArrayList();
         private List<Cell> ret = Lists.newArrayList();
+        private int rawScanIndex;
+        private ScanPosition position;
 
         private boolean hasMore;
 
-        public InnerScannerAsIterator(RegionScanner regionScanner) {
+        public InnerScannerAsIterator(RegionScanner regionScanner, int rawScanIndex, ScanPosition position) {
             this.regionScanner = regionScanner;
+            this.rawScanIndex = rawScanIndex;
+            this.position = position;
 
             try {
                 hasMore = regionScanner.nextRaw(nextOne);
@@ -127,6 +200,7 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             ret.clear();
             ret.addAll(nextOne);
             nextOne.clear();
+            position.update(rawScanIndex, ret.get(0));
             try {
                 if (hasMore) {
                     hasMore = regionScanner.nextRaw(nextOne);
@@ -254,19 +328,36 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             appendProfileInfo(sb, "start latency: " + (this.serviceStartTime - scanReq.getStartTime()));
 
+            // paging requires the scan to be resumable from a row key, which is not the case with storage aggregation
+            final int maxChunkBytes = request.hasMaxChunkBytes() ? request.getMaxChunkBytes() : 0;
+            final boolean pagingEnabled = maxChunkBytes > 0 && !scanReq.isDoingStorageAggregation();
+            final ScanContinuation resumeFrom = request.hasContinuationToken() ? ScanContinuation.fromBytes(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getContinuationToken())) : null;
+            if (resumeFrom != null) {
+                appendProfileInfo(sb, "resume from raw scan " + resumeFrom.rawScanIndex + " after " + resumeFrom.emittedRowCount + " rows");
+            }
+
             final List<InnerScannerAsIterator> cellListsForeachRawScan = Lists.newArrayList();
+            final ScanPosition scanPosition = new ScanPosition();
+
+            for (int i = 0; i < hbaseRawScans.size(); i++) {
+                RawScan hbaseRawScan = hbaseRawScans.get(i);
+                if (resumeFrom != null && i < resumeFrom.rawScanIndex) {
+                    continue; // already returned by previous pages
+                }
 
-            for (RawScan hbaseRawScan : hbaseRawScans) {
                 if (request.getRowkeyPreambleSize() - RowConstants.ROWKEY_CUBOIDID_LEN > 0) {
                     //if has shard, fill region shard to raw scan start/end
                     updateRawScanByCurrentRegion(hbaseRawScan, region, request.getRowkeyPreambleSize() - RowConstants.ROWKEY_CUBOIDID_LEN);
                 }
+                if (resumeFrom != null && i == resumeFrom.rawScanIndex) {
+                    hbaseRawScan.startKey = resumeFrom.getResumeKey();
+                }
 
                 Scan scan = CubeHBaseRPC.buildScan(hbaseRawScan);
                 RegionScanner innerScanner = region.getScanner(scan);
                 regionScanners.add(innerScanner);
 
-                InnerScannerAsIterator cellListIterator = new InnerScannerAsIterator(innerScanner);
+                InnerScannerAsIterator cellListIterator = new InnerScannerAsIterator(innerScanner, i, scanPosition);
                 cellListsForeachRawScan.add(cellListIterator);
             }
 
@@ -290,10 +381,15 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             final long storagePushDownLimit = scanReq.getStoragePushDownLimit();
 
+            // limits apply to the region scan as a whole, so deduct what the previous pages have used
+            final long previousEmittedRows = resumeFrom == null ? 0 : resumeFrom.emittedRowCount;
+            final long previousScannedRows = resumeFrom == null ? 0 : resumeFrom.scannedRowCount;
+            final long previousScannedBytes = resumeFrom == null ? 0 : resumeFrom.scannedBytes;
+
             ResourceTrackingCellListIterator cellListIterator = new ResourceTrackingCellListIterator(
                     allCellLists,
-                    scanReq.getStorageScanRowNumThreshold(), // for old client (scan threshold)
-                    !request.hasMaxScanBytes() ? Long.MAX_VALUE : request.getMaxScanBytes(), // for new client
+                    scanReq.getStorageScanRowNumThreshold() - previousScannedRows, // for old client (scan threshold)
+                    !request.hasMaxScanBytes() ? Long.MAX_VALUE : request.getMaxScanBytes() - previousScannedBytes, // for new client
                     scanReq.getTimeout());
 
             IGTStore store = new HBaseReadonlyStore(cellListIterator, scanReq, hbaseRawScans.get(0).hbaseColumns, hbaseColumnsToGT, request.getRowkeyPreambleSize(), behavior.delayToggledOn());
@@ -305,6 +401,7 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream(BufferedMeasureCodec.DEFAULT_BUFFER_SIZE);//ByteArrayOutputStream will auto grow
             int finalRowCount = 0;
+            ScanContinuation continuation = null;
 
             try {
                 for (GTRecord oneRecord : finalScanner) {
@@ -321,11 +418,21 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                     finalRowCount++;
 
                     //if it's doing storage aggr, then should rely on GTAggregateScanner's limit check
-                    if (!scanReq.isDoingStorageAggregation() && finalRowCount >= storagePushDownLimit) {
+                    if (!scanReq.isDoingStorageAggregation() && previousEmittedRows + finalRowCount >= storagePushDownLimit) {
                         //read one more record than limit
                         logger.info("The finalScanner aborted because storagePushDownLimit is satisfied");
                         break;
                     }
+
+                    // the page is full, let the client come back for the rest
+                    if (pagingEnabled && outputStream.size() >= maxChunkBytes) {
+                        continuation = new ScanContinuation(scanPosition.getRawScanIndex(), scanPosition.getLastRowKey(), //
+                                previousEmittedRows + finalRowCount, //
+                                previousScannedRows + cellListIterator.getTotalScannedRowCount(), //
+                                previousScannedBytes + cellListIterator.getTotalScannedRowBytes());
+                        logger.info("The finalScanner paused because page size {} is reached after {} rows", maxChunkBytes, continuation.emittedRowCount);
+                        break;
+                    }
                 }
             } catch (KylinTimeoutException e) {
                 logger.info("Abort scan: {}", e.getMessage());
@@ -374,6 +481,8 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             CubeVisitProtos.CubeVisitResponse.Builder responseBuilder = CubeVisitProtos.CubeVisitResponse.newBuilder();
             if (errorInfo != null) {
                 responseBuilder.setErrorInfo(errorInfo);
+            } else if (continuation != null) {
+                responseBuilder.setContinuationToken(HBaseZeroCopyByteString.wrap(continuation.toBytes()));
             }
             done.run(responseBuilder.//
                     setCompressedRows(HBaseZeroCopyByteString.wrap(compressedAllRows)).//too many array copies 
@@ -135,6 +135,42 @@ public final class CubeVisitProtos {
      * </pre>
      */
     long getMaxScanBytes();
+
+    // optional int32 maxChunkBytes = 9;
+    /**
+     * <code>optional int32 maxChunkBytes = 9;</code>
+     *
+     * <pre>
+     * rows are returned in pages of about this size, 0 means no paging
+     * </pre>
+     */
+    boolean hasMaxChunkBytes();
+    /**
+     * <code>optional int32 maxChunkBytes = 9;</code>
+     *
+     * <pre>
+     * rows are returned in pages of about this size, 0 means no paging
+     * </pre>
+     */
+    int getMaxChunkBytes();
+
+    // optional bytes continuationToken = 10;
+    /**
+     * <code>optional bytes continuationToken = 10;</code>
+     *
+     * <pre>
+     * resume a paged scan, as returned by the previous response
+     * </pre>
+     */
+    boolean hasContinuationToken();
+    /**
+     * <code>optional bytes continuationToken = 10;</code>
+     *
+     * <pre>
+     * resume a paged scan, as returned by the previous response
+     * </pre>
+     */
+    com.google.protobuf.ByteString getContinuationToken();
   }
   /**
    * Protobuf type {@code CubeVisitRequest}
@@ -230,6 +266,16 @@ public final class CubeVisitProtos {
               maxScanBytes_ = input.readInt64();
               break;
             }
+            case 72: {
+              bitField0_ |= 0x00000080;
+              maxChunkBytes_ = input.readInt32();
+              break;
+            }
+            case 82: {
+              bitField0_ |= 0x00000100;
+              continuationToken_ = input.readBytes();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -999,6 +1045,54 @@ public final class CubeVisitProtos {
       return maxScanBytes_;
     }
 
+    // optional int32 maxChunkBytes = 9;
+    public static final int MAXCHUNKBYTES_FIELD_NUMBER = 9;
+    private int maxChunkBytes_;
+    /**
+     * <code>optional int32 maxChunkBytes = 9;</code>
+     *
+     * <pre>
+     * rows are returned in pages of about this size, 0 means no paging
+     * </pre>
+     */
+    public boolean hasMaxChunkBytes() {
+      return ((bitField0_ & 0x00000080) == 0x00000080);
+    }
+    /**
+     * <code>optional int32 maxChunkBytes = 9;</code>
+     *
+     * <pre>
+     * rows are returned in pages of about this size, 0 means no paging
+     * </pre>
+     */
+    public int getMaxChunkBytes() {
+      return maxChunkBytes_;
+    }
+
+    // optional bytes continuationToken = 10;
+    public static final int CONTINUATIONTOKEN_FIELD_NUMBER = 10;
+    private com.google.protobuf.ByteString continuationToken_;
+    /**
+     * <code>optional bytes continuationToken = 10;</code>
+     *
+     * <pre>
+     * resume a paged scan, as returned by the previous response
+     * </pre>
+     */
+    public boolean hasContinuationToken() {
+      return ((bitField0_ & 0x00000100) == 0x00000100);
+    }
+    /**
+     * <code>optional bytes continuationToken = 10;</code>
+     *
+     * <pre>
+     * resume a paged scan, as returned by the previous response
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getContinuationToken() {
+      return continuationToken_;
+    }
+
     private void initFields() {
       gtScanRequest_ = com.google.protobuf.ByteString.EMPTY;
       hbaseRawScan_ = com.google.protobuf.ByteString.EMPTY;
@@ -1008,6 +1102,8 @@ public final class CubeVisitProtos {
       queryId_ = "";
       spillEnabled_ = true;
       maxScanBytes_ = 0L;
+      maxChunkBytes_ = 0;
+      continuationToken_ = com.google.protobuf.ByteString.EMPTY;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -1061,6 +1157,12 @@ public final class CubeVisitProtos {
       if (((bitField0_ & 0x00000040) == 0x00000040)) {
         output.writeInt64(8, maxScanBytes_);
       }
+      if (((bitField0_ & 0x00000080) == 0x00000080)) {
+        output.writeInt32(9, maxChunkBytes_);
+      }
+      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        output.writeBytes(10, continuationToken_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -1102,6 +1204,14 @@ public final class CubeVisitProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeInt64Size(8, maxScanBytes_);
       }
+      if (((bitField0_ & 0x00000080) == 0x00000080)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(9, maxChunkBytes_);
+      }
+      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(10, continuationToken_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -1162,6 +1272,16 @@ public final class CubeVisitProtos {
         result = result && (getMaxScanBytes()
             == other.getMaxScanBytes());
       }
+      result = result && (hasMaxChunkBytes() == other.hasMaxChunkBytes());
+      if (hasMaxChunkBytes()) {
+        result = result && (getMaxChunkBytes()
+            == other.getMaxChunkBytes());
+      }
+      result = result && (hasContinuationToken() == other.hasContinuationToken());
+      if (hasContinuationToken()) {
+        result = result && getContinuationToken()
+            .equals(other.getContinuationToken());
+      }
       result = result &&
           getUnknownFields().equals(other.getUnknownFields());
       return result;
@@ -1207,6 +1327,14 @@ public final class CubeVisitProtos {
         hash = (37 * hash) + MAXSCANBYTES_FIELD_NUMBER;
         hash = (53 * hash) + hashLong(getMaxScanBytes());
       }
+      if (hasMaxChunkBytes()) {
+        hash = (37 * hash) + MAXCHUNKBYTES_FIELD_NUMBER;
+        hash = (53 * hash) + getMaxChunkBytes();
+      }
+      if (hasContinuationToken()) {
+        hash = (37 * hash) + CONTINUATIONTOKEN_FIELD_NUMBER;
+        hash = (53 * hash) + getContinuationToken().hashCode();
+      }
       hash = (29 * hash) + getUnknownFields().hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -1337,6 +1465,10 @@ public final class CubeVisitProtos {
         bitField0_ = (bitField0_ & ~0x00000040);
         maxScanBytes_ = 0L;
         bitField0_ = (bitField0_ & ~0x00000080);
+        maxChunkBytes_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000100);
+        continuationToken_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000200);
         return this;
       }
 
@@ -1402,6 +1534,14 @@ public final class CubeVisitProtos {
           to_bitField0_ |= 0x00000040;
         }
         result.maxScanBytes_ = maxScanBytes_;
+        if (((from_bitField0_ & 0x00000100) == 0x00000100)) {
+          to_bitField0_ |= 0x00000080;
+        }
+        result.maxChunkBytes_ = maxChunkBytes_;
+        if (((from_bitField0_ & 0x00000200) == 0x00000200)) {
+          to_bitField0_ |= 0x00000100;
+        }
+        result.continuationToken_ = continuationToken_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -1469,6 +1609,12 @@ public final class CubeVisitProtos {
         if (other.hasMaxScanBytes()) {
           setMaxScanBytes(other.getMaxScanBytes());
         }
+        if (other.hasMaxChunkBytes()) {
+          setMaxChunkBytes(other.getMaxChunkBytes());
+        }
+        if (other.hasContinuationToken()) {
+          setContinuationToken(other.getContinuationToken());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -2111,6 +2257,107 @@ public final class CubeVisitProtos {
         return this;
       }
 
+      // optional int32 maxChunkBytes = 9;
+      private int maxChunkBytes_ ;
+      /**
+       * <code>optional int32 maxChunkBytes = 9;</code>
+       *
+       * <pre>
+       * rows are returned in pages of about this size, 0 means no paging
+       * </pre>
+       */
+      public boolean hasMaxChunkBytes() {
+        return ((bitField0_ & 0x00000100) == 0x00000100);
+      }
+      /**
+       * <code>optional int32 maxChunkBytes = 9;</code>
+       *
+       * <pre>
+       * rows are returned in pages of about this size, 0 means no paging
+       * </pre>
+       */
+      public int getMaxChunkBytes() {
+        return maxChunkBytes_;
+      }
+      /**
+       * <code>optional int32 maxChunkBytes = 9;</code>
+       *
+       * <pre>
+       * rows are returned in pages of about this size, 0 means no paging
+       * </pre>
+       */
+      public Builder setMaxChunkBytes(int value) {
+        bitField0_ |= 0x00000100;
+        maxChunkBytes_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int32 maxChunkBytes = 9;</code>
+       *
+       * <pre>
+       * rows are returned in pages of about this size, 0 means no paging
+       * </pre>
+       */
+      public Builder clearMaxChunkBytes() {
+        bitField0_ = (bitField0_ & ~0x00000100);
+        maxChunkBytes_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional bytes continuationToken = 10;
+      private com.google.protobuf.ByteString continuationToken_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes continuationToken = 10;</code>
+       *
+       * <pre>
+       * resume a paged scan, as returned by the previous response
+       * </pre>
+       */
+      public boolean hasContinuationToken() {
+        return ((bitField0_ & 0x00000200) == 0x00000200);
+      }
+      /**
+       * <code>optional bytes continuationToken = 10;</code>
+       *
+       * <pre>
+       * resume a paged scan, as returned by the previous response
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getContinuationToken() {
+        return continuationToken_;
+      }
+      /**
+       * <code>optional bytes continuationToken = 10;</code>
+       *
+       * <pre>
+       * resume a paged scan, as returned by the previous response
+       * </pre>
+       */
+      public Builder setContinuationToken(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000200;
+        continuationToken_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes continuationToken = 10;</code>
+       *
+       * <pre>
+       * resume a paged scan, as returned by the previous response
+       * </pre>
+       */
+      public Builder clearContinuationToken() {
+        bitField0_ = (bitField0_ & ~0x00000200);
+        continuationToken_ = getDefaultInstance().getContinuationToken();
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:CubeVisitRequest)
     }
 
@@ -2174,6 +2421,24 @@ public final class CubeVisitProtos {
      * </pre>
      */
     org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.ErrorInfoOrBuilder getErrorInfoOrBuilder();
+
+    // optional bytes continuationToken = 4;
+    /**
+     * <code>optional bytes continuationToken = 4;</code>
+     *
+     * <pre>
+     * set when more rows remain, pass it back in the next request
+     * </pre>
+     */
+    boolean hasContinuationToken();
+    /**
+     * <code>optional bytes continuationToken = 4;</code>
+     *
+     * <pre>
+     * set when more rows remain, pass it back in the next request
+     * </pre>
+     */
+    com.google.protobuf.ByteString getContinuationToken();
   }
   /**
    * Protobuf type {@code CubeVisitResponse}
@@ -2257,6 +2522,11 @@ public final class CubeVisitProtos {
               bitField0_ |= 0x00000004;
               break;
             }
+            case 34: {
+              bitField0_ |= 0x00000008;
+              continuationToken_ = input.readBytes();
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -4568,10 +4838,35 @@ public final class CubeVisitProtos {
       return errorInfo_;
     }
 
+    // optional bytes continuationToken = 4;
+    public static final int CONTINUATIONTOKEN_FIELD_NUMBER = 4;
+    private com.google.protobuf.ByteString continuationToken_;
+    /**
+     * <code>optional bytes continuationToken = 4;</code>
+     *
+     * <pre>
+     * set when more rows remain, pass it back in the next request
+     * </pre>
+     */
+    public boolean hasContinuationToken() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional bytes continuationToken = 4;</code>
+     *
+     * <pre>
+     * set when more rows remain, pass it back in the next request
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getContinuationToken() {
+      return continuationToken_;
+    }
+
     private void initFields() {
       compressedRows_ = com.google.protobuf.ByteString.EMPTY;
       stats_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.Stats.getDefaultInstance();
       errorInfo_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.ErrorInfo.getDefaultInstance();
+      continuationToken_ = com.google.protobuf.ByteString.EMPTY;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -4608,6 +4903,9 @@ public final class CubeVisitProtos {
       if (((bitField0_ & 0x00000004) == 0x00000004)) {
         output.writeMessage(3, errorInfo_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeBytes(4, continuationToken_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -4629,6 +4927,10 @@ public final class CubeVisitProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(3, errorInfo_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(4, continuationToken_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -4667,6 +4969,11 @@ public final class CubeVisitProtos {
         result = result && getErrorInfo()
             .equals(other.getErrorInfo());
       }
+      result = result && (hasContinuationToken() == other.hasContinuationToken());
+      if (hasContinuationToken()) {
+        result = result && getContinuationToken()
+            .equals(other.getContinuationToken());
+      }
       result = result &&
           getUnknownFields().equals(other.getUnknownFields());
       return result;
@@ -4692,6 +4999,10 @@ public final class CubeVisitProtos {
         hash = (37 * hash) + ERRORINFO_FIELD_NUMBER;
         hash = (53 * hash) + getErrorInfo().hashCode();
       }
+      if (hasContinuationToken()) {
+        hash = (37 * hash) + CONTINUATIONTOKEN_FIELD_NUMBER;
+        hash = (53 * hash) + getContinuationToken().hashCode();
+      }
       hash = (29 * hash) + getUnknownFields().hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -4817,6 +5128,8 @@ public final class CubeVisitProtos {
           errorInfoBuilder_.clear();
         }
         bitField0_ = (bitField0_ & ~0x00000004);
+        continuationToken_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000008);
         return this;
       }
 
@@ -4865,6 +5178,10 @@ public final class CubeVisitProtos {
         } else {
           result.errorInfo_ = errorInfoBuilder_.build();
         }
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.continuationToken_ = continuationToken_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -4890,6 +5207,9 @@ public final class CubeVisitProtos {
         if (other.hasErrorInfo()) {
           mergeErrorInfo(other.getErrorInfo());
         }
+        if (other.hasContinuationToken()) {
+          setContinuationToken(other.getContinuationToken());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -5237,6 +5557,58 @@ public final class CubeVisitProtos {
         return errorInfoBuilder_;
       }
 
+      // optional bytes continuationToken = 4;
+      private com.google.protobuf.ByteString continuationToken_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes continuationToken = 4;</code>
+       *
+       * <pre>
+       * set when more rows remain, pass it back in the next request
+       * </pre>
+       */
+      public boolean hasContinuationToken() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional bytes continuationToken = 4;</code>
+       *
+       * <pre>
+       * set when more rows remain, pass it back in the next request
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getContinuationToken() {
+        return continuationToken_;
+      }
+      /**
+       * <code>optional bytes continuationToken = 4;</code>
+       *
+       * <pre>
+       * set when more rows remain, pass it back in the next request
+       * </pre>
+       */
+      public Builder setContinuationToken(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000008;
+        continuationToken_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes continuationToken = 4;</code>
+       *
+       * <pre>
+       * set when more rows remain, pass it back in the next request
+       * </pre>
+       */
+      public Builder clearContinuationToken() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        continuationToken_ = getDefaultInstance().getContinuationToken();
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:CubeVisitResponse)
     }
 
@@ -5516,32 +5888,34 @@ public final class CubeVisitProtos {
     java.lang.String[] descriptorData = {
       "\npstorage-hbase/src/main/java/org/apache" +
       "/kylin/storage/hbase/cube/v2/coprocessor" +
-      "/endpoint/protobuf/CubeVisit.proto\"\205\002\n\020C" +
+      "/endpoint/protobuf/CubeVisit.proto\"\267\002\n\020C" +
       "ubeVisitRequest\022\025\n\rgtScanRequest\030\001 \002(\014\022\024" +
       "\n\014hbaseRawScan\030\002 \002(\014\022\032\n\022rowkeyPreambleSi" +
       "ze\030\003 \002(\005\0223\n\020hbaseColumnsToGT\030\004 \003(\0132\031.Cub" +
       "eVisitRequest.IntList\022\027\n\017kylinProperties" +
       "\030\005 \002(\t\022\017\n\007queryId\030\006 \001(\t\022\032\n\014spillEnabled\030" +
-      "\007 \001(\010:\004true\022\024\n\014maxScanBytes\030\010 \001(\003\032\027\n\007Int" +
-      "List\022\014\n\004ints\030\001 \003(\005\"\253\004\n\021CubeVisitResponse",
-      "\022\026\n\016compressedRows\030\001 \002(\014\022\'\n\005stats\030\002 \002(\0132" +
-      "\030.CubeVisitResponse.Stats\022/\n\terrorInfo\030\003" +
-      " \001(\0132\034.CubeVisitResponse.ErrorInfo\032\220\002\n\005S" +
-      "tats\022\030\n\020serviceStartTime\030\001 \001(\003\022\026\n\016servic" +
-      "eEndTime\030\002 \001(\003\022\027\n\017scannedRowCount\030\003 \001(\003\022" +
-      "\032\n\022aggregatedRowCount\030\004 \001(\003\022\025\n\rsystemCpu" +
-      "Load\030\005 \001(\001\022\036\n\026freePhysicalMemorySize\030\006 \001" +
-      "(\001\022\031\n\021freeSwapSpaceSize\030\007 \001(\001\022\020\n\010hostnam" +
-      "e\030\010 \001(\t\022\016\n\006etcMsg\030\t \001(\t\022\026\n\016normalComplet" +
-      "e\030\n \001(\005\022\024\n\014scannedBytes\030\013 \001(\003\032H\n\tErrorIn",
-      "fo\022*\n\004type\030\001 \002(\0162\034.CubeVisitResponse.Err" +
-      "orType\022\017\n\007message\030\002 \002(\t\"G\n\tErrorType\022\020\n\014" +
-      "UNKNOWN_TYPE\020\000\022\013\n\007TIMEOUT\020\001\022\033\n\027RESOURCE_" +
-      "LIMIT_EXCEEDED\020\0022F\n\020CubeVisitService\0222\n\t" +
-      "visitCube\022\021.CubeVisitRequest\032\022.CubeVisit" +
-      "ResponseB`\nEorg.apache.kylin.storage.hba" +
-      "se.cube.v2.coprocessor.endpoint.generate" +
-      "dB\017CubeVisitProtosH\001\210\001\001\240\001\001"
+      "\007 \001(\010:\004true\022\024\n\014maxScanBytes\030\010 \001(\003\022\025\n\rmax" +
+      "ChunkBytes\030\t \001(\005\022\031\n\021continuationToken\030\n ",
+      "\001(\014\032\027\n\007IntList\022\014\n\004ints\030\001 \003(\005\"\306\004\n\021CubeVis" +
+      "itResponse\022\026\n\016compressedRows\030\001 \002(\014\022\'\n\005st" +
+      "ats\030\002 \002(\0132\030.CubeVisitResponse.Stats\022/\n\te" +
+      "rrorInfo\030\003 \001(\0132\034.CubeVisitResponse.Error" +
+      "Info\022\031\n\021continuationToken\030\004 \001(\014\032\220\002\n\005Stat" +
+      "s\022\030\n\020serviceStartTime\030\001 \001(\003\022\026\n\016serviceEn" +
+      "dTime\030\002 \001(\003\022\027\n\017scannedRowCount\030\003 \001(\003\022\032\n\022" +
+      "aggregatedRowCount\030\004 \001(\003\022\025\n\rsystemCpuLoa" +
+      "d\030\005 \001(\001\022\036\n\026freePhysicalMemorySize\030\006 \001(\001\022" +
+      "\031\n\021freeSwapSpaceSize\030\007 \001(\001\022\020\n\010hostname\030\010",
+      " \001(\t\022\016\n\006etcMsg\030\t \001(\t\022\026\n\016normalComplete\030\n" +
+      " \001(\005\022\024\n\014scannedBytes\030\013 \001(\003\032H\n\tErrorInfo\022" +
+      "*\n\004type\030\001 \002(\0162\034.CubeVisitResponse.ErrorT" +
+      "ype\022\017\n\007message\030\002 \002(\t\"G\n\tErrorType\022\020\n\014UNK" +
+      "NOWN_TYPE\020\000\022\013\n\007TIMEOUT\020\001\022\033\n\027RESOURCE_LIM" +
+      "IT_EXCEEDED\020\0022F\n\020CubeVisitService\0222\n\tvis" +
+      "itCube\022\021.CubeVisitRequest\032\022.CubeVisitRes" +
+      "ponseB`\nEorg.apache.kylin.storage.hbase." +
+      "cube.v2.coprocessor.endpoint.generatedB\017" +
+      "CubeVisitProtosH\001\210\001\001\240\001\001"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -5553,7 +5927,7 @@ public final class CubeVisitProtos {
           internal_static_CubeVisitRequest_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitRequest_descriptor,
-              new java.lang.String[] { "GtScanRequest", "HbaseRawScan", "RowkeyPreambleSize", "HbaseColumnsToGT", "KylinProperties", "QueryId", "SpillEnabled", "MaxScanBytes", });
+              new java.lang.String[] { "GtScanRequest", "HbaseRawScan", "RowkeyPreambleSize", "HbaseColumnsToGT", "KylinProperties", "QueryId", "SpillEnabled", "MaxScanBytes", "MaxChunkBytes", "ContinuationToken", });
           internal_static_CubeVisitRequest_IntList_descriptor =
             internal_static_CubeVisitRequest_descriptor.getNestedTypes().get(0);
           internal_static_CubeVisitRequest_IntList_fieldAccessorTable = new
@@ -5565,7 +5939,7 @@ public final class CubeVisitProtos {
           internal_static_CubeVisitResponse_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitResponse_descriptor,
-              new java.lang.String[] { "CompressedRows", "Stats", "ErrorInfo", });
+              new java.lang.String[] { "CompressedRows", "Stats", "ErrorInfo", "ContinuationToken", });
           internal_static_CubeVisitResponse_Stats_descriptor =
             internal_static_CubeVisitResponse_descriptor.getNestedTypes().get(0);
           internal_static_CubeVisitResponse_Stats_fieldAccessorTable = new
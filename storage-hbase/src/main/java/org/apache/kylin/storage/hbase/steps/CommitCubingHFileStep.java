@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.engine.mr.CubingJob;
+import org.apache.kylin.engine.mr.steps.CubingExecutableUtil;
+import org.apache.kylin.job.exception.ExecuteException;
+import org.apache.kylin.job.execution.AbstractExecutable;
+import org.apache.kylin.job.execution.ExecutableContext;
+import org.apache.kylin.job.execution.ExecuteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Runs after the cubing steps have succeeded. If the in-mem cubing reducers wrote the HFiles (see
+ * HBaseInMemCubingOutputFormat), moves their cuboid files to the cuboid path for merge, and records
+ * the cube size and the marker that lets the converting step skip itself. Otherwise does nothing.
+ */
+public class CommitCubingHFileStep extends AbstractExecutable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommitCubingHFileStep.class);
+
+    private static final String HFILE_PATH = "hfilePath";
+    private static final String CUBOID_ROOT_PATH = "cuboidRootPath";
+
+    public CommitCubingHFileStep() {
+        super();
+    }
+
+    @Override
+    protected ExecuteResult doWork(ExecutableContext context) throws ExecuteException {
+        String cubingJobId = CubingExecutableUtil.getCubingJobId(getParams());
+        CubingJob cubingJob = (CubingJob) getManager().getJob(cubingJobId);
+        Configuration conf = HadoopUtil.getCurrentConfiguration();
+        Path hfilePath = new Path(getHFilePath());
+        Path cuboidPath = new Path(getCuboidRootPath());
+
+        try {
+            FileSystem hfileFs = hfilePath.getFileSystem(conf);
+            // the HFiles are there before the converting step only if the in-mem cubing wrote them
+            if (!cubingJob.isInMemCubing() || !hfileFs.exists(hfilePath)) {
+                return new ExecuteResult(ExecuteResult.State.SUCCEED, "HFiles not written by cubing, skip");
+            }
+
+            // the cuboid files lie beside the family folders, bulk load would skip them anyway
+            FileStatus[] cuboidFiles = hfileFs.listStatus(hfilePath, new PathFilter() {
+                @Override
+                public boolean accept(Path path) {
+                    return path.getName().startsWith(HBaseInMemCubingOutputFormat.CUBOID_OUTPUT + "-");
+                }
+            });
+            FileSystem cuboidFs = cuboidPath.getFileSystem(conf);
+            cuboidFs.mkdirs(cuboidPath);
+            boolean sameFs = hfileFs.getUri().equals(cuboidFs.getUri());
+            for (FileStatus file : cuboidFiles) {
+                Path src = file.getPath();
+                Path dst = new Path(cuboidPath, "part" + src.getName().substring(HBaseInMemCubingOutputFormat.CUBOID_OUTPUT.length()));
+                boolean moved = sameFs ? hfileFs.rename(src, dst) : FileUtil.copy(hfileFs, src, cuboidFs, dst, true, conf);
+                if (!moved) {
+                    throw new IOException("Failed to move " + src + " to " + dst);
+                }
+            }
+            logger.info("Moved " + cuboidFiles.length + " cuboid files to " + cuboidPath);
+
+            // the converting step is skipped, so record the cube size in its place
+            long hfileBytes = hfileFs.getContentSummary(hfilePath).getLength();
+            Map<String, String> info = Maps.newHashMap();
+            info.put(CubingJob.CUBE_SIZE_BYTES, String.valueOf(hfileBytes));
+            info.put(HBaseInMemCubingOutputFormat.HFILE_WRITTEN, "true");
+            getManager().addJobInfo(cubingJobId, info);
+
+            return new ExecuteResult(ExecuteResult.State.SUCCEED, "Moved " + cuboidFiles.length + " cuboid files, HFile size " + hfileBytes);
+        } catch (IOException e) {
+            logger.error("fail to commit the HFiles written by cubing", e);
+            return new ExecuteResult(ExecuteResult.State.ERROR, e.getLocalizedMessage());
+        }
+    }
+
+    public void setHFilePath(String path) {
+        setParam(HFILE_PATH, path);
+    }
+
+    public String getHFilePath() {
+        return getParam(HFILE_PATH);
+    }
+
+    public void setCuboidRootPath(String path) {
+        setParam(CUBOID_ROOT_PATH, path);
+    }
+
+    public String getCuboidRootPath() {
+        return getParam(CUBOID_ROOT_PATH);
+    }
+}
@@ -53,6 +53,13 @@ public class CubeHFileJob extends AbstractHadoopJob {
 
     protected static final Logger logger = LoggerFactory.getLogger(CubeHFileJob.class);
 
+    private boolean skipped = false;
+
+    @Override
+    public boolean isSkipped() {
+        return skipped;
+    }
+
     public int run(String[] args) throws Exception {
         Options options = new Options();
 
@@ -63,8 +70,16 @@ public class CubeHFileJob extends AbstractHadoopJob {
             options.addOption(OPTION_INPUT_PATH);
             options.addOption(OPTION_OUTPUT_PATH);
             options.addOption(OPTION_HTABLE_NAME);
+            options.addOption(OPTION_CUBING_JOB_ID);
             parseOptions(options, args);
 
+            // the in-mem cubing reducers may have written the HFiles already
+            skipped = HBaseInMemCubingOutputFormat.isHFileWritten(getOptionValue(OPTION_CUBING_JOB_ID));
+            if (skipped) {
+                logger.info("Skip job " + getOptionValue(OPTION_JOB_NAME) + ", the HFiles are written by cubing");
+                return 0;
+            }
+
             Path partitionFilePath = new Path(getOptionValue(OPTION_PARTITION_FILE_PATH));
 
             Path output = new Path(getOptionValue(OPTION_OUTPUT_PATH));
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.mapreduce.HFileOutputFormat;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.engine.mr.IMROutput2.IMRInMemCubingOutputFormat;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.job.execution.ExecutableManager;
+import org.apache.kylin.storage.hbase.HBaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets the in-mem cubing reducers write the HFiles directly, partitioned by the region (and hfile)
+ * splits that CreateHTableJob cut from the statistics, so the bulk load follows the cubing right away.
+ * The cuboid files are written aside, and moved to the cuboid path by CommitCubingHFileStep once the job
+ * has finished, merge still needs them. Enabled by "kylin.storage.hbase.direct-hfile-enabled".
+ */
+public class HBaseInMemCubingOutputFormat implements IMRInMemCubingOutputFormat {
+
+    private static final Logger logger = LoggerFactory.getLogger(HBaseInMemCubingOutputFormat.class);
+
+    /** name of the reducers' cuboid file output */
+    public static final String CUBOID_OUTPUT = "cuboid";
+
+    /** extra info of the cubing job, marks that the HFiles are written and the converting step has nothing to do */
+    public static final String HFILE_WRITTEN = "hfileWrittenByCubing";
+
+    @Override
+    public void configureJob(Job job, CubeSegment seg, String cuboidRootPath) throws IOException {
+        Configuration conf = job.getConfiguration();
+        String cubingJobId = conf.get(BatchConstants.ARG_CUBING_JOB_ID);
+        HBaseMRSteps steps = new HBaseMRSteps(seg);
+
+        // for separate HBase cluster, the output is a qualified HDFS path like in CubeHFileJob
+        HBaseConnection.addHBaseClusterNNHAConfiguration(conf);
+        Path hfilePath = new Path(steps.getHFilePath(cubingJobId));
+
+        Configuration hbaseConf = HBaseConfiguration.create(conf);
+        HTable htable = new HTable(hbaseConf, seg.getStorageLocationIdentifier());
+        try {
+            // output format, compression etc. of the table and the region splits as the partition file
+            HFileOutputFormat.configureIncrementalLoad(job, htable);
+        } finally {
+            htable.close();
+        }
+
+        // the finer hfile splits if there, the same as CubeHFileJob does
+        Path hfilePartitionFile = new Path(steps.getRowkeyDistributionOutputPath(cubingJobId) + "/part-r-00000_hfile");
+        if (hfilePartitionFile.getFileSystem(conf).exists(hfilePartitionFile)) {
+            TotalOrderPartitioner.setPartitionFile(conf, hfilePartitionFile);
+        }
+        int splitCount = HFileRegionPartitioner.readSplitKeys(conf, new Path(TotalOrderPartitioner.getPartitionFile(conf))).length;
+
+        job.setReducerClass(HFileInMemCuboidReducer.class);
+        job.setPartitionerClass(HFileRegionPartitioner.class);
+        job.setNumReduceTasks(splitCount + 1);
+        logger.info("Writing HFiles to " + hfilePath + " by " + (splitCount + 1) + " reducers");
+
+        // the cuboid file and KV class must be compatible with 0.7 version for smooth upgrade
+        MultipleOutputs.addNamedOutput(job, CUBOID_OUTPUT, SequenceFileOutputFormat.class, Text.class, Text.class);
+
+        FileOutputFormat.setOutputPath(job, hfilePath);
+        HadoopUtil.deletePath(conf, hfilePath);
+        HadoopUtil.deletePath(conf, new Path(cuboidRootPath));
+    }
+
+    public static boolean isHFileWritten(String cubingJobId) {
+        if (cubingJobId == null)
+            return false;
+
+        ExecutableManager execMgr = ExecutableManager.getInstance(KylinConfig.getInstanceFromEnv());
+        return "true".equals(execMgr.getOutput(cubingJobId).getExtra().get(HFILE_WRITTEN));
+    }
+}
@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.engine.mr.IMROutput2;
+import org.apache.kylin.engine.mr.IMROutput2.IMRInMemCubingOutputFormat;
 import org.apache.kylin.engine.mr.steps.MergeCuboidJob;
 import org.apache.kylin.job.execution.DefaultChainedExecutable;
 import org.slf4j.Logger;
@@ -54,6 +55,8 @@ public class HBaseMROutput2Transition implements IMROutput2 {
 
             @Override
             public void addStepPhase3_BuildCube(DefaultChainedExecutable jobFlow) {
+                // whether the in-mem cubing wrote the HFiles is only known at run time, the step skips itself if not
+                jobFlow.addTask(steps.createCommitCubingHFileStep(jobFlow.getId()));
                 jobFlow.addTask(steps.createConvertCuboidToHfileStep(jobFlow.getId()));
                 jobFlow.addTask(steps.createBulkLoadStep(jobFlow.getId()));
             }
@@ -62,6 +65,12 @@ public class HBaseMROutput2Transition implements IMROutput2 {
             public void addStepPhase4_Cleanup(DefaultChainedExecutable jobFlow) {
                 // nothing to do
             }
+
+            @Override
+            public IMRInMemCubingOutputFormat getInMemCubingOutputFormat() {
+                // when in-mem cubing writes the HFiles, the commit step above moves the cuboid files and the converting step skips itself
+                return seg.getConfig().isHBaseDirectHFileEnabled() ? new HBaseInMemCubingOutputFormat() : null;
+            }
         };
     }
 
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.HBaseColumnDesc;
+import org.apache.kylin.cube.model.HBaseColumnFamilyDesc;
+import org.apache.kylin.engine.mr.ByteArrayWritable;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.engine.mr.steps.InMemCuboidReducer;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The in-mem cubing reducer that writes the aggregated rows as HBase KeyValues, i.e. the work of
+ * CubeHFileMapper, while the cuboid file goes to a named output for later merges.
+ */
+public class HFileInMemCuboidReducer extends InMemCuboidReducer {
+
+    private MultipleOutputs<Object, Object> cuboidOutputs;
+    private List<KeyValueCreator> keyValueCreators;
+    private KeyValue[] rowCells;
+    private ImmutableBytesWritable rowKey = new ImmutableBytesWritable();
+
+    @Override
+    protected void setup(Context context) throws IOException {
+        super.setup(context);
+
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        String cubeName = context.getConfiguration().get(BatchConstants.CFG_CUBE_NAME).toUpperCase();
+        CubeDesc cubeDesc = CubeManager.getInstance(config).getCube(cubeName).getDescriptor();
+
+        keyValueCreators = Lists.newArrayList();
+        for (HBaseColumnFamilyDesc cfDesc : cubeDesc.getHbaseMapping().getColumnFamily()) {
+            for (HBaseColumnDesc colDesc : cfDesc.getColumns()) {
+                keyValueCreators.add(new KeyValueCreator(cubeDesc, colDesc));
+            }
+        }
+        rowCells = new KeyValue[keyValueCreators.size()];
+
+        cuboidOutputs = new MultipleOutputs<>(context);
+    }
+
+    @Override
+    protected void writeRow(ByteArrayWritable key, Object[] measures, ByteBuffer valueBuf, Context context) throws IOException, InterruptedException {
+        cuboidOutputs.write(HBaseInMemCubingOutputFormat.CUBOID_OUTPUT, toCuboidKey(key), toCuboidValue(valueBuf));
+
+        rowKey.set(key.array(), key.offset(), key.length());
+        int n = keyValueCreators.size();
+        if (n == 1 && keyValueCreators.get(0).isFullCopy) { // shortcut for simple full copy
+            context.write(rowKey, keyValueCreators.get(0).create(key.array(), key.offset(), key.length(), valueBuf.array(), 0, valueBuf.position()));
+            return;
+        }
+
+        // HFile wants the cells of a row in order, like KeyValueSortReducer does
+        for (int i = 0; i < n; i++) {
+            rowCells[i] = keyValueCreators.get(i).create(key.array(), key.offset(), key.length(), measures);
+        }
+        Arrays.sort(rowCells, KeyValue.COMPARATOR);
+        for (KeyValue cell : rowCells) {
+            context.write(rowKey, cell);
+        }
+    }
+
+    @Override
+    protected void doCleanup(Context context) throws IOException, InterruptedException {
+        cuboidOutputs.close();
+    }
+}
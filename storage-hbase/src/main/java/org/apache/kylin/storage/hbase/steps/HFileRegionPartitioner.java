@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.steps;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.engine.mr.ByteArrayWritable;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Partitions the rowkeys of the in-mem cubing reducers by the split keys of the HTable (or of its
+ * hfiles), so that each reducer writes the HFiles of one key range. The split keys are read from
+ * the partition file of TotalOrderPartitioner, which only works with the map output key class
+ * while the in-mem cubing job shuffles ByteArrayWritable.
+ */
+public class HFileRegionPartitioner extends Partitioner<ByteArrayWritable, Object> implements Configurable {
+
+    private Configuration conf;
+    private byte[][] splitKeys;
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        try {
+            splitKeys = readSplitKeys(conf, new Path(TotalOrderPartitioner.getPartitionFile(conf)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't read the partition file", e);
+        }
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    @Override
+    public int getPartition(ByteArrayWritable key, Object value, int numPartitions) {
+        // the number of split keys less than or equal to the key
+        int low = 0;
+        int high = splitKeys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            byte[] split = splitKeys[mid];
+            int comp = Bytes.compareTo(split, 0, split.length, key.array(), key.offset(), key.length());
+            if (comp <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings("deprecation")
+    public static byte[][] readSplitKeys(Configuration conf, Path partitionFile) throws IOException {
+        FileSystem fs = partitionFile.getFileSystem(conf);
+        List<byte[]> keys = Lists.newArrayList();
+        try (SequenceFile.Reader reader = new SequenceFile.Reader(fs, partitionFile, conf)) {
+            ImmutableBytesWritable key = new ImmutableBytesWritable();
+            NullWritable value = NullWritable.get();
+            while (reader.next(key, value)) {
+                keys.add(key.copyBytes());
+            }
+        }
+        return keys.toArray(new byte[keys.size()][]);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ExpectedSizeIteratorTest {
+
+    @Test
+    public void testOnePagePerRegion() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(2, 1000);
+        itr.append(new byte[] { 1 });
+        itr.append(new byte[] { 2 });
+
+        List<byte[]> result = Lists.newArrayList(itr);
+        assertEquals(2, result.size());
+        assertArrayEquals(new byte[] { 1 }, result.get(0));
+        assertArrayEquals(new byte[] { 2 }, result.get(1));
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void testPagedRegions() throws InterruptedException {
+        final ExpectedSizeIterator itr = new ExpectedSizeIterator(2, 10000);
+
+        // more pages than the queue can hold, the producer has to wait for the consumer
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    itr.appendPage(new byte[] { (byte) i });
+                }
+                itr.append(new byte[] { 10 });
+                itr.append(new byte[] { 11 });
+            }
+        });
+        producer.start();
+
+        int count = 0;
+        while (itr.hasNext()) {
+            assertEquals(count, itr.next()[0]);
+            count++;
+        }
+        producer.join();
+        assertEquals(12, count);
+    }
+
+    @Test
+    public void testNoRegion() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(0, 1000);
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void testCoprocessorException() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(2, 1000);
+        itr.append(new byte[] { 1 });
+        assertTrue(itr.hasNext());
+        itr.next();
+
+        itr.notifyCoprocException(new IllegalStateException("region failed"));
+        try {
+            itr.hasNext();
+        } catch (IllegalStateException e) {
+            assertEquals("region failed", e.getMessage());
+            return;
+        }
+        throw new AssertionError("exception expected");
+    }
+}
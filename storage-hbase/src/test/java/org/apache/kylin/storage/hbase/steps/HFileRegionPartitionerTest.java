@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.steps;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.engine.mr.ByteArrayWritable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HFileRegionPartitionerTest {
+
+    private File partitionFile;
+    private HFileRegionPartitioner partitioner;
+
+    @Before
+    public void setup() throws IOException {
+        partitionFile = File.createTempFile("partition", ".lst");
+        partitionFile.delete();
+
+        Configuration conf = new Configuration();
+        conf.set("fs.defaultFS", "file:///");
+        Path path = new Path(partitionFile.toURI());
+        try (SequenceFile.Writer writer = SequenceFile.createWriter(conf, SequenceFile.Writer.file(path), SequenceFile.Writer.keyClass(ImmutableBytesWritable.class), SequenceFile.Writer.valueClass(NullWritable.class))) {
+            writer.append(new ImmutableBytesWritable(new byte[] { 0, 1 }), NullWritable.get());
+            writer.append(new ImmutableBytesWritable(new byte[] { 0, 2 }), NullWritable.get());
+            writer.append(new ImmutableBytesWritable(new byte[] { (byte) 0x80 }), NullWritable.get());
+        }
+        TotalOrderPartitioner.setPartitionFile(conf, path);
+
+        partitioner = new HFileRegionPartitioner();
+        partitioner.setConf(conf);
+    }
+
+    @After
+    public void after() {
+        partitionFile.delete();
+    }
+
+    @Test
+    public void testGetPartition() {
+        assertEquals(0, partition(new byte[] { 0 }));
+        assertEquals(0, partition(new byte[] { 0, 0, 9 }));
+        assertEquals(1, partition(new byte[] { 0, 1 }));
+        assertEquals(1, partition(new byte[] { 0, 1, 0 }));
+        assertEquals(2, partition(new byte[] { 0, 2 }));
+        assertEquals(2, partition(new byte[] { 0x7f, 0 }));
+        // unsigned order, as HBase sorts the rowkeys
+        assertEquals(3, partition(new byte[] { (byte) 0x80 }));
+        assertEquals(3, partition(new byte[] { (byte) 0xff, 0 }));
+    }
+
+    @Test
+    public void testOffset() {
+        byte[] bytes = Bytes.toBytes("xx");
+        byte[] padded = new byte[] { 9, 9, 0, 2, 5, 9 };
+        assertEquals(2, partitioner.getPartition(new ByteArrayWritable(padded, 2, 3), null, 4));
+        assertEquals(2, partitioner.getPartition(new ByteArrayWritable(bytes), null, 4));
+    }
+
+    private int partition(byte[] key) {
+        return partitioner.getPartition(new ByteArrayWritable(key), null, 4);
+    }
+}